@@ -0,0 +1,95 @@
+package com.strubium.gasstation;
+
+import com.strubium.gasstation.checkpoint.Checkpointer;
+import com.strubium.gasstation.frontier.Frontier;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-link work every crawler thread does: URL normalization, the visited check and
+ * the host graph update, with all threads sharing one manager. With {@code logged},
+ * marked URLs also go to a checkpoint's visited log, as in a real crawl.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+public class CrawlerManagerBenchmark {
+    private static final int URLS = 1 << 18;
+
+    @Param({"4096", "65536"})
+    public int hosts;
+
+    @Param({"false", "true"})
+    public boolean logged;
+
+    private String[] urls;
+    private CrawlerManager manager;
+    private Path checkpointDir;
+    private Checkpointer checkpointer;
+
+    /** Each thread walks the URL pool from its own offset. */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private static int nextStart;
+        int index;
+
+        @Setup
+        public void setUp() {
+            synchronized (Cursor.class) {
+                index = nextStart;
+                nextStart += URLS / 8;
+            }
+        }
+
+        int next() {
+            return index++ & (URLS - 1);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        urls = SyntheticGraphs.pageUrls(URLS, hosts, 7);
+    }
+
+    // A fresh manager per iteration, so markVisited keeps seeing a mix of new and known URLs
+    @Setup(Level.Iteration)
+    public void newManager() throws IOException {
+        manager = new CrawlerManager(3);
+        if (!logged) return;
+        checkpointDir = Files.createTempDirectory("visited-log");
+        checkpointer = new Checkpointer(checkpointDir, manager, new Frontier(manager, 1));
+        checkpointer.reset();
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeLog() throws IOException {
+        if (checkpointer == null) return;
+        checkpointer.close();
+        try (var files = Files.walk(checkpointDir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+        }
+        checkpointer = null;
+    }
+
+    @Benchmark
+    public String normalizeUrl(Cursor cursor) {
+        return manager.normalizeUrl(urls[cursor.next()]);
+    }
+
+    @Benchmark
+    public boolean markVisited(Cursor cursor) {
+        return manager.markVisited(urls[cursor.next()]);
+    }
+
+    @Benchmark
+    public boolean addEdge(Cursor cursor) {
+        int i = cursor.next();
+        return manager.addEdge(urls[i], urls[(i * 31 + 7) & (URLS - 1)], 1);
+    }
+}
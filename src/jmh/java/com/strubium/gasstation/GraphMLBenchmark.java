@@ -0,0 +1,55 @@
+package com.strubium.gasstation;
+
+import com.strubium.gasstation.graph.HostGraphSnapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes and parses GraphML files of synthetic crawls, in a temp directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GraphMLBenchmark {
+
+    @Param({"10000", "100000"})
+    public int hosts;
+
+    @Param({"graphml", "graphml.gz"})
+    public String extension;
+
+    private HostGraphSnapshot graph;
+    private Path dir;
+    private String outFile;
+    private String inFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        graph = SyntheticGraphs.hostGraph(hosts, 8, 11);
+        dir = Files.createTempDirectory("graphml-bench");
+        outFile = dir.resolve("out." + extension).toString();
+        inFile = dir.resolve("in." + extension).toString();
+        new GraphMLExporter().exportGraph(graph, inFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(Path.of(outFile));
+        Files.deleteIfExists(Path.of(inFile));
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public void export() throws IOException {
+        new GraphMLExporter().exportGraph(graph, outFile);
+    }
+
+    @Benchmark
+    public HostGraphSnapshot parse() throws Exception {
+        return FastGraphMLExporter.parseGraphML(inFile);
+    }
+}
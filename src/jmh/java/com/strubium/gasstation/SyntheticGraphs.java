@@ -0,0 +1,58 @@
+package com.strubium.gasstation;
+
+import com.strubium.gasstation.graph.HostGraph;
+import com.strubium.gasstation.graph.HostGraphSnapshot;
+
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic host graphs for the benchmarks.
+ */
+public final class SyntheticGraphs {
+
+    private SyntheticGraphs() {
+    }
+
+    /**
+     * {@code hosts} hosts with about {@code edgesPerHost} out-links each. Half the targets
+     * are picked uniformly, half among the first few percent of hosts, which gives the
+     * hub-heavy degree spread of a real crawl.
+     */
+    public static HostGraphSnapshot hostGraph(int hosts, int edgesPerHost, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        HostGraph graph = new HostGraph();
+        for (int i = 0; i < hosts; i++) {
+            graph.recordDepth(graph.intern(host(i)), i == 0 ? 0 : 1 + random.nextInt(6));
+        }
+        int hubs = Math.max(1, hosts / 32);
+        for (int from = 0; from < hosts; from++) {
+            for (int e = 0; e < edgesPerHost; e++) {
+                int to = random.nextBoolean() ? random.nextInt(hosts) : random.nextInt(hubs);
+                if (to != from) graph.addEdge(from, to, 1 + random.nextInt(3));
+            }
+        }
+        return graph.snapshot();
+    }
+
+    public static String host(int i) {
+        return "host" + i + ".example" + (i % 7) + ".com";
+    }
+
+    /** Page URLs spread over {@code hosts} hosts, with the usual www., query and fragment noise. */
+    public static String[] pageUrls(int count, int hosts, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        String[] urls = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder url = new StringBuilder(96);
+            url.append(random.nextBoolean() ? "https://" : "http://");
+            if (random.nextInt(4) == 0) url.append("www.");
+            url.append(host(random.nextInt(hosts))).append("/section").append(random.nextInt(50))
+                    .append("/article-").append(i);
+            if (random.nextInt(3) == 0) url.append('/');
+            if (random.nextInt(5) == 0) url.append("?utm_source=feed&id=").append(random.nextInt(1000));
+            if (random.nextInt(8) == 0) url.append("#comments");
+            urls[i] = url.toString();
+        }
+        return urls;
+    }
+}
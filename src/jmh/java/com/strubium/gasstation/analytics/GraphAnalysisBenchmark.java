@@ -0,0 +1,42 @@
+package com.strubium.gasstation.analytics;
+
+import com.strubium.gasstation.SyntheticGraphs;
+import com.strubium.gasstation.graph.HostGraphSnapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Post-crawl analytics on graphs of 10 edges per host: PageRank to convergence,
+ * strongly connected components, and the whole stage including degrees.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GraphAnalysisBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int hosts;
+
+    private HostGraphSnapshot graph;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        graph = SyntheticGraphs.hostGraph(hosts, 10, 7);
+    }
+
+    @Benchmark
+    public double[] pageRank() {
+        return PageRank.compute(graph);
+    }
+
+    @Benchmark
+    public StronglyConnectedComponents components() {
+        return StronglyConnectedComponents.compute(graph);
+    }
+
+    @Benchmark
+    public GraphAnalysis analysis() {
+        return GraphAnalysis.run(graph);
+    }
+}
@@ -0,0 +1,99 @@
+package com.strubium.gasstation.extract;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Link extraction on saved pages: the old Jsoup DOM + CSS select + {@link URI} path
+ * against the streaming {@link LinkExtractor}. Fixtures live in src/jmh/resources/fixtures,
+ * drop more saved pages there and add their names to {@link #fixture}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LinkExtractorBenchmark {
+
+    @Param({"wiki_article.html", "news_front.html"})
+    public String fixture;
+
+    private byte[] page;
+    private String baseUrl;
+    private final LinkExtractor extractor = new LinkExtractor();
+
+    @Setup
+    public void setUp() throws IOException {
+        page = loadFixture(fixture);
+        baseUrl = "https://" + fixture.replace(".html", "") + ".example.org/some/dir/page";
+    }
+
+    @Benchmark
+    public void jsoupDom(Blackhole bh) throws IOException {
+        Document doc = Jsoup.parse(new ByteArrayInputStream(page), "UTF-8", baseUrl);
+        for (Element link : doc.select("a[href], link[href], meta[http-equiv=refresh]")) {
+            String abs = legacyAbsoluteUrl(link, baseUrl);
+            if (abs == null) continue;
+            String host = legacyDomain(abs);
+            if (host != null) bh.consume(host);
+        }
+    }
+
+    @Benchmark
+    public void streaming(Blackhole bh) throws IOException {
+        extractor.extract(new InputStreamReader(new ByteArrayInputStream(page), StandardCharsets.UTF_8), baseUrl, abs -> {
+            String host = UrlResolver.hostOf(abs);
+            if (host != null) bh.consume(host);
+        });
+    }
+
+    static byte[] loadFixture(String name) throws IOException {
+        try (InputStream in = LinkExtractorBenchmark.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) throw new IOException("Missing fixture " + name);
+            return in.readAllBytes();
+        }
+    }
+
+    // The extraction code CrawlerWorker used before the streaming extractor
+
+    private static String legacyDomain(String url) {
+        try {
+            return new URI(url).getHost();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String legacyAbsoluteUrl(Element element, String baseUrl) {
+        try {
+            if (element.tagName().equals("meta")) {
+                String content = element.attr("content");
+                int idx = content.toLowerCase().indexOf("url=");
+                if (idx >= 0) {
+                    return legacyResolve(baseUrl, content.substring(idx + 4));
+                }
+                return null;
+            }
+            return legacyResolve(baseUrl, element.attr("href"));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String legacyResolve(String base, String relative) {
+        try {
+            return new URI(base).resolve(relative).toString();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.strubium.gasstation.fetch;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares the shared HttpClient fetch path with the per-request Jsoup path
+ * against a local stub server, so the numbers do not depend on the network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(16)
+public class FetcherBenchmark {
+
+    @Param({"httpclient", "jsoup"})
+    public String impl;
+
+    private HttpServer server;
+    private Fetcher fetcher;
+    private String pageUrl;
+    private String binaryUrl;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] page = samplePage(500).getBytes(StandardCharsets.UTF_8);
+        byte[] gzipped = gzip(page);
+        byte[] binary = new byte[4 * 1024 * 1024];
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 512);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/page", exchange -> {
+            String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            boolean gz = accept != null && accept.contains("gzip");
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+            if (gz) exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            send(exchange, gz ? gzipped : page);
+        });
+        server.createContext("/binary", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+            send(exchange, binary);
+        });
+        server.start();
+
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        pageUrl = base + "/page";
+        binaryUrl = base + "/binary";
+        fetcher = impl.equals("jsoup")
+                ? new JsoupFetcher(FetchConfig.defaults())
+                : new HttpClientFetcher(FetchConfig.defaults());
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Benchmark
+    public int fetchAndParsePage() throws Exception {
+        try (FetchResponse response = fetcher.fetch(pageUrl)) {
+            Document doc = Jsoup.parse(response.body(), response.charset().name(), response.url());
+            return doc.select("a[href]").size();
+        }
+    }
+
+    @Benchmark
+    public int fetchFilteredBinary() throws Exception {
+        try (FetchResponse response = fetcher.fetch(binaryUrl)) {
+            return response.hasBody() ? 1 : 0;
+        }
+    }
+
+    private static void send(HttpExchange exchange, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            // The stub server buffers each write whole, so feed it in small chunks
+            for (int off = 0; off < body.length; off += 16384) {
+                out.write(body, off, Math.min(16384, body.length - off));
+            }
+        } catch (IOException ignored) {
+            // Client hung up early, which is what a filtered response does
+        }
+    }
+
+    static String samplePage(int links) {
+        StringBuilder sb = new StringBuilder("<!DOCTYPE html><html><head><title>bench</title>");
+        sb.append("<link rel=\"stylesheet\" href=\"/style.css\"></head><body>");
+        for (int i = 0; i < links; i++) {
+            sb.append("<p>Paragraph ").append(i).append(" with <a href=\"");
+            sb.append(i % 3 == 0 ? "https://host" + (i % 40) + ".example/page/" + i : "/local/" + i);
+            sb.append("\">link ").append(i).append("</a> and some text around it.</p>");
+        }
+        return sb.append("</body></html>").toString();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+}
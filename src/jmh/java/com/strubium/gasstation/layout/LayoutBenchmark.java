@@ -0,0 +1,76 @@
+package com.strubium.gasstation.layout;
+
+import com.strubium.gasstation.SyntheticGraphs;
+import com.strubium.gasstation.graph.HostGraphSnapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Cost of one layout iteration, split into the tree build, the repulsion pass and the
+ * full step with springs. Positions are a random disc of the size a converged layout of
+ * that many nodes takes, so the tree has a realistic shape.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LayoutBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int nodes;
+
+    private HostGraphSnapshot graph;
+    private double[] startXs, startYs;
+    private double[] xs, ys, fx, fy;
+    private final FlatQuadTree tree = new FlatQuadTree();
+    private final LayoutConfig config = LayoutConfig.defaults();
+    private final ForceLayout layout = new ForceLayout(config);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        graph = SyntheticGraphs.hostGraph(nodes, 4, 3);
+        SplittableRandom random = new SplittableRandom(5);
+        double radius = Math.sqrt(nodes) * config.springLength();
+        startXs = new double[nodes];
+        startYs = new double[nodes];
+        for (int i = 0; i < nodes; i++) {
+            double r = radius * Math.sqrt(random.nextDouble()), a = random.nextDouble() * 2 * Math.PI;
+            startXs[i] = r * Math.cos(a);
+            startYs[i] = r * Math.sin(a);
+        }
+        fx = new double[nodes];
+        fy = new double[nodes];
+        tree.build(startXs, startYs, nodes);
+    }
+
+    // Steps move the nodes, start every iteration from the same positions
+    @Setup(Level.Iteration)
+    public void resetPositions() {
+        xs = startXs.clone();
+        ys = startYs.clone();
+    }
+
+    @Benchmark
+    public void treeBuild() {
+        tree.build(startXs, startYs, nodes);
+    }
+
+    @Benchmark
+    public void repulsion() {
+        double strength = config.repulsion() * Math.sqrt(nodes);
+        // Tree order, as in the layout itself
+        IntStream.range(0, nodes).parallel().forEach(k -> {
+            int i = tree.pointAt(k);
+            fx[i] = 0;
+            fy[i] = 0;
+            tree.repulsion(i, startXs, startYs, config.theta(), strength, fx, fy);
+        });
+    }
+
+    @Benchmark
+    public Positions step() {
+        return layout.run(graph, xs, ys, 1);
+    }
+}
@@ -0,0 +1,236 @@
+package com.strubium.gasstation;
+
+import com.strubium.gasstation.budget.BudgetConfig;
+import com.strubium.gasstation.dns.DnsConfig;
+import com.strubium.gasstation.extract.HostInterner;
+import com.strubium.gasstation.extract.PublicSuffixList;
+import com.strubium.gasstation.frontier.SaturationConfig;
+import com.strubium.gasstation.recrawl.RecrawlConfig;
+import com.strubium.gasstation.robots.RobotsConfig;
+import com.strubium.gasstation.shard.ShardConfig;
+import com.strubium.gasstation.visited.BloomVisitedSet;
+import com.strubium.gasstation.visited.FingerprintSet;
+import com.strubium.gasstation.visited.VisitedSet;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Command line options for {@link Main}.
+ * <p>
+ * Flags are {@code --name}, valued options {@code --name value} or {@code --name=value}.
+ */
+public class CrawlOptions {
+    int maxDepth = 50;
+    // Budget limits, 0 = unlimited, see BudgetConfig
+    long maxPages = 0;
+    int maxPagesPerHost = 0;
+    long maxRuntimeSeconds = 0;
+    double maxHeapFraction = BudgetConfig.defaults().maxHeapFraction();
+    // Drop hosts whose pages add fewer new host edges than this on average, 0 = off
+    double minYield = SaturationConfig.defaults().minYield();
+    int yieldWarmupPages = SaturationConfig.defaults().warmupPages();
+    // robots.txt is obeyed unless --ignore-robots, sitemaps are read only with --sitemaps
+    boolean obeyRobots = RobotsConfig.defaults().obey();
+    boolean sitemaps = RobotsConfig.defaults().sitemaps();
+    int sitemapMaxUrls = RobotsConfig.defaults().maxSitemapUrlsPerHost();
+    // Resolved hosts are reused this long, hosts that do not resolve are skipped this long
+    long dnsTtlSeconds = DnsConfig.defaults().positiveTtlSeconds();
+    long dnsNegativeTtlSeconds = DnsConfig.defaults().negativeTtlSeconds();
+    boolean resume = false;
+    // Start from the last run's graph and only refetch pages that are due, see RecrawlState
+    boolean recrawl = false;
+    Path recrawlDir = Path.of("recrawl-state");
+    long revisitSeconds = RecrawlConfig.defaults().initialIntervalSeconds();
+    long revisitMinSeconds = RecrawlConfig.defaults().minIntervalSeconds();
+    long revisitMaxSeconds = RecrawlConfig.defaults().maxIntervalSeconds();
+    Path checkpointDir = Path.of("crawl-state");
+    // Seconds between checkpoints, 0 leaves only the final one
+    long checkpointIntervalSeconds = 300;
+    // "exact" fingerprint table or "bloom" filter
+    String visitedMode = "exact";
+    long expectedUrls = 1 << 20;
+    double bloomFalsePositiveRate = 0.001;
+    // Collapse hosts to their registrable domain, by the bundled or a given public suffix list
+    boolean aggregateDomains = false;
+    Path publicSuffixList;
+    FastGraphMLExporter.HtmlMode htmlMode = FastGraphMLExporter.HtmlMode.CANVAS;
+    // Layout of the previous run, reused as the starting point
+    Path layoutFile = Path.of("layout.bin");
+    // Seconds between metrics summary lines, 0 turns them off
+    long metricsIntervalSeconds = 10;
+    // Crawl a generated local web instead of the internet
+    boolean simulate = false;
+    int simHosts = 10_000;
+    int simPagesPerHost = 100;
+    double simLatencyMillis = 50;
+    // Average changes per simulated page and day, 0 keeps pages fixed
+    double simChangesPerDay = 0;
+    // Sharded crawl, "--shard i/N" makes this process shard i of N
+    int shardIndex = 0;
+    int shardCount = 0;
+    int shardBasePort = 7400;
+    // host:port of every shard, by index, defaults to consecutive local ports
+    List<InetSocketAddress> shardPeers;
+    long shardIdleSeconds = 30;
+    Path shardDir = Path.of("shards");
+    boolean mergeShards = false;
+
+    public static CrawlOptions parse(String[] args) {
+        CrawlOptions options = new CrawlOptions();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            String value = null;
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                value = arg.substring(eq + 1);
+                arg = arg.substring(0, eq);
+            }
+            switch (arg) {
+                case "--resume" -> options.resume = true;
+                case "--recrawl" -> options.recrawl = true;
+                case "--recrawl-dir" -> options.recrawlDir = Path.of(value != null ? value : next(args, ++i, arg));
+                case "--revisit" -> options.revisitSeconds = parseSeconds(value != null ? value : next(args, ++i, arg));
+                case "--revisit-min" -> options.revisitMinSeconds = parseSeconds(value != null ? value : next(args, ++i, arg));
+                case "--revisit-max" -> options.revisitMaxSeconds = parseSeconds(value != null ? value : next(args, ++i, arg));
+                case "--max-depth" -> options.maxDepth = Integer.parseInt(value != null ? value : next(args, ++i, arg));
+                case "--max-pages" -> options.maxPages = Long.parseLong(value != null ? value : next(args, ++i, arg));
+                case "--max-pages-per-host" ->
+                        options.maxPagesPerHost = Integer.parseInt(value != null ? value : next(args, ++i, arg));
+                case "--max-runtime" -> options.maxRuntimeSeconds = parseSeconds(value != null ? value : next(args, ++i, arg));
+                case "--max-heap" -> options.maxHeapFraction = Double.parseDouble(value != null ? value : next(args, ++i, arg));
+                case "--min-yield" -> options.minYield = Double.parseDouble(value != null ? value : next(args, ++i, arg));
+                case "--yield-warmup" ->
+                        options.yieldWarmupPages = Integer.parseInt(value != null ? value : next(args, ++i, arg));
+                case "--ignore-robots" -> options.obeyRobots = false;
+                case "--sitemaps" -> options.sitemaps = true;
+                case "--sitemap-max-urls" -> options.sitemapMaxUrls = Integer.parseInt(value != null ? value : next(args, ++i, arg));
+                case "--dns-ttl" -> options.dnsTtlSeconds = parseSeconds(value != null ? value : next(args, ++i, arg));
+                case "--dns-negative-ttl" ->
+                        options.dnsNegativeTtlSeconds = parseSeconds(value != null ? value : next(args, ++i, arg));
+                case "--checkpoint-dir" -> options.checkpointDir = Path.of(value != null ? value : next(args, ++i, arg));
+                case "--checkpoint-interval" ->
+                        options.checkpointIntervalSeconds = Long.parseLong(value != null ? value : next(args, ++i, arg));
+                case "--visited" -> options.visitedMode = value != null ? value : next(args, ++i, arg);
+                case "--expected-urls" -> options.expectedUrls = Long.parseLong(value != null ? value : next(args, ++i, arg));
+                case "--bloom-fpp" ->
+                        options.bloomFalsePositiveRate = Double.parseDouble(value != null ? value : next(args, ++i, arg));
+                case "--aggregate-domains" -> options.aggregateDomains = true;
+                case "--public-suffix-list" -> options.publicSuffixList = Path.of(value != null ? value : next(args, ++i, arg));
+                case "--html" -> options.htmlMode =
+                        FastGraphMLExporter.HtmlMode.valueOf((value != null ? value : next(args, ++i, arg)).toUpperCase(Locale.ROOT));
+                case "--layout-file" -> options.layoutFile = Path.of(value != null ? value : next(args, ++i, arg));
+                case "--metrics-interval" ->
+                        options.metricsIntervalSeconds = Long.parseLong(value != null ? value : next(args, ++i, arg));
+                case "--simulate" -> options.simulate = true;
+                case "--sim-hosts" -> options.simHosts = Integer.parseInt(value != null ? value : next(args, ++i, arg));
+                case "--sim-pages" -> options.simPagesPerHost = Integer.parseInt(value != null ? value : next(args, ++i, arg));
+                case "--sim-latency" ->
+                        options.simLatencyMillis = Double.parseDouble(value != null ? value : next(args, ++i, arg));
+                case "--sim-changes-per-day" ->
+                        options.simChangesPerDay = Double.parseDouble(value != null ? value : next(args, ++i, arg));
+                case "--shard" -> {
+                    String spec = value != null ? value : next(args, ++i, arg);
+                    int slash = spec.indexOf('/');
+                    if (slash < 0) throw new IllegalArgumentException("Expected --shard index/count, got " + spec);
+                    options.shardIndex = Integer.parseInt(spec.substring(0, slash));
+                    options.shardCount = Integer.parseInt(spec.substring(slash + 1));
+                }
+                case "--shard-port" -> options.shardBasePort = Integer.parseInt(value != null ? value : next(args, ++i, arg));
+                case "--shard-peers" -> options.shardPeers = parseAddresses(value != null ? value : next(args, ++i, arg));
+                case "--shard-idle" -> options.shardIdleSeconds = Long.parseLong(value != null ? value : next(args, ++i, arg));
+                case "--shard-dir" -> options.shardDir = Path.of(value != null ? value : next(args, ++i, arg));
+                case "--merge-shards" -> options.mergeShards = true;
+                default -> throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        return options;
+    }
+
+    VisitedSet createVisitedSet() {
+        return switch (visitedMode) {
+            case "exact" -> new FingerprintSet(expectedUrls);
+            case "bloom" -> new BloomVisitedSet(expectedUrls, bloomFalsePositiveRate);
+            default -> throw new IllegalArgumentException("Unknown visited mode: " + visitedMode);
+        };
+    }
+
+    HostInterner createHostInterner() {
+        if (!aggregateDomains) return new HostInterner(null);
+        try {
+            return new HostInterner(publicSuffixList != null ? PublicSuffixList.load(publicSuffixList) : PublicSuffixList.bundled());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    BudgetConfig budgetConfig() {
+        return new BudgetConfig(maxPages, maxPagesPerHost, maxRuntimeSeconds, maxHeapFraction);
+    }
+
+    SaturationConfig saturationConfig() {
+        return new SaturationConfig(minYield, yieldWarmupPages, SaturationConfig.defaults().smoothing());
+    }
+
+    DnsConfig dnsConfig() {
+        DnsConfig defaults = DnsConfig.defaults();
+        return new DnsConfig(dnsTtlSeconds, dnsNegativeTtlSeconds, defaults.maxHosts(), defaults.threads(),
+                defaults.maxQueuedPrefetches());
+    }
+
+    RecrawlConfig recrawlConfig() {
+        return new RecrawlConfig(revisitSeconds, revisitMinSeconds, revisitMaxSeconds);
+    }
+
+    RobotsConfig robotsConfig() {
+        RobotsConfig defaults = RobotsConfig.defaults();
+        return new RobotsConfig(obeyRobots, defaults.cacheSeconds(), defaults.maxCrawlDelayMillis(), defaults.maxHosts(),
+                sitemaps, sitemapMaxUrls);
+    }
+
+    /** Seconds, or a number with an s, m, h or d suffix. */
+    private static long parseSeconds(String value) {
+        char unit = value.charAt(value.length() - 1);
+        long scale = switch (unit) {
+            case 's' -> 1;
+            case 'm' -> 60;
+            case 'h' -> 3600;
+            case 'd' -> 86400;
+            default -> 0;
+        };
+        if (scale == 0) return Long.parseLong(value);
+        return Long.parseLong(value.substring(0, value.length() - 1)) * scale;
+    }
+
+    boolean sharded() {
+        return shardCount > 0;
+    }
+
+    ShardConfig shardConfig() {
+        List<InetSocketAddress> addresses = shardPeers != null ? shardPeers : ShardConfig.localAddresses(shardCount, shardBasePort);
+        if (addresses.size() != shardCount) {
+            throw new IllegalArgumentException(shardCount + " shards but " + addresses.size() + " peer addresses");
+        }
+        return new ShardConfig(shardIndex, addresses, shardIdleSeconds, shardDir);
+    }
+
+    private static List<InetSocketAddress> parseAddresses(String list) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (String entry : list.split(",")) {
+            int colon = entry.lastIndexOf(':');
+            if (colon < 0) throw new IllegalArgumentException("Expected host:port, got " + entry);
+            addresses.add(new InetSocketAddress(entry.substring(0, colon).trim(), Integer.parseInt(entry.substring(colon + 1).trim())));
+        }
+        return addresses;
+    }
+
+    private static String next(String[] args, int i, String option) {
+        if (i >= args.length) throw new IllegalArgumentException("Missing value for " + option);
+        return args[i];
+    }
+}
@@ -1,36 +1,136 @@
 package com.strubium.gasstation;
 
-import org.jgrapht.graph.DefaultDirectedGraph;
-import org.jgrapht.graph.DefaultEdge;
-
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import com.strubium.gasstation.checkpoint.VisitedLog;
+import com.strubium.gasstation.dns.DnsCache;
+import com.strubium.gasstation.extract.HostInterner;
+import com.strubium.gasstation.extract.UrlCanonicalizer;
+import com.strubium.gasstation.graph.HostGraph;
+import com.strubium.gasstation.recrawl.PageStore;
+import com.strubium.gasstation.visited.FingerprintSet;
+import com.strubium.gasstation.visited.UrlFingerprint;
+import com.strubium.gasstation.visited.VisitedSet;
 
 public class CrawlerManager {
-    private final Set<String> visited = ConcurrentHashMap.newKeySet();
-    private final DefaultDirectedGraph<String, DefaultEdge> graph = new DefaultDirectedGraph<>(DefaultEdge.class);
+    private final VisitedSet visited;
+    private final HostGraph graph = new HostGraph();
+    private final HostInterner hosts;
     private final int maxDepth;
+    private volatile VisitedLog visitedLog;
+    private volatile DnsCache dns;
+    private volatile PageStore pages;
 
     public CrawlerManager(int maxDepth) {
+        this(maxDepth, new FingerprintSet());
+    }
+
+    public CrawlerManager(int maxDepth, VisitedSet visited) {
+        this(maxDepth, visited, new HostInterner(null));
+    }
+
+    /**
+     * @param hosts maps host names to graph vertices, see {@link HostInterner}
+     */
+    public CrawlerManager(int maxDepth, VisitedSet visited, HostInterner hosts) {
         this.maxDepth = maxDepth;
+        this.visited = visited;
+        this.hosts = hosts;
     }
 
     public boolean markVisited(String url) {
-        String normalized = normalizeUrl(url);
-        return visited.add(normalized);
+        long fingerprint = UrlFingerprint.of(normalizeUrl(url));
+        if (!visited.add(fingerprint)) return false;
+        VisitedLog log = visitedLog;
+        if (log != null) log.append(fingerprint);
+        return true;
+    }
+
+    /**
+     * Re-adds a URL fingerprint read back from a checkpoint, without logging it again.
+     */
+    public void restoreVisited(long fingerprint) {
+        visited.add(fingerprint);
+    }
+
+    /**
+     * Every URL newly marked visited from now on is also appended to {@code log}.
+     */
+    public void setVisitedLog(VisitedLog log) {
+        this.visitedLog = log;
+    }
+
+    /**
+     * Hosts first linked to from now on are looked up in {@code dns} ahead of their first fetch.
+     */
+    public void setDnsCache(DnsCache dns) {
+        this.dns = dns;
+    }
+
+    /**
+     * Fetch metadata of every page, for conditional requests and change detection, see
+     * {@link com.strubium.gasstation.recrawl.RecrawlState}.
+     */
+    public void setPageStore(PageStore pages) {
+        this.pages = pages;
+    }
+
+    /** The page store, or null when pages are not tracked. */
+    public PageStore getPageStore() {
+        return pages;
+    }
+
+    public VisitedSet getVisited() {
+        return visited;
     }
 
     public void addEdge(String from, String to) {
-        String normFrom = normalizeUrl(from);
-        String normTo = normalizeUrl(to);
-        graph.addVertex(normFrom);
-        graph.addVertex(normTo);
-        graph.addEdge(normFrom, normTo);
+        graph.addEdge(hosts.key(from), hosts.key(to));
+    }
+
+    /**
+     * Records a link found on a page of {@code from} crawled at {@code depth}.
+     *
+     * @return true if this is the first link between the two hosts
+     */
+    public boolean addEdge(String from, String to, int depth) {
+        return addEdge(from, to, depth, 1);
+    }
+
+    /**
+     * Records {@code count} links from a page of {@code from} crawled at {@code depth} to {@code to}.
+     *
+     * @return true if this is the first link between the two hosts
+     */
+    public boolean addEdge(String from, String to, int depth, int count) {
+        int idFrom = graph.intern(hosts.key(from));
+        int idTo = graph.intern(hosts.key(to));
+        graph.recordDepth(idFrom, depth);
+        graph.recordDepth(idTo, depth + 1);
+        if (!graph.addEdge(idFrom, idTo, count)) return false;
+        // Every new host arrives over a new edge, most new edges lead to a known host
+        DnsCache dns = this.dns;
+        if (dns != null) dns.prefetch(to);
+        return true;
+    }
+
+    /**
+     * Takes back {@code count} links recorded from {@code from} to {@code to}, e.g. those
+     * of a page that changed or disappeared.
+     */
+    public void removeEdge(String from, String to, int count) {
+        int idFrom = graph.idOf(hosts.key(from));
+        int idTo = graph.idOf(hosts.key(to));
+        if (idFrom >= 0 && idTo >= 0) graph.removeLinks(idFrom, idTo, count);
+    }
+
+    /**
+     * @return how many distinct hosts link to {@code host} so far
+     */
+    public int inLinks(String host) {
+        int id = graph.idOf(hosts.key(host));
+        return id < 0 ? 0 : graph.inDegree(id);
     }
 
-    public DefaultDirectedGraph<String, DefaultEdge> getGraph() {
+    public HostGraph getGraph() {
         return graph;
     }
 
@@ -39,29 +139,9 @@ public class CrawlerManager {
     }
 
     /**
-     * Normalize URL so that different subdomains like www. are treated the same.
+     * Key of {@code url} in the visited set, see {@link UrlCanonicalizer}.
      */
-    private String normalizeUrl(String url) {
-        try {
-            URI uri = new URI(url);
-            String host = uri.getHost();
-            if (host == null) return url;
-
-            // Strip "www." prefix
-            if (host.startsWith("www.")) {
-                host = host.substring(4);
-            }
-
-            // Rebuild a normalized URL with just scheme + host + path (no fragments, no query)
-            String scheme = (uri.getScheme() != null) ? uri.getScheme() : "https";
-            String path = (uri.getPath() != null) ? uri.getPath() : "";
-            if (path.endsWith("/")) {
-                path = path.substring(0, path.length() - 1);
-            }
-
-            return scheme + "://" + host + path;
-        } catch (URISyntaxException e) {
-            return url; // fallback if URL is invalid
-        }
+    String normalizeUrl(String url) {
+        return UrlCanonicalizer.canonicalize(url);
     }
 }
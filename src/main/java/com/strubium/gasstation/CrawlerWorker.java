@@ -1,142 +1,290 @@
 package com.strubium.gasstation;
 
+import com.strubium.gasstation.extract.LinkExtractor;
+import com.strubium.gasstation.extract.UrlResolver;
+import com.strubium.gasstation.fetch.FetchConfig;
+import com.strubium.gasstation.fetch.FetchResponse;
+import com.strubium.gasstation.fetch.Fetcher;
+import com.strubium.gasstation.fetch.HttpClientFetcher;
+import com.strubium.gasstation.frontier.CrawlTask;
+import com.strubium.gasstation.frontier.Frontier;
 import com.strubium.gasstation.logger.ProjectLogger;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import com.strubium.gasstation.metrics.CrawlMetrics;
+import com.strubium.gasstation.metrics.ErrorKind;
+import com.strubium.gasstation.recrawl.PageRecord;
+import com.strubium.gasstation.recrawl.PageStore;
+import com.strubium.gasstation.robots.RobotsCache;
+import com.strubium.gasstation.visited.UrlFingerprint;
 
-import java.net.URI;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Long-lived crawl loop. Each worker keeps pulling tasks from the shared {@link Frontier}
+ * until the frontier reports that nothing is queued or in flight anymore.
+ */
 public class CrawlerWorker implements Runnable {
 
-    private final String url;
-    private final int depth;
+    /** What became of a task, decides how it is handed back to the frontier. */
+    private enum Outcome {DONE, THROTTLED, POSTPONED}
+
     private final CrawlerManager manager;
-    private final ExecutorService executor;
-    private final Phaser phaser;
-
-    public CrawlerWorker(
-            String url,
-            int depth,
-            CrawlerManager manager,
-            ExecutorService executor,
-            Phaser phaser
-    ) {
-        this.url = url;
-        this.depth = depth;
+    private final Frontier frontier;
+    private final Fetcher fetcher;
+    private final CrawlMetrics metrics;
+    private final RobotsCache robots;
+    private final LinkExtractor extractor = new LinkExtractor();
+    // What the current page changes in the graph and the frontier, applied as its task
+    // completes so that checkpoints see the page either not started or fully done
+    private Runnable finish;
+
+    public CrawlerWorker(CrawlerManager manager, Frontier frontier, Fetcher fetcher) {
+        this(manager, frontier, fetcher, new CrawlMetrics());
+    }
+
+    public CrawlerWorker(CrawlerManager manager, Frontier frontier, Fetcher fetcher, CrawlMetrics metrics) {
+        this(manager, frontier, fetcher, metrics, null);
+    }
+
+    /**
+     * @param robots robots.txt of the crawled hosts, null to fetch regardless
+     */
+    public CrawlerWorker(CrawlerManager manager, Frontier frontier, Fetcher fetcher, CrawlMetrics metrics, RobotsCache robots) {
         this.manager = manager;
-        this.executor = executor;
-        this.phaser = phaser;
+        this.frontier = frontier;
+        this.fetcher = fetcher;
+        this.metrics = metrics;
+        this.robots = robots;
     }
 
     @Override
     public void run() {
         try {
-            if (depth > manager.getMaxDepth() || !manager.markVisited(url)) {
-                return;
+            CrawlTask task;
+            while ((task = frontier.take()) != null) {
+                Outcome outcome = Outcome.DONE;
+                finish = null;
+                try {
+                    outcome = crawl(task);
+                } finally {
+                    // Signal task completion
+                    if (outcome == Outcome.POSTPONED) {
+                        frontier.postpone(task, robots.retryDelayMillis(task.host()));
+                    } else {
+                        frontier.complete(task, outcome == Outcome.THROTTLED, finishing(task, finish));
+                    }
+                }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-            ProjectLogger.LOGGER.info("Crawling: " + url);
-
-            Document doc = Jsoup.connect(url)
-                    .userAgent("AdvancedJavaCrawler")
-                    .timeout(5000)
-                    .get();
+    /**
+     * Fetches one page and records its links. Failures are counted by kind, not thrown.
+     *
+     * @return THROTTLED if the host throttled the request, POSTPONED if its robots.txt
+     * is unavailable for now
+     */
+    private Outcome crawl(CrawlTask task) throws InterruptedException {
+        String url = task.url();
+        int depth = task.depth();
+        if (robots != null) {
+            switch (robots.check(task)) {
+                case DISALLOW -> {
+                    metrics.robotsDisallowed();
+                    return Outcome.DONE;
+                }
+                // Not fetched until robots.txt is, RobotsCache disallows the host if it never is
+                case UNAVAILABLE -> {
+                    return Outcome.POSTPONED;
+                }
+                default -> {
+                }
+            }
+        }
+        ProjectLogger.LOGGER.debug("Crawling: {}", url);
 
-            String domainFrom = getDomain(url);
-            if (domainFrom == null) return;
+        boolean expand = depth < manager.getMaxDepth();
+        Set<String> discovered = new LinkedHashSet<>();
+        int[] links = new int[1];
+        PageStore pages = manager.getPageStore();
+        PageRecord previous = pages != null ? pages.get(url) : null;
 
-            Elements links = doc.select("a[href], link[href], meta[http-equiv=refresh]");
+        long started = System.nanoTime();
+        FetchResponse response;
+        try {
+            response = previous != null
+                    ? fetcher.fetchIfChanged(url, previous.etag(), previous.lastModified())
+                    : fetcher.fetch(url);
+        } catch (IOException | RuntimeException e) {
+            fail(url, ErrorKind.of(e, false), e);
+            if (previous != null) finish = () -> recheckFailed(previous, false);
+            return Outcome.DONE;
+        }
 
-            for (Element link : links) {
-                String absUrl = getAbsoluteUrl(link, url);
-                if (absUrl == null) continue;
+        try (response) {
+            if (response.isThrottled()) {
+                metrics.throttled();
+                return Outcome.THROTTLED;
+            }
+            if (previous != null && response.status() == 304) {
+                pages.unchanged(previous);
+                metrics.unchanged();
+                return Outcome.DONE;
+            }
+            ErrorKind status = ErrorKind.ofStatus(response.status());
+            if (status != null) metrics.error(status);
+            if (previous != null && !response.isSuccess()) {
+                boolean gone = response.status() == 404 || response.status() == 410;
+                finish = () -> recheckFailed(previous, gone);
+                return Outcome.DONE;
+            }
+            if (!response.hasBody()) return Outcome.DONE;
 
-                String domainTo = getDomain(absUrl);
-                if (domainTo == null) continue;
+            // Links are resolved against the post-redirect URL
+            String pageUrl = response.url();
+            String domainFrom = UrlResolver.hostOf(pageUrl);
+            if (domainFrom == null) return Outcome.DONE;
 
-                manager.addEdge(domainFrom, domainTo);
+            // Links per target host, kept with the page so a later change can take them back
+            Map<String, Integer> targets = new HashMap<>();
+            // Extract straight off the wire, no DOM is built
+            Reader body = new InputStreamReader(response.body(), response.charset());
+            extractor.extract(body, pageUrl, absUrl -> {
+                String domainTo = UrlResolver.hostOf(absUrl);
+                if (domainTo == null) return;
 
-                // Register new task
-                phaser.register();
+                links[0]++;
+                targets.merge(domainTo, 1, Integer::sum);
+                if (expand || pages != null) discovered.add(absUrl);
+            });
+            metrics.parsed(links[0]);
 
-                executor.submit(
-                        new CrawlerWorker(
-                                absUrl,
-                                depth + 1,
-                                manager,
-                                executor,
-                                phaser
-                        )
-                );
+            if (pages != null && !pages.fetched(url, depth, previous, response.header("ETag"),
+                    response.header("Last-Modified"), linkHash(discovered), domainFrom, targets)) {
+                metrics.unchanged();
+                return Outcome.DONE;
             }
-
-        } catch (Exception ignored) {
+            finish = () -> {
+                int newEdges = previous != null
+                        ? replaceEdges(previous, domainFrom, targets, depth)
+                        : addEdges(domainFrom, targets, depth);
+                frontier.pageYield(task, newEdges);
+                // Admit the whole page's links at once, only unseen URLs become tasks
+                if (expand) frontier.admitAll(discovered, depth + 1);
+            };
+        } catch (IOException | RuntimeException e) {
+            fail(url, ErrorKind.of(e, true), e);
+            if (previous != null) finish = () -> recheckFailed(previous, false);
+            return Outcome.DONE;
         } finally {
-            // Signal task completion
-            phaser.arriveAndDeregister();
+            metrics.fetched(task.host(), System.nanoTime() - started, response.bytesRead());
         }
+        return Outcome.DONE;
     }
 
-    private String getDomain(String url) {
-        try {
-            return new URI(url).getHost();
-        } catch (Exception e) {
-            return null;
+    /** Wraps what a page left to do, failures are counted like those of the fetch. */
+    private Runnable finishing(CrawlTask task, Runnable finish) {
+        if (finish == null) return () -> {
+        };
+        return () -> {
+            try {
+                finish.run();
+            } catch (RuntimeException e) {
+                fail(task.url(), ErrorKind.of(e, true), e);
+            }
+        };
+    }
+
+    /**
+     * Adds the edges of a newly fetched page.
+     *
+     * @return how many edges to other hosts are new
+     */
+    private int addEdges(String from, Map<String, Integer> targets, int depth) {
+        int newEdges = 0;
+        for (Map.Entry<String, Integer> e : targets.entrySet()) {
+            if (manager.addEdge(from, e.getKey(), depth, e.getValue()) && !e.getKey().equals(from)) newEdges++;
         }
+        return newEdges;
     }
 
-    private String getAbsoluteUrl(Element element, String baseUrl) {
-        try {
-            if (element.tagName().equals("meta")) {
-                String content = element.attr("content");
-                int idx = content.toLowerCase().indexOf("url=");
-                if (idx >= 0) {
-                    return resolve(baseUrl, content.substring(idx + 4));
-                }
-                return null;
+    /**
+     * Moves the edges of a changed page from its previous links to {@code targets}. Only
+     * the difference is applied, so links the page kept leave their edges alone.
+     *
+     * @return how many edges to other hosts are new
+     */
+    private int replaceEdges(PageRecord previous, String from, Map<String, Integer> targets, int depth) {
+        Map<String, Integer> delta = new HashMap<>(targets);
+        boolean sameSource = from.equals(previous.host());
+        for (int i = 0; i < previous.linkHosts().length; i++) {
+            if (sameSource) {
+                delta.merge(previous.linkHosts()[i], -previous.linkCounts()[i], Integer::sum);
+            } else {
+                manager.removeEdge(previous.host(), previous.linkHosts()[i], previous.linkCounts()[i]);
             }
-            return resolve(baseUrl, element.attr("href"));
-        } catch (Exception e) {
-            return null;
         }
+        int newEdges = 0;
+        for (Map.Entry<String, Integer> e : delta.entrySet()) {
+            int count = e.getValue();
+            if (count < 0) {
+                manager.removeEdge(from, e.getKey(), -count);
+            } else if (count > 0 && manager.addEdge(from, e.getKey(), depth, count) && !e.getKey().equals(from)) {
+                newEdges++;
+            }
+        }
+        return newEdges;
     }
 
-    private String resolve(String base, String relative) {
-        try {
-            return new URI(base).resolve(relative).toString();
-        } catch (Exception e) {
-            return null;
+    /** Records a revisit that did not get the page, and takes its edges back once the page is dropped. */
+    private void recheckFailed(PageRecord previous, boolean gone) {
+        if (!manager.getPageStore().failed(previous, gone)) return;
+        for (int i = 0; i < previous.linkHosts().length; i++) {
+            manager.removeEdge(previous.host(), previous.linkHosts()[i], previous.linkCounts()[i]);
         }
     }
 
+    /** Hash of a set of links that does not depend on their order. */
+    private static long linkHash(Set<String> links) {
+        long hash = 0;
+        for (String link : links) hash += UrlFingerprint.of(link);
+        return hash;
+    }
+
+    private void fail(String url, ErrorKind kind, Exception e) {
+        metrics.error(kind);
+        ProjectLogger.LOGGER.debug("Failed {} ({}): {}", url, kind, e.toString());
+    }
+
     // ==========================
     // ENTRY POINT
     // ==========================
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws InterruptedException {
         ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
-        Phaser phaser = new Phaser(1); // main thread registered
 
         CrawlerManager manager = new CrawlerManager(3);
+        Frontier frontier = new Frontier(manager, 100_000);
+        frontier.admit("https://example.com", 0);
+        Fetcher fetcher = new HttpClientFetcher(FetchConfig.defaults());
 
-        phaser.register();
-        executor.submit(new CrawlerWorker(
-                "https://example.com",
-                0,
-                manager,
-                executor,
-                phaser
-        ));
-
-        // Wait for all crawling to finish
-        phaser.arriveAndAwaitAdvance();
+        for (int i = 0; i < 16; i++) {
+            executor.submit(new CrawlerWorker(manager, frontier, fetcher));
+        }
 
+        // Workers exit on their own once the frontier drains
         executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
         ProjectLogger.LOGGER.info("✅ Crawl finished.");
     }
 }
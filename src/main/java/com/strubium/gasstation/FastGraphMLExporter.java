@@ -1,196 +1,515 @@
 package com.strubium.gasstation;
 
+import com.strubium.gasstation.analytics.GraphAnalysis;
+import com.strubium.gasstation.graph.HostGraph;
+import com.strubium.gasstation.graph.HostGraphSnapshot;
+import com.strubium.gasstation.layout.ForceLayout;
+import com.strubium.gasstation.layout.LayoutConfig;
+import com.strubium.gasstation.layout.LayoutStore;
+import com.strubium.gasstation.layout.Positions;
 import com.strubium.gasstation.logger.ProjectLogger;
 
 import javax.xml.stream.*;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
 
 public class FastGraphMLExporter {
-
-    static class QuadTree {
-        final double x, y, w, h;
-        double mass = 0.0;
-        double cx = 0.0, cy = 0.0;
-        int[] pts = new int[8];
-        int count = 0;
-        QuadTree[] children = null;
-        int depth = 0;
-        static final int MAX_DEPTH = 24;
-        static final int CAPACITY = 8;
-        static final double MIN_SIZE = 0.5;
-
-        QuadTree(double x, double y, double w, double h) { this.x = x; this.y = y; this.w = w; this.h = h; }
-
-        private void ensurePtCapacity() { if (count == pts.length) pts = Arrays.copyOf(pts, pts.length * 2); }
-
-        void insert(int idx, double[] xs, double[] ys) {
-            mass += 1.0; cx += xs[idx]; cy += ys[idx];
-            if (children != null) { children[childIndex(xs[idx], ys[idx])].insert(idx, xs, ys); return; }
-            ensurePtCapacity(); pts[count++] = idx;
-            if (count > CAPACITY && depth < MAX_DEPTH && w > MIN_SIZE && h > MIN_SIZE) subdivide(xs, ys);
-        }
-
-        private int childIndex(double px, double py) {
-            int xi = (px > x + w * 0.5) ? 1 : 0;
-            int yi = (py > y + h * 0.5) ? 2 : 0;
-            return xi + yi;
-        }
-
-        private void subdivide(double[] xs, double[] ys) {
-            children = new QuadTree[4];
-            double hw = w * 0.5, hh = h * 0.5;
-            children[0] = new QuadTree(x, y, hw, hh); children[0].depth = depth + 1;
-            children[1] = new QuadTree(x + hw, y, hw, hh); children[1].depth = depth + 1;
-            children[2] = new QuadTree(x, y + hh, hw, hh); children[2].depth = depth + 1;
-            children[3] = new QuadTree(x + hw, y + hh, hw, hh); children[3].depth = depth + 1;
-            for (int i = 0; i < count; i++) {
-                int p = pts[i];
-                children[childIndex(xs[p], ys[p])].insert(p, xs, ys);
-            }
-            pts = new int[0]; count = 0;
-        }
-
-        void applyRepulsion(int idx, double[] xs, double[] ys, double theta, double repulsion, double[] force) {
-            if (mass == 0.0) return;
-            final double massLocal = mass, cxLocal = cx, cyLocal = cy, widthLocal = w;
-            final double px = xs[idx], py = ys[idx];
-            double dx = cxLocal / massLocal - px;
-            double dy = cyLocal / massLocal - py;
-            final double EPS = 1e-4;
-            double dist2 = dx * dx + dy * dy + EPS;
-            double invDist = 1.0 / Math.sqrt(dist2);
-            if (children == null || (widthLocal * invDist) < theta) {
-                double invDist3 = invDist * invDist * invDist;
-                double scalar = repulsion * massLocal * invDist3;
-                force[0] -= dx * scalar;
-                force[1] -= dy * scalar;
-            } else {
-                for (QuadTree c : children) if (c != null && c.mass > 0.0) c.applyRepulsion(idx, xs, ys, theta, repulsion, force);
-            }
-        }
-    }
-
+    // Canvas node radius of a host with average PageRank, and the bounds for the others
+    private static final double NODE_RADIUS = 5;
+    private static final double MIN_NODE_RADIUS = 2;
+    private static final double MAX_NODE_RADIUS = 40;
+
+    /**
+     * How the HTML map is rendered.
+     * <ul>
+     *     <li>{@code CANVAS}: positions and edges embedded as packed binary, drawn by one canvas script</li>
+     *     <li>{@code DOM}: one element per node and per edge, only usable for small graphs</li>
+     *     <li>{@code TILES}: a viewer loading level-of-detail tiles on demand, see {@link TiledMapExporter}</li>
+     * </ul>
+     */
+    public enum HtmlMode { CANVAS, DOM, TILES }
+
+    /**
+     * Lays out a GraphML file (see {@link GraphMLExporter}) and renders it to HTML.
+     */
     public static void generateGraphHtml(
             String inputGraphFile,
             String outputHtmlFile,
             int width,
             int height
     ) throws Exception {
+        HostGraphSnapshot graph = parseGraphML(inputGraphFile);
+        ProjectLogger.LOGGER.info("Parsed " + graph.vertexCount() + " nodes and " + graph.edgeCount() + " edges");
+        // Ranks are cheaper to recompute than to map back from the file's node ids
+        generateGraphHtml(graph, outputHtmlFile, width, height, HtmlMode.CANVAS, null, GraphAnalysis.run(graph));
+    }
 
-        Set<String> nodes = new LinkedHashSet<>();
-        List<String[]> edges = new ArrayList<>();
-
-        parseGraphML(inputGraphFile, nodes, edges);
-        ProjectLogger.LOGGER.info("Parsed " + nodes.size() + " nodes and " + edges.size() + " edges");
+    /**
+     * Lays out a graph snapshot and renders it to a canvas HTML map, without going through a file.
+     */
+    public static void generateGraphHtml(
+            HostGraphSnapshot graph,
+            String outputHtmlFile,
+            int width,
+            int height
+    ) throws IOException {
+        generateGraphHtml(graph, outputHtmlFile, width, height, HtmlMode.CANVAS);
+    }
 
-        Map<String, NodePos> positions =
-                generateForceLayoutBarnesHut(nodes, edges, width, height);
+    public static void generateGraphHtml(
+            HostGraphSnapshot graph,
+            String outputHtmlFile,
+            int width,
+            int height,
+            HtmlMode mode
+    ) throws IOException {
+        generateGraphHtml(graph, outputHtmlFile, width, height, mode, null);
+    }
 
-        exportToHTML(outputHtmlFile, nodes, edges, positions);
-        ProjectLogger.LOGGER.info("Exported to " + outputHtmlFile);
+    /**
+     * Like {@link #generateGraphHtml(HostGraphSnapshot, String, int, int, HtmlMode)}, but starts
+     * the layout from the one stored in {@code layoutFile}, if any, and stores the new one there.
+     */
+    public static void generateGraphHtml(
+            HostGraphSnapshot graph,
+            String outputHtmlFile,
+            int width,
+            int height,
+            HtmlMode mode,
+            Path layoutFile
+    ) throws IOException {
+        generateGraphHtml(graph, outputHtmlFile, width, height, mode, layoutFile, null);
     }
 
+    /**
+     * Like {@link #generateGraphHtml(HostGraphSnapshot, String, int, int, HtmlMode, Path)}, with
+     * canvas nodes sized by their PageRank in {@code analysis}. Null draws every node the same size.
+     */
+    public static void generateGraphHtml(
+            HostGraphSnapshot graph,
+            String outputHtmlFile,
+            int width,
+            int height,
+            HtmlMode mode,
+            Path layoutFile,
+            GraphAnalysis analysis
+    ) throws IOException {
+        ForceLayout layout = new ForceLayout(LayoutConfig.defaults());
+        LayoutStore.Stored previous = layoutFile != null ? LayoutStore.load(layoutFile) : null;
+        Positions positions = previous != null ? layout.run(graph, previous, width, height) : layout.run(graph, width, height);
+        if (layoutFile != null) LayoutStore.save(graph, positions, layoutFile);
+
+        long started = System.nanoTime();
+        switch (mode) {
+            case CANVAS -> exportToCanvasHTML(outputHtmlFile, graph, positions, analysis);
+            case DOM -> exportToHTML(outputHtmlFile, graph, positions);
+            case TILES -> new TiledMapExporter().export(graph, positions, Path.of(outputHtmlFile));
+        }
+        ProjectLogger.LOGGER.info("Exported to " + outputHtmlFile + " (" + Files.size(Path.of(outputHtmlFile)) / 1024 + " KB in "
+                + (System.nanoTime() - started) / 1_000_000 + " ms)");
+    }
 
-    static class NodePos { double x, y; NodePos(double x, double y) { this.x = x; this.y = y; } }
 
-    private static void parseGraphML(String fileName, Set<String> nodes, List<String[]> edges) throws Exception {
+    /**
+     * Reads a GraphML file, gzip-compressed if the name ends in {@code .gz}, into a snapshot.
+     * Nodes are named by their {@code host} data where present, otherwise by their id.
+     */
+    static HostGraphSnapshot parseGraphML(String fileName) throws Exception {
         XMLInputFactory factory = XMLInputFactory.newInstance();
-        try (FileInputStream fis = new FileInputStream(fileName)) {
-            XMLStreamReader reader = factory.createXMLStreamReader(fis);
+        HostGraph graph = new HostGraph();
+        try (InputStream in = openGraphML(fileName)) {
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            Set<String> hostKeys = new HashSet<>();
+            Set<String> depthKeys = new HashSet<>();
+            Map<String, Integer> ids = new HashMap<>();
+            String node = null;
+            String host = null;
+            int depth = -1;
             while (reader.hasNext()) {
                 int event = reader.next();
                 if (event == XMLStreamConstants.START_ELEMENT) {
                     String name = reader.getLocalName();
-                    if ("node".equals(name)) {
-                        String id = reader.getAttributeValue(null, "id");
-                        if (id != null) nodes.add(id);
+                    if ("key".equals(name)) {
+                        String attr = reader.getAttributeValue(null, "attr.name");
+                        if ("host".equals(attr)) hostKeys.add(reader.getAttributeValue(null, "id"));
+                        if ("depth".equals(attr)) depthKeys.add(reader.getAttributeValue(null, "id"));
+                    } else if ("node".equals(name)) {
+                        node = reader.getAttributeValue(null, "id");
+                        host = node;
+                        depth = -1;
+                    } else if ("data".equals(name) && node != null) {
+                        String key = reader.getAttributeValue(null, "key");
+                        if (hostKeys.contains(key)) host = reader.getElementText();
+                        else if (depthKeys.contains(key)) depth = Integer.parseInt(reader.getElementText().trim());
                     } else if ("edge".equals(name)) {
                         String source = reader.getAttributeValue(null, "source");
                         String target = reader.getAttributeValue(null, "target");
-                        if (source != null && target != null) edges.add(new String[]{source, target});
+                        if (source != null && target != null) {
+                            graph.addEdge(vertex(graph, ids, source), vertex(graph, ids, target), 1);
+                        }
                     }
+                } else if (event == XMLStreamConstants.END_ELEMENT && "node".equals(reader.getLocalName())) {
+                    if (node != null) {
+                        int id = graph.intern(host);
+                        ids.put(node, id);
+                        if (depth >= 0) graph.recordDepth(id, depth);
+                    }
+                    node = null;
                 }
             }
         }
+        return graph.snapshot();
+    }
+
+    /** Edges may name nodes that were never declared, those become vertices named by their id. */
+    private static int vertex(HostGraph graph, Map<String, Integer> ids, String nodeId) {
+        Integer id = ids.get(nodeId);
+        return id != null ? id : graph.intern(nodeId);
     }
 
-    private static Map<String, NodePos> generateForceLayoutBarnesHut(Set<String> nodesSet, List<String[]> edgesList, int width, int height) {
-        List<String> nodes = new ArrayList<>(nodesSet);
-        int n = nodes.size();
-        Map<String, Integer> idxMap = new HashMap<>(n * 2);
-        for (int i = 0; i < n; i++) idxMap.put(nodes.get(i), i);
-
-        int[] degree = new int[n];
-        List<int[]> rawEdges = new ArrayList<>(edgesList.size());
-        for (String[] e : edgesList) {
-            Integer a = idxMap.get(e[0]);
-            Integer b = idxMap.get(e[1]);
-            if (a == null || b == null) continue;
-            degree[a]++; degree[b]++;
-            rawEdges.add(new int[]{a, b});
+    private static InputStream openGraphML(String fileName) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(fileName), 1 << 16);
+        return fileName.endsWith(".gz") ? new GZIPInputStream(in, 1 << 16) : in;
+    }
+
+    /**
+     * Writes a self-contained canvas viewer. Node positions (Float32 x/y pairs), CSR row
+     * offsets and edge targets (Int32) are embedded as base64 of their little-endian bytes,
+     * host names as one newline separated string. With an analysis, node radii (Float32)
+     * grow with the square root of PageRank relative to the average, so an average host
+     * keeps the default size. The viewer builds the reverse adjacency
+     * and a uniform grid once on load, so hover is a grid lookup plus a walk over the
+     * node's own edges.
+     */
+    private static void exportToCanvasHTML(String fileName, HostGraphSnapshot graph, Positions positions,
+                                           GraphAnalysis analysis) throws IOException {
+        double[] xs = positions.xs(), ys = positions.ys();
+        int n = graph.vertexCount();
+
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            if (xs[i] < minX) minX = xs[i];
+            if (ys[i] < minY) minY = ys[i];
+            if (xs[i] > maxX) maxX = xs[i];
+            if (ys[i] > maxY) maxY = ys[i];
         }
+        if (n == 0) minX = minY = maxX = maxY = 0;
+        double margin = 50;
 
-        int[][] neighbors = new int[n][];
-        for (int i = 0; i < n; i++) neighbors[i] = new int[degree[i]];
-        int[] fill = new int[n];
-        for (int[] e : rawEdges) {
-            int a = e[0], b = e[1];
-            neighbors[a][fill[a]++] = b;
-            neighbors[b][fill[b]++] = a;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(Path.of(fileName)), 1 << 20)) {
+            writeText(out, CANVAS_HEAD);
+            writeText(out, String.format(Locale.ROOT, "const GRAPH = {n: %d, m: %d, width: %.1f, height: %.1f,%npositions: \"",
+                    n, graph.edgeCount(), maxX - minX + 2 * margin, maxY - minY + 2 * margin));
+            try (BinaryBlob blob = new BinaryBlob(out)) {
+                for (int i = 0; i < n; i++) {
+                    blob.putFloat((float) (xs[i] - minX + margin));
+                    blob.putFloat((float) (ys[i] - minY + margin));
+                }
+            }
+            writeText(out, "\",\noffsets: \"");
+            try (BinaryBlob blob = new BinaryBlob(out)) {
+                for (int v = 0; v <= n; v++) blob.putInt(v < n ? graph.outStart(v) : graph.edgeCount());
+            }
+            writeText(out, "\",\ntargets: \"");
+            try (BinaryBlob blob = new BinaryBlob(out)) {
+                for (int e = 0; e < graph.edgeCount(); e++) blob.putInt(graph.target(e));
+            }
+            if (analysis != null) {
+                writeText(out, "\",\nradii: \"");
+                try (BinaryBlob blob = new BinaryBlob(out)) {
+                    for (int v = 0; v < n; v++) {
+                        double radius = NODE_RADIUS * Math.sqrt(analysis.pageRank(v) * n);
+                        blob.putFloat((float) Math.max(MIN_NODE_RADIUS, Math.min(MAX_NODE_RADIUS, radius)));
+                    }
+                }
+            }
+            writeText(out, "\",\nhosts: \"");
+            StringBuilder sb = new StringBuilder(64);
+            for (int v = 0; v < n; v++) {
+                sb.setLength(0);
+                if (v > 0) sb.append("\\n");
+                appendJsEscaped(sb, graph.host(v));
+                writeText(out, sb);
+            }
+            writeText(out, "\"};\n</script>\n");
+            writeText(out, CANVAS_VIEWER);
         }
+    }
 
-        double[] xs = new double[n], ys = new double[n], vx = new double[n], vy = new double[n];
-        Random rnd = new Random(42);
-        for (int i = 0; i < n; i++) {
-            xs[i] = width * 0.5 + rnd.nextDouble() * 100 - 50;
-            ys[i] = height * 0.5 + rnd.nextDouble() * 100 - 50;
+    private static void writeText(OutputStream out, CharSequence text) throws IOException {
+        out.write(text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Escapes {@code text} for a double-quoted JS string inside a script element. */
+    private static void appendJsEscaped(StringBuilder sb, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\' -> sb.append("\\\\");
+                case '"' -> sb.append("\\\"");
+                default -> {
+                    if (c < 0x20 || c == '<' || c == '>' || c == '\u2028' || c == '\u2029') {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
         }
+    }
+
+    /**
+     * Base64 of little-endian binary values, streamed into the page. Closing it writes
+     * the final padding but leaves the page open.
+     */
+    private static final class BinaryBlob implements Closeable {
+        private final OutputStream base64;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+        BinaryBlob(OutputStream page) {
+            this.base64 = Base64.getEncoder().wrap(new FilterOutputStream(page) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
 
-        final double repulsion = 1000.0 * Math.sqrt(n);
-        final double springLength = 80.0;
-        final double springK = 0.05;
-        final double damping = 0.85;
-        final double theta = 0.5;
-        final int iterations = 400;
-        final double maxStep = 50.0;
-
-        for (int step = 0; step < iterations; step++) {
-            QuadTree qt = new QuadTree(0, 0, width, height);
-            for (int i = 0; i < n; i++) qt.insert(i, xs, ys);
-            IntStream.range(0, n).parallel().forEach(i -> {
-                double[] force = new double[2];
-                qt.applyRepulsion(i, xs, ys, theta, repulsion, force);
-                for (int other : neighbors[i]) {
-                    double dx = xs[other] - xs[i], dy = ys[other] - ys[i];
-                    double dist = Math.sqrt(dx * dx + dy * dy) + 1e-4;
-                    double f = springK * (dist - springLength);
-                    force[0] += dx / dist * f;
-                    force[1] += dy / dist * f;
+                @Override
+                public void close() throws IOException {
+                    flush();
                 }
-                force[0] = Math.max(-maxStep, Math.min(maxStep, force[0]));
-                force[1] = Math.max(-maxStep, Math.min(maxStep, force[1]));
-                vx[i] = (vx[i] + force[0]) * damping;
-                vy[i] = (vy[i] + force[1]) * damping;
             });
-            for (int i = 0; i < n; i++) { xs[i] += vx[i]; ys[i] += vy[i]; }
         }
 
-        Map<String, NodePos> out = new LinkedHashMap<>(n);
-        for (int i = 0; i < n; i++) out.put(nodes.get(i), new NodePos(xs[i], ys[i]));
-        return out;
+        void putFloat(float value) throws IOException {
+            if (buffer.remaining() < 4) drain();
+            buffer.putFloat(value);
+        }
+
+        void putInt(int value) throws IOException {
+            if (buffer.remaining() < 4) drain();
+            buffer.putInt(value);
+        }
+
+        private void drain() throws IOException {
+            base64.write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            drain();
+            base64.close();
+        }
+    }
+
+    private static final String CANVAS_HEAD = """
+<!DOCTYPE html>
+<html>
+<head>
+<meta charset="UTF-8">
+<title>Graph Export</title>
+<style>
+html,body { height:100%; margin:0; background:#111; overflow:hidden; }
+canvas { display:block; width:100%; height:100%; cursor:grab; touch-action:none; }
+#label { position:absolute; display:none; background:rgba(0,0,0,0.85); color:#ff4444; padding:3px 6px;
+  border-radius:4px; font:12px sans-serif; white-space:nowrap; pointer-events:none; }
+</style>
+</head>
+<body>
+<canvas id="map"></canvas>
+<div id="label"></div>
+<script>
+""";
+
+    private static final String CANVAS_VIEWER = """
+<script>
+(async () => {
+  const decode = async b64 => (await fetch('data:application/octet-stream;base64,' + b64)).arrayBuffer();
+  const pos = new Float32Array(await decode(GRAPH.positions));
+  const off = new Int32Array(await decode(GRAPH.offsets));
+  const tgt = new Int32Array(await decode(GRAPH.targets));
+  const hosts = GRAPH.hosts.split('\\n');
+  const n = GRAPH.n, m = GRAPH.m, R = 5;
+  const rad = GRAPH.radii ? new Float32Array(await decode(GRAPH.radii)) : new Float32Array(n).fill(R);
+  const RMAX = rad.reduce((a, b) => Math.max(a, b), R);
+
+  // Incoming edges, so a hovered node finds both directions without scanning every edge
+  const inOff = new Int32Array(n + 1), inSrc = new Int32Array(m);
+  for (let e = 0; e < m; e++) inOff[tgt[e] + 1]++;
+  for (let v = 0; v < n; v++) inOff[v + 1] += inOff[v];
+  const inFill = inOff.slice(0, n);
+  for (let v = 0; v < n; v++) for (let e = off[v]; e < off[v + 1]; e++) inSrc[inFill[tgt[e]]++] = v;
+
+  // Uniform grid over the nodes for hit testing
+  const CELL = Math.max(4 * R, Math.ceil(Math.max(GRAPH.width, GRAPH.height) / 2048));
+  const cols = Math.ceil(GRAPH.width / CELL) + 1, rows = Math.ceil(GRAPH.height / CELL) + 1;
+  const cellX = x => Math.min(cols - 1, Math.max(0, Math.floor(x / CELL)));
+  const cellY = y => Math.min(rows - 1, Math.max(0, Math.floor(y / CELL)));
+  const gridOff = new Int32Array(cols * rows + 1), gridItems = new Int32Array(n);
+  for (let v = 0; v < n; v++) gridOff[cellY(pos[2 * v + 1]) * cols + cellX(pos[2 * v]) + 1]++;
+  for (let c = 0; c < cols * rows; c++) gridOff[c + 1] += gridOff[c];
+  const gridFill = gridOff.slice(0, cols * rows);
+  for (let v = 0; v < n; v++) gridItems[gridFill[cellY(pos[2 * v + 1]) * cols + cellX(pos[2 * v])]++] = v;
+
+  const canvas = document.getElementById('map'), ctx = canvas.getContext('2d');
+  const label = document.getElementById('label');
+  let scale = 1, panX = 0, panY = 0, hover = -1, queued = false;
+  let isPanning = false, startX = 0, startY = 0, startPanX = 0, startPanY = 0;
+
+  function fit() {
+    scale = Math.min(1, innerWidth / GRAPH.width, innerHeight / GRAPH.height);
+    panX = (innerWidth - GRAPH.width * scale) / 2;
+    panY = (innerHeight - GRAPH.height * scale) / 2;
+  }
+
+  function redraw() {
+    if (!queued) { queued = true; requestAnimationFrame(draw); }
+  }
+
+  function draw() {
+    queued = false;
+    const dpr = window.devicePixelRatio || 1;
+    if (canvas.width !== innerWidth * dpr || canvas.height !== innerHeight * dpr) {
+      canvas.width = innerWidth * dpr;
+      canvas.height = innerHeight * dpr;
+    }
+    ctx.setTransform(1, 0, 0, 1, 0, 0);
+    ctx.fillStyle = '#111';
+    ctx.fillRect(0, 0, canvas.width, canvas.height);
+    ctx.setTransform(scale * dpr, 0, 0, scale * dpr, panX * dpr, panY * dpr);
+
+    const x0 = -panX / scale - RMAX, y0 = -panY / scale - RMAX;
+    const x1 = x0 + innerWidth / scale + 2 * RMAX, y1 = y0 + innerHeight / scale + 2 * RMAX;
+    ctx.lineWidth = 1 / scale;
+    ctx.strokeStyle = '#555';
+    ctx.beginPath();
+    for (let v = 0; v < n; v++) {
+      const ax = pos[2 * v], ay = pos[2 * v + 1];
+      for (let e = off[v]; e < off[v + 1]; e++) {
+        const b = tgt[e], bx = pos[2 * b], by = pos[2 * b + 1];
+        if (Math.max(ax, bx) < x0 || Math.min(ax, bx) > x1 || Math.max(ay, by) < y0 || Math.min(ay, by) > y1) continue;
+        ctx.moveTo(ax, ay);
+        ctx.lineTo(bx, by);
+      }
+    }
+    ctx.stroke();
+
+    ctx.fillStyle = 'red';
+    const small = R * scale < 2;
+    if (!small) ctx.beginPath();
+    for (let v = 0; v < n; v++) {
+      const x = pos[2 * v], y = pos[2 * v + 1], r = rad[v];
+      if (x < x0 || x > x1 || y < y0 || y > y1) continue;
+      if (small) {
+        ctx.fillRect(x - r, y - r, 2 * r, 2 * r);
+      } else {
+        ctx.moveTo(x + r, y);
+        ctx.arc(x, y, r, 0, 2 * Math.PI);
+      }
+    }
+    if (!small) ctx.fill();
+
+    if (hover >= 0) {
+      const hx = pos[2 * hover], hy = pos[2 * hover + 1];
+      ctx.lineWidth = 2 / scale;
+      ctx.strokeStyle = '#ff4444';
+      ctx.beginPath();
+      for (let e = off[hover]; e < off[hover + 1]; e++) { ctx.moveTo(hx, hy); ctx.lineTo(pos[2 * tgt[e]], pos[2 * tgt[e] + 1]); }
+      for (let e = inOff[hover]; e < inOff[hover + 1]; e++) { ctx.moveTo(hx, hy); ctx.lineTo(pos[2 * inSrc[e]], pos[2 * inSrc[e] + 1]); }
+      ctx.stroke();
+      ctx.fillStyle = '#ff4444';
+      ctx.beginPath();
+      ctx.arc(hx, hy, rad[hover] * 1.3, 0, 2 * Math.PI);
+      ctx.fill();
+    }
+  }
+
+  function nodeAt(mx, my) {
+    const wx = (mx - panX) / scale, wy = (my - panY) / scale;
+    const pick = 4 / scale, r = Math.max(RMAX, pick);
+    let best = -1, bestD = Infinity;
+    for (let cy = cellY(wy - r); cy <= cellY(wy + r); cy++) {
+      for (let cx = cellX(wx - r); cx <= cellX(wx + r); cx++) {
+        const c = cy * cols + cx;
+        for (let i = gridOff[c]; i < gridOff[c + 1]; i++) {
+          const v = gridItems[i], dx = pos[2 * v] - wx, dy = pos[2 * v + 1] - wy, d = dx * dx + dy * dy;
+          const hit = Math.max(rad[v], pick);
+          if (d <= hit * hit && d <= bestD) { best = v; bestD = d; }
+        }
+      }
+    }
+    return best;
+  }
+
+  canvas.addEventListener('wheel', e => {
+    e.preventDefault();
+    const factor = e.deltaY < 0 ? 1.12 : 1 / 1.12;
+    const newScale = Math.max(0.01, Math.min(50, scale * factor));
+    const worldX = (e.clientX - panX) / scale, worldY = (e.clientY - panY) / scale;
+    scale = newScale;
+    panX = e.clientX - worldX * scale;
+    panY = e.clientY - worldY * scale;
+    redraw();
+  }, {passive: false});
+
+  canvas.addEventListener('mousedown', e => {
+    if (e.button !== 0) return;
+    isPanning = true;
+    startX = e.clientX; startY = e.clientY;
+    startPanX = panX; startPanY = panY;
+    canvas.style.cursor = 'grabbing';
+  });
+  window.addEventListener('mousemove', e => {
+    if (isPanning) {
+      panX = startPanX + (e.clientX - startX);
+      panY = startPanY + (e.clientY - startY);
+      redraw();
+      return;
     }
+    const v = nodeAt(e.clientX, e.clientY);
+    if (v !== hover) {
+      hover = v;
+      label.style.display = v >= 0 ? 'block' : 'none';
+      if (v >= 0) label.textContent = hosts[v] + '  (' + (off[v + 1] - off[v]) + ' out, ' + (inOff[v + 1] - inOff[v]) + ' in)';
+      redraw();
+    }
+    if (v >= 0) { label.style.left = (e.clientX + 15) + 'px'; label.style.top = (e.clientY - 22) + 'px'; }
+  });
+  window.addEventListener('mouseup', () => {
+    isPanning = false;
+    canvas.style.cursor = 'grab';
+  });
+  canvas.addEventListener('dblclick', () => {
+    fit(); redraw();
+  });
+  window.addEventListener('resize', redraw);
+  fit();
+  redraw();
+})();
+</script>
+</body>
+</html>
+""";
+
+    private static void exportToHTML(String fileName, HostGraphSnapshot graph, Positions positions) throws IOException {
+        double[] xs = positions.xs(), ys = positions.ys();
+        int n = graph.vertexCount();
 
-    private static void exportToHTML(String fileName, Set<String> nodesSet, List<String[]> edges, Map<String, NodePos> positions) throws IOException {
         // Compute bounding box
         double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
         double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
-        for (NodePos p : positions.values()) {
-            if (p.x < minX) minX = p.x;
-            if (p.y < minY) minY = p.y;
-            if (p.x > maxX) maxX = p.x;
-            if (p.y > maxY) maxY = p.y;
+        for (int i = 0; i < n; i++) {
+            if (xs[i] < minX) minX = xs[i];
+            if (ys[i] < minY) minY = ys[i];
+            if (xs[i] > maxX) maxX = xs[i];
+            if (ys[i] > maxY) maxY = ys[i];
         }
         double margin = 50;
         double containerWidth = maxX - minX + 2 * margin;
@@ -239,12 +558,11 @@ svg { position:absolute; top:0; left:0; pointer-events:none; }
             out.printf("<svg id=\"edges\" width=\"%.2f\" height=\"%.2f\"></svg>%n", containerWidth, containerHeight);
 
             // Draw nodes
-            for (String n : nodesSet) {
-                NodePos p = positions.get(n);
-                if (p == null) continue;
-                double x = p.x - minX + margin;
-                double y = p.y - minY + margin;
-                out.printf("<div class=\"node\" data-id=\"%s\" style=\"left:%.2fpx; top:%.2fpx;\"></div>%n", n, x, y);
+            for (int i = 0; i < n; i++) {
+                double x = xs[i] - minX + margin;
+                double y = ys[i] - minY + margin;
+                out.printf("<div class=\"node\" data-idx=\"%d\" data-id=\"%s\" style=\"left:%.2fpx; top:%.2fpx;\"></div>%n",
+                        i, escapeHtml(graph.host(i)), x, y);
             }
 
             // Draw edges
@@ -254,14 +572,13 @@ svg { position:absolute; top:0; left:0; pointer-events:none; }
             out.println("let scale=1, panX=0, panY=0;");
             out.println("let isPanning=false, startX=0, startY=0, startPanX=0, startPanY=0;");
 
-            for (String[] e : edges) {
-                NodePos src = positions.get(e[0]);
-                NodePos tgt = positions.get(e[1]);
-                if (src != null && tgt != null) {
-                    double x1 = src.x - minX + margin;
-                    double y1 = src.y - minY + margin;
-                    double x2 = tgt.x - minX + margin;
-                    double y2 = tgt.y - minY + margin;
+            for (int src = 0; src < n; src++) {
+                for (int e = graph.outStart(src); e < graph.outEnd(src); e++) {
+                    int tgt = graph.target(e);
+                    double x1 = xs[src] - minX + margin;
+                    double y1 = ys[src] - minY + margin;
+                    double x2 = xs[tgt] - minX + margin;
+                    double y2 = ys[tgt] - minY + margin;
                     out.printf("""
                 {
                   const line = document.createElementNS('http://www.w3.org/2000/svg','line');
@@ -270,11 +587,11 @@ svg { position:absolute; top:0; left:0; pointer-events:none; }
                   line.setAttribute('x2', %.2f);
                   line.setAttribute('y2', %.2f);
                   line.setAttribute('class', 'edge');
-                  line.setAttribute('data-source', '%s');
-                  line.setAttribute('data-target', '%s');
+                  line.setAttribute('data-source', '%d');
+                  line.setAttribute('data-target', '%d');
                   svg.appendChild(line);
                 }
-                """, x1, y1, x2, y2, e[0], e[1]);
+                """, x1, y1, x2, y2, src, tgt);
                 }
             }
 
@@ -330,7 +647,7 @@ window.addEventListener('mouseup',()=>{
             out.println("""
 document.querySelectorAll('.node').forEach(node => {
   node.addEventListener('mouseenter', () => {
-    const id = node.getAttribute('data-id');
+    const id = node.getAttribute('data-idx');
     // iterate all lines and add highlight to connected ones
     svg.querySelectorAll('line').forEach(line => {
       if (line.getAttribute('data-source') === id || line.getAttribute('data-target') === id) {
@@ -359,4 +676,19 @@ document.getElementById('viewport').addEventListener('dblclick',()=>{
         }
     }
 
+    private static String escapeHtml(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&' -> sb.append("&amp;");
+                case '<' -> sb.append("&lt;");
+                case '>' -> sb.append("&gt;");
+                case '"' -> sb.append("&quot;");
+                default -> sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
 }
@@ -1,54 +1,158 @@
 package com.strubium.gasstation;
 
+import com.strubium.gasstation.analytics.GraphAnalysis;
+import com.strubium.gasstation.graph.HostGraphSnapshot;
 import com.strubium.gasstation.logger.ProjectLogger;
-import org.jgrapht.Graph;
-import org.jgrapht.graph.DefaultEdge;
 
-import java.io.FileWriter;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.Set;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Streams a {@link HostGraphSnapshot} out as GraphML.
+ * <p>
+ * Nodes get short numeric ids ({@code n0}, {@code n1}, ...) and carry the real host name as
+ * data, so no host is ever mangled or merged with another. Everything is written straight
+ * from the snapshot arrays through one large buffer, memory use does not grow with the
+ * graph. A file name ending in {@code .gz} is gzip-compressed on the fly.
+ * <p>
+ * Given a {@link GraphAnalysis}, every node also carries its PageRank, strongly connected
+ * component and in/out degree.
+ */
 public class GraphMLExporter {
+    private static final int BUFFER_SIZE = 1 << 20;
 
     /**
-     * Exports a JGraphT graph to GraphML in a thread-safe way.
-     * It takes snapshots of vertices and edges to avoid concurrent modification.
+     * Exports a host graph snapshot to GraphML.
+     * The snapshot is immutable, so no locking is needed while writing.
      */
-    public void exportGraph(Graph<String, DefaultEdge> graph, String fileName) throws IOException {
-        ProjectLogger.LOGGER.info("Starting to export Graph");
-
-        Set<String> verticesSnapshot = new HashSet<>();
-        Set<DefaultEdge> edgesSnapshot = new HashSet<>();
+    public void exportGraph(HostGraphSnapshot graph, String fileName) throws IOException {
+        exportGraph(graph, fileName, null);
+    }
 
-        // Take snapshots safely
-        synchronized (graph) {
-            for (String vertex : graph.vertexSet()) {
-                verticesSnapshot.add(vertex);
-            }
-            for (DefaultEdge edge : graph.edgeSet()) {
-                edgesSnapshot.add(edge);
-            }
-        }
+    /**
+     * Exports a host graph snapshot to GraphML with the node attributes of {@code analysis},
+     * which must have been run on the same snapshot. Null leaves them out.
+     */
+    public void exportGraph(HostGraphSnapshot graph, String fileName, GraphAnalysis analysis) throws IOException {
+        ProjectLogger.LOGGER.info("Starting to export Graph");
+        long started = System.nanoTime();
 
-        try (FileWriter writer = new FileWriter(fileName)) {
+        try (Writer writer = open(Path.of(fileName))) {
             writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
             writer.write("<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n");
+            writer.write("<key id=\"host\" for=\"node\" attr.name=\"host\" attr.type=\"string\"/>\n");
+            writer.write("<key id=\"depth\" for=\"node\" attr.name=\"depth\" attr.type=\"int\"><default>-1</default></key>\n");
+            writer.write("<key id=\"firstSeen\" for=\"node\" attr.name=\"firstSeen\" attr.type=\"long\"/>\n");
+            if (analysis != null) {
+                writer.write("<key id=\"pagerank\" for=\"node\" attr.name=\"pagerank\" attr.type=\"double\"/>\n");
+                writer.write("<key id=\"scc\" for=\"node\" attr.name=\"scc\" attr.type=\"int\"/>\n");
+                writer.write("<key id=\"inDegree\" for=\"node\" attr.name=\"inDegree\" attr.type=\"int\"/>\n");
+                writer.write("<key id=\"outDegree\" for=\"node\" attr.name=\"outDegree\" attr.type=\"int\"/>\n");
+            }
+            writer.write("<key id=\"links\" for=\"edge\" attr.name=\"links\" attr.type=\"int\"><default>1</default></key>\n");
             writer.write("<graph id=\"G\" edgedefault=\"directed\">\n");
 
-            for (String vertex : verticesSnapshot) {
-                writer.write("<node id=\"" + vertex.replaceAll("[^a-zA-Z0-9_-]", "_") + "\"/>\n");
+            int n = graph.vertexCount();
+            for (int v = 0; v < n; v++) {
+                writer.write("<node id=\"n");
+                writer.write(Integer.toString(v));
+                writer.write("\"><data key=\"host\">");
+                writeEscaped(writer, graph.host(v));
+                writer.write("</data>");
+                if (graph.depth(v) >= 0) {
+                    writer.write("<data key=\"depth\">");
+                    writer.write(Integer.toString(graph.depth(v)));
+                    writer.write("</data>");
+                }
+                writer.write("<data key=\"firstSeen\">");
+                writer.write(Long.toString(graph.firstSeen(v)));
+                writer.write("</data>");
+                if (analysis != null) {
+                    writer.write("<data key=\"pagerank\">");
+                    writer.write(Double.toString(analysis.pageRank(v)));
+                    writer.write("</data><data key=\"scc\">");
+                    writer.write(Integer.toString(analysis.component(v)));
+                    writer.write("</data><data key=\"inDegree\">");
+                    writer.write(Integer.toString(analysis.inDegree(v)));
+                    writer.write("</data><data key=\"outDegree\">");
+                    writer.write(Integer.toString(analysis.outDegree(v)));
+                    writer.write("</data>");
+                }
+                writer.write("</node>\n");
             }
 
-            for (DefaultEdge edge : edgesSnapshot) {
-                String source = graph.getEdgeSource(edge).replaceAll("[^a-zA-Z0-9_-]", "_");
-                String target = graph.getEdgeTarget(edge).replaceAll("[^a-zA-Z0-9_-]", "_");
-                writer.write("<edge source=\"" + source + "\" target=\"" + target + "\"/>\n");
+            for (int v = 0; v < n; v++) {
+                String source = Integer.toString(v);
+                for (int e = graph.outStart(v); e < graph.outEnd(v); e++) {
+                    writer.write("<edge source=\"n");
+                    writer.write(source);
+                    writer.write("\" target=\"n");
+                    writer.write(Integer.toString(graph.target(e)));
+                    if (graph.linkCount(e) == 1) {
+                        writer.write("\"/>\n");
+                    } else {
+                        writer.write("\"><data key=\"links\">");
+                        writer.write(Integer.toString(graph.linkCount(e)));
+                        writer.write("</data></edge>\n");
+                    }
+                }
             }
 
             writer.write("</graph>\n</graphml>\n");
         }
 
-        ProjectLogger.LOGGER.info("Graph exported successfully!");
+        ProjectLogger.LOGGER.info("Graph exported successfully! " + graph.vertexCount() + " nodes, " + graph.edgeCount()
+                + " edges in " + (System.nanoTime() - started) / 1_000_000 + " ms");
+    }
+
+    private static Writer open(Path file) throws IOException {
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE);
+        if (file.getFileName().toString().endsWith(".gz")) out = new GZIPOutputStream(out, BUFFER_SIZE);
+        return new OutputStreamWriter(out, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes {@code text} as XML character data. Characters XML 1.0 cannot represent at all
+     * (most C0 controls, lone surrogates, U+FFFE/U+FFFF) are dropped.
+     */
+    static void writeEscaped(Writer writer, String text) throws IOException {
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            String replacement;
+            switch (c) {
+                case '&' -> replacement = "&amp;";
+                case '<' -> replacement = "&lt;";
+                case '>' -> replacement = "&gt;";
+                case '"' -> replacement = "&quot;";
+                case '\'' -> replacement = "&apos;";
+                default -> {
+                    if (isXmlChar(text, i)) {
+                        if (Character.isHighSurrogate(c)) i++;
+                        continue;
+                    }
+                    replacement = "";
+                }
+            }
+            writer.write(text, start, i - start);
+            writer.write(replacement);
+            start = i + 1;
+        }
+        writer.write(text, start, text.length() - start);
+    }
+
+    private static boolean isXmlChar(String text, int i) {
+        char c = text.charAt(i);
+        if (c < 0x20) return c == '\t' || c == '\n' || c == '\r';
+        if (Character.isHighSurrogate(c)) return i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1));
+        if (Character.isLowSurrogate(c)) return false;
+        return c != 0xFFFE && c != 0xFFFF;
     }
 }
@@ -1,18 +1,59 @@
 package com.strubium.gasstation;
 
+import com.strubium.gasstation.analytics.GraphAnalysis;
+import com.strubium.gasstation.budget.CrawlBudget;
+import com.strubium.gasstation.checkpoint.Checkpointer;
+import com.strubium.gasstation.dns.DnsCache;
+import com.strubium.gasstation.dns.HostResolver;
+import com.strubium.gasstation.fetch.FetchConfig;
+import com.strubium.gasstation.fetch.Fetcher;
+import com.strubium.gasstation.fetch.HttpClientFetcher;
+import com.strubium.gasstation.fetch.ResolvingFetcher;
+import com.strubium.gasstation.frontier.Frontier;
+import com.strubium.gasstation.frontier.HostSaturation;
+import com.strubium.gasstation.frontier.Politeness;
+import com.strubium.gasstation.graph.GraphFile;
+import com.strubium.gasstation.graph.HostGraph;
+import com.strubium.gasstation.graph.HostGraphSnapshot;
 import com.strubium.gasstation.logger.ProjectLogger;
+import com.strubium.gasstation.metrics.CrawlMetrics;
+import com.strubium.gasstation.recrawl.RecrawlState;
+import com.strubium.gasstation.robots.RobotsCache;
+import com.strubium.gasstation.robots.RobotsConfig;
+import com.strubium.gasstation.robots.SitemapSeeder;
+import com.strubium.gasstation.shard.ShardNode;
+import com.strubium.gasstation.sim.SimulatedFetcher;
+import com.strubium.gasstation.sim.SimulatedResolver;
+import com.strubium.gasstation.sim.SimulationConfig;
+import com.strubium.gasstation.sim.SyntheticWeb;
+import com.strubium.gasstation.visited.BloomVisitedSet;
 
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Security;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
 
 import static com.strubium.gasstation.FastGraphMLExporter.generateGraphHtml;
 
 public class Main {
 
+    private static final int WORKERS = 512;
+
     public static void main(String[] args) {
+        CrawlOptions options = CrawlOptions.parse(args);
+        if (options.simulate) {
+            simulate(options);
+            return;
+        }
+        if (options.mergeShards) {
+            mergeShards(options);
+            return;
+        }
 
         Set<String> seeds = Set.of(
                 "https://itch.io/",
@@ -32,51 +73,278 @@ public class Main {
         );
 
         // Crawl config
-        CrawlerManager manager = new CrawlerManager(50);
+        CrawlerManager manager = new CrawlerManager(options.maxDepth, options.createVisitedSet(), options.createHostInterner());
+        CrawlMetrics metrics = new CrawlMetrics();
+        metrics.registerMBean();
+        Frontier frontier = new Frontier(manager, 1_000_000, politeness(), metrics);
+        metrics.watch(frontier);
+        CrawlBudget budget = new CrawlBudget(options.budgetConfig());
+        frontier.setBudget(budget);
+        if (options.saturationConfig().enabled()) frontier.setSaturation(new HostSaturation(options.saturationConfig()));
+        // The HTTP client resolves on its own, keep the JVM's address cache in step with ours
+        Security.setProperty("networkaddress.cache.ttl", String.valueOf(options.dnsConfig().positiveTtlSeconds()));
+        DnsCache dns = dnsCache(options, HostResolver.SYSTEM, manager, frontier);
+        Fetcher fetcher = new ResolvingFetcher(new HttpClientFetcher(FetchConfig.defaults()), dns);
+        SitemapSeeder sitemaps = sitemapSeeder(options, fetcher, frontier, metrics);
+        RobotsCache robots = robotsCache(options, fetcher, frontier, sitemaps);
 
-        // Virtual threads
-        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        // A shard only crawls its own hosts and forwards the rest, see ShardNode
+        ShardNode shard = null;
+        Path checkpointDir = options.checkpointDir;
+        Path recrawlDir = options.recrawlDir;
+        if (options.sharded()) {
+            checkpointDir = checkpointDir.resolve("shard-" + options.shardIndex);
+            recrawlDir = recrawlDir.resolve("shard-" + options.shardIndex);
+            shard = new ShardNode(options.shardConfig(), frontier);
+        }
+        RecrawlState recrawl = options.recrawl ? new RecrawlState(recrawlDir, options.recrawlConfig()) : null;
 
-        // Phaser tracks all running tasks
-        Phaser phaser = new Phaser(1); // main thread registered
+        // Pick up where the last run stopped, or seed a fresh crawl
+        Checkpointer checkpointer = new Checkpointer(checkpointDir, manager, frontier);
+        try {
+            if (shard != null) shard.start();
+            boolean recrawling = recrawl != null && recrawl.open(manager);
+            if (!options.resume || !checkpointer.restore()) {
+                if (options.resume) ProjectLogger.LOGGER.warn("No checkpoint in " + checkpointDir + ", starting fresh");
+                checkpointer.reset();
+                // Seeds are still admitted, new pages on them bring in new hosts
+                if (recrawling) recrawl.seed(manager, frontier);
+                for (String seed : seeds) {
+                    frontier.admit(seed, 0);
+                }
+            }
+            if (shard != null) shard.admitUndelivered();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (options.checkpointIntervalSeconds > 0) checkpointer.start(options.checkpointIntervalSeconds);
+        if (options.metricsIntervalSeconds > 0) metrics.startReporting(options.metricsIntervalSeconds);
 
-        // Start crawling
-        for (String seed : seeds) {
-            phaser.register(); // register task
-            executor.submit(new CrawlerWorker(
-                    seed,
-                    0,
-                    manager,
-                    executor,
-                    phaser
-            ));
+        crawl(manager, frontier, fetcher, metrics, budget, robots);
+        if (sitemaps != null) sitemaps.close();
+        dns.close();
+        metrics.stopReporting();
+        ProjectLogger.LOGGER.info("DNS: " + dns.summary());
+        ProjectLogger.LOGGER.info("Crawl totals: " + metrics.summary());
+
+        try {
+            // Sends what is left before the final checkpoint, URLs for shards that are gone are spilled
+            if (shard != null) shard.close();
+            checkpointer.close();
+        } catch (IOException e) {
+            ProjectLogger.LOGGER.error("Final checkpoint failed", e);
+        }
+
+        ProjectLogger.LOGGER.info(String.format("Visited %d URLs, %.1f bytes per URL",
+                manager.getVisited().size(), manager.getVisited().bytesPerUrl()));
+        if (manager.getVisited() instanceof BloomVisitedSet bloom) {
+            ProjectLogger.LOGGER.info(String.format("Bloom visited set %s, expected false positive rate %.3f%%",
+                    bloom.isOverCapacity() ? "over capacity" : "within capacity", bloom.expectedFalsePositiveRate() * 100));
         }
 
-        // Wait for all crawlers to finish
-        phaser.arriveAndAwaitAdvance();
+        HostGraphSnapshot graph = manager.getGraph().snapshot();
+        saveRecrawl(recrawl, graph);
+        if (shard != null) {
+            saveShardGraph(graph, options);
+            return;
+        }
+        export(graph, options);
+    }
 
-        executor.shutdown();
+    private static void saveRecrawl(RecrawlState recrawl, HostGraphSnapshot graph) {
+        if (recrawl == null) return;
+        try {
+            recrawl.save(graph);
+        } catch (IOException e) {
+            ProjectLogger.LOGGER.error("Saving recrawl state failed", e);
+        }
+    }
+
+    /** Shards only hold the links of their own hosts, --merge-shards puts them together. */
+    private static void saveShardGraph(HostGraphSnapshot graph, CrawlOptions options) {
+        Path shardFile = options.shardDir.resolve("shard-" + options.shardIndex + ".graph");
+        try {
+            Files.createDirectories(options.shardDir);
+            GraphFile.write(graph, shardFile);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        ProjectLogger.LOGGER.info("Shard finished. Graph saved to " + shardFile);
+    }
+
+    /**
+     * Merges the graph files written by every shard into one graph and exports it.
+     */
+    private static void mergeShards(CrawlOptions options) {
+        HostGraph merged = new HostGraph();
+        int files = 0;
+        try (DirectoryStream<Path> shardFiles = Files.newDirectoryStream(options.shardDir, "shard-*.graph")) {
+            for (Path file : shardFiles) {
+                merged.merge(GraphFile.read(file));
+                files++;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (files == 0) throw new IllegalStateException("No shard graphs in " + options.shardDir);
+        HostGraphSnapshot graph = merged.snapshot();
+        ProjectLogger.LOGGER.info("Merged " + files + " shards: " + graph.vertexCount() + " hosts, " + graph.edgeCount() + " edges");
+        export(graph, options);
+    }
+
+    /** Analyses one snapshot and writes the GraphML file and the HTML map from it. */
+    private static void export(HostGraphSnapshot graph, CrawlOptions options) {
+        GraphAnalysis analysis = GraphAnalysis.run(graph);
+        analysis.logSummary();
 
-        // Export results
         GraphMLExporter exporter = new GraphMLExporter();
         try {
-            exporter.exportGraph(manager.getGraph(), "internet_map.graphml");
+            exporter.exportGraph(graph, "internet_map.graphml", analysis);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
 
         try {
             generateGraphHtml(
-                    "internet_map.graphml",
+                    graph,
                     "graph_output.html",
                     5050,
-                    5050
+                    5050,
+                    options.htmlMode,
+                    options.layoutFile,
+                    analysis
             );
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
 
-
         ProjectLogger.LOGGER.info("Crawl finished. Graph saved to internet_map.graphml");
     }
+
+    /**
+     * Crawls a {@link SyntheticWeb} through {@link SimulatedFetcher} and reports throughput.
+     * Nothing is checkpointed or exported, the run is only about crawl speed. Sharded
+     * simulations still save their shard graph, so merging can be tried offline, and
+     * --recrawl keeps its state, so recrawls can be measured too.
+     */
+    private static void simulate(CrawlOptions options) {
+        SimulationConfig config = SimulationConfig.defaults()
+                .withSize(options.simHosts, options.simPagesPerHost)
+                .withLatency(options.simLatencyMillis)
+                .withChangesPerDay(options.simChangesPerDay);
+        SyntheticWeb web = new SyntheticWeb(config);
+        ProjectLogger.LOGGER.info(String.format("Simulating %d hosts, %d pages, %d links per page, %.0f ms median latency",
+                config.hosts(), config.pageCount(), config.fanOut(), config.latencyMedianMillis()));
+
+        CrawlerManager manager = new CrawlerManager(options.maxDepth, options.createVisitedSet(), options.createHostInterner());
+        CrawlMetrics metrics = new CrawlMetrics();
+        metrics.registerMBean();
+        Frontier frontier = new Frontier(manager, 1_000_000, politeness(), metrics);
+        metrics.watch(frontier);
+        CrawlBudget budget = new CrawlBudget(options.budgetConfig());
+        frontier.setBudget(budget);
+        if (options.saturationConfig().enabled()) frontier.setSaturation(new HostSaturation(options.saturationConfig()));
+        ShardNode shard = options.sharded() ? new ShardNode(options.shardConfig(), frontier) : null;
+        Path recrawlDir = options.sharded() ? options.recrawlDir.resolve("shard-" + options.shardIndex) : options.recrawlDir;
+        RecrawlState recrawl = options.recrawl ? new RecrawlState(recrawlDir, options.recrawlConfig()) : null;
+        try {
+            if (shard != null) shard.start();
+            if (recrawl != null && recrawl.open(manager)) recrawl.seed(manager, frontier);
+            frontier.admitAll(web.seeds(14), 0);
+            if (shard != null) shard.admitUndelivered();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (options.metricsIntervalSeconds > 0) metrics.startReporting(options.metricsIntervalSeconds);
+        DnsCache dns = dnsCache(options, new SimulatedResolver(web), manager, frontier);
+        Fetcher fetcher = new ResolvingFetcher(new SimulatedFetcher(web, FetchConfig.defaults()), dns);
+        SitemapSeeder sitemaps = sitemapSeeder(options, fetcher, frontier, metrics);
+
+        long started = System.nanoTime();
+        crawl(manager, frontier, fetcher, metrics, budget, robotsCache(options, fetcher, frontier, sitemaps));
+        if (sitemaps != null) sitemaps.close();
+        dns.close();
+        double seconds = (System.nanoTime() - started) / 1e9;
+        metrics.stopReporting();
+        try {
+            if (shard != null) shard.close();
+        } catch (IOException e) {
+            ProjectLogger.LOGGER.error("Closing shard failed", e);
+        }
+
+        HostGraphSnapshot graph = manager.getGraph().snapshot();
+        ProjectLogger.LOGGER.info(String.format("Simulated crawl: %d pages in %.1f s, %.0f pages/s, %d URLs visited, %d hosts, %d edges",
+                metrics.getPages(), seconds, metrics.getPages() / seconds, manager.getVisited().size(),
+                graph.vertexCount(), graph.edgeCount()));
+        ProjectLogger.LOGGER.info("Crawl totals: " + metrics.summary());
+        ProjectLogger.LOGGER.info("DNS: " + dns.summary());
+        saveRecrawl(recrawl, graph);
+        if (shard != null) saveShardGraph(graph, options);
+    }
+
+    private static Politeness politeness() {
+        return new Politeness(
+                4,       // max in-flight requests per host
+                500,     // min delay between requests to one host (ms)
+                2000,    // first back-off after 429/503 (ms)
+                120_000, // back-off cap (ms)
+                3        // retries for throttled URLs
+        );
+    }
+
+    /** A DNS cache that prefetches newly linked hosts and keeps dead ones out of the frontier. */
+    private static DnsCache dnsCache(CrawlOptions options, HostResolver resolver, CrawlerManager manager, Frontier frontier) {
+        DnsCache dns = new DnsCache(resolver, options.dnsConfig());
+        manager.setDnsCache(dns);
+        frontier.setDnsCache(dns);
+        return dns;
+    }
+
+    private static SitemapSeeder sitemapSeeder(CrawlOptions options, Fetcher fetcher, Frontier frontier, CrawlMetrics metrics) {
+        RobotsConfig config = options.robotsConfig();
+        if (!config.obey() || !config.sitemaps()) return null;
+        return new SitemapSeeder(fetcher, frontier, metrics, config.maxSitemapUrlsPerHost());
+    }
+
+    private static RobotsCache robotsCache(CrawlOptions options, Fetcher fetcher, Frontier frontier, SitemapSeeder sitemaps) {
+        RobotsConfig config = options.robotsConfig();
+        if (!config.obey()) return null;
+        return new RobotsCache(fetcher, config, FetchConfig.defaults().userAgent(), frontier, sitemaps);
+    }
+
+    /**
+     * Runs {@link #WORKERS} workers on virtual threads until the frontier is empty or
+     * drained. The budget's runtime and heap limits, as well as Ctrl-C, drain it.
+     */
+    private static void crawl(CrawlerManager manager, Frontier frontier, Fetcher fetcher, CrawlMetrics metrics,
+                              CrawlBudget budget, RobotsCache robots) {
+        budget.start(frontier);
+        // On SIGINT/SIGTERM, stop taking work and hold the JVM until the caller has saved and exported
+        Thread caller = Thread.currentThread();
+        Thread hook = new Thread(() -> {
+            frontier.drain();
+            try {
+                caller.join();
+            } catch (InterruptedException ignored) {
+            }
+        }, "drain-on-exit");
+        Runtime.getRuntime().addShutdownHook(hook);
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        for (int i = 0; i < WORKERS; i++) {
+            executor.submit(new CrawlerWorker(manager, frontier, fetcher, metrics, robots));
+        }
+
+        // Workers exit on their own once the frontier is empty or drained
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        budget.stop();
+        if (budget.stopReason() != null) {
+            ProjectLogger.LOGGER.info("Crawl stopped early: " + budget.stopReason() + ", " + frontier.size() + " tasks left queued");
+        }
+    }
 }
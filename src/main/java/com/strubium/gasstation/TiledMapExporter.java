@@ -0,0 +1,540 @@
+package com.strubium.gasstation;
+
+import com.strubium.gasstation.extract.DomainNames;
+import com.strubium.gasstation.graph.HostGraphSnapshot;
+import com.strubium.gasstation.layout.MortonOrder;
+import com.strubium.gasstation.layout.Positions;
+import com.strubium.gasstation.logger.ProjectLogger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes a laid out graph as a zoomable, tiled map: a small viewer page plus a directory
+ * of tiles it loads on demand.
+ * <p>
+ * Nodes are sorted once in Morton order, so the tile {@code (z, x, y)} at every zoom
+ * level is one contiguous range of the sorted nodes and tiles are produced one after the
+ * other, each from its own range. The deepest level holds every host and link. Every
+ * level above it holds super-nodes: the hosts of a tile grouped by registrable domain,
+ * with the links between groups summed and only the heaviest kept. A tile therefore stays
+ * small at any zoom, and the viewer's first load is one tile whatever the graph size.
+ * <p>
+ * Tiles are written as {@code tile(z, x, y, {...})} scripts rather than JSON, so the map
+ * also opens straight from disk where browsers refuse to fetch local files.
+ */
+public class TiledMapExporter {
+    private static final int NODES_PER_TILE = 1000;
+    private static final int MAX_ZOOM = 10;
+    private static final int MAX_GROUPS_PER_TILE = 1500;
+    private static final int MAX_EDGES_PER_TILE = 4000;
+    // Hosts left over once a tile has its largest groups are merged per sub-cell this many levels down
+    private static final int OVERFLOW_LEVELS = 3;
+
+    private final int nodesPerTile;
+
+    public TiledMapExporter() {
+        this(NODES_PER_TILE);
+    }
+
+    public TiledMapExporter(int nodesPerTile) {
+        this.nodesPerTile = nodesPerTile;
+    }
+
+    /**
+     * Writes the viewer to {@code viewerFile} and the tiles next to it, into a directory
+     * named after the viewer with a {@code _tiles} suffix.
+     */
+    public void export(HostGraphSnapshot graph, Positions positions, Path viewerFile) throws IOException {
+        long started = System.nanoTime();
+        int n = graph.vertexCount();
+        double[] xs = positions.xs(), ys = positions.ys();
+
+        double minX = 0, minY = 0, maxX = 0, maxY = 0;
+        if (n > 0) {
+            minX = minY = Double.MAX_VALUE;
+            maxX = maxY = -Double.MAX_VALUE;
+        }
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+        double extent = Math.max(Math.max(maxX - minX, maxY - minY), 1);
+        long[] keys = new long[n];
+        MortonOrder.sort(xs, ys, n, minX, minY, extent, keys);
+
+        int maxZoom = 0;
+        while (maxZoom < MAX_ZOOM && (long) nodesPerTile << (2 * maxZoom) < n) maxZoom++;
+
+        String base = viewerFile.getFileName().toString().replaceFirst("\\.html?$", "");
+        Path tileDir = viewerFile.resolveSibling(base + "_tiles");
+        clearTiles(tileDir);
+
+        Tiler tiler = new Tiler(graph, xs, ys, minX, minY, keys, tileDir);
+        long tiles = 0;
+        for (int z = 0; z <= maxZoom; z++) tiles += tiler.writeLevel(z, z == maxZoom);
+
+        try (Writer out = Files.newBufferedWriter(viewerFile, StandardCharsets.UTF_8)) {
+            out.write(VIEWER_HEAD);
+            out.write(String.format(Locale.ROOT, "const META = {extent: %.2f, maxZoom: %d, tiles: \"%s\", nodes: %d, edges: %d};%n",
+                    extent, maxZoom, base + "_tiles", n, graph.edgeCount()));
+            out.write(VIEWER_SCRIPT);
+        }
+        ProjectLogger.LOGGER.info("Wrote " + tiles + " tiles over " + (maxZoom + 1) + " zoom levels to " + tileDir + " in "
+                + (System.nanoTime() - started) / 1_000_000 + " ms");
+    }
+
+    /** Removes tiles of an earlier export so none of them shows through. */
+    private static void clearTiles(Path tileDir) throws IOException {
+        if (!Files.isDirectory(tileDir)) return;
+        try (var files = Files.walk(tileDir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                if (p.getFileName().toString().matches("\\d+_\\d+\\.js")) Files.delete(p);
+            }
+        }
+    }
+
+    /**
+     * Per-export state. Group arrays are sized for the worst case of one group per host
+     * and reused for every level.
+     */
+    private static final class Tiler {
+        private final HostGraphSnapshot graph;
+        private final double[] xs, ys;
+        private final double x0, y0;
+        private final long[] keys;
+        private final Path tileDir;
+
+        private final int[] group;
+        private final double[] groupX, groupY;
+        private final int[] groupSize;
+        private final String[] groupLabel;
+
+        Tiler(HostGraphSnapshot graph, double[] xs, double[] ys, double x0, double y0, long[] keys, Path tileDir) {
+            this.graph = graph;
+            this.xs = xs;
+            this.ys = ys;
+            this.x0 = x0;
+            this.y0 = y0;
+            this.keys = keys;
+            this.tileDir = tileDir;
+            int n = graph.vertexCount();
+            group = new int[n];
+            groupX = new double[n];
+            groupY = new double[n];
+            groupSize = new int[n];
+            groupLabel = new String[n];
+        }
+
+        /** Writes every non-empty tile of zoom level {@code z}, returns how many. */
+        int writeLevel(int z, boolean detail) throws IOException {
+            Path levelDir = tileDir.resolve(Integer.toString(z));
+            Files.createDirectories(levelDir);
+            int n = keys.length;
+
+            int[] groupStart = null;
+            if (!detail) {
+                // Groups must all exist before any tile can point its edges at them
+                groupStart = new int[countTiles(z) + 1];
+                int groups = 0, t = 0;
+                for (int lo = 0, hi; lo < n; lo = hi, t++) {
+                    hi = tileEnd(lo, z);
+                    groupStart[t] = groups;
+                    groups = groupTile(lo, hi, z, groups);
+                }
+                groupStart[t] = groups;
+            }
+
+            int tiles = 0;
+            for (int lo = 0, hi; lo < n; lo = hi, tiles++) {
+                hi = tileEnd(lo, z);
+                int cell = MortonOrder.cell(MortonOrder.code(keys[lo]), z);
+                Path file = levelDir.resolve(MortonOrder.cellX(cell) + "_" + MortonOrder.cellY(cell) + ".js");
+                try (Writer out = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 1 << 16)) {
+                    out.write("tile(" + z + "," + MortonOrder.cellX(cell) + "," + MortonOrder.cellY(cell) + ",{");
+                    if (detail) writeDetail(out, lo, hi);
+                    else writeGroups(out, lo, hi, groupStart[tiles], groupStart[tiles + 1]);
+                    out.write("});\n");
+                }
+            }
+            return tiles;
+        }
+
+        private int countTiles(int z) {
+            int count = 0;
+            for (int lo = 0; lo < keys.length; lo = tileEnd(lo, z)) count++;
+            return count;
+        }
+
+        /** End of the tile starting at sorted position {@code lo}. */
+        private int tileEnd(int lo, int z) {
+            int cell = MortonOrder.cell(MortonOrder.code(keys[lo]), z);
+            int hi = keys.length;
+            int l = lo + 1;
+            while (l < hi) {
+                int mid = (l + hi) >>> 1;
+                if (MortonOrder.cell(MortonOrder.code(keys[mid]), z) == cell) l = mid + 1;
+                else hi = mid;
+            }
+            return l;
+        }
+
+        /**
+         * Assigns the hosts of one tile to groups numbered from {@code next}: one per
+         * registrable domain for the largest domains, one per sub-cell for the rest.
+         */
+        private int groupTile(int lo, int hi, int z, int next) {
+            Map<String, Integer> sizes = new HashMap<>();
+            for (int k = lo; k < hi; k++) sizes.merge(DomainNames.registrableDomain(graph.host(MortonOrder.index(keys[k]))), 1, Integer::sum);
+
+            Map<String, Integer> ids = new HashMap<>();
+            if (sizes.size() <= MAX_GROUPS_PER_TILE) {
+                for (String domain : sizes.keySet()) ids.put(domain, -1);
+            } else {
+                List<Map.Entry<String, Integer>> largest = new ArrayList<>(sizes.entrySet());
+                largest.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+                for (int i = 0; i < MAX_GROUPS_PER_TILE; i++) ids.put(largest.get(i).getKey(), -1);
+            }
+            Map<Integer, Integer> overflow = new HashMap<>();
+
+            int first = next;
+            for (int k = lo; k < hi; k++) {
+                int v = MortonOrder.index(keys[k]);
+                String domain = DomainNames.registrableDomain(graph.host(v));
+                Integer id = ids.get(domain);
+                int g;
+                if (id != null) {
+                    if (id < 0) {
+                        ids.put(domain, g = next++);
+                        groupLabel[g] = domain;
+                    } else {
+                        g = id;
+                    }
+                } else {
+                    int sub = MortonOrder.cell(MortonOrder.code(keys[k]), Math.min(z + OVERFLOW_LEVELS, MortonOrder.BITS));
+                    Integer o = overflow.get(sub);
+                    if (o == null) {
+                        overflow.put(sub, g = next++);
+                        groupLabel[g] = "";
+                    } else {
+                        g = o;
+                    }
+                }
+                group[v] = g;
+            }
+            Arrays.fill(groupX, first, next, 0);
+            Arrays.fill(groupY, first, next, 0);
+            Arrays.fill(groupSize, first, next, 0);
+            for (int k = lo; k < hi; k++) {
+                int v = MortonOrder.index(keys[k]);
+                groupX[group[v]] += xs[v];
+                groupY[group[v]] += ys[v];
+                groupSize[group[v]]++;
+            }
+            for (int g = first; g < next; g++) {
+                groupX[g] /= groupSize[g];
+                groupY[g] /= groupSize[g];
+            }
+            return next;
+        }
+
+        private void writeGroups(Writer out, int lo, int hi, int firstGroup, int endGroup) throws IOException {
+            StringBuilder sb = new StringBuilder(256);
+            out.write("n:[");
+            for (int g = firstGroup; g < endGroup; g++) {
+                sb.setLength(0);
+                if (g > firstGroup) sb.append(',');
+                appendPoint(sb, groupX[g], groupY[g]).append(',').append(groupSize[g]);
+                out.append(sb);
+            }
+            out.write("],l:[");
+            for (int g = firstGroup; g < endGroup; g++) {
+                sb.setLength(0);
+                if (g > firstGroup) sb.append(',');
+                appendString(sb, groupLabel[g]);
+                out.append(sb);
+            }
+
+            // Links between groups, summed; only the heaviest are kept
+            Map<Long, Integer> links = new HashMap<>();
+            for (int k = lo; k < hi; k++) {
+                int v = MortonOrder.index(keys[k]);
+                for (int e = graph.outStart(v); e < graph.outEnd(v); e++) {
+                    int a = group[v], b = group[graph.target(e)];
+                    if (a != b) links.merge(((long) a << 32) | b, graph.linkCount(e), Integer::sum);
+                }
+            }
+            List<Map.Entry<Long, Integer>> kept = new ArrayList<>(links.entrySet());
+            if (kept.size() > MAX_EDGES_PER_TILE) {
+                kept.sort(Map.Entry.<Long, Integer>comparingByValue().reversed());
+                kept = kept.subList(0, MAX_EDGES_PER_TILE);
+            }
+            out.write("],e:[");
+            boolean first = true;
+            for (Map.Entry<Long, Integer> link : kept) {
+                int a = (int) (link.getKey() >>> 32), b = (int) (long) link.getKey();
+                sb.setLength(0);
+                if (!first) sb.append(',');
+                appendPoint(sb, groupX[a], groupY[a]).append(',');
+                appendPoint(sb, groupX[b], groupY[b]).append(',').append(link.getValue());
+                out.append(sb);
+                first = false;
+            }
+            out.write("]");
+        }
+
+        private void writeDetail(Writer out, int lo, int hi) throws IOException {
+            StringBuilder sb = new StringBuilder(256);
+            out.write("n:[");
+            for (int k = lo; k < hi; k++) {
+                int v = MortonOrder.index(keys[k]);
+                sb.setLength(0);
+                if (k > lo) sb.append(',');
+                appendPoint(sb, xs[v], ys[v]).append(",1");
+                out.append(sb);
+            }
+            out.write("],l:[");
+            for (int k = lo; k < hi; k++) {
+                sb.setLength(0);
+                if (k > lo) sb.append(',');
+                appendString(sb, graph.host(MortonOrder.index(keys[k])));
+                out.append(sb);
+            }
+            out.write("],e:[");
+            boolean first = true;
+            for (int k = lo; k < hi; k++) {
+                int v = MortonOrder.index(keys[k]);
+                for (int e = graph.outStart(v); e < graph.outEnd(v); e++) {
+                    int t = graph.target(e);
+                    sb.setLength(0);
+                    if (!first) sb.append(',');
+                    appendPoint(sb, xs[v], ys[v]).append(',');
+                    appendPoint(sb, xs[t], ys[t]).append(',').append(graph.linkCount(e));
+                    out.append(sb);
+                    first = false;
+                }
+            }
+            out.write("]");
+        }
+
+        /** Map coordinates, relative to the top left corner and rounded to a tenth. */
+        private StringBuilder appendPoint(StringBuilder sb, double x, double y) {
+            return sb.append(Math.round((x - x0) * 10) / 10.0).append(',').append(Math.round((y - y0) * 10) / 10.0);
+        }
+
+        private static void appendString(StringBuilder sb, String text) {
+            sb.append('"');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '"' || c == '\\') {
+                    sb.append('\\').append(c);
+                } else if (c < 0x20 || c == '<' || c == '\u2028' || c == '\u2029') {
+                    sb.append(String.format("\\u%04x", (int) c));
+                } else {
+                    sb.append(c);
+                }
+            }
+            sb.append('"');
+        }
+    }
+
+    private static final String VIEWER_HEAD = """
+<!DOCTYPE html>
+<html>
+<head>
+<meta charset="UTF-8">
+<title>Graph Export</title>
+<style>
+html,body { height:100%; margin:0; background:#111; overflow:hidden; }
+canvas { display:block; width:100%; height:100%; cursor:grab; touch-action:none; }
+#label { position:absolute; display:none; background:rgba(0,0,0,0.85); color:#ff4444; padding:3px 6px;
+  border-radius:4px; font:12px sans-serif; white-space:nowrap; pointer-events:none; }
+#status { position:absolute; left:8px; bottom:6px; color:#777; font:11px sans-serif; }
+</style>
+</head>
+<body>
+<canvas id="map"></canvas>
+<div id="label"></div>
+<div id="status"></div>
+<script>
+""";
+
+    private static final String VIEWER_SCRIPT = """
+const TILE_PX = 512, CACHE = 1024;
+const unit = META.extent / 32767;
+const tiles = new Map(); // "z/x/y" -> tile data, null while loading, false if there is none
+const canvas = document.getElementById('map'), ctx = canvas.getContext('2d');
+const label = document.getElementById('label'), statusBar = document.getElementById('status');
+let scale = 1, panX = 0, panY = 0, queued = false, drawn = [], hover = null;
+let isPanning = false, startX = 0, startY = 0, startPanX = 0, startPanY = 0;
+
+function tileSize(z) { return unit * Math.pow(2, 15 - z); }
+
+window.tile = (z, x, y, data) => { tiles.set(z + '/' + x + '/' + y, data); redraw(); };
+
+function request(z, x, y) {
+  const key = z + '/' + x + '/' + y;
+  if (tiles.has(key)) return;
+  tiles.set(key, null);
+  const s = document.createElement('script');
+  s.src = META.tiles + '/' + z + '/' + x + '_' + y + '.js';
+  s.onload = () => s.remove();
+  s.onerror = () => { tiles.set(key, false); s.remove(); };
+  document.head.appendChild(s);
+}
+
+function evict(visible) {
+  if (tiles.size <= CACHE) return;
+  for (const key of tiles.keys()) {
+    if (tiles.size <= CACHE / 2) break;
+    if (!visible.has(key) && tiles.get(key) !== null) tiles.delete(key);
+  }
+}
+
+function fit() {
+  scale = Math.min(innerWidth, innerHeight) / META.extent;
+  panX = (innerWidth - META.extent * scale) / 2;
+  panY = (innerHeight - META.extent * scale) / 2;
+}
+
+function redraw() {
+  if (!queued) { queued = true; requestAnimationFrame(draw); }
+}
+
+function draw() {
+  queued = false;
+  const dpr = window.devicePixelRatio || 1;
+  if (canvas.width !== innerWidth * dpr || canvas.height !== innerHeight * dpr) {
+    canvas.width = innerWidth * dpr;
+    canvas.height = innerHeight * dpr;
+  }
+  ctx.setTransform(1, 0, 0, 1, 0, 0);
+  ctx.fillStyle = '#111';
+  ctx.fillRect(0, 0, canvas.width, canvas.height);
+  ctx.setTransform(scale * dpr, 0, 0, scale * dpr, panX * dpr, panY * dpr);
+
+  const z = Math.max(0, Math.min(META.maxZoom, Math.round(Math.log2(tileSize(0) * scale / TILE_PX))));
+  const size = tileSize(z), limit = Math.pow(2, z) - 1;
+  const wx0 = -panX / scale, wy0 = -panY / scale;
+  const tx0 = Math.max(0, Math.floor(wx0 / size)), ty0 = Math.max(0, Math.floor(wy0 / size));
+  const tx1 = Math.min(limit, Math.floor((wx0 + innerWidth / scale) / size));
+  const ty1 = Math.min(limit, Math.floor((wy0 + innerHeight / scale) / size));
+
+  // Show the closest loaded ancestor while a tile is still on its way
+  const visible = new Set(), shown = new Set();
+  drawn = [];
+  for (let ty = ty0; ty <= ty1; ty++) {
+    for (let tx = tx0; tx <= tx1; tx++) {
+      request(z, tx, ty);
+      visible.add(z + '/' + tx + '/' + ty);
+      for (let d = z, x = tx, y = ty; d >= 0; d--, x >>= 1, y >>= 1) {
+        const key = d + '/' + x + '/' + y, data = tiles.get(key);
+        if (data === null || data === undefined) continue;
+        if (data && !shown.has(key)) { shown.add(key); drawn.push(data); }
+        break;
+      }
+    }
+  }
+  evict(visible);
+
+  ctx.strokeStyle = 'rgba(120,120,120,0.6)';
+  for (const t of drawn) {
+    for (let i = 0; i < t.e.length; i += 5) {
+      ctx.lineWidth = Math.min(6, 1 + Math.log2(t.e[i + 4])) / scale;
+      ctx.beginPath();
+      ctx.moveTo(t.e[i], t.e[i + 1]);
+      ctx.lineTo(t.e[i + 2], t.e[i + 3]);
+      ctx.stroke();
+    }
+  }
+  for (const t of drawn) {
+    for (let i = 0, j = 0; i < t.n.length; i += 3, j++) {
+      const r = radius(t.n[i + 2]) / scale;
+      ctx.fillStyle = t === hover?.tile && j === hover.index ? '#ff4444' : (t.n[i + 2] > 1 ? '#e0a030' : 'red');
+      ctx.beginPath();
+      ctx.arc(t.n[i], t.n[i + 1], r, 0, 2 * Math.PI);
+      ctx.fill();
+    }
+  }
+  statusBar.textContent = META.nodes + ' hosts, ' + META.edges + ' links, zoom ' + z + '/' + META.maxZoom;
+}
+
+function radius(count) { return Math.min(30, 3 + 2 * Math.sqrt(count - 1)); }
+
+function nodeAt(mx, my) {
+  const wx = (mx - panX) / scale, wy = (my - panY) / scale;
+  let best = null, bestD = Infinity;
+  for (const t of drawn) {
+    for (let i = 0, j = 0; i < t.n.length; i += 3, j++) {
+      const dx = t.n[i] - wx, dy = t.n[i + 1] - wy, d = dx * dx + dy * dy;
+      const r = (radius(t.n[i + 2]) + 2) / scale;
+      if (d <= r * r && d < bestD) { best = {tile: t, index: j}; bestD = d; }
+    }
+  }
+  return best;
+}
+
+canvas.addEventListener('wheel', e => {
+  e.preventDefault();
+  const factor = e.deltaY < 0 ? 1.12 : 1 / 1.12;
+  const worldX = (e.clientX - panX) / scale, worldY = (e.clientY - panY) / scale;
+  scale = Math.max(0.2 * innerWidth / META.extent, Math.min(50, scale * factor));
+  panX = e.clientX - worldX * scale;
+  panY = e.clientY - worldY * scale;
+  redraw();
+}, {passive: false});
+
+canvas.addEventListener('mousedown', e => {
+  if (e.button !== 0) return;
+  isPanning = true;
+  startX = e.clientX; startY = e.clientY;
+  startPanX = panX; startPanY = panY;
+  canvas.style.cursor = 'grabbing';
+});
+window.addEventListener('mousemove', e => {
+  if (isPanning) {
+    panX = startPanX + (e.clientX - startX);
+    panY = startPanY + (e.clientY - startY);
+    redraw();
+    return;
+  }
+  const h = nodeAt(e.clientX, e.clientY);
+  if ((h && hover && h.tile === hover.tile && h.index === hover.index) || (!h && !hover)) {
+    if (h) { label.style.left = (e.clientX + 15) + 'px'; label.style.top = (e.clientY - 22) + 'px'; }
+    return;
+  }
+  hover = h;
+  label.style.display = h ? 'block' : 'none';
+  if (h) {
+    const count = h.tile.n[3 * h.index + 2], name = h.tile.l[h.index];
+    label.textContent = count > 1 ? (name || 'other') + ' (' + count + ' hosts)' : name;
+    label.style.left = (e.clientX + 15) + 'px';
+    label.style.top = (e.clientY - 22) + 'px';
+  }
+  redraw();
+});
+window.addEventListener('mouseup', () => {
+  isPanning = false;
+  canvas.style.cursor = 'grab';
+});
+canvas.addEventListener('dblclick', () => { fit(); redraw(); });
+window.addEventListener('resize', redraw);
+fit();
+redraw();
+</script>
+</body>
+</html>
+""";
+}
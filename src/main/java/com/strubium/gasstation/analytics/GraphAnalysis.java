@@ -0,0 +1,150 @@
+package com.strubium.gasstation.analytics;
+
+import com.strubium.gasstation.graph.HostGraphSnapshot;
+import com.strubium.gasstation.logger.ProjectLogger;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+/**
+ * Per-host statistics of a crawled graph: PageRank, strongly connected component and
+ * in/out degree, all indexed by the snapshot's vertex ids.
+ * <p>
+ * Degrees count distinct other hosts, a host linking to itself does not count.
+ */
+public final class GraphAnalysis {
+    private static final int TOP_HOSTS = 10;
+
+    private final HostGraphSnapshot graph;
+    private final double[] pageRank;
+    private final StronglyConnectedComponents components;
+    private final int[] inDegree;
+    private final int[] outDegree;
+
+    private GraphAnalysis(HostGraphSnapshot graph, double[] pageRank, StronglyConnectedComponents components,
+                          int[] inDegree, int[] outDegree) {
+        this.graph = graph;
+        this.pageRank = pageRank;
+        this.components = components;
+        this.inDegree = inDegree;
+        this.outDegree = outDegree;
+    }
+
+    public static GraphAnalysis run(HostGraphSnapshot graph) {
+        long started = System.nanoTime();
+        int n = graph.vertexCount();
+        int[] inDegree = new int[n], outDegree = new int[n];
+        for (int v = 0; v < n; v++) {
+            for (int e = graph.outStart(v); e < graph.outEnd(v); e++) {
+                int t = graph.target(e);
+                if (t == v) continue;
+                outDegree[v]++;
+                inDegree[t]++;
+            }
+        }
+        double[] pageRank = PageRank.compute(graph);
+        StronglyConnectedComponents components = StronglyConnectedComponents.compute(graph);
+        GraphAnalysis analysis = new GraphAnalysis(graph, pageRank, components, inDegree, outDegree);
+        ProjectLogger.LOGGER.info("Analysed " + n + " hosts and " + graph.edgeCount() + " edges in "
+                + (System.nanoTime() - started) / 1_000_000 + " ms");
+        return analysis;
+    }
+
+    public HostGraphSnapshot graph() {
+        return graph;
+    }
+
+    public double pageRank(int v) {
+        return pageRank[v];
+    }
+
+    public int component(int v) {
+        return components.componentOf(v);
+    }
+
+    public StronglyConnectedComponents components() {
+        return components;
+    }
+
+    public int inDegree(int v) {
+        return inDegree[v];
+    }
+
+    public int outDegree(int v) {
+        return outDegree[v];
+    }
+
+    /**
+     * Hosts per degree range: bucket 0 counts degree 0, bucket {@code b} degrees from
+     * {@code 2^(b-1)} to {@code 2^b - 1}.
+     */
+    public static long[] degreeHistogram(int[] degrees) {
+        long[] buckets = new long[33];
+        int used = 1;
+        for (int d : degrees) {
+            int b = 32 - Integer.numberOfLeadingZeros(d);
+            buckets[b]++;
+            used = Math.max(used, b + 1);
+        }
+        return Arrays.copyOf(buckets, used);
+    }
+
+    public long[] inDegreeHistogram() {
+        return degreeHistogram(inDegree);
+    }
+
+    public long[] outDegreeHistogram() {
+        return degreeHistogram(outDegree);
+    }
+
+    /** The {@code limit} vertices with the highest PageRank, best first. */
+    public int[] topByPageRank(int limit) {
+        PriorityQueue<Integer> top = new PriorityQueue<>((a, b) -> Double.compare(pageRank[a], pageRank[b]));
+        for (int v = 0; v < pageRank.length; v++) {
+            if (top.size() < limit) {
+                top.add(v);
+            } else if (pageRank[v] > pageRank[top.peek()]) {
+                top.poll();
+                top.add(v);
+            }
+        }
+        int[] out = new int[top.size()];
+        for (int i = out.length - 1; i >= 0; i--) out[i] = top.poll();
+        return out;
+    }
+
+    /** Logs the component structure, degree distributions and top hosts. */
+    public void logSummary() {
+        int n = graph.vertexCount();
+        if (n == 0) return;
+        int largest = components.largest();
+        ProjectLogger.LOGGER.info(String.format(Locale.ROOT, "%d strongly connected components, largest holds %d hosts (%.1f%%)",
+                components.count(), components.size(largest), 100.0 * components.size(largest) / n));
+        ProjectLogger.LOGGER.info("In-degree  " + describe(inDegree, inDegreeHistogram()));
+        ProjectLogger.LOGGER.info("Out-degree " + describe(outDegree, outDegreeHistogram()));
+        StringBuilder line = new StringBuilder("Top hosts by PageRank:");
+        for (int v : topByPageRank(TOP_HOSTS)) {
+            line.append(String.format(Locale.ROOT, " %s (%.4f)", graph.host(v), pageRank[v]));
+        }
+        ProjectLogger.LOGGER.info(line.toString());
+    }
+
+    private static String describe(int[] degrees, long[] histogram) {
+        long sum = 0;
+        int max = 0;
+        for (int d : degrees) {
+            sum += d;
+            max = Math.max(max, d);
+        }
+        StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "mean %.2f, max %d |", (double) sum / degrees.length, max));
+        for (int b = 0; b < histogram.length; b++) {
+            if (histogram[b] == 0) continue;
+            line.append(' ');
+            if (b <= 1) line.append(b);
+            else line.append(1 << (b - 1)).append('-').append((1L << b) - 1);
+            line.append(':').append(histogram[b]);
+        }
+        return line.toString();
+    }
+}
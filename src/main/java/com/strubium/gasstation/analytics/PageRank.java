@@ -0,0 +1,98 @@
+package com.strubium.gasstation.analytics;
+
+import com.strubium.gasstation.graph.HostGraphSnapshot;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Parallel PageRank by power iteration over a {@link HostGraphSnapshot}.
+ * <p>
+ * Works in pull form on the transposed graph: every vertex sums the shares of the hosts
+ * linking to it, so each iteration is a race-free pass over chunks of vertices with only
+ * primitive arrays involved. Links of a host to itself are ignored and hosts without
+ * outgoing links spread their rank evenly over all hosts. Ranks sum to 1.
+ */
+public final class PageRank {
+    public static final double DAMPING = 0.85;
+    public static final int MAX_ITERATIONS = 100;
+    // Total absolute change of all ranks at which the iteration stops
+    public static final double TOLERANCE = 1e-6;
+
+    private PageRank() {
+    }
+
+    public static double[] compute(HostGraphSnapshot graph) {
+        return compute(graph, DAMPING, MAX_ITERATIONS, TOLERANCE);
+    }
+
+    public static double[] compute(HostGraphSnapshot graph, double damping, int maxIterations, double tolerance) {
+        int n = graph.vertexCount();
+        if (n == 0) return new double[0];
+
+        // Transpose without self-links
+        int[] outDegree = new int[n];
+        int[] inStart = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            for (int e = graph.outStart(v); e < graph.outEnd(v); e++) {
+                int t = graph.target(e);
+                if (t == v) continue;
+                outDegree[v]++;
+                inStart[t + 1]++;
+            }
+        }
+        for (int v = 0; v < n; v++) inStart[v + 1] += inStart[v];
+        int[] inSource = new int[inStart[n]];
+        int[] fill = new int[n];
+        System.arraycopy(inStart, 0, fill, 0, n);
+        for (int v = 0; v < n; v++) {
+            for (int e = graph.outStart(v); e < graph.outEnd(v); e++) {
+                int t = graph.target(e);
+                if (t != v) inSource[fill[t]++] = v;
+            }
+        }
+
+        int chunks = Math.max(1, Math.min(n / 1024, Runtime.getRuntime().availableProcessors() * 8));
+        double[] chunkSum = new double[chunks];
+        double[] rank = new double[n], next = new double[n], share = new double[n];
+        Arrays.fill(rank, 1.0 / n);
+
+        for (int iteration = 0; iteration < maxIterations; iteration++) {
+            double[] current = rank;
+            IntStream.range(0, chunks).parallel().forEach(c -> {
+                double dangling = 0;
+                for (int v = (int) ((long) n * c / chunks), to = (int) ((long) n * (c + 1) / chunks); v < to; v++) {
+                    if (outDegree[v] == 0) {
+                        dangling += current[v];
+                        share[v] = 0;
+                    } else {
+                        share[v] = current[v] / outDegree[v];
+                    }
+                }
+                chunkSum[c] = dangling;
+            });
+            double dangling = 0;
+            for (double s : chunkSum) dangling += s;
+            double base = (1 - damping) / n + damping * dangling / n;
+
+            double[] out = next;
+            IntStream.range(0, chunks).parallel().forEach(c -> {
+                double change = 0;
+                for (int v = (int) ((long) n * c / chunks), to = (int) ((long) n * (c + 1) / chunks); v < to; v++) {
+                    double sum = 0;
+                    for (int i = inStart[v]; i < inStart[v + 1]; i++) sum += share[inSource[i]];
+                    out[v] = base + damping * sum;
+                    change += Math.abs(out[v] - current[v]);
+                }
+                chunkSum[c] = change;
+            });
+            next = rank;
+            rank = out;
+
+            double change = 0;
+            for (double s : chunkSum) change += s;
+            if (change < tolerance) break;
+        }
+        return rank;
+    }
+}
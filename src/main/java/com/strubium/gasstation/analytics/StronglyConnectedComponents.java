@@ -0,0 +1,100 @@
+package com.strubium.gasstation.analytics;
+
+import com.strubium.gasstation.graph.HostGraphSnapshot;
+
+import java.util.Arrays;
+
+/**
+ * Strongly connected components of a {@link HostGraphSnapshot}, by Tarjan's algorithm.
+ * <p>
+ * The depth-first search runs on explicit int stacks instead of recursion, so long link
+ * chains cannot overflow the thread stack. It is a single linear pass over the edges
+ * and allocates a handful of int arrays of vertex count length.
+ */
+public final class StronglyConnectedComponents {
+    private final int[] component;
+    private final int[] sizes;
+
+    private StronglyConnectedComponents(int[] component, int[] sizes) {
+        this.component = component;
+        this.sizes = sizes;
+    }
+
+    public static StronglyConnectedComponents compute(HostGraphSnapshot graph) {
+        int n = graph.vertexCount();
+        int[] index = new int[n];
+        int[] low = new int[n];
+        int[] component = new int[n];
+        Arrays.fill(index, -1);
+        Arrays.fill(component, -1);
+        int[] sizes = new int[n];
+        // Tarjan's vertex stack, and the DFS path with each vertex's next edge
+        int[] stack = new int[n];
+        int[] pathVertex = new int[n];
+        int[] pathEdge = new int[n];
+        int counter = 0, top = 0, components = 0;
+
+        for (int root = 0; root < n; root++) {
+            if (index[root] >= 0) continue;
+            int depth = 0;
+            pathVertex[0] = root;
+            pathEdge[0] = graph.outStart(root);
+            index[root] = low[root] = counter++;
+            stack[top++] = root;
+
+            while (depth >= 0) {
+                int v = pathVertex[depth];
+                if (pathEdge[depth] < graph.outEnd(v)) {
+                    int w = graph.target(pathEdge[depth]++);
+                    if (index[w] < 0) {
+                        index[w] = low[w] = counter++;
+                        stack[top++] = w;
+                        depth++;
+                        pathVertex[depth] = w;
+                        pathEdge[depth] = graph.outStart(w);
+                    } else if (component[w] < 0) {
+                        // Visited but not yet in a component means it is still on the stack
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                    continue;
+                }
+                if (low[v] == index[v]) {
+                    int w;
+                    do {
+                        w = stack[--top];
+                        component[w] = components;
+                        sizes[components]++;
+                    } while (w != v);
+                    components++;
+                }
+                if (--depth >= 0) {
+                    int parent = pathVertex[depth];
+                    low[parent] = Math.min(low[parent], low[v]);
+                }
+            }
+        }
+        return new StronglyConnectedComponents(component, Arrays.copyOf(sizes, components));
+    }
+
+    /** Component id of vertex {@code v}, between 0 and {@link #count()}. */
+    public int componentOf(int v) {
+        return component[v];
+    }
+
+    public int count() {
+        return sizes.length;
+    }
+
+    public int size(int component) {
+        return sizes[component];
+    }
+
+    /** Id of the largest component, -1 for an empty graph. */
+    public int largest() {
+        int best = -1;
+        for (int c = 0; c < sizes.length; c++) {
+            if (best < 0 || sizes[c] > sizes[best]) best = c;
+        }
+        return best;
+    }
+}
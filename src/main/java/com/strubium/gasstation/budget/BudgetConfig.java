@@ -0,0 +1,17 @@
+package com.strubium.gasstation.budget;
+
+/**
+ * Limits enforced by {@link CrawlBudget}. A value of 0 turns that limit off.
+ *
+ * @param maxPages          URLs admitted for crawling in total
+ * @param maxPagesPerHost   URLs admitted per host
+ * @param maxRuntimeSeconds wall-clock time before the crawl is drained
+ * @param maxHeapFraction   share of the maximum heap still in use after a collection
+ *                          that drains the crawl, so there is room left to export
+ */
+public record BudgetConfig(long maxPages, int maxPagesPerHost, long maxRuntimeSeconds, double maxHeapFraction) {
+
+    public static BudgetConfig defaults() {
+        return new BudgetConfig(0, 0, 0, 0.85);
+    }
+}
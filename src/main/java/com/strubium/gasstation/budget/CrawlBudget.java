@@ -0,0 +1,127 @@
+package com.strubium.gasstation.budget;
+
+import com.strubium.gasstation.frontier.Frontier;
+import com.strubium.gasstation.logger.ProjectLogger;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a crawl inside its {@link BudgetConfig}.
+ * <p>
+ * Page limits are quotas charged at admission: once a host or the whole crawl has
+ * used its share, further URLs are turned away without being marked visited, and the
+ * crawl ends by itself when the admitted work is done. The runtime and heap limits are
+ * checked once a second. When one trips, the frontier is drained: nothing new is
+ * admitted or handed out, running fetches finish, and whatever is still queued stays
+ * in the final checkpoint for a later {@code --resume}.
+ */
+public class CrawlBudget {
+    private final BudgetConfig config;
+    private volatile long deadlineNanos;
+    private final AtomicLong admitted = new AtomicLong();
+    private final ConcurrentHashMap<String, AtomicInteger> perHost = new ConcurrentHashMap<>();
+    private volatile String stopReason;
+    private ScheduledExecutorService timer;
+
+    public CrawlBudget(BudgetConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Charges one page to the crawl and to {@code host}.
+     *
+     * @return false if either is out of pages, nothing is charged then
+     */
+    public boolean tryAdmit(String host) {
+        long max = config.maxPages();
+        if (max > 0 && admitted.incrementAndGet() > max) {
+            admitted.decrementAndGet();
+            return false;
+        }
+        if (config.maxPagesPerHost() > 0) {
+            AtomicInteger count = perHost.computeIfAbsent(host, h -> new AtomicInteger());
+            if (count.incrementAndGet() > config.maxPagesPerHost()) {
+                count.decrementAndGet();
+                if (max > 0) admitted.decrementAndGet();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Gives back a page charged by {@link #tryAdmit(String)} that was not queued after all. */
+    public void refund(String host) {
+        if (config.maxPages() > 0) admitted.decrementAndGet();
+        if (config.maxPagesPerHost() > 0) {
+            AtomicInteger count = perHost.get(host);
+            if (count != null) count.decrementAndGet();
+        }
+    }
+
+    /** Drains {@code frontier} as soon as the runtime or heap limit is hit. The runtime counts from here. */
+    public void start(Frontier frontier) {
+        if (config.maxRuntimeSeconds() <= 0 && config.maxHeapFraction() <= 0) return;
+        deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.maxRuntimeSeconds());
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "budget");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(() -> {
+            String reason = check();
+            if (reason != null && stopReason == null) {
+                stopReason = reason;
+                ProjectLogger.LOGGER.warn("Crawl budget exhausted (" + reason + "), draining");
+                frontier.drain();
+                timer.shutdown();
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    public void stop() {
+        if (timer != null) timer.shutdownNow();
+    }
+
+    /** Why the crawl was drained, or null if it was not. */
+    public String stopReason() {
+        return stopReason;
+    }
+
+    private String check() {
+        if (config.maxRuntimeSeconds() > 0 && System.nanoTime() - deadlineNanos >= 0) return "runtime limit of " + config.maxRuntimeSeconds() + " s";
+        if (config.maxHeapFraction() > 0) {
+            double used = heapUsedAfterGc();
+            if (used > config.maxHeapFraction()) {
+                return String.format("heap %.0f%% used after GC, limit %.0f%%", used * 100, config.maxHeapFraction() * 100);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Share of the heap in use as of each pool's last collection, summed over the pools
+     * with a fixed maximum. Usage sampled between collections includes garbage and would
+     * trip the limit far too early. A single pool is no measure either: survivor spaces
+     * are routinely full right after a young collection.
+     */
+    private static double heapUsedAfterGc() {
+        long used = 0, max = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP || !pool.isCollectionUsageThresholdSupported()) continue;
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage == null || usage.getMax() <= 0) continue;
+            used += usage.getUsed();
+            max += usage.getMax();
+        }
+        return max == 0 ? 0 : (double) used / max;
+    }
+}
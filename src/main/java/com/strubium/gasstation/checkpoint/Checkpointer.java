@@ -0,0 +1,215 @@
+package com.strubium.gasstation.checkpoint;
+
+import com.strubium.gasstation.CrawlerManager;
+import com.strubium.gasstation.frontier.CrawlTask;
+import com.strubium.gasstation.frontier.Frontier;
+import com.strubium.gasstation.graph.GraphFile;
+import com.strubium.gasstation.graph.HostGraphSnapshot;
+import com.strubium.gasstation.io.BinaryWriter;
+import com.strubium.gasstation.io.MappedReader;
+import com.strubium.gasstation.logger.ProjectLogger;
+import com.strubium.gasstation.visited.BloomVisitedSet;
+import com.strubium.gasstation.visited.VisitedSet;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically persists crawl state so a crashed crawl can be resumed.
+ * <p>
+ * The checkpoint directory holds:
+ * <ul>
+ *     <li>{@code visited.log}, the fingerprint of every visited URL, written out at each checkpoint</li>
+ *     <li>{@code graph-N.bin}, the host graph at checkpoint N ({@link GraphFile})</li>
+ *     <li>{@code frontier-N.bin}, every task queued or in flight at checkpoint N</li>
+ *     <li>{@code checkpoint.meta}, the commit record naming N and the visited log length</li>
+ * </ul>
+ * The manifest is replaced atomically after the other files are written, so a crash
+ * mid-checkpoint leaves the previous checkpoint intact. On resume the visited log is
+ * cut back to the recorded length: URLs logged after that point were never part of a
+ * frontier snapshot and would otherwise be lost for good. The length and the graph
+ * are read while the frontier is held still for its copy, see
+ * {@link Frontier#snapshotTasks(Runnable)}. Pages add their links as their task
+ * completes, so the graph holds the links of the finished pages only, and the pages
+ * in flight, fetched again on resume, do not count them twice.
+ */
+public class Checkpointer implements Closeable {
+    private static final int MAGIC = 0x494D434B; // "IMCK"
+    private static final int VERSION = 2;
+    private static final String MANIFEST = "checkpoint.meta";
+    private static final String VISITED = "visited.log";
+
+    private final Path dir;
+    private final CrawlerManager manager;
+    private final Frontier frontier;
+    private VisitedLog visitedLog;
+    private long generation;
+    private long visitedBase;
+    private ScheduledExecutorService timer;
+
+    public Checkpointer(Path dir, CrawlerManager manager, Frontier frontier) {
+        this.dir = dir;
+        this.manager = manager;
+        this.frontier = frontier;
+    }
+
+    /**
+     * Loads the last checkpoint in the directory into the manager and frontier,
+     * then starts logging on top of it.
+     *
+     * @return false if there is no checkpoint to resume from
+     */
+    public boolean restore() throws IOException {
+        Path manifest = dir.resolve(MANIFEST);
+        if (!Files.exists(manifest)) return false;
+
+        long visitedLength;
+        try (MappedReader in = new MappedReader(manifest)) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a checkpoint manifest: " + manifest);
+            int version = in.readVarInt();
+            if (version != VERSION) throw new IOException("Unsupported checkpoint version " + version);
+            generation = in.readVarLong();
+            visitedLength = in.readVarLong();
+        }
+        long started = System.nanoTime();
+
+        Path visitedFile = dir.resolve(VISITED);
+        try (FileChannel channel = FileChannel.open(visitedFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (channel.size() < visitedLength) throw new IOException("Visited log is shorter than the checkpoint says");
+            channel.truncate(visitedLength);
+        }
+        try (MappedReader in = new MappedReader(visitedFile)) {
+            while (in.hasRemaining()) manager.restoreVisited(in.readLong());
+        }
+
+        HostGraphSnapshot graph = GraphFile.read(dir.resolve("graph-" + generation + ".bin"));
+        manager.getGraph().merge(graph);
+
+        int tasks = 0;
+        try (MappedReader in = new MappedReader(dir.resolve("frontier-" + generation + ".bin"))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a frontier file");
+            int count = in.readVarInt();
+            for (int i = 0; i < count; i++, tasks++) {
+                frontier.restore(new CrawlTask(in.readString(), in.readString(), in.readVarInt()));
+            }
+        }
+
+        visitedBase = visitedLength;
+        visitedLog = new VisitedLog(visitedFile);
+        manager.setVisitedLog(visitedLog);
+        ProjectLogger.LOGGER.info("Resumed checkpoint " + generation + ": " + manager.getVisited().size() + " visited, "
+                + graph.vertexCount() + " hosts, " + graph.edgeCount() + " edges, " + tasks + " pending tasks in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms");
+        return true;
+    }
+
+    /**
+     * Clears any previous checkpoint and starts logging a fresh crawl.
+     */
+    public void reset() throws IOException {
+        Files.createDirectories(dir);
+        try (var files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                String name = p.getFileName().toString();
+                if (name.equals(MANIFEST) || name.equals(VISITED) || name.matches("(graph|frontier)-\\d+\\.bin(\\.tmp)?")) {
+                    Files.delete(p);
+                }
+            }
+        }
+        generation = 0;
+        visitedBase = 0;
+        visitedLog = new VisitedLog(dir.resolve(VISITED));
+        manager.setVisitedLog(visitedLog);
+    }
+
+    /** Checkpoints every {@code intervalSeconds} in the background. */
+    public void start(long intervalSeconds) {
+        if (intervalSeconds <= 0) throw new IllegalArgumentException("Checkpoint interval must be positive: " + intervalSeconds);
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "checkpoint");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint();
+            } catch (Exception e) {
+                ProjectLogger.LOGGER.error("Checkpoint failed", e);
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Writes a new checkpoint and drops the previous one.
+     */
+    public synchronized void checkpoint() throws IOException {
+        long started = System.nanoTime();
+
+        // Log length, graph and frontier copy are taken at the same instant, see the class comment
+        long[] sealed = new long[1];
+        HostGraphSnapshot[] graphs = new HostGraphSnapshot[1];
+        List<CrawlTask> tasks = frontier.snapshotTasks(() -> {
+            sealed[0] = visitedLog.seal();
+            graphs[0] = manager.getGraph().snapshot();
+        });
+        long visitedLength = visitedBase + sealed[0];
+        visitedLog.flush();
+        HostGraphSnapshot graph = graphs[0];
+
+        long next = generation + 1;
+        Path graphFile = dir.resolve("graph-" + next + ".bin");
+        Path frontierFile = dir.resolve("frontier-" + next + ".bin");
+        GraphFile.write(graph, graphFile);
+        try (BinaryWriter out = BinaryWriter.open(frontierFile, false)) {
+            out.writeInt(MAGIC);
+            out.writeVarInt(tasks.size());
+            for (CrawlTask task : tasks) {
+                out.writeString(task.url());
+                out.writeString(task.host());
+                out.writeVarInt(task.depth());
+            }
+        }
+
+        Path tmp = dir.resolve(MANIFEST + ".tmp");
+        try (BinaryWriter out = BinaryWriter.open(tmp, false)) {
+            out.writeInt(MAGIC);
+            out.writeVarInt(VERSION);
+            out.writeVarLong(next);
+            out.writeVarLong(visitedLength);
+        }
+        Files.move(tmp, dir.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Files.deleteIfExists(dir.resolve("graph-" + generation + ".bin"));
+        Files.deleteIfExists(dir.resolve("frontier-" + generation + ".bin"));
+        generation = next;
+
+        VisitedSet visited = manager.getVisited();
+        ProjectLogger.LOGGER.info(String.format("Checkpoint %d: %d hosts, %d pending tasks, %d visited (%.1f B/url) in %d ms",
+                next, graph.vertexCount(), tasks.size(), visited.size(), visited.bytesPerUrl(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)));
+        if (visited instanceof BloomVisitedSet bloom && bloom.isOverCapacity()) {
+            ProjectLogger.LOGGER.warn(String.format("Bloom visited set is over capacity, %.3f%% of new URLs are now "
+                    + "taken for visited, raise --expected-urls", bloom.expectedFalsePositiveRate() * 100));
+        }
+    }
+
+    /**
+     * Stops the timer and writes a final checkpoint.
+     */
+    @Override
+    public void close() throws IOException {
+        if (timer != null) timer.shutdownNow();
+        checkpoint();
+        manager.setVisitedLog(null);
+        visitedLog.close();
+    }
+}
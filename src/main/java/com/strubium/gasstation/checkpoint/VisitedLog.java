@@ -0,0 +1,131 @@
+package com.strubium.gasstation.checkpoint;
+
+import com.strubium.gasstation.io.BinaryWriter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only log of the fingerprint of every URL marked visited, 8 bytes per URL.
+ * <p>
+ * Appends go to one of {@link #STRIPES} small in-memory batches, picked by fingerprint
+ * bits, so concurrent workers rarely share a lock. A full batch is sealed onto a queue.
+ * Callers never touch the file: only {@link #flush()}, run by the {@link Checkpointer},
+ * writes sealed batches out. Until then they stay in memory, about 8 bytes per URL
+ * marked since the last checkpoint.
+ */
+public class VisitedLog implements Closeable {
+    private static final int STRIPES = 64;
+    private static final int BATCH = 512;
+
+    private final BinaryWriter out;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    // Sealed batches in order, and how many records they and everything written before hold
+    private final ReentrantLock sealLock = new ReentrantLock();
+    private final ArrayDeque<Batch> sealed = new ArrayDeque<>();
+    private long sealedRecords;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    VisitedLog(Path file) throws IOException {
+        this.out = BinaryWriter.open(file, true);
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Stripe();
+    }
+
+    public void append(long fingerprint) {
+        Stripe stripe = stripes[(int) (fingerprint >>> 58)];
+        stripe.lock.lock();
+        try {
+            stripe.records[stripe.size++] = fingerprint;
+            if (stripe.size == BATCH) {
+                seal(new Batch(stripe.records, BATCH));
+                stripe.records = new long[BATCH];
+                stripe.size = 0;
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Seals every partly filled batch, without touching the file. Once {@link #flush()}
+     * has run, the records appended before this call lie within the returned length.
+     *
+     * @return bytes this log holds since it was opened, written or not
+     */
+    long seal() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                if (stripe.size == 0) continue;
+                seal(new Batch(stripe.records, stripe.size));
+                stripe.records = new long[BATCH];
+                stripe.size = 0;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        sealLock.lock();
+        try {
+            return sealedRecords * Long.BYTES;
+        } finally {
+            sealLock.unlock();
+        }
+    }
+
+    /**
+     * Writes every sealed batch to the file.
+     *
+     * @return bytes appended by this log since it was opened
+     */
+    long flush() throws IOException {
+        writeLock.lock();
+        try {
+            Batch batch;
+            while ((batch = nextSealed()) != null) {
+                for (int i = 0; i < batch.size; i++) out.writeLong(batch.records[i]);
+            }
+            out.flush();
+            return out.written();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        seal();
+        flush();
+        out.close();
+    }
+
+    private void seal(Batch batch) {
+        sealLock.lock();
+        try {
+            sealed.add(batch);
+            sealedRecords += batch.size;
+        } finally {
+            sealLock.unlock();
+        }
+    }
+
+    private Batch nextSealed() {
+        sealLock.lock();
+        try {
+            return sealed.poll();
+        } finally {
+            sealLock.unlock();
+        }
+    }
+
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        long[] records = new long[BATCH];
+        int size;
+    }
+
+    private record Batch(long[] records, int size) {
+    }
+}
@@ -0,0 +1,154 @@
+package com.strubium.gasstation.dns;
+
+import java.io.Closeable;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shared host name cache in front of a {@link HostResolver}.
+ * <p>
+ * Each host is looked up once per TTL, concurrent callers wait for the same lookup.
+ * Hosts that did not resolve are remembered for {@link DnsConfig#negativeTtlSeconds()},
+ * so their URLs can be dropped at admission instead of each failing on its own.
+ * <p>
+ * Lookups run on a small pool of platform threads: the system resolver blocks in native
+ * code, where it would pin the carrier of a virtual thread. {@link #prefetch(String)}
+ * queues a lookup without waiting for it, so a host's address is usually known by the
+ * time its first URL is fetched.
+ */
+public class DnsCache implements Closeable {
+    private final HostResolver resolver;
+    private final DnsConfig config;
+    private final ConcurrentHashMap<String, Entry> hosts = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor lookups;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public DnsCache(HostResolver resolver, DnsConfig config) {
+        this.resolver = resolver;
+        this.config = config;
+        AtomicInteger threadId = new AtomicInteger();
+        this.lookups = new ThreadPoolExecutor(config.threads(), config.threads(), 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "dns-" + threadId.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        lookups.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Addresses of {@code host}, from the cache or a lookup that this call waits for.
+     *
+     * @throws UnknownHostException if the host does not resolve, now or within the negative TTL
+     */
+    public InetAddress[] resolve(String host) throws UnknownHostException, InterruptedException {
+        try {
+            return entry(host).addresses.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UnknownHostException unknown) throw unknown;
+            throw (UnknownHostException) new UnknownHostException(host).initCause(e.getCause());
+        }
+    }
+
+    /** Starts looking up {@code host} in the background unless it is cached or the lookup queue is long. */
+    public void prefetch(String host) {
+        Entry entry = hosts.get(host);
+        if (entry != null && System.nanoTime() - entry.expiresNanos < 0) return;
+        if (lookups.getQueue().size() >= config.maxQueuedPrefetches()) return;
+        entry(host);
+    }
+
+    /** True if {@code host} failed to resolve and its negative TTL has not run out. */
+    public boolean isDead(String host) {
+        Entry entry = hosts.get(host);
+        return entry != null && entry.dead && System.nanoTime() - entry.expiresNanos < 0;
+    }
+
+    public int size() {
+        return hosts.size();
+    }
+
+    /** One line with cache size, hit rate and failures. */
+    public String summary() {
+        long hit = hits.sum(), total = hit + misses.sum();
+        return String.format("%d hosts cached, %.0f%% hits, %d lookups failed",
+                hosts.size(), total == 0 ? 0 : 100.0 * hit / total, failures.sum());
+    }
+
+    @Override
+    public void close() {
+        lookups.shutdownNow();
+    }
+
+    private Entry entry(String host) {
+        while (true) {
+            long now = System.nanoTime();
+            Entry entry = hosts.get(host);
+            if (entry != null && now - entry.expiresNanos < 0) {
+                hits.increment();
+                return entry;
+            }
+
+            Entry fresh = new Entry();
+            boolean won = entry == null ? hosts.putIfAbsent(host, fresh) == null : hosts.replace(host, entry, fresh);
+            if (!won) continue;
+            misses.increment();
+            try {
+                lookups.execute(() -> lookup(fresh, host));
+            } catch (RejectedExecutionException e) {
+                // Closed, answer without caching
+                hosts.remove(host, fresh);
+                fresh.addresses.completeExceptionally(new UnknownHostException(host));
+            }
+            if (hosts.size() > config.maxHosts()) evict();
+            return fresh;
+        }
+    }
+
+    private void lookup(Entry entry, String host) {
+        try {
+            InetAddress[] addresses = resolver.resolve(host);
+            entry.expiresNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.positiveTtlSeconds());
+            entry.addresses.complete(addresses);
+        } catch (UnknownHostException e) {
+            failures.increment();
+            entry.dead = true;
+            entry.expiresNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.negativeTtlSeconds());
+            entry.addresses.completeExceptionally(e);
+        } catch (RuntimeException e) {
+            // Not a verdict on the host, the next caller looks it up again
+            failures.increment();
+            entry.expiresNanos = System.nanoTime();
+            entry.addresses.completeExceptionally(e);
+        }
+    }
+
+    /** Drops about a tenth of the cache, expired entries first. */
+    private void evict() {
+        int target = config.maxHosts() - config.maxHosts() / 10;
+        long now = System.nanoTime();
+        hosts.values().removeIf(e -> e.addresses.isDone() && now - e.expiresNanos >= 0);
+        for (Iterator<Entry> it = hosts.values().iterator(); hosts.size() > target && it.hasNext(); ) {
+            if (it.next().addresses.isDone()) it.remove();
+        }
+    }
+
+    private static final class Entry {
+        final CompletableFuture<InetAddress[]> addresses = new CompletableFuture<>();
+        // Not expired while the lookup runs
+        volatile long expiresNanos = System.nanoTime() + TimeUnit.DAYS.toNanos(1);
+        volatile boolean dead;
+    }
+}
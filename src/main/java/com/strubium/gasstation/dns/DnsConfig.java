@@ -0,0 +1,17 @@
+package com.strubium.gasstation.dns;
+
+/**
+ * Settings of the {@link DnsCache}.
+ *
+ * @param positiveTtlSeconds  how long resolved addresses are reused
+ * @param negativeTtlSeconds  how long a host that did not resolve is treated as dead
+ * @param maxHosts            hosts kept in the cache before some are dropped
+ * @param threads             concurrent lookups, each one blocks a platform thread
+ * @param maxQueuedPrefetches prefetches waiting for a thread beyond which new ones are skipped
+ */
+public record DnsConfig(long positiveTtlSeconds, long negativeTtlSeconds, int maxHosts, int threads, int maxQueuedPrefetches) {
+
+    public static DnsConfig defaults() {
+        return new DnsConfig(300, 900, 1_000_000, 32, 10_000);
+    }
+}
@@ -0,0 +1,19 @@
+package com.strubium.gasstation.dns;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Looks up the addresses of a host name. {@link #SYSTEM} asks the operating system,
+ * other implementations let crawls and simulations run without a network.
+ * Implementations must be safe to call from several threads.
+ */
+@FunctionalInterface
+public interface HostResolver {
+    HostResolver SYSTEM = InetAddress::getAllByName;
+
+    /**
+     * @throws UnknownHostException if the name does not resolve
+     */
+    InetAddress[] resolve(String host) throws UnknownHostException;
+}
@@ -0,0 +1,19 @@
+package com.strubium.gasstation.extract;
+
+/**
+ * Host name helpers.
+ */
+public final class DomainNames {
+
+    private DomainNames() {
+    }
+
+    /**
+     * The registrable domain of {@code host} by the bundled {@link PublicSuffixList}:
+     * {@code bbc.co.uk} for {@code news.bbc.co.uk}, {@code alice.github.io} for
+     * {@code www.alice.github.io}. IP literals and single-label hosts are returned unchanged.
+     */
+    public static String registrableDomain(String host) {
+        return PublicSuffixList.bundled().registrableDomain(host);
+    }
+}
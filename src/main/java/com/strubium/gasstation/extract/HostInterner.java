@@ -0,0 +1,50 @@
+package com.strubium.gasstation.extract;
+
+/**
+ * Maps host names to the key they are recorded under in the graph, through a bounded
+ * cache.
+ * <p>
+ * The key is the {@link UrlCanonicalizer#canonicalHost canonical host}, or with a
+ * {@link PublicSuffixList} its registrable domain, so {@code en.wikipedia.org} and
+ * {@code de.wikipedia.org} become one vertex. Links mostly point at a few thousand hot
+ * hosts, so a direct-mapped table of recent hosts answers most lookups with one hash
+ * and one {@code equals}. Slots are replaced racily, which is fine because an entry
+ * is immutable and a miss only means computing the key again.
+ */
+public final class HostInterner {
+    public static final int DEFAULT_CACHE_SIZE = 1 << 16;
+
+    private final PublicSuffixList suffixes;
+    private final Entry[] cache;
+    private final int mask;
+
+    /**
+     * @param suffixes  collapses hosts to their registrable domain, null keeps hosts apart
+     * @param cacheSize number of cached hosts, rounded up to a power of two
+     */
+    public HostInterner(PublicSuffixList suffixes, int cacheSize) {
+        this.suffixes = suffixes;
+        int size = Integer.highestOneBit(Math.max(15, cacheSize - 1) << 1);
+        this.cache = new Entry[size];
+        this.mask = size - 1;
+    }
+
+    public HostInterner(PublicSuffixList suffixes) {
+        this(suffixes, DEFAULT_CACHE_SIZE);
+    }
+
+    public String key(String host) {
+        int h = host.hashCode();
+        int slot = (h ^ (h >>> 16)) & mask;
+        Entry entry = cache[slot];
+        if (entry != null && entry.host.equals(host)) return entry.key;
+
+        String key = UrlCanonicalizer.canonicalHost(host);
+        if (suffixes != null) key = suffixes.registrableDomain(key);
+        cache[slot] = new Entry(host, key);
+        return key;
+    }
+
+    private record Entry(String host, String key) {
+    }
+}
@@ -0,0 +1,358 @@
+package com.strubium.gasstation.extract;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Pulls link targets out of an HTML stream without building a DOM.
+ * <p>
+ * A small tokenizer walks the characters once and only looks at the tags the crawler
+ * cares about: {@code a[href]}, {@code link[href]}, {@code meta[http-equiv=refresh]}
+ * and {@code base[href]}, which rebases everything after it. Comments are skipped and
+ * the bodies of {@code script} and {@code style} are treated as raw text, the same way
+ * an HTML parser would. Each worker keeps one instance so its buffers are reused
+ * across pages; an instance must not be shared between threads.
+ */
+public final class LinkExtractor {
+    private static final int MAX_VALUE_LENGTH = 8192;
+
+    private final char[] buf = new char[8192];
+    private final StringBuilder name = new StringBuilder(16);
+    private final StringBuilder value = new StringBuilder(256);
+    private Reader in;
+    private int pos, limit;
+    private int pushback = -1;
+
+    /** Receives every resolved link, in document order. */
+    @FunctionalInterface
+    public interface LinkSink {
+        void link(String absoluteUrl);
+    }
+
+    /**
+     * Reads {@code html} to the end and reports every absolute http(s) link found.
+     *
+     * @param baseUrl URL the document was served from, used to resolve relative links
+     * @return how many links were reported
+     */
+    public int extract(Reader html, String baseUrl, LinkSink sink) throws IOException {
+        UrlResolver resolver = UrlResolver.of(baseUrl);
+        if (resolver == null) return 0;
+
+        in = html;
+        pos = limit = 0;
+        pushback = -1;
+        int found = 0;
+        try {
+            int c;
+            while ((c = next()) >= 0) {
+                if (c != '<') continue;
+                c = next();
+                if (c == '!') {
+                    skipMarkup();
+                } else if (c == '/' || c == '?') {
+                    skipPast('>');
+                } else if (isLetter(c)) {
+                    Tag tag = readTagName(c);
+                    String href = null, httpEquiv = null, content = null;
+                    boolean selfClosing = false;
+
+                    // Attributes
+                    while (true) {
+                        c = skipWhitespace();
+                        if (c < 0 || c == '>') break;
+                        if (c == '/') {
+                            selfClosing = true;
+                            continue;
+                        }
+                        selfClosing = false;
+                        String attr = readAttribute(c, tag.wantsAttributes);
+                        if (attr == null) continue;
+                        switch (attr) {
+                            case "href" -> href = decodeEntities(value);
+                            case "http-equiv" -> httpEquiv = value.toString();
+                            case "content" -> content = decodeEntities(value);
+                            default -> {
+                            }
+                        }
+                    }
+                    // Cut off before its '>', an HTML parser drops such a tag too
+                    if (c < 0) break;
+
+                    String target = switch (tag) {
+                        case A, LINK -> href;
+                        case META -> "refresh".equalsIgnoreCase(httpEquiv) ? refreshUrl(content) : null;
+                        case BASE -> {
+                            String abs = href != null ? resolver.resolve(href) : null;
+                            UrlResolver rebased = abs != null ? UrlResolver.of(abs) : null;
+                            if (rebased != null) resolver = rebased;
+                            yield null;
+                        }
+                        default -> null;
+                    };
+                    if (target != null) {
+                        String abs = resolver.resolve(target);
+                        if (abs != null) {
+                            sink.link(abs);
+                            found++;
+                        }
+                    }
+                    if (tag.rawText != null && !selfClosing) skipRawText(tag.rawText);
+                } else if (c >= 0) {
+                    // Not a tag after all, re-read the character (it may be another '<')
+                    pushback = c;
+                }
+            }
+        } finally {
+            in = null;
+        }
+        return found;
+    }
+
+    private enum Tag {
+        A(true, null), LINK(true, null), META(true, null), BASE(true, null),
+        SCRIPT(false, "script"), STYLE(false, "style"), OTHER(false, null);
+
+        final boolean wantsAttributes;
+        // closing tag name for elements whose body is raw text
+        final String rawText;
+
+        Tag(boolean wantsAttributes, String rawText) {
+            this.wantsAttributes = wantsAttributes;
+            this.rawText = rawText;
+        }
+    }
+
+    private Tag readTagName(int first) throws IOException {
+        name.setLength(0);
+        int c = first;
+        while (c >= 0 && !isWhitespace(c) && c != '>' && c != '/') {
+            if (name.length() < 16) name.append(toLower(c));
+            c = next();
+        }
+        pushback = c;
+        return switch (name.length()) {
+            case 1 -> name.charAt(0) == 'a' ? Tag.A : Tag.OTHER;
+            case 4 -> nameIs("link") ? Tag.LINK : nameIs("meta") ? Tag.META : nameIs("base") ? Tag.BASE : Tag.OTHER;
+            case 5 -> nameIs("style") ? Tag.STYLE : Tag.OTHER;
+            case 6 -> nameIs("script") ? Tag.SCRIPT : Tag.OTHER;
+            default -> Tag.OTHER;
+        };
+    }
+
+    private boolean nameIs(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (name.charAt(i) != s.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads one attribute starting at {@code first}. The value is left in {@link #value}.
+     *
+     * @param keep whether the caller may need the attribute, otherwise it is only skipped
+     * @return the lower-cased name of a wanted attribute, or null
+     */
+    private String readAttribute(int first, boolean keep) throws IOException {
+        name.setLength(0);
+        int c = first;
+        while (c >= 0 && !isWhitespace(c) && c != '=' && c != '>' && c != '/') {
+            if (keep && name.length() < 16) name.append(toLower(c));
+            c = next();
+        }
+        if (isWhitespace(c)) c = skipWhitespace();
+        value.setLength(0);
+        if (c != '=') {
+            pushback = c;
+            return null;
+        }
+
+        String wanted = null;
+        if (keep) {
+            int len = name.length();
+            if (len == 4 && nameIs("href")) wanted = "href";
+            else if (len == 7 && nameIs("content")) wanted = "content";
+            else if (len == 10 && nameIs("http-equiv")) wanted = "http-equiv";
+        }
+
+        c = skipWhitespace();
+        if (c == '"' || c == '\'') {
+            int quote = c;
+            while ((c = next()) >= 0 && c != quote) {
+                if (wanted != null && value.length() < MAX_VALUE_LENGTH) value.append((char) c);
+            }
+        } else {
+            while (c >= 0 && !isWhitespace(c) && c != '>') {
+                if (wanted != null && value.length() < MAX_VALUE_LENGTH) value.append((char) c);
+                c = next();
+            }
+            pushback = c;
+        }
+        return wanted;
+    }
+
+    /** Skips a comment, doctype or CDATA section, the leading "&lt;!" is already consumed. */
+    private void skipMarkup() throws IOException {
+        int c = next();
+        if (c == '-') {
+            c = next();
+            if (c == '-') {
+                // Comment, ends at "-->"
+                int dashes = 0;
+                while ((c = next()) >= 0) {
+                    if (c == '>' && dashes >= 2) return;
+                    dashes = c == '-' ? dashes + 1 : 0;
+                }
+                return;
+            }
+        }
+        if (c != '>') skipPast('>');
+    }
+
+    /** Skips the body of script/style up to and including its closing tag. */
+    private void skipRawText(String closing) throws IOException {
+        int c;
+        while ((c = next()) >= 0) {
+            if (c != '<') continue;
+            if ((c = next()) != '/') {
+                pushback = c;
+                continue;
+            }
+            int i = 0;
+            while (i < closing.length() && toLower(c = next()) == closing.charAt(i)) i++;
+            if (i == closing.length()) {
+                skipPast('>');
+                return;
+            }
+            pushback = c;
+        }
+    }
+
+    private void skipPast(int stop) throws IOException {
+        int c;
+        while ((c = next()) >= 0 && c != stop) {
+            // skip
+        }
+    }
+
+    private int skipWhitespace() throws IOException {
+        int c;
+        while (isWhitespace(c = next())) {
+            // skip
+        }
+        return c;
+    }
+
+    private int next() throws IOException {
+        if (pushback != -1) {
+            int c = pushback;
+            pushback = -1;
+            return c;
+        }
+        if (pos == limit) {
+            int n = in.read(buf, 0, buf.length);
+            if (n <= 0) return -1;
+            pos = 0;
+            limit = n;
+        }
+        return buf[pos++];
+    }
+
+    /** Extracts the target of a meta refresh {@code content} value such as {@code 0; url=/next}. */
+    static String refreshUrl(String content) {
+        if (content == null) return null;
+        int idx = indexOfIgnoreCase(content, "url=");
+        if (idx < 0) return null;
+        String url = content.substring(idx + 4).strip();
+        if (url.length() >= 2 && (url.charAt(0) == '\'' || url.charAt(0) == '"')) {
+            int end = url.indexOf(url.charAt(0), 1);
+            url = url.substring(1, end > 0 ? end : url.length());
+        }
+        return url.isEmpty() ? null : url;
+    }
+
+    /** Decodes the character references a URL in an attribute realistically contains. */
+    static String decodeEntities(CharSequence raw) {
+        int amp = -1;
+        for (int i = 0; i < raw.length(); i++) {
+            if (raw.charAt(i) == '&') {
+                amp = i;
+                break;
+            }
+        }
+        if (amp < 0) return raw.toString();
+
+        StringBuilder out = new StringBuilder(raw.length());
+        out.append(raw, 0, amp);
+        int i = amp, n = raw.length();
+        while (i < n) {
+            char c = raw.charAt(i);
+            int semi = c == '&' ? indexOf(raw, ';', i + 1, Math.min(n, i + 12)) : -1;
+            if (semi < 0) {
+                out.append(c);
+                i++;
+                continue;
+            }
+            String ref = raw.subSequence(i + 1, semi).toString();
+            int cp = switch (ref) {
+                case "amp" -> '&';
+                case "lt" -> '<';
+                case "gt" -> '>';
+                case "quot" -> '"';
+                case "apos" -> '\'';
+                case "nbsp" -> ' ';
+                default -> numericReference(ref);
+            };
+            if (cp < 0) {
+                out.append(c);
+                i++;
+            } else {
+                out.appendCodePoint(cp);
+                i = semi + 1;
+            }
+        }
+        return out.toString();
+    }
+
+    private static int numericReference(String ref) {
+        if (ref.length() < 2 || ref.charAt(0) != '#') return -1;
+        try {
+            int cp = (ref.charAt(1) == 'x' || ref.charAt(1) == 'X')
+                    ? Integer.parseInt(ref.substring(2), 16)
+                    : Integer.parseInt(ref.substring(1));
+            return Character.isValidCodePoint(cp) ? cp : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int indexOf(CharSequence s, char ch, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) == ch) return i;
+        }
+        return -1;
+    }
+
+    private static int indexOfIgnoreCase(String s, String needle) {
+        outer:
+        for (int i = 0, last = s.length() - needle.length(); i <= last; i++) {
+            for (int j = 0; j < needle.length(); j++) {
+                if (toLower(s.charAt(i + j)) != needle.charAt(j)) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f';
+    }
+
+    private static boolean isLetter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static char toLower(int c) {
+        return (char) ((c >= 'A' && c <= 'Z') ? c + 32 : c);
+    }
+}
@@ -0,0 +1,125 @@
+package com.strubium.gasstation.extract;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.IDN;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Registrable domains by the rules of the Public Suffix List (publicsuffix.org).
+ * <p>
+ * Reads the list's own format: one rule per line, {@code *.} wildcards and {@code !}
+ * exceptions, {@code //} comments. Unicode rules are stored in their ASCII form, the
+ * form host names arrive in. A subset of the list is bundled as
+ * {@code public_suffix_list.dat}; the full list can be loaded from a file instead.
+ * Like the list's own algorithm, an unknown top-level label counts as a suffix.
+ */
+public final class PublicSuffixList {
+    public static final String RESOURCE = "/public_suffix_list.dat";
+
+    private static volatile PublicSuffixList bundled;
+
+    private final Set<String> rules = new HashSet<>();
+    // Parents of "*." rules, "ck" for "*.ck"
+    private final Set<String> wildcards = new HashSet<>();
+    private final Set<String> exceptions = new HashSet<>();
+
+    private PublicSuffixList() {
+    }
+
+    /** The list bundled with the crawler, loaded once. */
+    public static PublicSuffixList bundled() {
+        PublicSuffixList list = bundled;
+        if (list != null) return list;
+        synchronized (PublicSuffixList.class) {
+            if (bundled == null) {
+                try (InputStream in = PublicSuffixList.class.getResourceAsStream(RESOURCE)) {
+                    if (in == null) throw new IllegalStateException("Missing resource " + RESOURCE);
+                    bundled = parse(in);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return bundled;
+        }
+    }
+
+    public static PublicSuffixList load(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return parse(in);
+        }
+    }
+
+    public static PublicSuffixList parse(InputStream in) throws IOException {
+        PublicSuffixList list = new PublicSuffixList();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            // A rule is the line's first word
+            int end = 0;
+            while (end < line.length() && !Character.isWhitespace(line.charAt(end))) end++;
+            String rule = line.substring(0, end);
+            if (rule.isEmpty() || rule.startsWith("//")) continue;
+            if (rule.startsWith("!")) {
+                list.exceptions.add(ascii(rule.substring(1)));
+            } else if (rule.startsWith("*.")) {
+                list.wildcards.add(ascii(rule.substring(2)));
+            } else {
+                list.rules.add(ascii(rule));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * The public suffix of {@code host} plus one label, {@code bbc.co.uk} for
+     * {@code news.bbc.co.uk}. IP literals, single labels and hosts that are a public
+     * suffix themselves are returned unchanged.
+     */
+    public String registrableDomain(String host) {
+        if (host.isEmpty() || host.charAt(0) == '[' || isIpv4(host)) return host;
+        int suffix = suffixStart(host);
+        if (suffix <= 0) return host;
+        // suffix - 1 is the dot in front of the suffix
+        return host.substring(host.lastIndexOf('.', suffix - 2) + 1);
+    }
+
+    /** Index where the longest matching public suffix of {@code host} starts. */
+    int suffixStart(String host) {
+        // Candidates from longest to shortest, the first hit is the longest match
+        for (int start = 0; start >= 0; start = next(host, start)) {
+            String candidate = start == 0 ? host : host.substring(start);
+            if (exceptions.contains(candidate)) return next(host, start);
+            if (rules.contains(candidate)) return start;
+            int parent = next(host, start);
+            if (parent >= 0 && wildcards.contains(host.substring(parent))) return start;
+        }
+        // Default rule "*": the last label
+        return host.lastIndexOf('.') + 1;
+    }
+
+    private static int next(String host, int start) {
+        int dot = host.indexOf('.', start);
+        return dot < 0 ? -1 : dot + 1;
+    }
+
+    private static boolean isIpv4(String host) {
+        char last = host.charAt(host.length() - 1);
+        return last >= '0' && last <= '9';
+    }
+
+    private static String ascii(String rule) {
+        for (int i = 0; i < rule.length(); i++) {
+            if (rule.charAt(i) >= 0x80) return IDN.toASCII(rule, IDN.ALLOW_UNASSIGNED).toLowerCase(Locale.ROOT);
+        }
+        return rule.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,157 @@
+package com.strubium.gasstation.extract;
+
+import java.util.Locale;
+
+/**
+ * Canonical form of crawled URLs, the key of the visited set.
+ * <p>
+ * One left-to-right scan finds scheme, host, port and path. The canonical URL is the
+ * lower-cased scheme and host without {@code www.}, a trailing dot, user info or
+ * default port, followed by the path without query, fragment or one trailing slash.
+ * In the path, escapes of unreserved characters are decoded ({@code %7E} is {@code ~})
+ * and the remaining escapes have upper-case hex digits, as RFC 3986 section 6.2.2
+ * prescribes. A URL already in that shape, which is most of them, costs one substring and no other
+ * allocation.
+ */
+public final class UrlCanonicalizer {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private UrlCanonicalizer() {
+    }
+
+    /**
+     * @return the canonical form of {@code url}, or {@code url} itself if it has no authority
+     */
+    public static String canonicalize(String url) {
+        int sep = url.indexOf("://");
+        if (sep <= 0) return url;
+        int n = url.length();
+        int authStart = sep + 3;
+        int authEnd = authStart;
+        while (authEnd < n) {
+            char c = url.charAt(authEnd);
+            if (c == '/' || c == '?' || c == '#') break;
+            authEnd++;
+        }
+        int pathEnd = authEnd;
+        while (pathEnd < n) {
+            char c = url.charAt(pathEnd);
+            if (c == '?' || c == '#') break;
+            pathEnd++;
+        }
+        if (pathEnd > authEnd && url.charAt(pathEnd - 1) == '/') pathEnd--;
+
+        boolean clean = true;
+        for (int i = 0; i < sep && clean; i++) clean = !isUpper(url.charAt(i));
+
+        int hostStart = url.lastIndexOf('@', authEnd - 1) + 1;
+        if (hostStart <= authStart) {
+            hostStart = authStart;
+        } else {
+            clean = false;
+        }
+        int hostEnd = authEnd;
+        if (hostStart < authEnd && url.charAt(hostStart) == '[') {
+            int close = url.indexOf(']', hostStart);
+            if (close >= 0 && close < authEnd) hostEnd = close + 1;
+        } else {
+            for (int i = hostStart; i < authEnd; i++) {
+                char c = url.charAt(i);
+                if (c == ':') {
+                    hostEnd = i;
+                    break;
+                }
+                if (isUpper(c)) clean = false;
+            }
+        }
+        int portStart = hostEnd < authEnd && url.charAt(hostEnd) == ':' ? hostEnd + 1 : -1;
+        if (portStart >= 0) clean = false;
+        if (url.startsWith("www.", hostStart) || (hostEnd > hostStart && url.charAt(hostEnd - 1) == '.')) clean = false;
+        if (clean && hasEscapeToNormalize(url, authEnd, pathEnd)) clean = false;
+
+        if (clean) return pathEnd == n ? url : url.substring(0, pathEnd);
+
+        String scheme = url.substring(0, sep).toLowerCase(Locale.ROOT);
+        String host = url.substring(hostStart, hostEnd).toLowerCase(Locale.ROOT);
+        if (host.endsWith(".")) host = host.substring(0, host.length() - 1);
+        if (host.startsWith("www.")) host = host.substring(4);
+        StringBuilder out = new StringBuilder(pathEnd - authStart + scheme.length() + 3);
+        out.append(scheme).append("://").append(host);
+        if (portStart >= 0 && portStart < authEnd) {
+            String port = url.substring(portStart, authEnd);
+            if (!isDefaultPort(scheme, port)) out.append(':').append(port);
+        }
+        appendPath(out, url, authEnd, pathEnd);
+        return out.toString();
+    }
+
+    /**
+     * Canonical form of a host name as returned by {@link UrlResolver#hostOf(String)}:
+     * without {@code www.} and a trailing dot.
+     */
+    public static String canonicalHost(String host) {
+        int start = host.startsWith("www.") ? 4 : 0;
+        int end = host.endsWith(".") ? host.length() - 1 : host.length();
+        return start == 0 && end == host.length() ? host : host.substring(start, Math.max(start, end));
+    }
+
+    /** True if the path between {@code from} and {@code to} holds an escape {@link #appendPath} rewrites. */
+    private static boolean hasEscapeToNormalize(String url, int from, int to) {
+        for (int i = url.indexOf('%', from); i >= 0 && i + 2 < to; i = url.indexOf('%', i + 1)) {
+            int hi = hexValue(url.charAt(i + 1)), lo = hexValue(url.charAt(i + 2));
+            if (hi < 0 || lo < 0) continue;
+            if (isUnreserved((char) (hi << 4 | lo)) || !isUpperHex(url.charAt(i + 1)) || !isUpperHex(url.charAt(i + 2))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Appends the path, decoding escapes of unreserved characters and upper-casing the others. */
+    private static void appendPath(StringBuilder out, String url, int from, int to) {
+        int i = from;
+        while (i < to) {
+            char c = url.charAt(i);
+            if (c == '%' && i + 2 < to) {
+                int hi = hexValue(url.charAt(i + 1)), lo = hexValue(url.charAt(i + 2));
+                if (hi >= 0 && lo >= 0) {
+                    char decoded = (char) (hi << 4 | lo);
+                    if (isUnreserved(decoded)) {
+                        out.append(decoded);
+                    } else {
+                        out.append('%').append(HEX[hi]).append(HEX[lo]);
+                    }
+                    i += 3;
+                    continue;
+                }
+            }
+            out.append(c);
+            i++;
+        }
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+        if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+        return -1;
+    }
+
+    private static boolean isUpperHex(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'A' && c <= 'F');
+    }
+
+    /** Unreserved characters of RFC 3986, which never need escaping. */
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    private static boolean isDefaultPort(String scheme, String port) {
+        return port.isEmpty() || (scheme.equals("http") && port.equals("80")) || (scheme.equals("https") && port.equals("443"));
+    }
+
+    private static boolean isUpper(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+}
@@ -0,0 +1,165 @@
+package com.strubium.gasstation.extract;
+
+import java.util.Locale;
+
+/**
+ * Resolves link references against one base URL.
+ * <p>
+ * The base is split into scheme, authority and path once, each reference is then
+ * resolved with plain string operations (RFC 3986 section 5.2) instead of building
+ * a {@link java.net.URI} per link. Only http and https results are returned,
+ * fragments are dropped.
+ */
+public final class UrlResolver {
+    private final String scheme;    // "https"
+    private final String origin;    // "https://host:port"
+    private final String path;      // "/dir/page"
+    private final String directory; // "/dir/"
+    private final String query;     // "?q=1" or ""
+
+    private UrlResolver(String scheme, String origin, String path, String query) {
+        this.scheme = scheme;
+        this.origin = origin;
+        this.path = path;
+        this.directory = path.substring(0, path.lastIndexOf('/') + 1);
+        this.query = query;
+    }
+
+    /**
+     * @return a resolver for {@code baseUrl}, or null if it is not an absolute http(s) URL
+     */
+    public static UrlResolver of(String baseUrl) {
+        int colon = schemeEnd(baseUrl);
+        if (colon < 0 || !baseUrl.startsWith("//", colon + 1)) return null;
+        String scheme = baseUrl.substring(0, colon).toLowerCase(Locale.ROOT);
+        if (!scheme.equals("http") && !scheme.equals("https")) return null;
+
+        int authStart = colon + 3;
+        int authEnd = indexOfAny(baseUrl, authStart, "/?#");
+        if (authEnd == authStart) return null;
+        int end = indexOfAny(baseUrl, authEnd, "#");
+        int q = indexOfAny(baseUrl, authEnd, "?");
+        if (q > end) q = end;
+
+        String path = baseUrl.substring(authEnd, q);
+        if (path.isEmpty()) path = "/";
+        return new UrlResolver(scheme, scheme + "://" + baseUrl.substring(authStart, authEnd), path, baseUrl.substring(q, end));
+    }
+
+    /** The base URL without its fragment. */
+    public String base() {
+        return origin + path + query;
+    }
+
+    /**
+     * @return the absolute form of {@code ref}, or null if it is not an http(s) link
+     */
+    public String resolve(String ref) {
+        ref = ref.strip();
+        int hash = ref.indexOf('#');
+        if (hash >= 0) ref = ref.substring(0, hash);
+        if (ref.isEmpty()) return base();
+
+        int colon = schemeEnd(ref);
+        if (colon >= 0) {
+            String refScheme = ref.substring(0, colon);
+            if (!refScheme.equalsIgnoreCase("http") && !refScheme.equalsIgnoreCase("https")) return null;
+            if (!ref.startsWith("//", colon + 1)) return null;
+            return refScheme.equals("http") || refScheme.equals("https") ? ref : refScheme.toLowerCase(Locale.ROOT) + ref.substring(colon);
+        }
+        if (ref.startsWith("//")) return scheme + ":" + ref;
+        if (ref.charAt(0) == '?') return origin + path + ref;
+
+        int q = ref.indexOf('?');
+        String refPath = q >= 0 ? ref.substring(0, q) : ref;
+        String refQuery = q >= 0 ? ref.substring(q) : "";
+        String merged = refPath.charAt(0) == '/' ? refPath : directory + refPath;
+        return origin + removeDotSegments(merged) + refQuery;
+    }
+
+    /**
+     * Extracts the lower-cased host of an absolute URL without parsing the rest of it.
+     *
+     * @return the host, or null if there is none or it contains characters no host name can have
+     */
+    public static String hostOf(String url) {
+        int sep = url.indexOf("://");
+        if (sep < 0) return null;
+        int start = sep + 3;
+        int end = indexOfAny(url, start, "/?#");
+        int at = url.lastIndexOf('@', end - 1);
+        if (at >= start) start = at + 1;
+
+        boolean upper = false;
+        int hostEnd = end;
+        if (start < end && url.charAt(start) == '[') {
+            // IPv6 literal, keep the brackets
+            int close = url.indexOf(']', start);
+            if (close < 0 || close >= end) return null;
+            hostEnd = close + 1;
+        } else {
+            for (int i = start; i < end; i++) {
+                char c = url.charAt(i);
+                if (c == ':') {
+                    hostEnd = i;
+                    break;
+                }
+                if (c >= 'A' && c <= 'Z') {
+                    upper = true;
+                } else if (!(c >= 'a' && c <= 'z') && !(c >= '0' && c <= '9') && c != '.' && c != '-') {
+                    return null;
+                }
+            }
+        }
+        if (hostEnd == start) return null;
+        String host = url.substring(start, hostEnd);
+        return upper ? host.toLowerCase(Locale.ROOT) : host;
+    }
+
+    static String removeDotSegments(String path) {
+        if (path.indexOf("/.") < 0 && !path.startsWith(".")) return path;
+
+        StringBuilder out = new StringBuilder(path.length());
+        int i = 0, n = path.length();
+        while (i < n) {
+            int next = path.indexOf('/', i + 1);
+            if (next < 0) next = n;
+            String seg = path.substring(i, next);
+            if (seg.equals("/.") || seg.equals(".")) {
+                if (next == n) out.append('/');
+            } else if (seg.equals("/..") || seg.equals("..")) {
+                int cut = out.lastIndexOf("/");
+                out.setLength(Math.max(cut, 0));
+                if (next == n) out.append('/');
+            } else {
+                out.append(seg);
+            }
+            i = next;
+        }
+        if (out.length() == 0 || out.charAt(0) != '/') out.insert(0, '/');
+        return out.toString();
+    }
+
+    /** Index of the ':' ending a valid scheme at the start of {@code s}, or -1. */
+    private static int schemeEnd(String s) {
+        int n = s.length();
+        if (n == 0 || !isAsciiLetter(s.charAt(0))) return -1;
+        for (int i = 1; i < n; i++) {
+            char c = s.charAt(i);
+            if (c == ':') return i;
+            if (!isAsciiLetter(c) && !(c >= '0' && c <= '9') && c != '+' && c != '-' && c != '.') return -1;
+        }
+        return -1;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static int indexOfAny(String s, int from, String chars) {
+        for (int i = from, n = s.length(); i < n; i++) {
+            if (chars.indexOf(s.charAt(i)) >= 0) return i;
+        }
+        return s.length();
+    }
+}
@@ -0,0 +1,15 @@
+package com.strubium.gasstation.fetch;
+
+/**
+ * Settings shared by {@link Fetcher} implementations.
+ *
+ * @param userAgent     User-Agent header sent with every request
+ * @param timeoutMillis connect timeout, and time allowed for a whole request including its body
+ * @param maxBodyBytes  decoded bytes read from a body before it is cut off
+ */
+public record FetchConfig(String userAgent, int timeoutMillis, long maxBodyBytes) {
+
+    public static FetchConfig defaults() {
+        return new FetchConfig("AdvancedJavaCrawler", 5000, 2L * 1024 * 1024);
+    }
+}
@@ -0,0 +1,123 @@
+package com.strubium.gasstation.fetch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Result of a {@link Fetcher#fetch(String)} call.
+ * <p>
+ * The body is exposed as an already decoded, size-limited stream. It is empty when the
+ * status is not 2xx or the content type was filtered out, in which case the transfer
+ * has already been abandoned.
+ */
+public class FetchResponse implements Closeable {
+    private static final InputStream EMPTY = InputStream.nullInputStream();
+
+    private final int status;
+    private final String url;
+    private final String contentType;
+    private final Map<String, String> headers;
+    private final InputStream body;
+    private final WireInputStream wire;
+
+    public FetchResponse(int status, String url, String contentType, Map<String, String> headers, InputStream body) {
+        this(status, url, contentType, headers, body, null);
+    }
+
+    /**
+     * @param wire the stream under {@code body} as it comes off the connection, or null
+     *             if {@code body} is not encoded
+     */
+    FetchResponse(int status, String url, String contentType, Map<String, String> headers, InputStream body,
+                  WireInputStream wire) {
+        this.status = status;
+        this.url = url;
+        this.contentType = contentType;
+        this.headers = headers;
+        this.body = body != null ? body : EMPTY;
+        this.wire = wire;
+    }
+
+    public int status() {
+        return status;
+    }
+
+    /** The URL the body was served from, after redirects. */
+    public String url() {
+        return url;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    /**
+     * @param name header name, matched case-insensitively
+     * @return the first value of the header, or null
+     */
+    public String header(String name) {
+        return headers.get(name);
+    }
+
+    public InputStream body() {
+        return body;
+    }
+
+    public boolean isSuccess() {
+        return status >= 200 && status < 300;
+    }
+
+    /** True if the host asked us to slow down. */
+    public boolean isThrottled() {
+        return status == 429 || status == 503;
+    }
+
+    /** True if the body was kept, i.e. the answer was 2xx with an accepted content type. */
+    public boolean hasBody() {
+        return body != EMPTY;
+    }
+
+    /** Body bytes read off the wire so far, before decoding. */
+    public long bytesRead() {
+        if (wire != null) return wire.bytesRead();
+        return body instanceof LimitedInputStream limited ? limited.bytesRead() : 0;
+    }
+
+    public Charset charset() {
+        return charsetOf(contentType);
+    }
+
+    @Override
+    public void close() throws IOException {
+        body.close();
+    }
+
+    /** Whether a Content-Type header denotes a page we can pull links from. */
+    static boolean isHtml(String contentType) {
+        if (contentType == null) return true;
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith("text/html") || type.startsWith("application/xhtml");
+    }
+
+    static Charset charsetOf(String contentType) {
+        if (contentType != null) {
+            int idx = contentType.toLowerCase(Locale.ROOT).indexOf("charset=");
+            if (idx >= 0) {
+                String name = contentType.substring(idx + 8).trim();
+                int end = name.indexOf(';');
+                if (end >= 0) name = name.substring(0, end);
+                name = name.replace("\"", "").trim();
+                try {
+                    return Charset.forName(name);
+                } catch (Exception ignored) {
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+}
@@ -0,0 +1,36 @@
+package com.strubium.gasstation.fetch;
+
+import java.io.IOException;
+
+/**
+ * Fetches a single URL for the crawler.
+ * Implementations must be safe to share between all workers.
+ */
+public interface Fetcher {
+
+    /**
+     * Fetches {@code url}. Non-2xx answers are returned, not thrown, so callers can react
+     * to throttling. The response body is a stream and must be closed by the caller.
+     */
+    FetchResponse fetch(String url) throws IOException, InterruptedException;
+
+    /**
+     * Like {@link #fetch(String)}, but keeps the body of any content type, for robots.txt
+     * and sitemaps. Implementations that filter by content type must override this.
+     */
+    default FetchResponse fetchAny(String url) throws IOException, InterruptedException {
+        return fetch(url);
+    }
+
+    /**
+     * Like {@link #fetch(String)}, but asks the server to answer 304 Not Modified if the
+     * page still matches the validators of an earlier fetch. Implementations that cannot
+     * send them fall back to a plain fetch.
+     *
+     * @param etag         ETag of the earlier answer, or null
+     * @param lastModified Last-Modified of the earlier answer, or null
+     */
+    default FetchResponse fetchIfChanged(String url, String etag, String lastModified) throws IOException, InterruptedException {
+        return fetch(url);
+    }
+}
@@ -0,0 +1,183 @@
+package com.strubium.gasstation.fetch;
+
+import org.brotli.dec.BrotliInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * {@link Fetcher} backed by one shared {@link HttpClient}.
+ * <p>
+ * All workers go through the same client, so connections are kept alive and reused
+ * across tasks, and HTTPS hosts that speak HTTP/2 get their requests multiplexed over
+ * a single connection. Bodies are streamed: headers are inspected first, and anything
+ * that is not HTML is abandoned before its body is read. So is a body in a content
+ * encoding the fetcher cannot undo.
+ * <p>
+ * The request timeout only covers the wait for the headers, so the body gets a deadline
+ * of its own: a transfer still running {@link FetchConfig#timeoutMillis()} after the
+ * request was sent is cut, however steadily the server trickles bytes.
+ */
+public class HttpClientFetcher implements Fetcher {
+    private static final String ACCEPT = "text/html,application/xhtml+xml;q=0.9,*/*;q=0.1";
+    private static final String ACCEPT_ENCODING = "gzip, deflate, br";
+    private static final ScheduledThreadPoolExecutor DEADLINES = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread t = new Thread(r, "fetch-deadlines");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        // Nearly every deadline is cancelled, they must not pile up until they would have run
+        DEADLINES.setRemoveOnCancelPolicy(true);
+    }
+
+    private final FetchConfig config;
+    private final HttpClient client;
+    private final Duration timeout;
+
+    public HttpClientFetcher(FetchConfig config) {
+        this.config = config;
+        this.timeout = Duration.ofMillis(config.timeoutMillis());
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    @Override
+    public FetchResponse fetch(String url) throws IOException, InterruptedException {
+        return fetch(url, true, null, null);
+    }
+
+    @Override
+    public FetchResponse fetchAny(String url) throws IOException, InterruptedException {
+        return fetch(url, false, null, null);
+    }
+
+    @Override
+    public FetchResponse fetchIfChanged(String url, String etag, String lastModified) throws IOException, InterruptedException {
+        return fetch(url, true, etag, lastModified);
+    }
+
+    private FetchResponse fetch(String url, boolean htmlOnly, String etag, String lastModified)
+            throws IOException, InterruptedException {
+        HttpRequest request;
+        try {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(timeout)
+                    .header("User-Agent", config.userAgent())
+                    .header("Accept", htmlOnly ? ACCEPT : "*/*")
+                    .header("Accept-Encoding", ACCEPT_ENCODING);
+            if (etag != null) builder.header("If-None-Match", etag);
+            if (lastModified != null) builder.header("If-Modified-Since", lastModified);
+            request = builder.GET().build();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Bad URL: " + url, e);
+        }
+
+        long sent = System.nanoTime();
+        // send() returns as soon as the headers are in, the body is still on the wire
+        HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        Map<String, String> headers = firstValues(response.headers().map());
+        String contentType = headers.get("content-type");
+        int status = response.statusCode();
+        String finalUrl = response.uri().toString();
+
+        InputStream raw = response.body();
+        if (status < 200 || status >= 300 || (htmlOnly && !FetchResponse.isHtml(contentType))) {
+            // Closing before reading cancels the transfer
+            raw.close();
+            return new FetchResponse(status, finalUrl, contentType, headers, null);
+        }
+
+        WireInputStream wire = new WireInputStream(raw);
+        long left = config.timeoutMillis() - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sent);
+        wire.expireAfter(DEADLINES, Math.max(0, left));
+        try {
+            InputStream decoded = decode(wire, headers.get("content-encoding"));
+            if (decoded == null) {
+                wire.close();
+                return new FetchResponse(status, finalUrl, contentType, headers, null);
+            }
+            return new FetchResponse(status, finalUrl, contentType, headers,
+                    new LimitedInputStream(decoded, config.maxBodyBytes()), wire);
+        } catch (IOException e) {
+            wire.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Undoes a Content-Encoding. Stacked encodings are listed in the order they were
+     * applied, so they are undone from last to first.
+     *
+     * @return null if one of the encodings is not supported
+     */
+    private static InputStream decode(InputStream in, String encoding) throws IOException {
+        if (encoding == null) return in;
+        String[] codings = encoding.split(",");
+        for (int i = codings.length - 1; i >= 0 && in != null; i--) {
+            in = switch (codings[i].trim().toLowerCase(Locale.ROOT)) {
+                case "", "identity" -> in;
+                case "gzip", "x-gzip" -> new GZIPInputStream(in, 8192);
+                case "deflate" -> inflate(in);
+                case "br" -> new BrotliInputStream(in);
+                default -> null;
+            };
+        }
+        return in;
+    }
+
+    /**
+     * "deflate" is meant to be zlib-wrapped DEFLATE, but some servers send it raw. A
+     * valid zlib header in the first two bytes tells the two apart.
+     */
+    private static InputStream inflate(InputStream in) throws IOException {
+        PushbackInputStream peek = new PushbackInputStream(in, 2);
+        int b0 = peek.read();
+        if (b0 < 0) return peek;
+        int b1 = peek.read();
+        if (b1 >= 0) peek.unread(b1);
+        peek.unread(b0);
+
+        boolean zlib = b1 >= 0 && (b0 & 0x0F) == 8 && (b0 >> 4) <= 7 && ((b0 << 8) | b1) % 31 == 0;
+        if (zlib) return new InflaterInputStream(peek);
+        Inflater raw = new Inflater(true);
+        return new InflaterInputStream(peek, raw) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    // Only the default inflater is ended by InflaterInputStream itself
+                    raw.end();
+                }
+            }
+        };
+    }
+
+    private static Map<String, String> firstValues(Map<String, List<String>> all) {
+        Map<String, String> out = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Map.Entry<String, List<String>> e : all.entrySet()) {
+            if (!e.getValue().isEmpty()) out.put(e.getKey(), e.getValue().get(0));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,61 @@
+package com.strubium.gasstation.fetch;
+
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * {@link Fetcher} on top of {@link Jsoup#connect(String)}, the crawler's original fetch path.
+ * Every request opens its own connection. Kept around for comparison and as a fallback.
+ * Jsoup inflates gzip bodies itself, so byte counts are of the decoded body.
+ */
+public class JsoupFetcher implements Fetcher {
+    private final FetchConfig config;
+
+    public JsoupFetcher(FetchConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    public FetchResponse fetch(String url) throws IOException {
+        return fetch(url, true, null, null);
+    }
+
+    @Override
+    public FetchResponse fetchAny(String url) throws IOException {
+        return fetch(url, false, null, null);
+    }
+
+    @Override
+    public FetchResponse fetchIfChanged(String url, String etag, String lastModified) throws IOException {
+        return fetch(url, true, etag, lastModified);
+    }
+
+    private FetchResponse fetch(String url, boolean htmlOnly, String etag, String lastModified) throws IOException {
+        Connection connection = Jsoup.connect(url)
+                .userAgent(config.userAgent())
+                .timeout(config.timeoutMillis())
+                .maxBodySize((int) Math.min(Integer.MAX_VALUE, config.maxBodyBytes()))
+                .ignoreHttpErrors(true)
+                .ignoreContentType(true);
+        if (etag != null) connection.header("If-None-Match", etag);
+        if (lastModified != null) connection.header("If-Modified-Since", lastModified);
+        Connection.Response response = connection.execute();
+
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.putAll(response.headers());
+        String contentType = response.contentType();
+        int status = response.statusCode();
+        String finalUrl = response.url().toString();
+
+        if (status < 200 || status >= 300 || (htmlOnly && !FetchResponse.isHtml(contentType))) {
+            response.bodyStream().close();
+            return new FetchResponse(status, finalUrl, contentType, headers, null);
+        }
+        WireInputStream wire = new WireInputStream(response.bodyStream());
+        return new FetchResponse(status, finalUrl, contentType, headers, wire, wire);
+    }
+}
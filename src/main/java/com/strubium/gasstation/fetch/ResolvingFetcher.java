@@ -0,0 +1,46 @@
+package com.strubium.gasstation.fetch;
+
+import com.strubium.gasstation.dns.DnsCache;
+import com.strubium.gasstation.extract.UrlResolver;
+
+import java.io.IOException;
+
+/**
+ * {@link Fetcher} that resolves the host through a {@link DnsCache} before handing the
+ * request to another fetcher. Hosts known not to resolve fail at once with an
+ * {@link java.net.UnknownHostException} instead of waiting for the connect timeout. With
+ * the system resolver, the lookup also leaves the JVM's address cache warm for the
+ * wrapped fetcher's own lookup.
+ */
+public class ResolvingFetcher implements Fetcher {
+    private final Fetcher delegate;
+    private final DnsCache dns;
+
+    public ResolvingFetcher(Fetcher delegate, DnsCache dns) {
+        this.delegate = delegate;
+        this.dns = dns;
+    }
+
+    @Override
+    public FetchResponse fetch(String url) throws IOException, InterruptedException {
+        resolve(url);
+        return delegate.fetch(url);
+    }
+
+    @Override
+    public FetchResponse fetchAny(String url) throws IOException, InterruptedException {
+        resolve(url);
+        return delegate.fetchAny(url);
+    }
+
+    @Override
+    public FetchResponse fetchIfChanged(String url, String etag, String lastModified) throws IOException, InterruptedException {
+        resolve(url);
+        return delegate.fetchIfChanged(url, etag, lastModified);
+    }
+
+    private void resolve(String url) throws IOException, InterruptedException {
+        String host = UrlResolver.hostOf(url);
+        if (host != null) dns.resolve(host);
+    }
+}
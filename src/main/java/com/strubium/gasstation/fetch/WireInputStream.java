@@ -0,0 +1,93 @@
+package com.strubium.gasstation.fetch;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Body stream as it comes off the connection, before any decoding. Counts the bytes
+ * read and can be given a deadline: once it passes, the transfer is cut and every read,
+ * including one blocked on a stalled server, fails with an {@link HttpTimeoutException}.
+ */
+final class WireInputStream extends FilterInputStream {
+    private long bytesRead;
+    private volatile boolean expired;
+    private volatile Future<?> deadline;
+
+    WireInputStream(InputStream in) {
+        super(in);
+    }
+
+    /** Bytes read so far. */
+    long bytesRead() {
+        return bytesRead;
+    }
+
+    /** Cuts the transfer after {@code delayMillis} unless the stream is closed first. */
+    void expireAfter(ScheduledExecutorService timer, long delayMillis) {
+        deadline = timer.schedule(this::expire, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void expire() {
+        expired = true;
+        try {
+            // Wakes up a blocked read, which then sees the flag
+            in.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b;
+        try {
+            b = in.read();
+        } catch (IOException e) {
+            throw expired ? timedOut() : e;
+        }
+        // A read cut short by expire() may just report end of stream
+        if (expired) throw timedOut();
+        if (b >= 0) bytesRead++;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n;
+        try {
+            n = in.read(b, off, len);
+        } catch (IOException e) {
+            throw expired ? timedOut() : e;
+        }
+        if (expired) throw timedOut();
+        if (n > 0) bytesRead += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        bytesRead += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        Future<?> deadline = this.deadline;
+        if (deadline != null) deadline.cancel(false);
+        in.close();
+    }
+
+    private static HttpTimeoutException timedOut() {
+        return new HttpTimeoutException("body read timed out");
+    }
+}
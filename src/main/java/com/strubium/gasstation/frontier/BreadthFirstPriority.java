@@ -0,0 +1,29 @@
+package com.strubium.gasstation.frontier;
+
+import com.strubium.gasstation.CrawlerManager;
+
+/**
+ * Host order for mapping: hosts not fetched yet first, then shallow ones, with hosts
+ * many others link to pulled forward. The weights are in depth units: an unseen host
+ * ranks like one two levels shallower, and each doubling of in-links is worth a
+ * quarter level, capped at four levels.
+ */
+public class BreadthFirstPriority implements HostPriority {
+    private static final int DEPTH_WEIGHT = 4;
+    private static final int FETCHED_PENALTY = 2 * DEPTH_WEIGHT;
+    private static final int MAX_LINK_BONUS = 4 * DEPTH_WEIGHT;
+
+    private final CrawlerManager manager;
+
+    public BreadthFirstPriority(CrawlerManager manager) {
+        this.manager = manager;
+    }
+
+    @Override
+    public long key(String host, int depth, boolean fetchedBefore) {
+        int inLinks = manager.inLinks(host);
+        // log2 of the in-link count, 0 for none
+        int linkBonus = Math.min(32 - Integer.numberOfLeadingZeros(inLinks), MAX_LINK_BONUS);
+        return (long) depth * DEPTH_WEIGHT + (fetchedBefore ? FETCHED_PENALTY : 0) - linkBonus;
+    }
+}
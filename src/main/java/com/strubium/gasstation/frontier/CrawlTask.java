@@ -0,0 +1,16 @@
+package com.strubium.gasstation.frontier;
+
+/**
+ * A URL admitted to the frontier, together with its host, the depth it was found at
+ * and how many times it has already been retried after the host throttled us.
+ */
+public record CrawlTask(String url, String host, int depth, int attempt) {
+
+    public CrawlTask(String url, String host, int depth) {
+        this(url, host, depth, 0);
+    }
+
+    public CrawlTask retry() {
+        return new CrawlTask(url, host, depth, attempt + 1);
+    }
+}
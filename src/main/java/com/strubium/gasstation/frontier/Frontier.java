@@ -0,0 +1,364 @@
+package com.strubium.gasstation.frontier;
+
+import com.strubium.gasstation.CrawlerManager;
+import com.strubium.gasstation.budget.CrawlBudget;
+import com.strubium.gasstation.dns.DnsCache;
+import com.strubium.gasstation.extract.UrlResolver;
+import com.strubium.gasstation.logger.ProjectLogger;
+import com.strubium.gasstation.metrics.CrawlMetrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bounded queue of URLs waiting to be crawled.
+ * <p>
+ * Every URL goes through admission before it is queued: depth check, ownership when a
+ * {@link UrlRouter} is set, host saturation, dead hosts when a {@link DnsCache} is set,
+ * free capacity, budget, then
+ * {@link CrawlerManager#markVisited(String)}.
+ * Only URLs that pass all checks become tasks, so the amount of queued work scales with
+ * unique URLs instead of raw links.
+ * URLs turned away because the frontier is full are not marked visited and can be
+ * admitted again once they are rediscovered.
+ * <p>
+ * Admitted tasks are handed to a {@link HostScheduler}, which decides when each host
+ * may be fetched again and, through a {@link BreadthFirstPriority}, which ready host
+ * goes next.
+ */
+public class Frontier {
+    private final CrawlerManager manager;
+    private final int capacity;
+    private final Politeness politeness;
+    private final HostScheduler scheduler;
+    private final CrawlMetrics metrics;
+    private final Set<CrawlTask> inFlight = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger queued = new AtomicInteger();
+    // queued + in flight, the crawl is over once this drops to zero
+    private final AtomicLong pending = new AtomicLong();
+    // Parties that may still hand in work from outside, see holdOpen()
+    private final AtomicInteger holds = new AtomicInteger();
+    // Shared by everything that moves a task between admission, the scheduler and
+    // inFlight, exclusive for snapshotTasks, so a copy never misses a task in transit.
+    // Fair, or workers looping through take() would keep a snapshot out indefinitely
+    private final ReentrantReadWriteLock transit = new ReentrantReadWriteLock(true);
+    private volatile UrlRouter router;
+    private volatile CrawlBudget budget;
+    private volatile HostSaturation saturation;
+    private volatile DnsCache dns;
+    private volatile boolean draining;
+
+    public Frontier(CrawlerManager manager, int capacity) {
+        this(manager, capacity, Politeness.defaults());
+    }
+
+    public Frontier(CrawlerManager manager, int capacity, Politeness politeness) {
+        this(manager, capacity, politeness, new CrawlMetrics());
+    }
+
+    public Frontier(CrawlerManager manager, int capacity, Politeness politeness, CrawlMetrics metrics) {
+        this.manager = manager;
+        this.capacity = capacity;
+        this.politeness = politeness;
+        this.scheduler = new HostScheduler(politeness, new BreadthFirstPriority(manager));
+        this.metrics = metrics;
+    }
+
+    /**
+     * Admits a single URL found at {@code depth}.
+     *
+     * @return true if the URL was queued
+     */
+    public boolean admit(String url, int depth) {
+        return admitAll(List.of(url), depth) == 1;
+    }
+
+    /**
+     * Runs admission over a batch of URLs found at the same depth and queues the survivors in one go.
+     *
+     * @return how many URLs were queued
+     */
+    public int admitAll(Collection<String> urls, int depth) {
+        if (depth > manager.getMaxDepth() || urls.isEmpty() || draining) return 0;
+
+        UrlRouter router = this.router;
+        CrawlBudget budget = this.budget;
+        HostSaturation saturation = this.saturation;
+        DnsCache dns = this.dns;
+        int admitted = 0, duplicates = 0, dead = 0;
+        transit.readLock().lock();
+        try {
+            for (String url : urls) {
+                String host = UrlResolver.hostOf(url);
+                if (host == null) continue;
+                if (router != null && !router.owns(host)) {
+                    router.forward(url, host, depth);
+                    continue;
+                }
+                if (saturation != null && saturation.isSaturated(host)) continue;
+                if (dns != null && dns.isDead(host)) {
+                    dead++;
+                    continue;
+                }
+                if (!reserve()) break;
+                if (budget != null && !budget.tryAdmit(host)) {
+                    queued.decrementAndGet();
+                    continue;
+                }
+                if (!manager.markVisited(url)) {
+                    queued.decrementAndGet();
+                    if (budget != null) budget.refund(host);
+                    duplicates++;
+                    continue;
+                }
+                pending.incrementAndGet();
+                scheduler.enqueue(new CrawlTask(url, host, depth));
+                admitted++;
+            }
+        } finally {
+            transit.readLock().unlock();
+        }
+        metrics.admission(admitted, duplicates);
+        if (dead > 0) metrics.deadHostUrls(dead);
+        return admitted;
+    }
+
+    /**
+     * Waits for the next task.
+     *
+     * @return the next task, or null once nothing is queued or in flight, or the frontier is drained
+     */
+    public CrawlTask take() throws InterruptedException {
+        while (true) {
+            if (draining) return null;
+            transit.readLock().lock();
+            try {
+                // Held while polling, so a snapshot waits at most one poll timeout
+                CrawlTask task = scheduler.poll(50, TimeUnit.MILLISECONDS);
+                if (task != null) {
+                    queued.decrementAndGet();
+                    inFlight.add(task);
+                    return task;
+                }
+            } finally {
+                transit.readLock().unlock();
+            }
+            if (pending.get() == 0 && holds.get() == 0) return null;
+        }
+    }
+
+    /**
+     * Marks a task returned by {@link #take()} as done. Any links it produced must be
+     * admitted before this call, otherwise the crawl can be seen as finished too early.
+     *
+     * @param throttled true if the host answered 429 or 503, the host is then backed off
+     *                  and the URL is queued again until it runs out of retries
+     */
+    public void complete(CrawlTask task, boolean throttled) {
+        complete(task, throttled, () -> {
+        });
+    }
+
+    /**
+     * Like {@link #complete(CrawlTask, boolean)}, with {@code atComplete} run while the
+     * task is still in flight and no snapshot can be taken in between. A checkpoint then
+     * holds either the task or everything {@code atComplete} did, never both, so a page
+     * fetched again after a resume does not add its links twice. Links admitted in
+     * {@code atComplete} count as admitted before this call. It must not throw.
+     */
+    public void complete(CrawlTask task, boolean throttled, Runnable atComplete) {
+        transit.readLock().lock();
+        try {
+            atComplete.run();
+            inFlight.remove(task);
+            scheduler.release(task, throttled);
+            if (throttled && task.attempt() < politeness.maxRetries()) {
+                // Still pending, it just goes back to its host queue
+                queued.incrementAndGet();
+                scheduler.enqueue(task.retry());
+                return;
+            }
+        } finally {
+            transit.readLock().unlock();
+        }
+        pending.decrementAndGet();
+    }
+
+    /**
+     * Hands back a task returned by {@link #take()} without fetching it, to be taken again
+     * once {@code delayMillis} has passed. Its attempts are not counted against the retry
+     * limit, e.g. while the host's robots.txt is unavailable.
+     */
+    public void postpone(CrawlTask task, long delayMillis) {
+        transit.readLock().lock();
+        try {
+            inFlight.remove(task);
+            queued.incrementAndGet();
+            scheduler.postpone(task, delayMillis);
+        } finally {
+            transit.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reports how many new edges to other hosts a fetched page of {@code task} added.
+     * If that saturates the host, its queued tasks are dropped and their budget given back.
+     */
+    public void pageYield(CrawlTask task, int newEdges) {
+        HostSaturation saturation = this.saturation;
+        if (saturation == null || !saturation.record(task.host(), newEdges)) return;
+        List<CrawlTask> dropped = scheduler.discard(task.host());
+        queued.addAndGet(-dropped.size());
+        pending.addAndGet(-dropped.size());
+        CrawlBudget budget = this.budget;
+        if (budget != null) {
+            for (int i = 0; i < dropped.size(); i++) budget.refund(task.host());
+        }
+        metrics.saturated(dropped.size());
+        ProjectLogger.LOGGER.debug("Host {} saturated at {} new edges per page, dropped {} queued pages",
+                task.host(), String.format("%.3f", saturation.yieldOf(task.host())), dropped.size());
+    }
+
+    /**
+     * Queues a task read back from a checkpoint. Its URL is already in the visited set,
+     * so admission is skipped. Tasks of hosts the router does not own were still waiting
+     * to be forwarded, they are forwarded again.
+     */
+    public void restore(CrawlTask task) {
+        UrlRouter router = this.router;
+        if (router != null && !router.owns(task.host())) {
+            router.forward(task.url(), task.host(), task.depth());
+            return;
+        }
+        queued.incrementAndGet();
+        pending.incrementAndGet();
+        scheduler.enqueue(task);
+    }
+
+    /**
+     * Copies every task that is queued or in flight, and the URLs the router has yet to
+     * forward, i.e. all work that would be lost if the process died now.
+     */
+    public List<CrawlTask> snapshotTasks() {
+        return snapshotTasks(() -> {
+        });
+    }
+
+    /**
+     * Like {@link #snapshotTasks()}, with {@code atCopy} run at the same instant. No
+     * task is admitted, taken or completed meanwhile, so a URL marked visited before
+     * {@code atCopy} is either in the copy or already done. Workers wait for the copy,
+     * {@code atCopy} must be quick.
+     */
+    public List<CrawlTask> snapshotTasks(Runnable atCopy) {
+        transit.writeLock().lock();
+        try {
+            atCopy.run();
+            List<CrawlTask> tasks = new ArrayList<>(inFlight);
+            scheduler.forEachQueued(tasks::add);
+            UrlRouter router = this.router;
+            if (router != null) router.forEachUnsent(tasks::add);
+            return tasks;
+        } finally {
+            transit.writeLock().unlock();
+        }
+    }
+
+    /**
+     * URLs of hosts the router does not own are forwarded instead of queued.
+     * Without a router every host is crawled here.
+     */
+    public void setRouter(UrlRouter router) {
+        this.router = router;
+    }
+
+    /**
+     * Charges every admitted URL to {@code budget}. URLs it has no room for are turned
+     * away like those that find the frontier full.
+     */
+    public void setBudget(CrawlBudget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Spaces fetches to {@code host} at least {@code millis} apart, e.g. for its robots.txt crawl delay.
+     */
+    public void setCrawlDelay(String host, long millis) {
+        scheduler.setMinDelay(host, millis);
+    }
+
+    /**
+     * Stops fetching hosts whose pages no longer add new host edges, see {@link HostSaturation}.
+     */
+    public void setSaturation(HostSaturation saturation) {
+        this.saturation = saturation;
+    }
+
+    /**
+     * Turns away URLs of hosts that recently failed to resolve in {@code dns}.
+     */
+    public void setDnsCache(DnsCache dns) {
+        this.dns = dns;
+    }
+
+    /**
+     * Stops the crawl gracefully: no more URLs are admitted and {@link #take()} returns
+     * null, so workers exit after their current task. Queued tasks are kept and show up
+     * in {@link #snapshotTasks()}.
+     */
+    public void drain() {
+        draining = true;
+    }
+
+    public boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * Keeps {@link #take()} from reporting the end of the crawl while work may still
+     * arrive from outside, until the matching {@link #releaseHold()}.
+     */
+    public void holdOpen() {
+        holds.incrementAndGet();
+    }
+
+    public void releaseHold() {
+        holds.decrementAndGet();
+    }
+
+    public int size() {
+        return queued.get();
+    }
+
+    public long pending() {
+        return pending.get();
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    public int hostCount() {
+        return scheduler.hostCount();
+    }
+
+    /** The {@code limit} hosts with the longest queues, as {@code host=queued}. */
+    public List<String> deepestHostQueues(int limit) {
+        return scheduler.deepestQueues(limit);
+    }
+
+    private boolean reserve() {
+        while (true) {
+            int current = queued.get();
+            if (current >= capacity) return false;
+            if (queued.compareAndSet(current, current + 1)) return true;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.strubium.gasstation.frontier;
+
+/**
+ * Ranks hosts that are ready to be fetched in the {@link HostScheduler}. Lower keys go
+ * first, hosts with equal keys are served in the order they became ready.
+ */
+@FunctionalInterface
+public interface HostPriority {
+
+    /** Plain round robin over ready hosts. */
+    HostPriority ROUND_ROBIN = (host, depth, fetchedBefore) -> 0;
+
+    /**
+     * @param depth         depth of the host's next task
+     * @param fetchedBefore true if a page of the host has been dispatched already
+     */
+    long key(String host, int depth, boolean fetchedBefore);
+}
@@ -0,0 +1,60 @@
+package com.strubium.gasstation.frontier;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks how many new host edges each host's pages still produce.
+ * <p>
+ * The map only records one edge per pair of hosts, so after the first few dozen pages
+ * most hosts keep linking to the same places. Every fetched page reports how many
+ * edges to other hosts it added, which feeds an exponential moving average per host.
+ * Once a host is past its warm-up and the average falls below
+ * {@link SaturationConfig#minYield()}, the host is saturated for the rest of the crawl:
+ * its queued pages are dropped and new URLs of it are no longer admitted. A hard cap
+ * on pages per host is the budget's job, see {@code BudgetConfig#maxPagesPerHost}.
+ */
+public class HostSaturation {
+    private final SaturationConfig config;
+    private final ConcurrentHashMap<String, Yield> hosts = new ConcurrentHashMap<>();
+
+    public HostSaturation(SaturationConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Records a fetched page of {@code host}.
+     *
+     * @param newEdges edges to other hosts that the page added to the graph
+     * @return true if the host became saturated with this page
+     */
+    public boolean record(String host, int newEdges) {
+        return hosts.computeIfAbsent(host, h -> new Yield()).add(newEdges, config);
+    }
+
+    public boolean isSaturated(String host) {
+        Yield yield = hosts.get(host);
+        return yield != null && yield.saturated;
+    }
+
+    /** Smoothed new edges per page of {@code host}, 0 if none of its pages were fetched. */
+    public double yieldOf(String host) {
+        Yield yield = hosts.get(host);
+        return yield == null ? 0 : yield.average;
+    }
+
+    private static final class Yield {
+        private int pages;
+        private double average;
+        volatile boolean saturated;
+
+        // Short and non-blocking, a monitor is fine here
+        synchronized boolean add(int newEdges, SaturationConfig config) {
+            if (saturated) return false;
+            average = pages == 0 ? newEdges : average + config.smoothing() * (newEdges - average);
+            pages++;
+            if (pages < config.warmupPages() || average >= config.minYield()) return false;
+            saturated = true;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package com.strubium.gasstation.frontier;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Host-keyed task scheduler.
+ * <p>
+ * Every host has its own queue, shallowest task first. A host is ready only while it
+ * may start another fetch, that is it has work, is below its in-flight limit and its
+ * minimum delay or back-off has elapsed. Hosts that have to wait are parked in a delay
+ * queue and promoted once due. Dispatching one task takes the host out of the ready
+ * set and puts it back with a fresh key, so no single host can soak up all workers.
+ * <p>
+ * Ready hosts are ordered by a {@link HostPriority}. They are spread over striped
+ * heaps, each behind its own lock, so workers do not all contend on one queue. A
+ * worker compares the heads of two random stripes and takes the better one, falling
+ * back to scanning every stripe (work stealing) when both are empty. That keeps the
+ * order close to the global one without a global lock.
+ */
+public class HostScheduler {
+    private final Politeness politeness;
+    private final HostPriority priority;
+    private final ConcurrentHashMap<String, HostQueue> hosts = new ConcurrentHashMap<>();
+    private final ReadyStripe[] stripes;
+    // One permit per host sitting in a stripe
+    private final Semaphore readyHosts = new Semaphore(0);
+    private final AtomicLong sequence = new AtomicLong();
+    private final DelayQueue<Wakeup> delayed = new DelayQueue<>();
+    private final LongSupplier clock;
+
+    public HostScheduler(Politeness politeness) {
+        this(politeness, HostPriority.ROUND_ROBIN);
+    }
+
+    public HostScheduler(Politeness politeness, HostPriority priority) {
+        this(politeness, priority, Integer.highestOneBit(Math.max(4, Runtime.getRuntime().availableProcessors() * 2)), System::nanoTime);
+    }
+
+    /**
+     * @param stripeCount number of ready heaps, a power of two
+     * @param clock       source of the current time in nanoseconds, {@link System#nanoTime()} outside of tests
+     */
+    HostScheduler(Politeness politeness, HostPriority priority, int stripeCount, LongSupplier clock) {
+        this.politeness = politeness;
+        this.priority = priority;
+        this.clock = clock;
+        this.stripes = new ReadyStripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) stripes[i] = new ReadyStripe();
+    }
+
+    public void enqueue(CrawlTask task) {
+        HostQueue hq = queueOf(task.host());
+        hq.lock.lock();
+        try {
+            hq.tasks.add(new Queued(task, sequence.getAndIncrement()));
+            schedule(hq, clock.getAsLong());
+        } finally {
+            hq.lock.unlock();
+        }
+    }
+
+    /**
+     * Waits up to {@code timeout} for a task whose host is allowed to be fetched now.
+     * The caller must hand the task back through {@link #release(CrawlTask, boolean)}.
+     *
+     * @return the task, or null if none became ready in time
+     */
+    public CrawlTask poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = clock.getAsLong() + unit.toNanos(timeout);
+        while (true) {
+            promoteDueHosts();
+            if (!readyHosts.tryAcquire()) {
+                long wait = deadline - clock.getAsLong();
+                if (wait <= 0) return null;
+                Wakeup next = delayed.peek();
+                if (next != null) wait = Math.min(wait, Math.max(0, next.getDelay(TimeUnit.NANOSECONDS)));
+                if (!readyHosts.tryAcquire(wait, TimeUnit.NANOSECONDS)) continue;
+            }
+            CrawlTask task = dispatch(takeReady());
+            if (task != null) return task;
+        }
+    }
+
+    /**
+     * Frees the in-flight slot taken by {@code task}. A throttled response (429/503)
+     * pushes the host's next fetch out by an exponentially growing back-off, any
+     * other outcome resets it.
+     */
+    public void release(CrawlTask task, boolean throttled) {
+        HostQueue hq = hosts.get(task.host());
+        if (hq == null) return;
+        hq.lock.lock();
+        try {
+            hq.inFlight--;
+            long now = clock.getAsLong();
+            if (throttled) {
+                long base = TimeUnit.MILLISECONDS.toNanos(politeness.backoffBaseMillis());
+                long max = TimeUnit.MILLISECONDS.toNanos(politeness.backoffMaxMillis());
+                hq.backoffNanos = hq.backoffNanos == 0 ? base : Math.min(hq.backoffNanos * 2, max);
+                hq.nextFetchNanos = Math.max(hq.nextFetchNanos, now + hq.backoffNanos);
+            } else {
+                hq.backoffNanos = 0;
+            }
+            schedule(hq, now);
+        } finally {
+            hq.lock.unlock();
+        }
+    }
+
+    /**
+     * Frees the in-flight slot taken by {@code task} and queues it again, with its host
+     * held back for at least {@code delayMillis}. Unlike a throttled release the host's
+     * back-off is left alone.
+     */
+    public void postpone(CrawlTask task, long delayMillis) {
+        HostQueue hq = queueOf(task.host());
+        hq.lock.lock();
+        try {
+            hq.inFlight--;
+            long now = clock.getAsLong();
+            hq.nextFetchNanos = Math.max(hq.nextFetchNanos, now + TimeUnit.MILLISECONDS.toNanos(delayMillis));
+            hq.tasks.add(new Queued(task, sequence.getAndIncrement()));
+            schedule(hq, now);
+        } finally {
+            hq.lock.unlock();
+        }
+    }
+
+    /**
+     * Raises the minimum gap between two fetch starts on {@code host}, for a crawl delay
+     * the host asked for. Values below the politeness minimum are ignored.
+     */
+    public void setMinDelay(String host, long millis) {
+        HostQueue hq = queueOf(host);
+        hq.lock.lock();
+        try {
+            hq.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(politeness.minDelayMillis(), millis));
+        } finally {
+            hq.lock.unlock();
+        }
+    }
+
+    /**
+     * Drops every queued task of {@code host}. Tasks already dispatched still have to
+     * be released.
+     *
+     * @return the dropped tasks
+     */
+    public List<CrawlTask> discard(String host) {
+        HostQueue hq = hosts.get(host);
+        if (hq == null) return List.of();
+        hq.lock.lock();
+        try {
+            List<CrawlTask> dropped = new ArrayList<>(hq.tasks.size());
+            for (Queued q : hq.tasks) dropped.add(q.task());
+            hq.tasks.clear();
+            return dropped;
+        } finally {
+            hq.lock.unlock();
+        }
+    }
+
+    /** Passes every queued, not yet dispatched task to {@code action}, host by host. */
+    public void forEachQueued(Consumer<CrawlTask> action) {
+        for (HostQueue hq : hosts.values()) {
+            hq.lock.lock();
+            try {
+                for (Queued q : hq.tasks) action.accept(q.task());
+            } finally {
+                hq.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * The {@code limit} hosts with the most queued tasks, as {@code host=queued}.
+     * Walks every host, meant for occasional diagnostics.
+     */
+    public List<String> deepestQueues(int limit) {
+        PriorityQueue<long[]> top = new PriorityQueue<>(Comparator.comparingLong(e -> e[0]));
+        List<HostQueue> all = new ArrayList<>(hosts.values());
+        for (int i = 0; i < all.size(); i++) {
+            HostQueue hq = all.get(i);
+            int size;
+            hq.lock.lock();
+            try {
+                size = hq.tasks.size();
+            } finally {
+                hq.lock.unlock();
+            }
+            if (size == 0) continue;
+            top.add(new long[]{size, i});
+            if (top.size() > limit) top.poll();
+        }
+        List<String> out = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            long[] e = top.poll();
+            out.add(all.get((int) e[1]).host + "=" + e[0]);
+        }
+        Collections.reverse(out);
+        return out;
+    }
+
+    /** Number of hosts the scheduler has seen. */
+    public int hostCount() {
+        return hosts.size();
+    }
+
+    private CrawlTask dispatch(HostQueue hq) {
+        hq.lock.lock();
+        try {
+            hq.scheduled = false;
+            long now = clock.getAsLong();
+            if (hq.tasks.isEmpty() || hq.inFlight >= politeness.maxInFlightPerHost() || now < hq.nextFetchNanos) {
+                schedule(hq, now);
+                return null;
+            }
+            CrawlTask task = hq.tasks.poll().task();
+            hq.inFlight++;
+            hq.dispatched++;
+            hq.nextFetchNanos = now + hq.minDelayNanos;
+            schedule(hq, now);
+            return task;
+        } finally {
+            hq.lock.unlock();
+        }
+    }
+
+    private HostQueue queueOf(String host) {
+        return hosts.computeIfAbsent(host, h -> new HostQueue(h, TimeUnit.MILLISECONDS.toNanos(politeness.minDelayMillis()), clock.getAsLong()));
+    }
+
+    /** Puts the host in the ready or delay queue if it has work it may start. Caller holds the host's lock. */
+    private void schedule(HostQueue hq, long now) {
+        if (hq.scheduled || hq.tasks.isEmpty() || hq.inFlight >= politeness.maxInFlightPerHost()) return;
+        hq.scheduled = true;
+        if (hq.nextFetchNanos <= now) {
+            makeReady(hq);
+        } else {
+            delayed.add(new Wakeup(hq, hq.nextFetchNanos, clock));
+        }
+    }
+
+    /** Ranks the host by its next task and files it in its stripe. Caller holds the host's lock. */
+    private void makeReady(HostQueue hq) {
+        long key = priority.key(hq.host, hq.tasks.peek().task().depth(), hq.dispatched > 0);
+        stripes[hq.stripe & (stripes.length - 1)].add(new Ready(hq, key, sequence.getAndIncrement()));
+        readyHosts.release();
+    }
+
+    private void promoteDueHosts() {
+        Wakeup due;
+        while ((due = delayed.poll()) != null) {
+            HostQueue hq = due.host;
+            hq.lock.lock();
+            try {
+                // The host's queue may have been discarded while it waited
+                if (hq.tasks.isEmpty()) {
+                    hq.scheduled = false;
+                } else {
+                    makeReady(hq);
+                }
+            } finally {
+                hq.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Removes the best of two random stripe heads. The caller holds a permit, so some
+     * stripe has an entry for it even if another worker beats it to these two.
+     */
+    private HostQueue takeReady() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int n = stripes.length;
+        while (true) {
+            ReadyStripe a = stripes[random.nextInt(n)], b = stripes[random.nextInt(n)];
+            Ready headA = a.peek(), headB = b.peek();
+            ReadyStripe best = headB == null || (headA != null && Ready.ORDER.compare(headA, headB) <= 0) ? a : b;
+            Ready taken = best.poll();
+            if (taken != null) return taken.host();
+            // Both were empty, steal from whichever stripe has something
+            int start = random.nextInt(n);
+            for (int i = 0; i < n; i++) {
+                taken = stripes[(start + i) & (n - 1)].poll();
+                if (taken != null) return taken.host();
+            }
+        }
+    }
+
+    static final class HostQueue {
+        // Not a monitor: schedule() may block on the shared queues, which would pin a virtual thread's carrier
+        final ReentrantLock lock = new ReentrantLock();
+        final String host;
+        final int stripe;
+        final PriorityQueue<Queued> tasks = new PriorityQueue<>(Queued.ORDER);
+        int inFlight;
+        long dispatched;
+        long nextFetchNanos;
+        long minDelayNanos;
+        long backoffNanos;
+        boolean scheduled;
+
+        HostQueue(String host, long minDelayNanos, long now) {
+            this.host = host;
+            this.minDelayNanos = minDelayNanos;
+            this.stripe = host.hashCode() * 0x9E3779B9 >>> 16;
+            this.nextFetchNanos = now;
+        }
+    }
+
+    /** A task in its host's queue, shallower first, then in arrival order. */
+    private record Queued(CrawlTask task, long seq) {
+        static final Comparator<Queued> ORDER = Comparator.comparingInt((Queued q) -> q.task.depth()).thenComparingLong(Queued::seq);
+    }
+
+    /** A ready host, lower key first, then in the order it became ready. */
+    private record Ready(HostQueue host, long key, long seq) {
+        static final Comparator<Ready> ORDER = Comparator.comparingLong(Ready::key).thenComparingLong(Ready::seq);
+    }
+
+    private static final class ReadyStripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final PriorityQueue<Ready> heap = new PriorityQueue<>(Ready.ORDER);
+
+        void add(Ready ready) {
+            lock.lock();
+            try {
+                heap.add(ready);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Ready peek() {
+            lock.lock();
+            try {
+                return heap.peek();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Ready poll() {
+            lock.lock();
+            try {
+                return heap.poll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private record Wakeup(HostQueue host, long atNanos, LongSupplier clock) implements Delayed {
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(atNanos - clock.getAsLong(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(atNanos, ((Wakeup) o).atNanos);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.strubium.gasstation.frontier;
+
+/**
+ * Per-host politeness limits used by the {@link HostScheduler}.
+ *
+ * @param maxInFlightPerHost how many fetches may run against one host at the same time
+ * @param minDelayMillis     minimum gap between two fetch starts on the same host
+ * @param backoffBaseMillis  first back-off applied after a 429 or 503, doubled on each repeat
+ * @param backoffMaxMillis   upper bound for the back-off
+ * @param maxRetries         how often a throttled URL is put back before it is given up
+ */
+public record Politeness(
+        int maxInFlightPerHost,
+        long minDelayMillis,
+        long backoffBaseMillis,
+        long backoffMaxMillis,
+        int maxRetries
+) {
+
+    public static Politeness defaults() {
+        return new Politeness(2, 1000, 2000, 120_000, 3);
+    }
+}
@@ -0,0 +1,20 @@
+package com.strubium.gasstation.frontier;
+
+/**
+ * When {@link HostSaturation} gives up on a host.
+ *
+ * @param minYield    smoothed new host edges per page below which a host is dropped,
+ *                    0 turns saturation off
+ * @param warmupPages pages fetched from a host before it can be dropped
+ * @param smoothing   weight of the newest page in the moving average, between 0 and 1
+ */
+public record SaturationConfig(double minYield, int warmupPages, double smoothing) {
+
+    public static SaturationConfig defaults() {
+        return new SaturationConfig(0, 20, 0.1);
+    }
+
+    public boolean enabled() {
+        return minYield > 0;
+    }
+}
@@ -0,0 +1,23 @@
+package com.strubium.gasstation.frontier;
+
+import java.util.function.Consumer;
+
+/**
+ * Splits hosts between crawler processes, see {@link Frontier#setRouter(UrlRouter)}.
+ * Implementations are called from every worker and must be thread-safe.
+ */
+public interface UrlRouter {
+
+    /** True if this process crawls {@code host}. */
+    boolean owns(String host);
+
+    /** Hands a URL of a host owned elsewhere over to its owner. */
+    void forward(String url, String host, int depth);
+
+    /**
+     * Passes every forwarded URL that has not reached its owner yet to {@code action},
+     * so checkpoints keep it. Routers that hand URLs over right away have none.
+     */
+    default void forEachUnsent(Consumer<CrawlTask> action) {
+    }
+}
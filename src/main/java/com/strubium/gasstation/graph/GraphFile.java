@@ -0,0 +1,92 @@
+package com.strubium.gasstation.graph;
+
+import com.strubium.gasstation.io.BinaryWriter;
+import com.strubium.gasstation.io.MappedReader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Compact binary form of a {@link HostGraphSnapshot}.
+ * <p>
+ * Hosts are stored once with their first-seen time and depth, edges row by row with the
+ * targets delta-encoded as varints, so a typical edge takes two to three bytes.
+ */
+public final class GraphFile {
+    private static final int MAGIC = 0x494D4150; // "IMAP"
+    private static final int VERSION = 1;
+
+    private GraphFile() {
+    }
+
+    public static void write(HostGraphSnapshot graph, Path file) throws IOException {
+        try (BinaryWriter out = BinaryWriter.open(file, false)) {
+            write(graph, out);
+        }
+    }
+
+    public static void write(HostGraphSnapshot graph, BinaryWriter out) throws IOException {
+        int n = graph.vertexCount();
+        out.writeInt(MAGIC);
+        out.writeVarInt(VERSION);
+        out.writeVarInt(n);
+        out.writeVarInt(graph.edgeCount());
+        for (int v = 0; v < n; v++) {
+            out.writeString(graph.host(v));
+            out.writeVarLong(graph.firstSeen(v));
+            // Shifted by one so "unknown" (-1) stays a one-byte varint
+            out.writeVarInt(graph.depth(v) + 1);
+        }
+        for (int v = 0; v < n; v++) {
+            int start = graph.outStart(v), end = graph.outEnd(v);
+            out.writeVarInt(end - start);
+            int prev = 0;
+            for (int e = start; e < end; e++) {
+                // Rows are sorted by target, so the gaps are small and positive
+                out.writeVarInt(graph.target(e) - prev);
+                out.writeVarInt(graph.linkCount(e));
+                prev = graph.target(e);
+            }
+        }
+    }
+
+    public static HostGraphSnapshot read(Path file) throws IOException {
+        try (MappedReader in = new MappedReader(file)) {
+            return read(in);
+        }
+    }
+
+    public static HostGraphSnapshot read(MappedReader in) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("Not a graph file");
+        int version = in.readVarInt();
+        if (version != VERSION) throw new IOException("Unsupported graph file version " + version);
+
+        int n = in.readVarInt();
+        int m = in.readVarInt();
+        String[] hosts = new String[n];
+        long[] firstSeen = new long[n];
+        int[] depths = new int[n];
+        for (int v = 0; v < n; v++) {
+            hosts[v] = in.readString();
+            firstSeen[v] = in.readVarLong();
+            depths[v] = in.readVarInt() - 1;
+        }
+
+        int[] offsets = new int[n + 1];
+        int[] targets = new int[m];
+        int[] counts = new int[m];
+        int e = 0;
+        for (int v = 0; v < n; v++) {
+            int degree = in.readVarInt();
+            if (e + degree > m) throw new IOException("Corrupt graph file, more edges than declared");
+            int prev = 0;
+            for (int i = 0; i < degree; i++, e++) {
+                prev += in.readVarInt();
+                targets[e] = prev;
+                counts[e] = in.readVarInt();
+            }
+            offsets[v + 1] = e;
+        }
+        return new HostGraphSnapshot(hosts, firstSeen, depths, offsets, targets, counts);
+    }
+}
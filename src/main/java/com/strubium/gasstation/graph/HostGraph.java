@@ -0,0 +1,259 @@
+package com.strubium.gasstation.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrent host-to-host link graph.
+ * <p>
+ * Hosts are interned to dense int ids. Edges are keyed by {@code (from << 32) | to}
+ * and kept in lock-striped primitive hash maps (striped by source host), each edge
+ * carrying the number of times the link was seen. Readers never touch the live
+ * structure, they take a {@link HostGraphSnapshot}.
+ */
+public class HostGraph {
+    private static final int STRIPES = 64;
+    private static final int DEPTH_PAGE_BITS = 12;
+    private static final int UNKNOWN_DEPTH = Integer.MAX_VALUE;
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private final Object internLock = new Object();
+    private String[] names = new String[1024];
+    private long[] firstSeen = new long[1024];
+    private volatile int size;
+    // Paged so that depth and in-degree updates never race with the arrays being grown
+    private volatile AtomicIntegerArray[] depthPages = new AtomicIntegerArray[0];
+    private volatile AtomicIntegerArray[] inDegreePages = new AtomicIntegerArray[0];
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    private final LongIntHashMap[] edges = new LongIntHashMap[STRIPES];
+    private final LongAdder edgeCount = new LongAdder();
+
+    public HostGraph() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+            edges[i] = new LongIntHashMap(256);
+        }
+    }
+
+    /**
+     * Returns the id of {@code host}, assigning the next free id on first sight.
+     */
+    public int intern(String host) {
+        return intern(host, System.currentTimeMillis());
+    }
+
+    private int intern(String host, long seenAt) {
+        Integer id = ids.get(host);
+        if (id != null) return id;
+        synchronized (internLock) {
+            id = ids.get(host);
+            if (id != null) return id;
+            int next = size;
+            if (next == names.length) {
+                names = Arrays.copyOf(names, next * 2);
+                firstSeen = Arrays.copyOf(firstSeen, next * 2);
+            }
+            names[next] = host;
+            firstSeen[next] = seenAt;
+            if ((next >>> DEPTH_PAGE_BITS) == depthPages.length) {
+                AtomicIntegerArray page = new AtomicIntegerArray(1 << DEPTH_PAGE_BITS);
+                for (int i = 0; i < page.length(); i++) page.set(i, UNKNOWN_DEPTH);
+                AtomicIntegerArray[] pages = Arrays.copyOf(depthPages, depthPages.length + 1);
+                pages[pages.length - 1] = page;
+                AtomicIntegerArray[] inPages = Arrays.copyOf(inDegreePages, inDegreePages.length + 1);
+                inPages[inPages.length - 1] = new AtomicIntegerArray(1 << DEPTH_PAGE_BITS);
+                inDegreePages = inPages;
+                depthPages = pages;
+            }
+            ids.put(host, next);
+            size = next + 1;
+            return next;
+        }
+    }
+
+    /**
+     * @return the id of {@code host}, or -1 if it was never interned
+     */
+    public int idOf(String host) {
+        Integer id = ids.get(host);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Lowers the crawl depth recorded for host {@code id} to {@code depth} if it was higher.
+     */
+    public void recordDepth(int id, int depth) {
+        AtomicIntegerArray page = depthPages[id >>> DEPTH_PAGE_BITS];
+        int i = id & ((1 << DEPTH_PAGE_BITS) - 1);
+        int current;
+        while (depth < (current = page.get(i))) {
+            if (page.compareAndSet(i, current, depth)) return;
+        }
+    }
+
+    /**
+     * @return the lowest crawl depth the host was seen at, or -1 if unknown
+     */
+    public int depthOf(int id) {
+        int depth = depthPages[id >>> DEPTH_PAGE_BITS].get(id & ((1 << DEPTH_PAGE_BITS) - 1));
+        return depth == UNKNOWN_DEPTH ? -1 : depth;
+    }
+
+    /**
+     * @return how many distinct hosts link to host {@code id}
+     */
+    public int inDegree(int id) {
+        return inDegreePages[id >>> DEPTH_PAGE_BITS].get(id & ((1 << DEPTH_PAGE_BITS) - 1));
+    }
+
+    /**
+     * Records one link from {@code from} to {@code to}.
+     *
+     * @return true if this is the first link between the two hosts
+     */
+    public boolean addEdge(String from, String to) {
+        return addEdge(intern(from), intern(to), 1);
+    }
+
+    /**
+     * Adds {@code count} links between two already interned hosts.
+     *
+     * @return true if the edge did not exist before
+     */
+    public boolean addEdge(int from, int to, int count) {
+        int stripe = stripe(from);
+        long key = ((long) from << 32) | (to & 0xFFFFFFFFL);
+        ReentrantLock lock = locks[stripe];
+        lock.lock();
+        try {
+            if (edges[stripe].add(key, count) != 0) return false;
+        } finally {
+            lock.unlock();
+        }
+        edgeCount.increment();
+        inDegreePages[to >>> DEPTH_PAGE_BITS].incrementAndGet(to & ((1 << DEPTH_PAGE_BITS) - 1));
+        return true;
+    }
+
+    /**
+     * Takes back {@code count} links between two interned hosts, e.g. those of a page
+     * whose links changed.
+     *
+     * @return true if no link is left and the edge is gone
+     */
+    public boolean removeLinks(int from, int to, int count) {
+        int stripe = stripe(from);
+        long key = ((long) from << 32) | (to & 0xFFFFFFFFL);
+        ReentrantLock lock = locks[stripe];
+        lock.lock();
+        try {
+            if (edges[stripe].get(key) == 0 || edges[stripe].subtract(key, count) > 0) return false;
+        } finally {
+            lock.unlock();
+        }
+        edgeCount.decrement();
+        inDegreePages[to >>> DEPTH_PAGE_BITS].decrementAndGet(to & ((1 << DEPTH_PAGE_BITS) - 1));
+        return true;
+    }
+
+    /**
+     * Adds every host and link of {@code other} to this graph. Link counts are summed,
+     * hosts keep the earlier of the two first-seen times and the lower depth.
+     */
+    public void merge(HostGraphSnapshot other) {
+        int n = other.vertexCount();
+        int[] mapped = new int[n];
+        for (int v = 0; v < n; v++) {
+            mapped[v] = intern(other.host(v), other.firstSeen(v));
+            synchronized (internLock) {
+                firstSeen[mapped[v]] = Math.min(firstSeen[mapped[v]], other.firstSeen(v));
+            }
+            if (other.depth(v) >= 0) recordDepth(mapped[v], other.depth(v));
+        }
+        for (int v = 0; v < n; v++) {
+            for (int e = other.outStart(v); e < other.outEnd(v); e++) {
+                addEdge(mapped[v], mapped[other.target(e)], other.linkCount(e));
+            }
+        }
+    }
+
+    public int vertexCount() {
+        return size;
+    }
+
+    public long edgeCount() {
+        return edgeCount.sum();
+    }
+
+    /**
+     * Takes a consistent point-in-time copy of the graph as a CSR structure.
+     * All stripes are locked together while their tables are copied, so the
+     * snapshot never sees half of a concurrent update.
+     */
+    public HostGraphSnapshot snapshot() {
+        long[][] keyTables = new long[STRIPES][];
+        int[][] valueTables = new int[STRIPES][];
+        String[] hosts;
+        long[] seen;
+        int[] depths;
+
+        for (ReentrantLock lock : locks) lock.lock();
+        try {
+            for (int i = 0; i < STRIPES; i++) {
+                keyTables[i] = edges[i].keys().clone();
+                valueTables[i] = edges[i].values().clone();
+            }
+            // Every endpoint of a copied edge was interned before its stripe lock was taken
+            synchronized (internLock) {
+                hosts = Arrays.copyOf(names, size);
+                seen = Arrays.copyOf(firstSeen, size);
+            }
+            depths = new int[hosts.length];
+            for (int v = 0; v < depths.length; v++) depths[v] = depthOf(v);
+        } finally {
+            for (int i = STRIPES - 1; i >= 0; i--) locks[i].unlock();
+        }
+
+        int n = hosts.length;
+        int[] offsets = new int[n + 1];
+        for (long[] keys : keyTables) {
+            for (long k : keys) {
+                if (k != LongIntHashMap.EMPTY) offsets[(int) (k >>> 32) + 1]++;
+            }
+        }
+        for (int i = 0; i < n; i++) offsets[i + 1] += offsets[i];
+
+        int m = offsets[n];
+        long[] packed = new long[m];
+        int[] fill = Arrays.copyOf(offsets, n);
+        for (int s = 0; s < STRIPES; s++) {
+            long[] keys = keyTables[s];
+            int[] values = valueTables[s];
+            for (int i = 0; i < keys.length; i++) {
+                long k = keys[i];
+                if (k == LongIntHashMap.EMPTY) continue;
+                int from = (int) (k >>> 32);
+                packed[fill[from]++] = (k << 32) | (values[i] & 0xFFFFFFFFL);
+            }
+        }
+
+        // Sort each row by target so snapshots of the same graph are identical
+        int[] targets = new int[m];
+        int[] counts = new int[m];
+        for (int v = 0; v < n; v++) Arrays.sort(packed, offsets[v], offsets[v + 1]);
+        for (int e = 0; e < m; e++) {
+            targets[e] = (int) (packed[e] >>> 32);
+            counts[e] = (int) packed[e];
+        }
+        return new HostGraphSnapshot(hosts, seen, depths, offsets, targets, counts);
+    }
+
+    private static int stripe(int from) {
+        int h = from * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+}
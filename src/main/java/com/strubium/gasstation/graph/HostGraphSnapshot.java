@@ -0,0 +1,63 @@
+package com.strubium.gasstation.graph;
+
+/**
+ * Immutable compressed-sparse-row copy of a {@link HostGraph}.
+ * <p>
+ * Outgoing edges of vertex {@code v} are the index range
+ * {@code [outStart(v), outEnd(v))}, each with a target and a link count.
+ */
+public class HostGraphSnapshot {
+    private final String[] hosts;
+    private final long[] firstSeen;
+    private final int[] depths;
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] linkCounts;
+
+    public HostGraphSnapshot(String[] hosts, long[] firstSeen, int[] depths, int[] offsets, int[] targets, int[] linkCounts) {
+        this.hosts = hosts;
+        this.firstSeen = firstSeen;
+        this.depths = depths;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.linkCounts = linkCounts;
+    }
+
+    public int vertexCount() {
+        return hosts.length;
+    }
+
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    public String host(int v) {
+        return hosts[v];
+    }
+
+    /** Milliseconds since the epoch at which the host was first interned. */
+    public long firstSeen(int v) {
+        return firstSeen[v];
+    }
+
+    /** Lowest crawl depth the host was seen at, -1 if unknown. */
+    public int depth(int v) {
+        return depths[v];
+    }
+
+    public int outStart(int v) {
+        return offsets[v];
+    }
+
+    public int outEnd(int v) {
+        return offsets[v + 1];
+    }
+
+    public int target(int e) {
+        return targets[e];
+    }
+
+    public int linkCount(int e) {
+        return linkCounts[e];
+    }
+}
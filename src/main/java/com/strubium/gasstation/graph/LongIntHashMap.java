@@ -0,0 +1,135 @@
+package com.strubium.gasstation.graph;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing long to int map with linear probing.
+ * Not thread-safe, callers guard it with their own lock.
+ */
+final class LongIntHashMap {
+    static final long EMPTY = -1L;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    LongIntHashMap(int expected) {
+        int cap = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        allocate(cap);
+    }
+
+    private void allocate(int cap) {
+        keys = new long[cap];
+        values = new int[cap];
+        Arrays.fill(keys, EMPTY);
+        mask = cap - 1;
+    }
+
+    /**
+     * Adds {@code delta} to the value stored under {@code key}.
+     *
+     * @return the value before the update, 0 if the key was absent
+     */
+    int add(long key, int delta) {
+        int slot = slot(key);
+        while (true) {
+            long k = keys[slot];
+            if (k == key) {
+                int old = values[slot];
+                values[slot] = old + delta;
+                return old;
+            }
+            if (k == EMPTY) {
+                keys[slot] = key;
+                values[slot] = delta;
+                if (++size * 4 > keys.length * 3) rehash();
+                return 0;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Subtracts {@code delta} from the value stored under {@code key}, removing the key
+     * once nothing is left.
+     *
+     * @return the value left, 0 if the key is gone or was absent
+     */
+    int subtract(long key, int delta) {
+        int slot = slot(key);
+        while (true) {
+            long k = keys[slot];
+            if (k == EMPTY) return 0;
+            if (k == key) {
+                int left = values[slot] - delta;
+                if (left > 0) {
+                    values[slot] = left;
+                    return left;
+                }
+                removeAt(slot);
+                return 0;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    int get(long key) {
+        int slot = slot(key);
+        while (true) {
+            long k = keys[slot];
+            if (k == key) return values[slot];
+            if (k == EMPTY) return 0;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Raw key table, unused slots hold {@link #EMPTY}. */
+    long[] keys() {
+        return keys;
+    }
+
+    /** Raw value table, parallel to {@link #keys()}. */
+    int[] values() {
+        return values;
+    }
+
+    int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /** Empties a slot, shifting later keys of the same probe run back so lookups still find them. */
+    private void removeAt(int slot) {
+        int gap = slot;
+        for (int i = (slot + 1) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+            // The key at i may fill the gap if the gap lies between its home slot and i
+            if (((i - slot(keys[i])) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        keys[gap] = EMPTY;
+        values[gap] = 0;
+        size--;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long k = oldKeys[i];
+            if (k == EMPTY) continue;
+            int slot = slot(k);
+            while (keys[slot] != EMPTY) slot = (slot + 1) & mask;
+            keys[slot] = k;
+            values[slot] = oldValues[i];
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.strubium.gasstation.io;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the {@link BinaryWriter} format from a stream, for data that does not come from
+ * a file, e.g. a socket. Files are better read through {@link MappedReader}.
+ */
+public class BinaryReader implements Closeable {
+    private final InputStream in;
+    private byte[] scratch = new byte[256];
+
+    public BinaryReader(InputStream in) {
+        this.in = new BufferedInputStream(in, 1 << 16);
+    }
+
+    public int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0) throw new EOFException();
+        return b;
+    }
+
+    public int readInt() throws IOException {
+        int v = 0;
+        for (int i = 0; i < 4; i++) v = (v << 8) | readByte();
+        return v;
+    }
+
+    public long readVarLong() throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public int readVarInt() throws IOException {
+        return (int) readVarLong();
+    }
+
+    /**
+     * @param maxLength longest string accepted, guards against a corrupt length prefix
+     */
+    public String readString(int maxLength) throws IOException {
+        int len = readVarInt();
+        if (len < 0 || len > maxLength) throw new IOException("Bad string length " + len);
+        if (scratch.length < len) scratch = new byte[Math.max(len, scratch.length * 2)];
+        int read = in.readNBytes(scratch, 0, len);
+        if (read < len) throw new EOFException();
+        return new String(scratch, 0, len, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
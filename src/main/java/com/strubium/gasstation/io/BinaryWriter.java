@@ -0,0 +1,91 @@
+package com.strubium.gasstation.io;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Buffered writer for the crawler's compact binary files.
+ * Integers are written as LEB128 varints, strings as a varint length followed by UTF-8 bytes.
+ * The counterpart is {@link MappedReader}.
+ */
+public class BinaryWriter implements Closeable {
+    private final OutputStream out;
+    private long written;
+
+    public BinaryWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /** Opens {@code file} for writing, replacing it, or appending to it if {@code append} is set. */
+    public static BinaryWriter open(Path file, boolean append) throws IOException {
+        OutputStream os = append
+                ? Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)
+                : Files.newOutputStream(file);
+        return new BinaryWriter(new BufferedOutputStream(os, 1 << 16));
+    }
+
+    public void writeByte(int b) throws IOException {
+        out.write(b);
+        written++;
+    }
+
+    public void writeInt(int v) throws IOException {
+        for (int shift = 24; shift >= 0; shift -= 8) out.write(v >>> shift);
+        written += 4;
+    }
+
+    public void writeLong(long v) throws IOException {
+        for (int shift = 56; shift >= 0; shift -= 8) out.write((int) (v >>> shift));
+        written += 8;
+    }
+
+    public void writeFloat(float v) throws IOException {
+        writeInt(Float.floatToRawIntBits(v));
+    }
+
+    public void writeDouble(double v) throws IOException {
+        writeLong(Double.doubleToRawLongBits(v));
+    }
+
+    /** Unsigned LEB128, small non-negative values take one byte. */
+    public void writeVarLong(long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            written++;
+            v >>>= 7;
+        }
+        out.write((int) v);
+        written++;
+    }
+
+    public void writeVarInt(int v) throws IOException {
+        writeVarLong(v & 0xFFFFFFFFL);
+    }
+
+    public void writeString(String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        out.write(bytes);
+        written += bytes.length;
+    }
+
+    /** Bytes written through this writer so far. */
+    public long written() {
+        return written;
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
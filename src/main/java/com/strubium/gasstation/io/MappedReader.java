@@ -0,0 +1,112 @@
+package com.strubium.gasstation.io;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sequential reader over a memory-mapped file written by {@link BinaryWriter}.
+ * Files are mapped in windows, so they may be larger than a single mapping allows.
+ */
+public class MappedReader implements Closeable {
+    private static final long WINDOW = 256L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long limit;
+    private MappedByteBuffer buffer;
+    private long windowStart;
+    private byte[] scratch = new byte[256];
+
+    public MappedReader(Path file) throws IOException {
+        this(file, -1);
+    }
+
+    /**
+     * @param limit bytes to read from the start of the file, -1 for the whole file
+     */
+    public MappedReader(Path file, long limit) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        long size = channel.size();
+        this.limit = limit < 0 ? size : Math.min(limit, size);
+        map(0);
+    }
+
+    public long position() {
+        return windowStart + buffer.position();
+    }
+
+    public boolean hasRemaining() {
+        return position() < limit;
+    }
+
+    public int readByte() throws IOException {
+        ensure(1);
+        return buffer.get() & 0xFF;
+    }
+
+    public int readInt() throws IOException {
+        ensure(4);
+        return buffer.getInt();
+    }
+
+    public long readLong() throws IOException {
+        ensure(8);
+        return buffer.getLong();
+    }
+
+    public float readFloat() throws IOException {
+        ensure(4);
+        return buffer.getFloat();
+    }
+
+    public double readDouble() throws IOException {
+        ensure(8);
+        return buffer.getDouble();
+    }
+
+    public long readVarLong() throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("Malformed varint at " + position());
+    }
+
+    public int readVarInt() throws IOException {
+        return (int) readVarLong();
+    }
+
+    public String readString() throws IOException {
+        int len = readVarInt();
+        if (len < 0 || len > limit - position()) throw new IOException("Bad string length " + len + " at " + position());
+        ensure(len);
+        if (scratch.length < len) scratch = new byte[Math.max(len, scratch.length * 2)];
+        buffer.get(scratch, 0, len);
+        return new String(scratch, 0, len, StandardCharsets.UTF_8);
+    }
+
+    private void ensure(int n) throws IOException {
+        if (buffer.remaining() >= n) return;
+        long pos = position();
+        if (pos + n > limit) throw new EOFException("Unexpected end of file at " + pos);
+        map(pos);
+    }
+
+    private void map(long start) throws IOException {
+        long length = Math.min(WINDOW, limit - start);
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        windowStart = start;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
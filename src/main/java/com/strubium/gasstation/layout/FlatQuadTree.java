@@ -0,0 +1,283 @@
+package com.strubium.gasstation.layout;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Barnes-Hut quadtree stored in flat arrays.
+ * <p>
+ * Points are sorted by their Morton (Z-order) code, so every cell of the tree is a
+ * contiguous range of the sorted points and its children are found by binary search.
+ * Nodes are laid out in pre-order with a {@code next} index pointing past each subtree,
+ * which lets {@link #repulsion} walk the tree without recursion or a stack. Cells with a
+ * single occupied quadrant are collapsed into their child, and the opening test uses the
+ * bounding box of a cell's points rather than the cell itself. The cells below
+ * {@link #SPLIT_LEVEL} are sized in parallel, placed, then filled in parallel.
+ * All arrays are kept and reused by the next {@link #build}.
+ */
+final class FlatQuadTree {
+    static final int LEAF_SIZE = 8;
+    private static final int MAX_LEVEL = MortonOrder.BITS;
+    private static final int SPLIT_LEVEL = 3;
+    private static final double EPS = 1e-4;
+
+    private long[] keys = new long[0];
+    private int[] order = new int[0];
+
+    private int nodeCount;
+    private int[] next = new int[0];
+    private int[] start = new int[0];
+    private int[] end = new int[0]; // -1 for internal nodes
+    private double[] mass = new double[0];
+    private double[] comX = new double[0];
+    private double[] comY = new double[0];
+    private double[] size2 = new double[0];
+    private double[] minX = new double[0];
+    private double[] minY = new double[0];
+    private double[] maxX = new double[0];
+    private double[] maxY = new double[0];
+
+    private int cellCount;
+    private final int[] cellLo = new int[1 << (2 * SPLIT_LEVEL)];
+    private final int[] cellHi = new int[cellLo.length];
+    private final int[] cellLevel = new int[cellLo.length];
+    private final int[] cellNodes = new int[cellLo.length];
+    private final int[] cellOffset = new int[cellLo.length];
+    private int topCount;
+    private final int[] topNodes = new int[cellLo.length];
+
+    /**
+     * Rebuilds the tree over the first {@code n} points.
+     */
+    void build(double[] xs, double[] ys, int n) {
+        if (keys.length < n) {
+            keys = new long[n];
+            order = new int[n];
+        }
+        double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE;
+        double x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            x0 = Math.min(x0, xs[i]);
+            y0 = Math.min(y0, ys[i]);
+            x1 = Math.max(x1, xs[i]);
+            y1 = Math.max(y1, ys[i]);
+        }
+        MortonOrder.sort(xs, ys, n, x0, y0, Math.max(x1 - x0, y1 - y0), keys);
+        for (int k = 0; k < n; k++) order[k] = MortonOrder.index(keys[k]);
+
+        cellCount = 0;
+        topCount = 0;
+        nodeCount = 0;
+        if (n == 0) return;
+
+        gatherCells(0, n, 0);
+        IntStream.range(0, cellCount).parallel().forEach(c -> cellNodes[c] = countNodes(cellLo[c], cellHi[c], cellLevel[c]));
+
+        int[] cursor = {0};
+        int[] cell = {0};
+        placeTop(0, n, 0, cursor, cell);
+        nodeCount = cursor[0];
+        ensureNodes(nodeCount);
+
+        IntStream.range(0, cellCount).parallel().forEach(c -> fill(cellLo[c], cellHi[c], cellLevel[c], cellOffset[c], xs, ys));
+        // Children come after their parent in pre-order, so walking backwards finishes them first
+        for (int t = topCount - 1; t >= 0; t--) aggregate(topNodes[t]);
+    }
+
+    /** Index of the point with Morton rank {@code k}. */
+    int pointAt(int k) {
+        return order[k];
+    }
+
+    /**
+     * Adds the approximate repulsion all other points exert on point {@code i} to
+     * {@code fx[i]} and {@code fy[i]}.
+     */
+    void repulsion(int i, double[] xs, double[] ys, double theta, double strength, double[] fx, double[] fy) {
+        double px = xs[i], py = ys[i];
+        double ax = 0, ay = 0;
+        double theta2 = theta * theta;
+        int node = 0;
+        while (node < nodeCount) {
+            double dx = comX[node] - px, dy = comY[node] - py;
+            double dist2 = dx * dx + dy * dy + EPS;
+            if (size2[node] < theta2 * dist2) {
+                double inv = 1.0 / Math.sqrt(dist2);
+                double s = strength * mass[node] * inv * inv * inv;
+                ax -= dx * s;
+                ay -= dy * s;
+                node = next[node];
+            } else if (end[node] >= 0) {
+                for (int k = start[node]; k < end[node]; k++) {
+                    int j = order[k];
+                    if (j == i) continue;
+                    double ex = xs[j] - px, ey = ys[j] - py;
+                    double inv = 1.0 / Math.sqrt(ex * ex + ey * ey + EPS);
+                    double s = strength * inv * inv * inv;
+                    ax -= ex * s;
+                    ay -= ey * s;
+                }
+                node = next[node];
+            } else {
+                node++;
+            }
+        }
+        fx[i] += ax;
+        fy[i] += ay;
+    }
+
+    private boolean isLeaf(int lo, int hi, int level) {
+        return hi - lo <= LEAF_SIZE || level == MAX_LEVEL;
+    }
+
+    private void gatherCells(int lo, int hi, int level) {
+        if (level == SPLIT_LEVEL || isLeaf(lo, hi, level)) {
+            cellLo[cellCount] = lo;
+            cellHi[cellCount] = hi;
+            cellLevel[cellCount++] = level;
+            return;
+        }
+        int shift = shift(level);
+        for (int q = 0, from = lo; q < 4; q++) {
+            int to = q == 3 ? hi : split(from, hi, shift, q + 1);
+            if (to > from) gatherCells(from, to, level + 1);
+            from = to;
+        }
+    }
+
+    /** Assigns pre-order indices to the nodes above the cells, and each cell its offset. */
+    private void placeTop(int lo, int hi, int level, int[] cursor, int[] cell) {
+        if (level == SPLIT_LEVEL || isLeaf(lo, hi, level)) {
+            int c = cell[0]++;
+            cellOffset[c] = cursor[0];
+            cursor[0] += cellNodes[c];
+            return;
+        }
+        int node = cursor[0]++;
+        topNodes[topCount++] = node;
+        ensureNodes(node + 1);
+        end[node] = -1;
+        int shift = shift(level);
+        for (int q = 0, from = lo; q < 4; q++) {
+            int to = q == 3 ? hi : split(from, hi, shift, q + 1);
+            if (to > from) placeTop(from, to, level + 1, cursor, cell);
+            from = to;
+        }
+        next[node] = cursor[0];
+    }
+
+    private int countNodes(int lo, int hi, int level) {
+        if (isLeaf(lo, hi, level)) return 1;
+        if (singleQuadrant(lo, hi, level)) return countNodes(lo, hi, level + 1);
+        int total = 1;
+        int shift = shift(level);
+        for (int q = 0, from = lo; q < 4; q++) {
+            int to = q == 3 ? hi : split(from, hi, shift, q + 1);
+            if (to > from) total += countNodes(from, to, level + 1);
+            from = to;
+        }
+        return total;
+    }
+
+    /** Writes the subtree over {@code [lo, hi)} starting at {@code node}, returns the index after it. */
+    private int fill(int lo, int hi, int level, int node, double[] xs, double[] ys) {
+        if (isLeaf(lo, hi, level)) {
+            double sx = 0, sy = 0;
+            double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE;
+            double x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+            for (int k = lo; k < hi; k++) {
+                double x = xs[order[k]], y = ys[order[k]];
+                sx += x;
+                sy += y;
+                x0 = Math.min(x0, x);
+                y0 = Math.min(y0, y);
+                x1 = Math.max(x1, x);
+                y1 = Math.max(y1, y);
+            }
+            start[node] = lo;
+            end[node] = hi;
+            mass[node] = hi - lo;
+            comX[node] = sx / (hi - lo);
+            comY[node] = sy / (hi - lo);
+            setBounds(node, x0, y0, x1, y1);
+            next[node] = node + 1;
+            return node + 1;
+        }
+        if (singleQuadrant(lo, hi, level)) return fill(lo, hi, level + 1, node, xs, ys);
+        int cursor = node + 1;
+        int shift = shift(level);
+        for (int q = 0, from = lo; q < 4; q++) {
+            int to = q == 3 ? hi : split(from, hi, shift, q + 1);
+            if (to > from) cursor = fill(from, to, level + 1, cursor, xs, ys);
+            from = to;
+        }
+        end[node] = -1;
+        next[node] = cursor;
+        aggregate(node);
+        return cursor;
+    }
+
+    private void aggregate(int node) {
+        double m = 0, sx = 0, sy = 0;
+        double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE;
+        double x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+        for (int c = node + 1; c < next[node]; c = next[c]) {
+            m += mass[c];
+            sx += comX[c] * mass[c];
+            sy += comY[c] * mass[c];
+            x0 = Math.min(x0, minX[c]);
+            y0 = Math.min(y0, minY[c]);
+            x1 = Math.max(x1, maxX[c]);
+            y1 = Math.max(y1, maxY[c]);
+        }
+        mass[node] = m;
+        comX[node] = sx / m;
+        comY[node] = sy / m;
+        setBounds(node, x0, y0, x1, y1);
+    }
+
+    private void setBounds(int node, double x0, double y0, double x1, double y1) {
+        minX[node] = x0;
+        minY[node] = y0;
+        maxX[node] = x1;
+        maxY[node] = y1;
+        double size = Math.max(x1 - x0, y1 - y0);
+        size2[node] = size * size;
+    }
+
+    /** True if all points of the range fall into the same child quadrant. */
+    private boolean singleQuadrant(int lo, int hi, int level) {
+        int shift = 32 + shift(level);
+        return ((keys[lo] >>> shift) & 3) == ((keys[hi - 1] >>> shift) & 3);
+    }
+
+    /** First index in {@code [lo, hi)} whose quadrant at {@code shift} is at least {@code quadrant}. */
+    private int split(int lo, int hi, int shift, int quadrant) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if ((int) ((keys[mid] >>> (32 + shift)) & 3) < quadrant) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static int shift(int level) {
+        return 2 * (MAX_LEVEL - 1 - level);
+    }
+
+    private void ensureNodes(int count) {
+        if (next.length >= count) return;
+        int capacity = Math.max(count, next.length + (next.length >> 1));
+        next = Arrays.copyOf(next, capacity);
+        start = Arrays.copyOf(start, capacity);
+        end = Arrays.copyOf(end, capacity);
+        mass = Arrays.copyOf(mass, capacity);
+        comX = Arrays.copyOf(comX, capacity);
+        comY = Arrays.copyOf(comY, capacity);
+        size2 = Arrays.copyOf(size2, capacity);
+        minX = Arrays.copyOf(minX, capacity);
+        minY = Arrays.copyOf(minY, capacity);
+        maxX = Arrays.copyOf(maxX, capacity);
+        maxY = Arrays.copyOf(maxY, capacity);
+    }
+}
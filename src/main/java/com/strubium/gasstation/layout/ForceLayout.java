@@ -0,0 +1,203 @@
+package com.strubium.gasstation.layout;
+
+import com.strubium.gasstation.graph.HostGraphSnapshot;
+import com.strubium.gasstation.logger.ProjectLogger;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Parallel force-directed layout: Barnes-Hut repulsion over a {@link FlatQuadTree}
+ * plus a spring along every link, treated as undirected.
+ * <p>
+ * All working arrays are allocated once per run. Each iteration rebuilds the tree in
+ * place, computes forces for chunks of nodes in Morton order (neighbouring nodes walk
+ * the same part of the tree, which keeps it in cache), then moves the nodes. The run
+ * ends once the mean step per node drops below {@link LayoutConfig#minMeanStep()} or
+ * stops improving, whichever comes first.
+ */
+public class ForceLayout {
+    private final LayoutConfig config;
+
+    public ForceLayout(LayoutConfig config) {
+        this.config = config;
+    }
+
+    public Positions run(HostGraphSnapshot graph, int width, int height) {
+        int n = graph.vertexCount();
+        double[] xs = new double[n], ys = new double[n];
+        Random rnd = new Random(42);
+        for (int i = 0; i < n; i++) {
+            xs[i] = width * 0.5 + rnd.nextDouble() * 100 - 50;
+            ys[i] = height * 0.5 + rnd.nextDouble() * 100 - 50;
+        }
+        return run(graph, xs, ys, config.maxIterations());
+    }
+
+    /**
+     * Starts from a previous layout. Hosts that were laid out before keep their position,
+     * new hosts are placed next to their already placed neighbours, and only a short
+     * refinement runs. Falls back to a cold start when most hosts are new.
+     */
+    public Positions run(HostGraphSnapshot graph, LayoutStore.Stored previous, int width, int height) {
+        int n = graph.vertexCount();
+        Map<String, Integer> index = new HashMap<>(previous.hosts().length * 2);
+        for (int i = 0; i < previous.hosts().length; i++) index.put(previous.hosts()[i], i);
+
+        double[] xs = new double[n], ys = new double[n];
+        boolean[] placed = new boolean[n];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int v = 0; v < n; v++) {
+            Integer old = index.get(graph.host(v));
+            if (old == null) continue;
+            xs[v] = previous.xs()[old];
+            ys[v] = previous.ys()[old];
+            placed[v] = true;
+            queue.add(v);
+        }
+        int known = queue.size();
+        if (known < n / 2) {
+            ProjectLogger.LOGGER.info("Only " + known + " of " + n + " hosts have a previous position, laying out from scratch");
+            return run(graph, width, height);
+        }
+
+        // Breadth-first out from the known hosts, each new host lands near the centroid of its placed neighbours
+        Adjacency adjacency = Adjacency.of(graph);
+        int[] adjStart = adjacency.start(), adj = adjacency.targets();
+        Random rnd = new Random(42);
+        double spread = config.springLength() * 0.5;
+        while (!queue.isEmpty()) {
+            int u = queue.poll();
+            for (int a = adjStart[u]; a < adjStart[u + 1]; a++) {
+                int w = adj[a];
+                if (placed[w]) continue;
+                double sx = 0, sy = 0;
+                int count = 0;
+                for (int b = adjStart[w]; b < adjStart[w + 1]; b++) {
+                    int x = adj[b];
+                    if (!placed[x]) continue;
+                    sx += xs[x];
+                    sy += ys[x];
+                    count++;
+                }
+                xs[w] = sx / count + (rnd.nextDouble() * 2 - 1) * spread;
+                ys[w] = sy / count + (rnd.nextDouble() * 2 - 1) * spread;
+                placed[w] = true;
+                queue.add(w);
+            }
+        }
+        // Hosts with no path to a known one start around the centre like in a cold start
+        for (int v = 0; v < n; v++) {
+            if (placed[v]) continue;
+            xs[v] = width * 0.5 + rnd.nextDouble() * 100 - 50;
+            ys[v] = height * 0.5 + rnd.nextDouble() * 100 - 50;
+        }
+        ProjectLogger.LOGGER.info("Warm start: " + known + " of " + n + " hosts keep their previous position");
+        return run(graph, xs, ys, config.warmIterations());
+    }
+
+    /**
+     * Refines the given start positions in place for at most {@code maxIterations}.
+     */
+    public Positions run(HostGraphSnapshot graph, double[] xs, double[] ys, int maxIterations) {
+        long started = System.nanoTime();
+        int n = graph.vertexCount();
+
+        Adjacency adjacency = Adjacency.of(graph);
+        int[] adjStart = adjacency.start(), adj = adjacency.targets();
+
+        double[] vx = new double[n], vy = new double[n];
+        double[] fx = new double[n], fy = new double[n];
+        int chunks = Math.max(1, Math.min(n / 256, Runtime.getRuntime().availableProcessors() * 8));
+        double[] chunkStep = new double[chunks];
+
+        double repulsion = config.repulsion() * Math.sqrt(n);
+        double springLength = config.springLength(), springK = config.springK();
+        double damping = config.damping(), theta = config.theta(), maxStep = config.maxStep();
+        FlatQuadTree tree = new FlatQuadTree();
+
+        int iteration = 0;
+        double meanStep = Double.MAX_VALUE;
+        double bestStep = Double.MAX_VALUE;
+        double peakStep = 0;
+        int stalled = 0;
+        while (iteration < maxIterations && n > 0) {
+            iteration++;
+            tree.build(xs, ys, n);
+            IntStream.range(0, chunks).parallel().forEach(c -> {
+                double step = 0;
+                for (int k = (int) ((long) n * c / chunks), to = (int) ((long) n * (c + 1) / chunks); k < to; k++) {
+                    int i = tree.pointAt(k);
+                    fx[i] = 0;
+                    fy[i] = 0;
+                    tree.repulsion(i, xs, ys, theta, repulsion, fx, fy);
+                    double ax = fx[i], ay = fy[i];
+                    for (int a = adjStart[i]; a < adjStart[i + 1]; a++) {
+                        int other = adj[a];
+                        double dx = xs[other] - xs[i], dy = ys[other] - ys[i];
+                        double dist = Math.sqrt(dx * dx + dy * dy) + 1e-4;
+                        double f = springK * (dist - springLength);
+                        ax += dx / dist * f;
+                        ay += dy / dist * f;
+                    }
+                    ax = Math.max(-maxStep, Math.min(maxStep, ax));
+                    ay = Math.max(-maxStep, Math.min(maxStep, ay));
+                    vx[i] = (vx[i] + ax) * damping;
+                    vy[i] = (vy[i] + ay) * damping;
+                    step += Math.sqrt(vx[i] * vx[i] + vy[i] * vy[i]);
+                }
+                chunkStep[c] = step;
+            });
+            IntStream.range(0, chunks).parallel().forEach(c -> {
+                for (int i = (int) ((long) n * c / chunks), to = (int) ((long) n * (c + 1) / chunks); i < to; i++) {
+                    xs[i] += vx[i];
+                    ys[i] += vy[i];
+                }
+            });
+
+            double total = 0;
+            for (double s : chunkStep) total += s;
+            meanStep = total / n;
+            if (meanStep < config.minMeanStep()) break;
+            // Nodes speed up while the initial cluster spreads out, only count stalls after that
+            if (meanStep < bestStep * 0.99 || meanStep > peakStep) {
+                peakStep = Math.max(peakStep, meanStep);
+                bestStep = meanStep;
+                stalled = 0;
+            } else if (++stalled >= config.stallIterations()) {
+                break;
+            }
+        }
+
+        ProjectLogger.LOGGER.info(String.format("Layout of %d nodes: %d iterations, mean step %.3f, %d ms",
+                n, iteration, n > 0 ? meanStep : 0.0, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)));
+        return new Positions(xs, ys, iteration);
+    }
+
+    /** Links as undirected edges in CSR form. */
+    private record Adjacency(int[] start, int[] targets) {
+        static Adjacency of(HostGraphSnapshot graph) {
+            int n = graph.vertexCount();
+            int[] start = new int[n + 1];
+            for (int v = 0; v < n; v++) {
+                start[v + 1] += graph.outEnd(v) - graph.outStart(v);
+                for (int e = graph.outStart(v); e < graph.outEnd(v); e++) start[graph.target(e) + 1]++;
+            }
+            for (int v = 0; v < n; v++) start[v + 1] += start[v];
+            int[] targets = new int[start[n]];
+            int[] fill = new int[n];
+            for (int a = 0; a < n; a++) {
+                for (int e = graph.outStart(a); e < graph.outEnd(a); e++) {
+                    int b = graph.target(e);
+                    targets[start[a] + fill[a]++] = b;
+                    targets[start[b] + fill[b]++] = a;
+                }
+            }
+            return new Adjacency(start, targets);
+        }
+    }
+}
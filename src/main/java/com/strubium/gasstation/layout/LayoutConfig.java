@@ -0,0 +1,34 @@
+package com.strubium.gasstation.layout;
+
+/**
+ * Tuning for the {@link ForceLayout}.
+ *
+ * @param repulsion     repulsion strength, scaled by the square root of the node count
+ * @param springLength  rest length of the spring along each link
+ * @param springK       spring stiffness
+ * @param damping       velocity kept from one iteration to the next
+ * @param theta         Barnes-Hut opening angle, higher is faster and coarser
+ * @param maxStep       per-axis cap on the force applied in one iteration
+ * @param maxIterations hard iteration limit
+ * @param minMeanStep   the layout stops once nodes move less than this on average
+ * @param stallIterations the layout also stops once the mean step has not dropped by at
+ *                        least one percent below its best value for this many iterations
+ * @param warmIterations  iteration limit when starting from a previous layout
+ */
+public record LayoutConfig(
+        double repulsion,
+        double springLength,
+        double springK,
+        double damping,
+        double theta,
+        double maxStep,
+        int maxIterations,
+        double minMeanStep,
+        int stallIterations,
+        int warmIterations
+) {
+
+    public static LayoutConfig defaults() {
+        return new LayoutConfig(1000.0, 80.0, 0.05, 0.85, 0.5, 50.0, 400, 0.5, 30, 60);
+    }
+}
@@ -0,0 +1,66 @@
+package com.strubium.gasstation.layout;
+
+import com.strubium.gasstation.graph.HostGraphSnapshot;
+import com.strubium.gasstation.io.BinaryWriter;
+import com.strubium.gasstation.io.MappedReader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Sidecar file keeping the layout of the last run, keyed by host name, so the next run
+ * can start from it instead of from scratch.
+ */
+public final class LayoutStore {
+    private static final int MAGIC = 0x494D4C59; // "IMLY"
+    private static final int VERSION = 1;
+
+    private LayoutStore() {
+    }
+
+    /** Positions of a previous run. */
+    public record Stored(String[] hosts, double[] xs, double[] ys) {
+    }
+
+    /**
+     * Replaces {@code file} with the given layout. The file is written next to its final
+     * place and renamed, so a crash never leaves a half written layout behind.
+     */
+    public static void save(HostGraphSnapshot graph, Positions positions, Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BinaryWriter out = BinaryWriter.open(tmp, false)) {
+            out.writeInt(MAGIC);
+            out.writeVarInt(VERSION);
+            out.writeVarInt(graph.vertexCount());
+            for (int v = 0; v < graph.vertexCount(); v++) {
+                out.writeString(graph.host(v));
+                out.writeFloat((float) positions.xs()[v]);
+                out.writeFloat((float) positions.ys()[v]);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the stored layout, or null if there is none
+     */
+    public static Stored load(Path file) throws IOException {
+        if (!Files.exists(file)) return null;
+        try (MappedReader in = new MappedReader(file)) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a layout file: " + file);
+            int version = in.readVarInt();
+            if (version != VERSION) throw new IOException("Unsupported layout file version " + version);
+            int n = in.readVarInt();
+            String[] hosts = new String[n];
+            double[] xs = new double[n], ys = new double[n];
+            for (int i = 0; i < n; i++) {
+                hosts[i] = in.readString();
+                xs[i] = in.readFloat();
+                ys[i] = in.readFloat();
+            }
+            return new Stored(hosts, xs, ys);
+        }
+    }
+}
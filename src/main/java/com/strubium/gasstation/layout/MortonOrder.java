@@ -0,0 +1,75 @@
+package com.strubium.gasstation.layout;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Z-order (Morton) sorting of 2D points.
+ * <p>
+ * Positions are quantised to {@link #BITS} bits per axis inside a square and the two
+ * coordinates are interleaved, y in the odd bits. Sorting by the code puts every
+ * quadtree cell, at every level, into one contiguous range: the cell at level
+ * {@code z} is given by the top {@code 2 * z} bits.
+ */
+public final class MortonOrder {
+    public static final int BITS = 15; // 30-bit codes keep the sort keys positive
+
+    private MortonOrder() {
+    }
+
+    /**
+     * Fills {@code keys[0, n)} with {@code (code << 32) | index} for every point and sorts them.
+     * The square starts at {@code (x0, y0)} and has side {@code extent}.
+     */
+    public static void sort(double[] xs, double[] ys, int n, double x0, double y0, double extent, long[] keys) {
+        double scale = ((1 << BITS) - 1) / Math.max(extent, 1e-9);
+        IntStream.range(0, n).parallel().forEach(i -> {
+            int qx = (int) ((xs[i] - x0) * scale);
+            int qy = (int) ((ys[i] - y0) * scale);
+            keys[i] = ((long) (spread(qx) | (spread(qy) << 1)) << 32) | i;
+        });
+        Arrays.parallelSort(keys, 0, n);
+    }
+
+    public static int code(long key) {
+        return (int) (key >>> 32);
+    }
+
+    public static int index(long key) {
+        return (int) key;
+    }
+
+    /** The level {@code level} cell containing {@code code}, as a code prefix. */
+    public static int cell(int code, int level) {
+        return code >>> (2 * (BITS - level));
+    }
+
+    /** Column of a level cell prefix. */
+    public static int cellX(int cell) {
+        return compact(cell);
+    }
+
+    /** Row of a level cell prefix. */
+    public static int cellY(int cell) {
+        return compact(cell >>> 1);
+    }
+
+    /** Spreads the low 15 bits of {@code v} to the even bit positions. */
+    static int spread(int v) {
+        v &= 0x7FFF;
+        v = (v | (v << 8)) & 0x00FF00FF;
+        v = (v | (v << 4)) & 0x0F0F0F0F;
+        v = (v | (v << 2)) & 0x33333333;
+        v = (v | (v << 1)) & 0x55555555;
+        return v;
+    }
+
+    private static int compact(int v) {
+        v &= 0x55555555;
+        v = (v | (v >>> 1)) & 0x33333333;
+        v = (v | (v >>> 2)) & 0x0F0F0F0F;
+        v = (v | (v >>> 4)) & 0x00FF00FF;
+        v = (v | (v >>> 8)) & 0x0000FFFF;
+        return v;
+    }
+}
@@ -0,0 +1,9 @@
+package com.strubium.gasstation.layout;
+
+/**
+ * Layout result, indexed by snapshot vertex id.
+ *
+ * @param iterations how many iterations the layout ran before it stopped
+ */
+public record Positions(double[] xs, double[] ys, int iterations) {
+}
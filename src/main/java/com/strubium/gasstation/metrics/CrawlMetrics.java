@@ -0,0 +1,329 @@
+package com.strubium.gasstation.metrics;
+
+import com.strubium.gasstation.frontier.Frontier;
+import com.strubium.gasstation.logger.ProjectLogger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histogram of a crawl.
+ * <p>
+ * Recording is lock-free ({@link LongAdder}s and a {@link Histogram}), so workers pay a
+ * few atomic adds per page. Queue gauges are read from the watched {@link Frontier} only
+ * when someone asks. The numbers are published as a JMX MXBean and, once
+ * {@link #startReporting(long)} is called, as one summary log line per interval.
+ */
+public class CrawlMetrics implements CrawlMetricsMXBean {
+    public static final String OBJECT_NAME = "com.strubium.gasstation:type=CrawlMetrics";
+    // Fetches slower than this are charged to their host
+    private static final long SLOW_FETCH_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final int MAX_SLOW_HOSTS = 10_000;
+    private static final int TOP_HOSTS = 20;
+
+    private final long startedNanos = System.nanoTime();
+    private final LongAdder fetches = new LongAdder();
+    private final LongAdder pages = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder links = new LongAdder();
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder saturatedHosts = new LongAdder();
+    private final LongAdder saturatedPages = new LongAdder();
+    private final LongAdder robotsDisallowed = new LongAdder();
+    private final LongAdder sitemapUrls = new LongAdder();
+    private final LongAdder deadHostUrls = new LongAdder();
+    private final LongAdder unchanged = new LongAdder();
+    private final LongAdder[] errors = new LongAdder[ErrorKind.values().length];
+    private final Histogram fetchLatency = new Histogram();
+    private final ConcurrentHashMap<String, AtomicLong> slowHosts = new ConcurrentHashMap<>();
+    private volatile Frontier frontier;
+    private ScheduledExecutorService timer;
+
+    public CrawlMetrics() {
+        for (int i = 0; i < errors.length; i++) errors[i] = new LongAdder();
+    }
+
+    /** Reads the queue gauges from {@code frontier}. */
+    public void watch(Frontier frontier) {
+        this.frontier = frontier;
+    }
+
+    /**
+     * Records a finished request, from sending it to the last body byte.
+     *
+     * @param bytes body bytes read off the wire, before decoding
+     */
+    public void fetched(String host, long nanos, long bytes) {
+        fetches.increment();
+        this.bytes.add(bytes);
+        fetchLatency.record(nanos);
+        if (nanos >= SLOW_FETCH_NANOS && (slowHosts.size() < MAX_SLOW_HOSTS || slowHosts.containsKey(host))) {
+            slowHosts.computeIfAbsent(host, h -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    /** Records a page whose links were extracted. */
+    public void parsed(int linkCount) {
+        pages.increment();
+        links.add(linkCount);
+    }
+
+    /** Records the outcome of frontier admission for a batch of links. */
+    public void admission(int queued, int alreadyVisited) {
+        admitted.add(queued);
+        duplicates.add(alreadyVisited);
+    }
+
+    public void throttled() {
+        throttled.increment();
+    }
+
+    /** Records a host that stopped yielding new edges and the queued pages dropped with it. */
+    public void saturated(int droppedPages) {
+        saturatedHosts.increment();
+        saturatedPages.add(droppedPages);
+    }
+
+    /** Records a task skipped because robots.txt disallows it or stayed unreachable. */
+    public void robotsDisallowed() {
+        robotsDisallowed.increment();
+    }
+
+    /** Records URLs queued from sitemaps. */
+    public void sitemapUrls(int count) {
+        sitemapUrls.add(count);
+    }
+
+    /** Records URLs turned away because their host does not resolve. */
+    public void deadHostUrls(int count) {
+        deadHostUrls.add(count);
+    }
+
+    /** Records a revisited page that answered 304 or kept the same links. */
+    public void unchanged() {
+        unchanged.increment();
+    }
+
+    public void error(ErrorKind kind) {
+        errors[kind.ordinal()].increment();
+    }
+
+    /** Registers this instance with the platform MBean server. */
+    public void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            ProjectLogger.LOGGER.warn("Could not register crawl metrics with JMX: " + e.getMessage());
+        }
+    }
+
+    /** Logs {@link #summary} every {@code intervalSeconds} in the background. */
+    public void startReporting(long intervalSeconds) {
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        Interval interval = new Interval(this);
+        timer.scheduleAtFixedRate(() -> ProjectLogger.LOGGER.info(interval.next()),
+                intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public void stopReporting() {
+        if (timer != null) timer.shutdownNow();
+    }
+
+    /** One line covering the whole crawl so far. */
+    public String summary() {
+        return new Interval(this).next();
+    }
+
+    // ==========================
+    // MXBean
+    // ==========================
+
+    @Override
+    public long getFetches() {
+        return fetches.sum();
+    }
+
+    @Override
+    public long getPages() {
+        return pages.sum();
+    }
+
+    @Override
+    public double getPagesPerSecond() {
+        return pages.sum() / Math.max(1e-9, (System.nanoTime() - startedNanos) / 1e9);
+    }
+
+    @Override
+    public long getBytesDownloaded() {
+        return bytes.sum();
+    }
+
+    @Override
+    public long getLinksExtracted() {
+        return links.sum();
+    }
+
+    @Override
+    public long getUrlsAdmitted() {
+        return admitted.sum();
+    }
+
+    @Override
+    public double getDedupeHitRate() {
+        long hits = duplicates.sum(), total = hits + admitted.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public long getThrottled() {
+        return throttled.sum();
+    }
+
+    @Override
+    public long getSaturatedHosts() {
+        return saturatedHosts.sum();
+    }
+
+    @Override
+    public long getSaturatedPagesDropped() {
+        return saturatedPages.sum();
+    }
+
+    @Override
+    public long getRobotsDisallowed() {
+        return robotsDisallowed.sum();
+    }
+
+    @Override
+    public long getSitemapUrls() {
+        return sitemapUrls.sum();
+    }
+
+    @Override
+    public long getDeadHostUrlsDropped() {
+        return deadHostUrls.sum();
+    }
+
+    @Override
+    public long getUnchangedPages() {
+        return unchanged.sum();
+    }
+
+    @Override
+    public Map<String, Long> getErrors() {
+        Map<String, Long> out = new LinkedHashMap<>();
+        for (ErrorKind kind : ErrorKind.values()) out.put(kind.name(), errors[kind.ordinal()].sum());
+        return out;
+    }
+
+    @Override
+    public double getFetchLatencyMeanMillis() {
+        return fetchLatency.snapshot().mean() / 1e6;
+    }
+
+    @Override
+    public double getFetchLatencyP50Millis() {
+        return fetchLatency.snapshot().percentile(0.5) / 1e6;
+    }
+
+    @Override
+    public double getFetchLatencyP99Millis() {
+        return fetchLatency.snapshot().percentile(0.99) / 1e6;
+    }
+
+    @Override
+    public int getQueued() {
+        Frontier f = frontier;
+        return f == null ? 0 : f.size();
+    }
+
+    @Override
+    public int getInFlight() {
+        Frontier f = frontier;
+        return f == null ? 0 : f.inFlight();
+    }
+
+    @Override
+    public int getHosts() {
+        Frontier f = frontier;
+        return f == null ? 0 : f.hostCount();
+    }
+
+    @Override
+    public List<String> getDeepestHostQueues() {
+        Frontier f = frontier;
+        return f == null ? List.of() : f.deepestHostQueues(TOP_HOSTS);
+    }
+
+    @Override
+    public List<String> getSlowestHosts() {
+        return slowHosts.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, AtomicLong> e) -> e.getValue().get()).reversed())
+                .limit(TOP_HOSTS)
+                .map(e -> e.getKey() + "=" + e.getValue().get())
+                .toList();
+    }
+
+    /** Turns successive reads of the counters into per-interval rates. */
+    private static final class Interval {
+        private final CrawlMetrics metrics;
+        private long lastNanos;
+        // pages, bytes, links, fetches
+        private long[] last;
+        private Histogram.Snapshot lastLatency;
+
+        // The first interval starts with the crawl
+        Interval(CrawlMetrics metrics) {
+            this.metrics = metrics;
+            this.lastNanos = metrics.startedNanos;
+            this.last = new long[4];
+            this.lastLatency = new Histogram().snapshot();
+        }
+
+        String next() {
+            long now = System.nanoTime();
+            long[] current = {metrics.pages.sum(), metrics.bytes.sum(), metrics.links.sum(), metrics.fetches.sum()};
+            Histogram.Snapshot latency = metrics.fetchLatency.snapshot();
+            Histogram.Snapshot window = latency.minus(lastLatency);
+            double seconds = Math.max(1e-9, (now - lastNanos) / 1e9);
+
+            StringBuilder line = new StringBuilder(200);
+            line.append(String.format("pages %d (%.1f/s) | fetch p50 %d ms p99 %d ms | %.2f MB/s | links %d (%.0f/s) | dedupe %.0f%%",
+                    current[0], (current[0] - last[0]) / seconds,
+                    window.percentile(0.5) / 1_000_000, window.percentile(0.99) / 1_000_000,
+                    (current[1] - last[1]) / seconds / (1024 * 1024),
+                    current[2], (current[2] - last[2]) / seconds,
+                    metrics.getDedupeHitRate() * 100));
+            line.append(String.format(" | queued %d in-flight %d hosts %d saturated %d | throttled %d robots %d dead %d unchanged %d | errors",
+                    metrics.getQueued(), metrics.getInFlight(), metrics.getHosts(), metrics.saturatedHosts.sum(),
+                    metrics.throttled.sum(), metrics.robotsDisallowed.sum(), metrics.deadHostUrls.sum(),
+                    metrics.unchanged.sum()));
+            for (ErrorKind kind : ErrorKind.values()) {
+                line.append(' ').append(kind.name().toLowerCase(Locale.ROOT)).append('=').append(metrics.errors[kind.ordinal()].sum());
+            }
+
+            lastNanos = now;
+            last = current;
+            lastLatency = latency;
+            return line.toString();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.strubium.gasstation.metrics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JMX view of {@link CrawlMetrics}. Counters are totals since the crawl started.
+ */
+public interface CrawlMetricsMXBean {
+
+    /** Requests that got an answer, whatever the status. */
+    long getFetches();
+
+    /** Pages whose links were extracted. */
+    long getPages();
+
+    double getPagesPerSecond();
+
+    /** Body bytes read off the wire, before decoding. */
+    long getBytesDownloaded();
+
+    long getLinksExtracted();
+
+    long getUrlsAdmitted();
+
+    /** Share of admitted links that were already visited. */
+    double getDedupeHitRate();
+
+    /** 429 and 503 answers. */
+    long getThrottled();
+
+    /** Hosts dropped because their pages stopped adding new host edges. */
+    long getSaturatedHosts();
+
+    /** Queued pages dropped along with saturated hosts. */
+    long getSaturatedPagesDropped();
+
+    /** Tasks skipped because robots.txt disallows them or stayed unreachable. */
+    long getRobotsDisallowed();
+
+    /** URLs queued from sitemaps. */
+    long getSitemapUrls();
+
+    /** URLs dropped at admission because their host does not resolve. */
+    long getDeadHostUrlsDropped();
+
+    /** Revisited pages that answered 304 or kept the same links. */
+    long getUnchangedPages();
+
+    /** Failed pages by {@link ErrorKind}. */
+    Map<String, Long> getErrors();
+
+    double getFetchLatencyMeanMillis();
+
+    double getFetchLatencyP50Millis();
+
+    double getFetchLatencyP99Millis();
+
+    int getQueued();
+
+    int getInFlight();
+
+    /** Hosts with a queue in the scheduler. */
+    int getHosts();
+
+    /** Hosts with the most queued tasks, as {@code host=queued}. */
+    List<String> getDeepestHostQueues();
+
+    /** Hosts with the most fetches over two seconds, as {@code host=count}. */
+    List<String> getSlowestHosts();
+}
@@ -0,0 +1,43 @@
+package com.strubium.gasstation.metrics;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.CharacterCodingException;
+import java.util.zip.ZipException;
+
+/**
+ * Why a page could not be crawled.
+ */
+public enum ErrorKind {
+    TIMEOUT,
+    HTTP_4XX,
+    HTTP_5XX,
+    /** Connection, TLS or DNS failure, or a bad URL. */
+    NETWORK,
+    /** The body could not be decoded or tokenized. */
+    PARSE;
+
+    /** Kind of a failed status, or null for one that is not an error. */
+    public static ErrorKind ofStatus(int status) {
+        if (status >= 500) return HTTP_5XX;
+        if (status >= 400) return HTTP_4XX;
+        return null;
+    }
+
+    /**
+     * @param reading true if the exception came out of reading the body rather than the request
+     */
+    public static ErrorKind of(Throwable error, boolean reading) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof HttpTimeoutException || t instanceof InterruptedIOException) return TIMEOUT;
+        }
+        if (error instanceof IOException) {
+            // A broken stream while reading is the network, anything the decoders reject is the page
+            boolean undecodable = error instanceof ZipException || error instanceof CharacterCodingException
+                    || error.getCause() instanceof RuntimeException;
+            return reading && undecodable ? PARSE : NETWORK;
+        }
+        return reading ? PARSE : NETWORK;
+    }
+}
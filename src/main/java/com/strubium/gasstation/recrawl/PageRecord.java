@@ -0,0 +1,39 @@
+package com.strubium.gasstation.recrawl;
+
+/**
+ * What the last successful fetch of a page left for the next run.
+ *
+ * @param url             URL the page was fetched from
+ * @param depth           depth the page was crawled at
+ * @param etag            ETag of the answer, or null
+ * @param lastModified    Last-Modified of the answer, or null
+ * @param linkHash        order-independent hash of the page's links
+ * @param host            host the page was served from after redirects, the source of its edges
+ * @param linkHosts       hosts the page links to
+ * @param linkCounts      links to each of {@code linkHosts}, what the page added to the graph
+ * @param fetchedAt       epoch millis of the last check
+ * @param intervalSeconds time from the last check to the next
+ * @param checks          times the page was checked
+ * @param changes         checks that found different links
+ * @param failures        checks in a row that did not get the page
+ */
+public record PageRecord(
+        String url,
+        int depth,
+        String etag,
+        String lastModified,
+        long linkHash,
+        String host,
+        String[] linkHosts,
+        int[] linkCounts,
+        long fetchedAt,
+        long intervalSeconds,
+        int checks,
+        int changes,
+        int failures
+) {
+
+    public boolean isDue(long nowMillis) {
+        return fetchedAt + intervalSeconds * 1000 <= nowMillis;
+    }
+}
@@ -0,0 +1,186 @@
+package com.strubium.gasstation.recrawl;
+
+import com.strubium.gasstation.extract.UrlCanonicalizer;
+import com.strubium.gasstation.io.BinaryWriter;
+import com.strubium.gasstation.io.MappedReader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-URL fetch metadata of a crawl, keyed by canonical URL.
+ * <p>
+ * A page counts as changed when its set of links changed, whatever else happened to
+ * its markup, since links are all the map is made of. Revisit intervals adapt to that:
+ * halved when a check finds a change, doubled when it does not, within the bounds of
+ * {@link RecrawlConfig}, so each page settles near its own rate of change. A check
+ * that does not get the page doubles the interval too, a page that is gone or keeps
+ * failing is dropped.
+ * <p>
+ * Every record keeps the links its page added to the graph, per target host, so they
+ * can be taken back when the page changes or disappears.
+ * <p>
+ * File format, in {@link BinaryWriter} encoding: magic, version, record count, then per
+ * record url, depth, etag, last-modified (empty for none), link hash, source host,
+ * target host count and (host, links) pairs, fetch time, interval, checks, changes and
+ * failures.
+ */
+public class PageStore {
+    private static final int MAGIC = 0x494D5047; // "IMPG"
+    private static final int VERSION = 1;
+    /** Failed checks in a row after which a page is dropped. */
+    static final int MAX_FAILURES = 3;
+
+    private final RecrawlConfig config;
+    private final ConcurrentHashMap<String, PageRecord> pages = new ConcurrentHashMap<>();
+
+    public PageStore(RecrawlConfig config) {
+        this.config = config;
+    }
+
+    /** The record of {@code url} from an earlier fetch, or null. */
+    public PageRecord get(String url) {
+        return pages.get(UrlCanonicalizer.canonicalize(url));
+    }
+
+    /**
+     * Records a fetch that returned the page.
+     *
+     * @param previous the record before this fetch, or null for a new page
+     * @param host     host the page was served from
+     * @param links    links on the page per target host
+     * @return true if the page is new or its links changed
+     */
+    public boolean fetched(String url, int depth, PageRecord previous, String etag, String lastModified, long linkHash,
+                           String host, Map<String, Integer> links) {
+        boolean changed = previous == null || previous.linkHash() != linkHash;
+        long interval = previous == null ? config.initialIntervalSeconds() : nextInterval(previous, changed);
+        String[] linkHosts;
+        int[] linkCounts;
+        if (!changed) {
+            // Same links, keep what the graph was given for them
+            linkHosts = previous.linkHosts();
+            linkCounts = previous.linkCounts();
+            host = previous.host();
+        } else {
+            linkHosts = new String[links.size()];
+            linkCounts = new int[links.size()];
+            int i = 0;
+            for (Map.Entry<String, Integer> e : links.entrySet()) {
+                linkHosts[i] = e.getKey();
+                linkCounts[i++] = e.getValue();
+            }
+        }
+        pages.put(UrlCanonicalizer.canonicalize(url), new PageRecord(url, depth, etag, lastModified, linkHash,
+                host, linkHosts, linkCounts, System.currentTimeMillis(), interval,
+                previous == null ? 1 : previous.checks() + 1,
+                previous == null ? 0 : previous.changes() + (changed ? 1 : 0), 0));
+        return changed;
+    }
+
+    /** Records a check that found the page unchanged, e.g. a 304 answer. */
+    public void unchanged(PageRecord previous) {
+        pages.put(UrlCanonicalizer.canonicalize(previous.url()), new PageRecord(previous.url(), previous.depth(),
+                previous.etag(), previous.lastModified(), previous.linkHash(), previous.host(), previous.linkHosts(),
+                previous.linkCounts(), System.currentTimeMillis(), nextInterval(previous, false),
+                previous.checks() + 1, previous.changes(), 0));
+    }
+
+    /**
+     * Records a check that did not get the page. The page is dropped if it is gone
+     * (404, 410) or failed {@link #MAX_FAILURES} checks in a row, otherwise it is
+     * checked again after twice the interval.
+     *
+     * @return true if the page was dropped, the links of {@code previous} should be taken back
+     */
+    public boolean failed(PageRecord previous, boolean gone) {
+        String key = UrlCanonicalizer.canonicalize(previous.url());
+        if (gone || previous.failures() + 1 >= MAX_FAILURES) {
+            pages.remove(key);
+            return true;
+        }
+        pages.put(key, new PageRecord(previous.url(), previous.depth(), previous.etag(), previous.lastModified(),
+                previous.linkHash(), previous.host(), previous.linkHosts(), previous.linkCounts(),
+                System.currentTimeMillis(), nextInterval(previous, false), previous.checks() + 1, previous.changes(),
+                previous.failures() + 1));
+        return false;
+    }
+
+    public Collection<PageRecord> records() {
+        return pages.values();
+    }
+
+    public int size() {
+        return pages.size();
+    }
+
+    long nextInterval(PageRecord previous, boolean changed) {
+        long interval = changed ? previous.intervalSeconds() / 2 : previous.intervalSeconds() * 2;
+        return Math.max(config.minIntervalSeconds(), Math.min(config.maxIntervalSeconds(), interval));
+    }
+
+    public void write(Path file) throws IOException {
+        try (BinaryWriter out = BinaryWriter.open(file, false)) {
+            out.writeInt(MAGIC);
+            out.writeVarInt(VERSION);
+            Collection<PageRecord> records = pages.values();
+            out.writeVarInt(records.size());
+            for (PageRecord r : records) {
+                out.writeString(r.url());
+                out.writeVarInt(r.depth());
+                out.writeString(r.etag() != null ? r.etag() : "");
+                out.writeString(r.lastModified() != null ? r.lastModified() : "");
+                out.writeLong(r.linkHash());
+                out.writeString(r.host() != null ? r.host() : "");
+                out.writeVarInt(r.linkHosts().length);
+                for (int i = 0; i < r.linkHosts().length; i++) {
+                    out.writeString(r.linkHosts()[i]);
+                    out.writeVarInt(r.linkCounts()[i]);
+                }
+                out.writeVarLong(r.fetchedAt());
+                out.writeVarLong(r.intervalSeconds());
+                out.writeVarInt(r.checks());
+                out.writeVarInt(r.changes());
+                out.writeVarInt(r.failures());
+            }
+        }
+    }
+
+    public static PageStore read(Path file, RecrawlConfig config) throws IOException {
+        PageStore store = new PageStore(config);
+        try (MappedReader in = new MappedReader(file)) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a page store: " + file);
+            int version = in.readVarInt();
+            if (version != VERSION) throw new IOException("Unsupported page store version " + version);
+            int count = in.readVarInt();
+            for (int i = 0; i < count; i++) {
+                String url = in.readString();
+                int depth = in.readVarInt();
+                String etag = in.readString();
+                String lastModified = in.readString();
+                long linkHash = in.readLong();
+                String host = in.readString();
+                int hosts = in.readVarInt();
+                String[] linkHosts = new String[hosts];
+                int[] linkCounts = new int[hosts];
+                for (int h = 0; h < hosts; h++) {
+                    linkHosts[h] = in.readString();
+                    linkCounts[h] = in.readVarInt();
+                }
+                long fetchedAt = in.readVarLong();
+                long interval = in.readVarLong();
+                int checks = in.readVarInt();
+                int changes = in.readVarInt();
+                int failures = in.readVarInt();
+                PageRecord r = new PageRecord(url, depth, etag.isEmpty() ? null : etag,
+                        lastModified.isEmpty() ? null : lastModified, linkHash, host.isEmpty() ? null : host,
+                        linkHosts, linkCounts, fetchedAt, interval, checks, changes, failures);
+                store.pages.put(UrlCanonicalizer.canonicalize(url), r);
+            }
+        }
+        return store;
+    }
+}
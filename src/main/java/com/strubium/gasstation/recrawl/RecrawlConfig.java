@@ -0,0 +1,15 @@
+package com.strubium.gasstation.recrawl;
+
+/**
+ * How often pages are revisited by a recrawl.
+ *
+ * @param initialIntervalSeconds revisit interval of a page fetched for the first time
+ * @param minIntervalSeconds     lower bound for pages that change on every visit
+ * @param maxIntervalSeconds     upper bound for pages that never change
+ */
+public record RecrawlConfig(long initialIntervalSeconds, long minIntervalSeconds, long maxIntervalSeconds) {
+
+    public static RecrawlConfig defaults() {
+        return new RecrawlConfig(24 * 3600, 3600, 30 * 24 * 3600);
+    }
+}
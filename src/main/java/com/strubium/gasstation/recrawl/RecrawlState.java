@@ -0,0 +1,94 @@
+package com.strubium.gasstation.recrawl;
+
+import com.strubium.gasstation.CrawlerManager;
+import com.strubium.gasstation.frontier.Frontier;
+import com.strubium.gasstation.graph.GraphFile;
+import com.strubium.gasstation.graph.HostGraphSnapshot;
+import com.strubium.gasstation.logger.ProjectLogger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * What one crawl hands to the next for an incremental recrawl.
+ * <p>
+ * The directory holds {@code pages.bin}, the {@link PageStore} of every page fetched so
+ * far, and {@code graph.bin}, the host graph at the end of the last run
+ * ({@link GraphFile}). A recrawl starts from that graph and only queues pages whose
+ * revisit interval has run out. Pages that are not due are marked visited, so links
+ * to them are not followed again, and their edges stay as the last run left them.
+ */
+public class RecrawlState {
+    private static final String PAGES = "pages.bin";
+    private static final String GRAPH = "graph.bin";
+
+    private final Path dir;
+    private final RecrawlConfig config;
+    private PageStore pages;
+
+    public RecrawlState(Path dir, RecrawlConfig config) {
+        this.dir = dir;
+        this.config = config;
+    }
+
+    /**
+     * Loads the page store of the last run, or starts an empty one, and hands it to
+     * {@code manager}.
+     *
+     * @return false if there was no earlier run
+     */
+    public boolean open(CrawlerManager manager) throws IOException {
+        Path file = dir.resolve(PAGES);
+        boolean found = Files.exists(file);
+        pages = found ? PageStore.read(file, config) : new PageStore(config);
+        manager.setPageStore(pages);
+        return found;
+    }
+
+    /**
+     * Loads the last run's graph into {@code manager} and queues every page that is due.
+     *
+     * @return how many pages were queued
+     */
+    public int seed(CrawlerManager manager, Frontier frontier) throws IOException {
+        Path graphFile = dir.resolve(GRAPH);
+        HostGraphSnapshot graph = Files.exists(graphFile) ? GraphFile.read(graphFile) : null;
+        if (graph != null) manager.getGraph().merge(graph);
+
+        long now = System.currentTimeMillis();
+        Map<Integer, List<String>> due = new TreeMap<>();
+        int notDue = 0;
+        for (PageRecord page : pages.records()) {
+            if (page.isDue(now)) {
+                due.computeIfAbsent(page.depth(), d -> new ArrayList<>()).add(page.url());
+            } else {
+                manager.markVisited(page.url());
+                notDue++;
+            }
+        }
+        int queued = 0;
+        for (Map.Entry<Integer, List<String>> e : due.entrySet()) queued += frontier.admitAll(e.getValue(), e.getKey());
+
+        ProjectLogger.LOGGER.info(String.format("Recrawl: %d known pages, %d due, %d not due yet, graph of %d hosts and %d edges",
+                pages.size(), queued, notDue, graph != null ? graph.vertexCount() : 0, graph != null ? graph.edgeCount() : 0));
+        return queued;
+    }
+
+    /** Writes the page store and {@code graph} for the next run, replacing the files atomically. */
+    public void save(HostGraphSnapshot graph) throws IOException {
+        Files.createDirectories(dir);
+        Path pagesTmp = dir.resolve(PAGES + ".tmp");
+        Path graphTmp = dir.resolve(GRAPH + ".tmp");
+        pages.write(pagesTmp);
+        GraphFile.write(graph, graphTmp);
+        Files.move(graphTmp, dir.resolve(GRAPH), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(pagesTmp, dir.resolve(PAGES), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        ProjectLogger.LOGGER.info("Recrawl state saved to " + dir + ": " + pages.size() + " pages, " + graph.vertexCount() + " hosts");
+    }
+}
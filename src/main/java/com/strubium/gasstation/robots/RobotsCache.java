@@ -0,0 +1,184 @@
+package com.strubium.gasstation.robots;
+
+import com.strubium.gasstation.fetch.FetchResponse;
+import com.strubium.gasstation.fetch.Fetcher;
+import com.strubium.gasstation.fetch.LimitedInputStream;
+import com.strubium.gasstation.frontier.CrawlTask;
+import com.strubium.gasstation.frontier.Frontier;
+import com.strubium.gasstation.logger.ProjectLogger;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-host robots.txt, fetched once and shared by all workers.
+ * <p>
+ * The first task of a host fetches its robots.txt, other tasks of the host wait for
+ * that one fetch instead of starting their own. The compiled {@link RobotsRules} are
+ * reused for {@link RobotsConfig#cacheSeconds()}. Loading a host's rules also hands
+ * its crawl delay to the frontier and its sitemaps to the {@link SitemapSeeder}.
+ * <p>
+ * Answers follow RFC 9309: a missing or forbidden robots.txt (4xx) allows everything,
+ * a server error or an unreachable host makes the host {@link Verdict#UNAVAILABLE}
+ * for a minute. Its tasks wait for the next attempt, see {@link #retryDelayMillis(String)}.
+ * After {@link #MAX_FAILURES} failed attempts in a row the host is fully disallowed,
+ * as the RFC asks, until the rules expire like any others.
+ */
+public class RobotsCache {
+    private static final long UNAVAILABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    static final int MAX_FAILURES = 5;
+
+    /** Outcome of {@link #check(CrawlTask)}. */
+    public enum Verdict {ALLOW, DISALLOW, UNAVAILABLE}
+
+    private final Fetcher fetcher;
+    private final RobotsConfig config;
+    private final String userAgent;
+    private final Frontier frontier;
+    private final SitemapSeeder sitemaps;
+    private final ConcurrentHashMap<String, Entry> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * @param sitemaps receives the sitemaps of every loaded host, null to ignore them
+     */
+    public RobotsCache(Fetcher fetcher, RobotsConfig config, String userAgent, Frontier frontier, SitemapSeeder sitemaps) {
+        this.fetcher = fetcher;
+        this.config = config;
+        this.userAgent = userAgent;
+        this.frontier = frontier;
+        this.sitemaps = sitemaps;
+    }
+
+    /**
+     * Decides whether {@code task} may be fetched, fetching the host's robots.txt first
+     * if it is not cached.
+     */
+    public Verdict check(CrawlTask task) throws InterruptedException {
+        String url = task.url();
+        int sep = url.indexOf("://");
+        if (sep < 0) return Verdict.ALLOW;
+        Entry entry = entry(url.substring(0, sep), task.host(), task.depth());
+        RobotsRules rules;
+        try {
+            rules = entry.rules.get();
+        } catch (ExecutionException e) {
+            return Verdict.ALLOW;
+        }
+        if (rules == null) return Verdict.UNAVAILABLE;
+        return rules.allows(pathOf(url, sep + 3)) ? Verdict.ALLOW : Verdict.DISALLOW;
+    }
+
+    /**
+     * How long tasks of {@code host} should wait after {@link Verdict#UNAVAILABLE}:
+     * until its robots.txt is fetched again.
+     */
+    public long retryDelayMillis(String host) {
+        Entry entry = hosts.get(host);
+        if (entry == null) return 0;
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(entry.expiresNanos - System.nanoTime()));
+    }
+
+    public int size() {
+        return hosts.size();
+    }
+
+    private Entry entry(String scheme, String host, int depth) {
+        while (true) {
+            long now = System.nanoTime();
+            Entry entry = hosts.get(host);
+            if (entry != null && now - entry.expiresNanos < 0) return entry;
+
+            Entry fresh = new Entry(entry != null ? entry.failures : 0);
+            boolean won = entry == null ? hosts.putIfAbsent(host, fresh) == null : hosts.replace(host, entry, fresh);
+            if (!won) continue;
+            load(fresh, scheme, host, depth, entry == null);
+            if (hosts.size() > config.maxHosts()) evict();
+            return fresh;
+        }
+    }
+
+    private void load(Entry entry, String scheme, String host, int depth, boolean firstLoad) {
+        RobotsRules rules;
+        try (FetchResponse response = fetcher.fetchAny(scheme + "://" + host + "/robots.txt")) {
+            int status = response.status();
+            if (response.isSuccess()) {
+                rules = response.hasBody()
+                        ? RobotsRules.parse(new InputStreamReader(new LimitedInputStream(response.body(), RobotsRules.MAX_BYTES),
+                        response.charset()), userAgent)
+                        : RobotsRules.ALLOW_ALL;
+            } else if (status >= 400 && status < 500 && status != 429) {
+                rules = RobotsRules.ALLOW_ALL;
+            } else {
+                rules = null;
+            }
+        } catch (IOException e) {
+            rules = null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rules = null;
+        } catch (RuntimeException e) {
+            ProjectLogger.LOGGER.debug("robots.txt of {} unreadable: {}", host, e.toString());
+            rules = RobotsRules.ALLOW_ALL;
+        }
+
+        if (rules != null) {
+            entry.failures = 0;
+        } else if (++entry.failures >= MAX_FAILURES) {
+            ProjectLogger.LOGGER.info("robots.txt of {} unreachable {} times in a row, disallowing the host", host, entry.failures);
+            rules = RobotsRules.disallowAll();
+        }
+        entry.expiresNanos = System.nanoTime() + (rules == null ? UNAVAILABLE_NANOS : TimeUnit.SECONDS.toNanos(config.cacheSeconds()));
+        entry.rules.complete(rules);
+        if (rules == null) return;
+
+        long crawlDelay = Math.min(rules.crawlDelayMillis(), config.maxCrawlDelayMillis());
+        if (crawlDelay > 0) frontier.setCrawlDelay(host, crawlDelay);
+        if (sitemaps != null && firstLoad) sitemaps.seed(host, rules.sitemaps(), depth + 1, crawlDelay);
+        ProjectLogger.LOGGER.debug("robots.txt of {}: {} rules, crawl delay {} ms, {} sitemaps",
+                host, rules.ruleCount(), rules.crawlDelayMillis(), rules.sitemaps().size());
+    }
+
+    /** Drops about a tenth of the cache, expired entries first. */
+    private void evict() {
+        int target = config.maxHosts() - config.maxHosts() / 10;
+        long now = System.nanoTime();
+        hosts.values().removeIf(e -> e.rules.isDone() && now - e.expiresNanos >= 0);
+        for (Iterator<Entry> it = hosts.values().iterator(); hosts.size() > target && it.hasNext(); ) {
+            if (it.next().rules.isDone()) it.remove();
+        }
+    }
+
+    /** Path and query of {@code url}, whose authority starts at {@code authStart}. */
+    static String pathOf(String url, int authStart) {
+        int slash = -1;
+        for (int i = authStart; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '/' || c == '?' || c == '#') {
+                slash = i;
+                break;
+            }
+        }
+        if (slash < 0) return "/";
+        int hash = url.indexOf('#', slash);
+        String path = hash < 0 ? url.substring(slash) : url.substring(slash, hash);
+        return path.startsWith("/") ? path : "/" + path;
+    }
+
+    private static final class Entry {
+        // Null rules mean robots.txt could not be fetched
+        final CompletableFuture<RobotsRules> rules = new CompletableFuture<>();
+        // Not expired while loading
+        volatile long expiresNanos = System.nanoTime() + TimeUnit.DAYS.toNanos(1);
+        // Failed attempts in a row, carried over from the entry this one replaced
+        volatile int failures;
+
+        Entry(int failures) {
+            this.failures = failures;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.strubium.gasstation.robots;
+
+/**
+ * Settings of the robots.txt and sitemap subsystem.
+ *
+ * @param obey                  fetch robots.txt and skip disallowed URLs
+ * @param cacheSeconds          how long a host's robots.txt is reused before it is fetched again
+ * @param maxCrawlDelayMillis   upper bound for a host's crawl delay, so one host cannot stall its queue
+ * @param maxHosts              hosts kept in the cache before some are dropped
+ * @param sitemaps              seed the frontier from the sitemaps a robots.txt lists, needs {@code obey}
+ * @param maxSitemapUrlsPerHost URLs taken from one host's sitemaps
+ */
+public record RobotsConfig(
+        boolean obey,
+        long cacheSeconds,
+        long maxCrawlDelayMillis,
+        int maxHosts,
+        boolean sitemaps,
+        int maxSitemapUrlsPerHost
+) {
+
+    public static RobotsConfig defaults() {
+        return new RobotsConfig(true, 24 * 3600, 30_000, 500_000, false, 10_000);
+    }
+}
@@ -0,0 +1,185 @@
+package com.strubium.gasstation.robots;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The part of a robots.txt (RFC 9309) that applies to one user agent, compiled for
+ * matching.
+ * <p>
+ * The group for the most specific user-agent token contained in our product token
+ * is used, falling back to {@code *}. Its rules are sorted longest first, so a path
+ * is decided by the first rule that matches: the longest match wins, and an allow
+ * beats a disallow of the same length. Rules without {@code *} or {@code $}, nearly
+ * all of them, are a plain prefix test.
+ */
+public final class RobotsRules {
+    public static final RobotsRules ALLOW_ALL = new RobotsRules(new Rule[0], 0, List.of());
+    // Only the first 500 KiB have to be parsed
+    public static final int MAX_BYTES = 500 * 1024;
+
+    private final Rule[] rules;
+    private final long crawlDelayMillis;
+    private final List<String> sitemaps;
+
+    private RobotsRules(Rule[] rules, long crawlDelayMillis, List<String> sitemaps) {
+        this.rules = rules;
+        this.crawlDelayMillis = crawlDelayMillis;
+        this.sitemaps = sitemaps;
+    }
+
+    /**
+     * @param userAgent our product token, e.g. {@code AdvancedJavaCrawler}
+     */
+    public static RobotsRules parse(Reader body, String userAgent) throws IOException {
+        String agent = userAgent.toLowerCase(Locale.ROOT);
+        BufferedReader reader = new BufferedReader(body);
+        List<String> sitemaps = new ArrayList<>();
+        List<Rule> specific = new ArrayList<>(), wildcard = new ArrayList<>();
+        long specificDelay = -1, wildcardDelay = -1;
+        int bestMatch = 0;
+
+        // State of the group being read: which of our buckets it feeds
+        boolean inAgents = false, forUs = false, forAll = false;
+        List<Rule> groupRules = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int hash = line.indexOf('#');
+            if (hash >= 0) line = line.substring(0, hash);
+            int colon = line.indexOf(':');
+            if (colon < 0) continue;
+            String key = line.substring(0, colon).strip().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).strip();
+
+            if (key.equals("user-agent")) {
+                if (!inAgents) {
+                    forUs = forAll = false;
+                    inAgents = true;
+                }
+                String token = value.toLowerCase(Locale.ROOT);
+                if (token.equals("*")) {
+                    forAll = true;
+                } else if (!token.isEmpty() && agent.contains(token) && token.length() >= bestMatch) {
+                    if (token.length() > bestMatch) {
+                        specific.clear();
+                        specificDelay = -1;
+                        bestMatch = token.length();
+                    }
+                    forUs = true;
+                }
+                continue;
+            }
+            if (key.equals("sitemap")) {
+                if (!value.isEmpty()) sitemaps.add(value);
+                continue;
+            }
+            inAgents = false;
+            if (!forUs && !forAll) continue;
+            switch (key) {
+                case "allow", "disallow" -> {
+                    if (value.isEmpty()) continue;
+                    Rule rule = new Rule(value, key.equals("allow"));
+                    if (forUs) specific.add(rule);
+                    if (forAll) wildcard.add(rule);
+                }
+                case "crawl-delay" -> {
+                    long millis = parseDelay(value);
+                    if (millis < 0) continue;
+                    if (forUs) specificDelay = millis;
+                    if (forAll) wildcardDelay = millis;
+                }
+                default -> {
+                }
+            }
+        }
+
+        boolean useSpecific = bestMatch > 0;
+        List<Rule> rules = useSpecific ? specific : wildcard;
+        rules.sort(Comparator.comparingInt((Rule r) -> -r.pattern.length()).thenComparing(r -> !r.allow));
+        return new RobotsRules(rules.toArray(new Rule[0]), Math.max(0, useSpecific ? specificDelay : wildcardDelay), List.copyOf(sitemaps));
+    }
+
+    /** Everything is disallowed, for a host whose robots.txt stayed unreachable. */
+    public static RobotsRules disallowAll() {
+        return new RobotsRules(new Rule[]{new Rule("/", false)}, 0, List.of());
+    }
+
+    /**
+     * @param path the URL's path and query, starting with {@code /}
+     */
+    public boolean allows(String path) {
+        if (path.equals("/robots.txt")) return true;
+        for (Rule rule : rules) {
+            if (rule.matches(path)) return rule.allow;
+        }
+        return true;
+    }
+
+    /** Requested gap between two requests, 0 if none. */
+    public long crawlDelayMillis() {
+        return crawlDelayMillis;
+    }
+
+    /** Sitemap URLs listed anywhere in the file. */
+    public List<String> sitemaps() {
+        return sitemaps;
+    }
+
+    public int ruleCount() {
+        return rules.length;
+    }
+
+    private static long parseDelay(String value) {
+        try {
+            double seconds = Double.parseDouble(value);
+            return seconds >= 0 && seconds < 86_400 ? (long) (seconds * 1000) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static final class Rule {
+        final String pattern;
+        final boolean allow;
+        final boolean plain;
+
+        Rule(String pattern, boolean allow) {
+            this.pattern = pattern;
+            this.allow = allow;
+            this.plain = pattern.indexOf('*') < 0 && !pattern.endsWith("$");
+        }
+
+        boolean matches(String path) {
+            return plain ? path.startsWith(pattern) : glob(path);
+        }
+
+        /** {@code *} matches any run of characters, a final {@code $} anchors at the end. */
+        private boolean glob(String path) {
+            boolean anchored = pattern.endsWith("$");
+            int patternEnd = anchored ? pattern.length() - 1 : pattern.length();
+            int p = 0, s = 0, star = -1, mark = 0;
+            while (true) {
+                if (p == patternEnd) {
+                    if (!anchored || s == path.length()) return true;
+                } else if (pattern.charAt(p) == '*') {
+                    star = p++;
+                    mark = s;
+                    continue;
+                } else if (s < path.length() && pattern.charAt(p) == path.charAt(s)) {
+                    p++;
+                    s++;
+                    continue;
+                }
+                // Mismatch or anchored end not reached: let the last * take one more character
+                if (star < 0 || mark >= path.length()) return false;
+                p = star + 1;
+                s = ++mark;
+            }
+        }
+    }
+}
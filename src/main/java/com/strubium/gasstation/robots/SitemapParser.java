@@ -0,0 +1,97 @@
+package com.strubium.gasstation.robots;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streaming reader for sitemaps (sitemaps.org): {@code <urlset>} files and
+ * {@code <sitemapindex>} files pointing at further sitemaps.
+ * <p>
+ * Locations are handed out while the document is read, so a 50,000 URL sitemap never
+ * sits in memory. Gzip is recognised by its magic bytes, which also covers
+ * {@code .xml.gz} files served without a content encoding. DTDs and external
+ * entities are refused, the input comes from arbitrary servers.
+ */
+public final class SitemapParser {
+    private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private SitemapParser() {
+    }
+
+    /**
+     * Reads one sitemap until it ends or {@code urls} returns false. A document cut
+     * off early, e.g. by the body size limit, ends quietly after its last full entry.
+     *
+     * @param urls     receives page locations of a {@code <urlset>}, returns false to stop
+     * @param sitemaps receives sitemap locations of a {@code <sitemapindex>}
+     * @return the number of page locations handed to {@code urls}
+     */
+    public static int parse(InputStream in, UrlSink urls, Consumer<String> sitemaps) throws IOException {
+        InputStream body = ungzip(in);
+        int count = 0;
+        XMLStreamReader reader = null;
+        try {
+            reader = FACTORY.createXMLStreamReader(body);
+            // Parent of the <loc> being read: "url" or "sitemap"
+            String entry = null;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (name.equals("url") || name.equals("sitemap")) {
+                        entry = name;
+                    } else if (name.equals("loc") && entry != null) {
+                        String loc = reader.getElementText().strip();
+                        if (loc.isEmpty()) continue;
+                        if (entry.equals("sitemap")) {
+                            sitemaps.accept(loc);
+                        } else {
+                            count++;
+                            if (!urls.accept(loc)) break;
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (name.equals("url") || name.equals("sitemap")) entry = null;
+                }
+            }
+        } catch (XMLStreamException e) {
+            // Truncated or malformed, keep what was read so far
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                }
+            }
+        }
+        return count;
+    }
+
+    private static InputStream ungzip(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, 1 << 16);
+        buffered.mark(2);
+        int b0 = buffered.read(), b1 = buffered.read();
+        buffered.reset();
+        return b0 == 0x1f && b1 == 0x8b ? new GZIPInputStream(buffered, 1 << 16) : buffered;
+    }
+
+    /** Receives page locations. */
+    @FunctionalInterface
+    public interface UrlSink {
+        /** @return false to stop reading */
+        boolean accept(String url);
+    }
+}
@@ -0,0 +1,130 @@
+package com.strubium.gasstation.robots;
+
+import com.strubium.gasstation.extract.UrlCanonicalizer;
+import com.strubium.gasstation.extract.UrlResolver;
+import com.strubium.gasstation.fetch.FetchResponse;
+import com.strubium.gasstation.fetch.Fetcher;
+import com.strubium.gasstation.frontier.Frontier;
+import com.strubium.gasstation.logger.ProjectLogger;
+import com.strubium.gasstation.metrics.CrawlMetrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds the frontier with the URLs of a host's sitemaps.
+ * <p>
+ * Each host is read in the background, sitemap index files are followed breadth first.
+ * Locations go into the frontier in batches through normal admission, so dedupe,
+ * budget and saturation apply to them like to discovered links. The frontier is held
+ * open while a host is read, so a crawl does not end with sitemaps still pending.
+ * Only locations on the sitemap's own host are taken, as the protocol requires.
+ * <p>
+ * Sitemap files are fetched one at a time per host, each after the host's crawl delay,
+ * the robots.txt that named them having just been fetched.
+ */
+public class SitemapSeeder implements Closeable {
+    private static final int BATCH = 1000;
+    private static final int MAX_FILES_PER_HOST = 50;
+    private static final int MAX_CONCURRENT = 8;
+
+    private final Fetcher fetcher;
+    private final Frontier frontier;
+    private final CrawlMetrics metrics;
+    private final int maxUrlsPerHost;
+    private final ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore running = new Semaphore(MAX_CONCURRENT);
+
+    public SitemapSeeder(Fetcher fetcher, Frontier frontier, CrawlMetrics metrics, int maxUrlsPerHost) {
+        this.fetcher = fetcher;
+        this.frontier = frontier;
+        this.metrics = metrics;
+        this.maxUrlsPerHost = maxUrlsPerHost;
+    }
+
+    /**
+     * Reads {@code sitemaps} of {@code host} in the background and admits their URLs at {@code depth}.
+     *
+     * @param delayMillis crawl delay of the host, waited before each sitemap file
+     */
+    public void seed(String host, List<String> sitemaps, int depth, long delayMillis) {
+        if (sitemaps.isEmpty() || frontier.isDraining()) return;
+        frontier.holdOpen();
+        try {
+            threads.submit(() -> {
+                try {
+                    read(host, sitemaps, depth, delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    frontier.releaseHold();
+                }
+            });
+        } catch (RuntimeException e) {
+            frontier.releaseHold();
+            throw e;
+        }
+    }
+
+    private void read(String host, List<String> sitemaps, int depth, long delayMillis) throws InterruptedException {
+        String key = UrlCanonicalizer.canonicalHost(host);
+        ArrayDeque<String> files = new ArrayDeque<>(sitemaps);
+        Set<String> seen = new HashSet<>(sitemaps);
+        List<String> batch = new ArrayList<>(BATCH);
+        int[] taken = new int[1];
+        int read = 0;
+
+        while (!files.isEmpty() && read < MAX_FILES_PER_HOST && taken[0] < maxUrlsPerHost && !frontier.isDraining()) {
+            String file = files.poll();
+            read++;
+            if (delayMillis > 0) Thread.sleep(delayMillis);
+            // Only the fetches take a slot, a host waiting out its delay does not hold one
+            running.acquire();
+            try (FetchResponse response = fetcher.fetchAny(file)) {
+                if (!response.hasBody()) continue;
+                SitemapParser.parse(response.body(), url -> {
+                    String urlHost = UrlResolver.hostOf(url);
+                    if (urlHost == null || !UrlCanonicalizer.canonicalHost(urlHost).equals(key)) return true;
+                    batch.add(url);
+                    if (batch.size() == BATCH) flush(batch, depth);
+                    return ++taken[0] < maxUrlsPerHost;
+                }, child -> {
+                    if (seen.add(child)) files.add(child);
+                });
+            } catch (IOException | RuntimeException e) {
+                ProjectLogger.LOGGER.debug("Sitemap {} failed: {}", file, e.toString());
+            } finally {
+                running.release();
+            }
+        }
+        flush(batch, depth);
+        if (taken[0] > 0) ProjectLogger.LOGGER.debug("Seeded {} URLs from {} sitemap files of {}", taken[0], read, host);
+    }
+
+    private void flush(List<String> batch, int depth) {
+        if (batch.isEmpty()) return;
+        metrics.sitemapUrls(frontier.admitAll(batch, depth));
+        batch.clear();
+    }
+
+    /** Waits a bounded time for hosts still being read. */
+    @Override
+    public void close() {
+        threads.shutdown();
+        try {
+            if (!threads.awaitTermination(30, TimeUnit.SECONDS)) threads.shutdownNow();
+        } catch (InterruptedException e) {
+            threads.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
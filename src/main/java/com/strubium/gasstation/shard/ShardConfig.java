@@ -0,0 +1,37 @@
+package com.strubium.gasstation.shard;
+
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Place of this process among the crawler shards.
+ *
+ * @param index       this process's shard, 0 based
+ * @param addresses   where every shard listens for forwarded URLs, by shard index
+ * @param idleSeconds how long the shard must see no work and no traffic before it counts
+ *                    as idle, and how long a silent peer is waited for
+ * @param spillDir    directory shared by the shards, URLs that cannot be delivered at
+ *                    shutdown are left there for their owner, null to drop them
+ */
+public record ShardConfig(int index, List<InetSocketAddress> addresses, long idleSeconds, Path spillDir) {
+
+    public ShardConfig {
+        if (index < 0 || index >= addresses.size()) {
+            throw new IllegalArgumentException("Shard " + index + " out of range for " + addresses.size() + " shards");
+        }
+        addresses = List.copyOf(addresses);
+    }
+
+    public int count() {
+        return addresses.size();
+    }
+
+    /** {@code count} shards on this machine, listening on consecutive ports from {@code basePort}. */
+    public static List<InetSocketAddress> localAddresses(int count, int basePort) {
+        List<InetSocketAddress> addresses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) addresses.add(new InetSocketAddress("127.0.0.1", basePort + i));
+        return addresses;
+    }
+}
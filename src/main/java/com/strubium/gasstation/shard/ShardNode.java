@@ -0,0 +1,656 @@
+package com.strubium.gasstation.shard;
+
+import com.strubium.gasstation.frontier.CrawlTask;
+import com.strubium.gasstation.frontier.Frontier;
+import com.strubium.gasstation.frontier.UrlRouter;
+import com.strubium.gasstation.io.BinaryReader;
+import com.strubium.gasstation.io.BinaryWriter;
+import com.strubium.gasstation.io.MappedReader;
+import com.strubium.gasstation.logger.ProjectLogger;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * One crawler process of a sharded crawl.
+ * <p>
+ * Hosts are split between the shards by a {@link ShardRing}. A shard only queues URLs
+ * of its own hosts, so its visited set and politeness state cover exactly those hosts.
+ * URLs of other shards' hosts are buffered per owner and sent in batches over one TCP
+ * connection per peer. Received batches go through the local frontier's admission
+ * like any discovered link.
+ * <p>
+ * There is no coordinator. Every second each shard sends every peer its state and how
+ * many URLs it has sent and received in total, counting a received batch only once it
+ * is admitted, and a sent one only once its owner has acknowledged it. A shard is idle once it has had no local work, nothing left to send and
+ * no traffic for {@link ShardConfig#idleSeconds()}. The crawl is over when every shard
+ * is idle, the totals sent and received are equal, so no batch is on the wire, and
+ * both still hold in a second round of fresh reports from everyone. The shard that
+ * sees this first reports itself done, which ends the others too.
+ * <p>
+ * A peer that stays silent for {@link ShardConfig#idleSeconds()} cannot take part, and
+ * URLs buffered for it no longer keep the shard busy. An idle shard then finishes
+ * without it, as it does when the totals stay unequal that long because a batch was
+ * lost for good. URLs that still cannot be
+ * delivered at shutdown are written to {@link ShardConfig#spillDir()}, where their
+ * owner picks them up through {@link #admitUndelivered()}. URLs waiting to be sent
+ * are part of the frontier's checkpoint, see {@link #forEachUnsent(Consumer)}.
+ * <p>
+ * Batches are numbered per peer. A sent batch is kept until a status frame of its
+ * owner acknowledges it and is sent again over every new connection until then, the
+ * owner skips the batches it has already taken. Numbers restart with every process,
+ * which is told apart by a random session id sent in the handshake.
+ * <p>
+ * Wire format, in {@link BinaryWriter} encoding: a handshake of magic, sender index
+ * and session, then frames of a varint URL count followed by a varlong batch number
+ * and (varint depth, string url) pairs. A count of 0 starts a status frame instead:
+ * varint state, varlong sent, varlong received, varlong last batch taken from the
+ * receiving shard.
+ */
+public class ShardNode implements UrlRouter, Closeable {
+    private static final int MAGIC = 0x494D5348; // "IMSH"
+    private static final int BATCH = 1024;
+    private static final long FLUSH_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    // Per peer, URLs beyond this are dropped while the peer is unreachable
+    private static final int MAX_BUFFERED = 1 << 20;
+    private static final int MAX_URL_BYTES = 16 * 1024;
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+    // Shard states as sent in status frames. DONE means the shard detected the end of
+    // the crawl, LEFT that it stopped without, e.g. because a peer was unreachable
+    private static final int BUSY = 0, IDLE = 1, DONE = 2, LEFT = 3;
+
+    private final ShardConfig config;
+    private final ShardRing ring;
+    private final Frontier frontier;
+    private final Peer[] peers;
+    private final ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+    private final Set<Socket> inbound = ConcurrentHashMap.newKeySet();
+    private final LongAdder forwarded = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final long session = ThreadLocalRandom.current().nextLong();
+    // By sender: session of its last connection, last batch number taken from it
+    private final AtomicLongArray sessions;
+    private final AtomicLongArray taken;
+    // Last status received from every peer, by shard index
+    private final AtomicReferenceArray<Status> statuses;
+    private final long idleNanos;
+    private final long startedNanos = System.nanoTime();
+    private volatile long lastActiveNanos = startedNanos;
+    private volatile boolean closed;
+    private volatile int finalState = LEFT;
+    private boolean holding;
+    // First of the rounds in which every shard was idle with the same totals, or null
+    private Round quiet;
+    private ServerSocket server;
+    private ScheduledExecutorService timer;
+
+    public ShardNode(ShardConfig config, Frontier frontier) {
+        this.config = config;
+        this.ring = new ShardRing(config.count());
+        this.frontier = frontier;
+        this.peers = new Peer[config.count()];
+        this.statuses = new AtomicReferenceArray<>(config.count());
+        this.sessions = new AtomicLongArray(config.count());
+        this.taken = new AtomicLongArray(config.count());
+        this.idleNanos = TimeUnit.SECONDS.toNanos(config.idleSeconds());
+        for (int i = 0; i < peers.length; i++) {
+            if (i != config.index()) peers[i] = new Peer(i, config.addresses().get(i));
+        }
+    }
+
+    /**
+     * Starts listening, routes the frontier through this shard and holds it open until
+     * the crawl is over on every shard.
+     */
+    public void start() throws IOException {
+        server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(config.addresses().get(config.index()));
+        frontier.setRouter(this);
+        synchronized (this) {
+            frontier.holdOpen();
+            holding = true;
+        }
+
+        threads.submit(this::accept);
+        for (Peer peer : peers) {
+            if (peer != null) threads.submit(peer::run);
+        }
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "shard-status");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(this::exchangeStatus, 1, 1, TimeUnit.SECONDS);
+        ProjectLogger.LOGGER.info("Shard " + config.index() + "/" + config.count() + " listening on " + server.getLocalSocketAddress());
+    }
+
+    /**
+     * Admits the URLs other shards could not deliver to this one when they shut down,
+     * see {@link ShardConfig#spillDir()}, and deletes their files. Call once the
+     * frontier has been restored or seeded.
+     *
+     * @return how many URLs were queued
+     */
+    public int admitUndelivered() throws IOException {
+        Path dir = config.spillDir();
+        if (dir == null || !Files.isDirectory(dir)) return 0;
+        int urls = 0, admitted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "undelivered-" + config.index() + "-from-*.bin")) {
+            for (Path file : files) {
+                Map<Integer, List<String>> byDepth = new HashMap<>();
+                try (MappedReader in = new MappedReader(file)) {
+                    while (in.hasRemaining()) {
+                        byDepth.computeIfAbsent(in.readVarInt(), d -> new ArrayList<>()).add(in.readString());
+                        urls++;
+                    }
+                }
+                for (Map.Entry<Integer, List<String>> e : byDepth.entrySet()) admitted += frontier.admitAll(e.getValue(), e.getKey());
+                Files.delete(file);
+            }
+        }
+        if (urls > 0) ProjectLogger.LOGGER.info("Shard " + config.index() + ": " + urls + " undelivered URLs picked up, " + admitted + " queued");
+        return admitted;
+    }
+
+    /** True once this shard saw the crawl end everywhere, false while it runs or if it stopped without. */
+    boolean isDone() {
+        return finalState == DONE;
+    }
+
+    @Override
+    public boolean owns(String host) {
+        return ring.ownerOf(host) == config.index();
+    }
+
+    @Override
+    public void forward(String url, String host, int depth) {
+        peers[ring.ownerOf(host)].add(new Forward(url, host, depth));
+    }
+
+    @Override
+    public void forEachUnsent(Consumer<CrawlTask> action) {
+        for (Peer peer : peers) {
+            if (peer != null) peer.forEachUnsent(action);
+        }
+    }
+
+    /**
+     * Sends what is still buffered and a last status, waiting a bounded time for
+     * unreachable peers, and closes every connection.
+     */
+    @Override
+    public void close() throws IOException {
+        if (timer != null) timer.shutdownNow();
+        releaseHold();
+        Status last = new Status(finalState, forwarded.sum(), received.sum(), System.nanoTime());
+        for (Peer peer : peers) {
+            if (peer != null) peer.post(last);
+        }
+        closed = true;
+        for (Peer peer : peers) {
+            if (peer != null) peer.wake();
+        }
+        if (server != null) server.close();
+        threads.shutdown();
+        try {
+            // Peers flush on their own, inbound readers only stop when their socket closes
+            Thread.sleep(200);
+            for (Socket socket : inbound) socket.close();
+            if (!threads.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) threads.shutdownNow();
+        } catch (InterruptedException e) {
+            threads.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        ProjectLogger.LOGGER.info(String.format("Shard %d: forwarded %d URLs, received %d (%d resent), spilled %d, dropped %d",
+                config.index(), forwarded.sum(), received.sum(), duplicates.sum(), spilled.sum(), dropped.sum()));
+    }
+
+    /** Sends this shard's status to every peer and finishes once the crawl is over. */
+    private void exchangeStatus() {
+        long now = System.nanoTime();
+        boolean busy = frontier.pending() > 0;
+        for (int i = 0; i < peers.length; i++) {
+            // URLs for a silent peer wait for shutdown, when they are spilled
+            busy |= peers[i] != null && peers[i].unsent() > 0 && !isSilent(statuses.get(i), now);
+        }
+        if (busy) lastActiveNanos = now;
+        boolean idle = now - lastActiveNanos >= idleNanos;
+
+        Status own = new Status(idle ? IDLE : BUSY, forwarded.sum(), received.sum(), now);
+        for (Peer peer : peers) {
+            if (peer != null) peer.post(own);
+        }
+        if (!idle) {
+            quiet = null;
+            return;
+        }
+
+        Status[] view = new Status[config.count()];
+        List<Integer> silent = new ArrayList<>();
+        boolean allIdle = true;
+        long sent = 0, got = 0;
+        for (int i = 0; i < view.length; i++) {
+            Status status = i == config.index() ? own : statuses.get(i);
+            if (status != null && status.state() == DONE) {
+                finish(DONE, "shard " + i + " saw the crawl end");
+                return;
+            }
+            if (i != config.index() && isSilent(status, now)) {
+                silent.add(i);
+                continue;
+            }
+            if (status == null) {
+                // Not heard from yet, but not for long either
+                quiet = null;
+                return;
+            }
+            allIdle &= status.state() == IDLE;
+            sent += status.sent();
+            got += status.received();
+            view[i] = status;
+        }
+        if (!silent.isEmpty()) {
+            finish(LEFT, "shards " + silent + " silent for " + config.idleSeconds() + " s");
+            return;
+        }
+        if (!allIdle) {
+            quiet = null;
+            return;
+        }
+        if (quiet == null || !quiet.sameTotals(view)) {
+            quiet = new Round(view, now);
+        } else if (sent == got && quiet.allFresher(view, config.index())) {
+            finish(DONE, "all " + view.length + " shards idle, " + sent + " URLs sent and received");
+        } else if (sent != got && now - quiet.atNanos() >= idleNanos) {
+            finish(LEFT, (sent - got) + " forwarded URLs never arrived");
+        }
+    }
+
+    /** True if a peer with this last status left, or has not reported for idleNanos. Live peers report once a second. */
+    private boolean isSilent(Status status, long now) {
+        if (status == null) return now - startedNanos >= idleNanos;
+        return status.state() == LEFT || now - status.atNanos() >= idleNanos;
+    }
+
+    private void finish(int state, String reason) {
+        if (state == DONE) {
+            ProjectLogger.LOGGER.info("Shard " + config.index() + " finishing: " + reason);
+        } else {
+            ProjectLogger.LOGGER.warn("Shard " + config.index() + " finishing on its own: " + reason);
+        }
+        finalState = state;
+        releaseHold();
+        timer.shutdown();
+    }
+
+    private synchronized void releaseHold() {
+        if (!holding) return;
+        holding = false;
+        frontier.releaseHold();
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                inbound.add(socket);
+                threads.submit(() -> receive(socket));
+            } catch (IOException e) {
+                if (!closed) ProjectLogger.LOGGER.warn("Shard accept failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void receive(Socket socket) {
+        try (socket; BinaryReader in = new BinaryReader(socket.getInputStream())) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a shard connection");
+            int from = in.readVarInt();
+            if (from < 0 || from >= config.count() || from == config.index()) throw new IOException("Bad shard index " + from);
+            // A restarted sender numbers its batches from the start again
+            long senderSession = in.readVarLong();
+            if (sessions.getAndSet(from, senderSession) != senderSession) taken.set(from, 0);
+            Map<Integer, List<String>> byDepth = new HashMap<>();
+            while (true) {
+                int count;
+                try {
+                    count = in.readVarInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                if (count == 0) {
+                    Status status = new Status(in.readVarInt(), in.readVarLong(), in.readVarLong(), System.nanoTime());
+                    peers[from].acknowledge(in.readVarLong());
+                    // A shard that stopped stays stopped, whatever was still queued behind its last word
+                    statuses.getAndUpdate(from, old -> old != null && old.state() >= DONE ? old : status);
+                    continue;
+                }
+                long batch = in.readVarLong();
+                for (int i = 0; i < count; i++) {
+                    int depth = in.readVarInt();
+                    byDepth.computeIfAbsent(depth, d -> new ArrayList<>()).add(in.readString(MAX_URL_BYTES));
+                }
+                lastActiveNanos = System.nanoTime();
+                // Resent after a dropped connection, but it had arrived before
+                if (taken.getAndAccumulate(from, batch, Math::max) >= batch) {
+                    for (List<String> urls : byDepth.values()) urls.clear();
+                    duplicates.add(count);
+                    continue;
+                }
+                for (Map.Entry<Integer, List<String>> e : byDepth.entrySet()) {
+                    if (e.getValue().isEmpty()) continue;
+                    frontier.admitAll(e.getValue(), e.getKey());
+                    e.getValue().clear();
+                }
+                // Only now, so the totals cannot balance while a batch is still being admitted
+                received.add(count);
+                ProjectLogger.LOGGER.debug("Shard {} received {} URLs from shard {}", config.index(), count, from);
+            }
+        } catch (IOException e) {
+            if (!closed) ProjectLogger.LOGGER.warn("Shard connection lost: " + e.getMessage());
+        } finally {
+            inbound.remove(socket);
+        }
+    }
+
+    private record Forward(String url, String host, int depth) {
+    }
+
+    /** URLs sent to a peer together, {@code number} counts up from 1 per peer. */
+    private record Batch(long number, List<Forward> urls) {
+    }
+
+    /** What a shard last reported, {@code atNanos} is when the report arrived. */
+    private record Status(int state, long sent, long received, long atNanos) {
+    }
+
+    /** Statuses of every shard as seen in one round. */
+    private record Round(Status[] statuses, long atNanos) {
+
+        boolean sameTotals(Status[] other) {
+            for (int i = 0; i < statuses.length; i++) {
+                if (statuses[i].sent() != other[i].sent() || statuses[i].received() != other[i].received()) return false;
+            }
+            return true;
+        }
+
+        /** True if every peer reported again since this round. */
+        boolean allFresher(Status[] other, int self) {
+            for (int i = 0; i < statuses.length; i++) {
+                if (i != self && other[i].atNanos() - statuses[i].atNanos() <= 0) return false;
+            }
+            return true;
+        }
+    }
+
+    /** Outgoing buffer and connection to one other shard. */
+    private final class Peer {
+        private final int index;
+        private final InetSocketAddress address;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition full = lock.newCondition();
+        private final AtomicReference<Status> status = new AtomicReference<>();
+        private List<Forward> buffer = new ArrayList<>();
+        // Taken from the buffer, not yet acknowledged by the peer, oldest first
+        private final ArrayDeque<Batch> unacked = new ArrayDeque<>();
+        private int unackedUrls;
+        private long nextBatch = 1;
+        // Last batch written to the current connection, only touched by run()
+        private long written;
+        private Socket socket;
+        private BinaryWriter out;
+
+        Peer(int index, InetSocketAddress address) {
+            this.index = index;
+            this.address = address;
+        }
+
+        void add(Forward forward) {
+            lock.lock();
+            try {
+                if (buffer.size() >= MAX_BUFFERED) {
+                    dropped.increment();
+                    return;
+                }
+                buffer.add(forward);
+                if (buffer.size() == BATCH) full.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** Queues {@code next} to be sent after the URLs buffered so far, replacing an unsent older status. */
+        void post(Status next) {
+            status.getAndUpdate(old -> old != null && old.state() >= DONE ? old : next);
+        }
+
+        /** Drops the batches the peer has taken, up to {@code last}. Only now they count as forwarded. */
+        void acknowledge(long last) {
+            int urls = 0;
+            lock.lock();
+            try {
+                while (!unacked.isEmpty() && unacked.peekFirst().number() <= last) {
+                    urls += unacked.pollFirst().urls().size();
+                }
+                unackedUrls -= urls;
+            } finally {
+                lock.unlock();
+            }
+            if (urls == 0) return;
+            forwarded.add(urls);
+            lastActiveNanos = System.nanoTime();
+        }
+
+        int unsent() {
+            lock.lock();
+            try {
+                return buffer.size() + unackedUrls;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void forEachUnsent(Consumer<CrawlTask> action) {
+            lock.lock();
+            try {
+                for (Batch batch : unacked) {
+                    for (Forward f : batch.urls()) action.accept(new CrawlTask(f.url(), f.host(), f.depth()));
+                }
+                for (Forward f : buffer) action.accept(new CrawlTask(f.url(), f.host(), f.depth()));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void wake() {
+            lock.lock();
+            try {
+                full.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void run() {
+            long backoffMillis = 100;
+            while (true) {
+                nextBatch();
+                Status next = status.getAndSet(null);
+                if (unwritten().isEmpty() && next == null) {
+                    if (closed) break;
+                    continue;
+                }
+                while (true) {
+                    try {
+                        send(next);
+                        backoffMillis = 100;
+                        break;
+                    } catch (IOException e) {
+                        disconnect();
+                        if (closed) {
+                            // Peer is gone at shutdown, leave what is left for it to pick up later
+                            if (unsent() > 0) ProjectLogger.LOGGER.warn("Shard " + index + " unreachable at shutdown: " + e.getMessage());
+                            spill();
+                            return;
+                        }
+                        ProjectLogger.LOGGER.debug("Shard {} unreachable, retrying: {}", index, e.getMessage());
+                        try {
+                            Thread.sleep(backoffMillis);
+                        } catch (InterruptedException ie) {
+                            return;
+                        }
+                        backoffMillis = Math.min(backoffMillis * 2, 5000);
+                        // Send the freshest status on the next try, or resend this one
+                        Status newer = status.getAndSet(null);
+                        if (newer != null) next = newer;
+                    }
+                }
+            }
+            disconnect();
+            // Written but never acknowledged, e.g. to a peer that left without reading them
+            spill();
+        }
+
+        /** Waits until a batch is full or the flush interval passed, then numbers the buffer as the next batch. */
+        private void nextBatch() {
+            lock.lock();
+            try {
+                if (buffer.size() < BATCH && !closed) {
+                    full.awaitNanos(FLUSH_NANOS);
+                }
+                if (buffer.isEmpty()) return;
+                unacked.addLast(new Batch(nextBatch++, buffer));
+                unackedUrls += buffer.size();
+                buffer = new ArrayList<>(Math.min(buffer.size(), BATCH));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** Batches not written to the current connection yet. */
+        private List<Batch> unwritten() {
+            lock.lock();
+            try {
+                List<Batch> batches = new ArrayList<>();
+                for (Batch batch : unacked) {
+                    if (batch.number() > written) batches.add(batch);
+                }
+                return batches;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void send(Status next) throws IOException {
+            if (socket == null) {
+                socket = new Socket();
+                socket.connect(address, 5000);
+                socket.setTcpNoDelay(true);
+                out = new BinaryWriter(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+                out.writeInt(MAGIC);
+                out.writeVarInt(config.index());
+                out.writeVarLong(session);
+                // What the last connection carried may be lost, everything unacknowledged goes again
+                written = 0;
+            }
+            List<Batch> batches = unwritten();
+            for (Batch batch : batches) {
+                out.writeVarInt(batch.urls().size());
+                out.writeVarLong(batch.number());
+                for (Forward f : batch.urls()) {
+                    out.writeVarInt(f.depth());
+                    out.writeString(f.url());
+                }
+            }
+            if (next != null) {
+                out.writeVarInt(0);
+                out.writeVarInt(next.state());
+                out.writeVarLong(next.sent());
+                out.writeVarLong(next.received());
+                out.writeVarLong(taken.get(index));
+            }
+            out.flush();
+            if (batches.isEmpty()) return;
+            written = batches.get(batches.size() - 1).number();
+            lastActiveNanos = System.nanoTime();
+        }
+
+        /** Appends everything not acknowledged to the peer's spill file, or drops it without one. */
+        private void spill() {
+            List<Forward> left = new ArrayList<>();
+            lock.lock();
+            try {
+                for (Batch batch : unacked) left.addAll(batch.urls());
+                left.addAll(buffer);
+                unacked.clear();
+                unackedUrls = 0;
+                buffer = new ArrayList<>();
+            } finally {
+                lock.unlock();
+            }
+            if (left.isEmpty()) return;
+            Path dir = config.spillDir();
+            if (dir != null) {
+                Path file = dir.resolve("undelivered-" + index + "-from-" + config.index() + ".bin");
+                try {
+                    Files.createDirectories(dir);
+                    try (BinaryWriter spill = BinaryWriter.open(file, true)) {
+                        for (Forward f : left) {
+                            spill.writeVarInt(f.depth());
+                            spill.writeString(f.url());
+                        }
+                    }
+                    spilled.add(left.size());
+                    ProjectLogger.LOGGER.info("Shard " + config.index() + ": " + left.size() + " URLs for shard " + index + " left in " + file);
+                    return;
+                } catch (IOException e) {
+                    ProjectLogger.LOGGER.warn("Could not spill URLs for shard " + index + ": " + e.getMessage());
+                }
+            }
+            dropped.add(left.size());
+        }
+
+        private void disconnect() {
+            if (socket == null) return;
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+            socket = null;
+            out = null;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.strubium.gasstation.shard;
+
+import com.strubium.gasstation.visited.UrlFingerprint;
+
+import java.util.Arrays;
+
+/**
+ * Consistent hash ring mapping hosts to shards.
+ * <p>
+ * Every shard is placed on the ring at {@value #POINTS_PER_SHARD} pseudo-random points
+ * and a host belongs to the shard owning the first point at or after the host's hash.
+ * The many points even out the share each shard gets, and adding a shard only moves
+ * the hosts that fall on its new points.
+ */
+public final class ShardRing {
+    private static final int POINTS_PER_SHARD = 128;
+
+    private final long[] points;
+    private final int[] owners;
+
+    public ShardRing(int shards) {
+        if (shards < 1) throw new IllegalArgumentException("Need at least one shard");
+        long[] keys = new long[shards * POINTS_PER_SHARD];
+        for (int s = 0, k = 0; s < shards; s++) {
+            for (int p = 0; p < POINTS_PER_SHARD; p++) {
+                keys[k++] = UrlFingerprint.of("shard-" + s + "#" + p);
+            }
+        }
+        // Sort points and carry their owners along, ties go to the lower shard
+        Integer[] order = new Integer[keys.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> keys[a] != keys[b] ? Long.compare(keys[a], keys[b]) : Integer.compare(a, b));
+        points = new long[keys.length];
+        owners = new int[keys.length];
+        for (int i = 0; i < order.length; i++) {
+            points[i] = keys[order[i]];
+            owners[i] = order[i] / POINTS_PER_SHARD;
+        }
+    }
+
+    public int ownerOf(String host) {
+        long hash = UrlFingerprint.of(host);
+        int i = Arrays.binarySearch(points, hash);
+        if (i < 0) i = -i - 1;
+        return owners[i == points.length ? 0 : i];
+    }
+}
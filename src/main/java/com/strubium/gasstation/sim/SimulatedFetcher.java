@@ -0,0 +1,149 @@
+package com.strubium.gasstation.sim;
+
+import com.strubium.gasstation.fetch.FetchConfig;
+import com.strubium.gasstation.fetch.FetchResponse;
+import com.strubium.gasstation.fetch.Fetcher;
+import com.strubium.gasstation.fetch.LimitedInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.UnknownHostException;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * {@link Fetcher} answering from a {@link SyntheticWeb} in process, without sockets.
+ * <p>
+ * Requests sleep for the page's simulated latency, once per redirect hop, so workers
+ * are held as long as they would be by a real server. Bodies are generated as they are
+ * read and cut at {@link FetchConfig#maxBodyBytes()}, so huge pages cost the same as
+ * over the network but never sit in memory.
+ */
+public class SimulatedFetcher implements Fetcher {
+    private static final String CONTENT_TYPE = "text/html; charset=UTF-8";
+
+    private final SyntheticWeb web;
+    private final FetchConfig config;
+
+    public SimulatedFetcher(SyntheticWeb web, FetchConfig config) {
+        this.web = web;
+        this.config = config;
+    }
+
+    @Override
+    public FetchResponse fetch(String url) throws IOException, InterruptedException {
+        return fetchIfChanged(url, null, null);
+    }
+
+    /** A page asked for with the ETag of its current version is answered 304. */
+    @Override
+    public FetchResponse fetchIfChanged(String url, String etag, String lastModified) throws IOException, InterruptedException {
+        int authStart = url.indexOf("://");
+        if (authStart < 0) throw new IOException("Bad URL: " + url);
+        authStart += 3;
+        int pathStart = url.indexOf('/', authStart);
+        if (pathStart < 0) pathStart = url.length();
+        int pathEnd = pathStart;
+        while (pathEnd < url.length() && url.charAt(pathEnd) != '?' && url.charAt(pathEnd) != '#') pathEnd++;
+
+        int host = web.hostId(url.substring(authStart, pathStart));
+        if (host < 0) throw new UnknownHostException(url.substring(authStart, pathStart));
+        String path = url.substring(pathStart, pathEnd);
+        if (path.endsWith("/") && path.length() > 1) path = path.substring(0, path.length() - 1);
+        int page = path.isEmpty() || path.equals("/") ? 0 : web.pageId(path);
+        if (page < 0) {
+            sleep(web.latencyMillis(host, 0, 0));
+            return answer(404, url);
+        }
+
+        if (ThreadLocalRandom.current().nextDouble() < web.config().throttleRate()) {
+            sleep(web.latencyMillis(host, page, 0));
+            return answer(429, url);
+        }
+
+        SyntheticWeb.Outcome outcome = web.outcome(host, page);
+        if (outcome == SyntheticWeb.Outcome.TIMEOUT) {
+            sleep(config.timeoutMillis());
+            throw new HttpTimeoutException("request timed out");
+        }
+
+        int hops = web.redirects(host, page);
+        double latency = 0;
+        for (int hop = 0; hop <= hops; hop++) latency += web.latencyMillis(host, page, hop);
+        sleep(latency);
+        // Redirected pages end up at the slash form of their URL
+        String finalUrl = hops > 0 ? SyntheticWeb.url(host, page) + "/" : SyntheticWeb.url(host, page);
+
+        return switch (outcome) {
+            case NOT_FOUND -> answer(404, finalUrl);
+            case SERVER_ERROR -> answer(500, finalUrl);
+            default -> {
+                long version = web.version(host, page, System.currentTimeMillis() / 1000);
+                Map<String, String> headers = headers();
+                headers.put("ETag", web.etag(host, page, version));
+                if (headers.get("ETag").equals(etag)) yield new FetchResponse(304, finalUrl, CONTENT_TYPE, headers, null);
+                byte[] head = web.head(host, page, version);
+                long filler = web.size(host, page, head.length) - head.length;
+                InputStream body = new SequenceInputStream(new ByteArrayInputStream(head), new Filler(filler));
+                yield new FetchResponse(200, finalUrl, CONTENT_TYPE, headers,
+                        new LimitedInputStream(body, config.maxBodyBytes()));
+            }
+        };
+    }
+
+    private static FetchResponse answer(int status, String url) {
+        return new FetchResponse(status, url, CONTENT_TYPE, headers(), null);
+    }
+
+    private static Map<String, String> headers() {
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.put("Content-Type", CONTENT_TYPE);
+        return headers;
+    }
+
+    private static void sleep(double millis) throws InterruptedException {
+        long nanos = (long) (millis * 1_000_000);
+        if (nanos > 0) Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+    }
+
+    /** Link-free text of a given length, produced on demand. */
+    private static final class Filler extends InputStream {
+        private static final byte[] TEXT = "<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit.</p>\n"
+                .getBytes(StandardCharsets.US_ASCII);
+
+        private long remaining;
+        private int offset;
+
+        Filler(long length) {
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() {
+            if (remaining <= 0) return -1;
+            remaining--;
+            byte b = TEXT[offset];
+            offset = (offset + 1) % TEXT.length;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (remaining <= 0) return -1;
+            int n = (int) Math.min(len, remaining);
+            for (int i = 0; i < n; ) {
+                int chunk = Math.min(n - i, TEXT.length - offset);
+                System.arraycopy(TEXT, offset, b, off + i, chunk);
+                offset = (offset + chunk) % TEXT.length;
+                i += chunk;
+            }
+            remaining -= n;
+            return n;
+        }
+    }
+}
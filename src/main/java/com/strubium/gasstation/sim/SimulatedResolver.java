@@ -0,0 +1,32 @@
+package com.strubium.gasstation.sim;
+
+import com.strubium.gasstation.dns.HostResolver;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * {@link HostResolver} for a {@link SyntheticWeb}: its hosts resolve to the loopback
+ * address after a simulated lookup delay, any other name does not resolve.
+ */
+public class SimulatedResolver implements HostResolver {
+    private final SyntheticWeb web;
+
+    public SimulatedResolver(SyntheticWeb web) {
+        this.web = web;
+    }
+
+    @Override
+    public InetAddress[] resolve(String host) throws UnknownHostException {
+        int id = web.hostId(host);
+        try {
+            // A lookup costs about one request to the host
+            Thread.sleep((long) web.latencyMillis(Math.max(id, 0), -2, 0));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnknownHostException(host);
+        }
+        if (id < 0) throw new UnknownHostException(host);
+        return new InetAddress[]{InetAddress.getLoopbackAddress()};
+    }
+}
@@ -0,0 +1,63 @@
+package com.strubium.gasstation.sim;
+
+/**
+ * Shape of a {@link SyntheticWeb} and of the answers {@link SimulatedFetcher} gives.
+ * All rates are per request, between 0 and 1, except {@code changesPerDay}.
+ *
+ * @param hosts               number of hosts
+ * @param pagesPerHost        pages on every host
+ * @param fanOut              links per page
+ * @param crossHostRatio      share of links pointing to another host, the rest stay on the page's host
+ * @param latencyMedianMillis median response time
+ * @param latencySigma        spread of the log-normal response time
+ * @param slowHostRatio       share of hosts answering {@code slowHostFactor} times slower
+ * @param slowHostFactor      latency multiplier of slow hosts
+ * @param notFoundRate        404 answers
+ * @param serverErrorRate     500 answers
+ * @param throttleRate        429 answers, the only outcome that changes between attempts
+ * @param timeoutRate         requests that hang until the fetch timeout
+ * @param redirectRate        pages reached through a redirect chain
+ * @param maxRedirects        longest redirect chain
+ * @param hugePageRate        pages of {@code hugePageBytes}
+ * @param hugePageBytes       size of a huge page
+ * @param changesPerDay       how often a page changes on average, a quarter of its links move each time; 0 keeps pages fixed
+ * @param seed                seed of the generated link structure
+ */
+public record SimulationConfig(int hosts, int pagesPerHost, int fanOut, double crossHostRatio,
+                               double latencyMedianMillis, double latencySigma,
+                               double slowHostRatio, double slowHostFactor,
+                               double notFoundRate, double serverErrorRate, double throttleRate, double timeoutRate,
+                               double redirectRate, int maxRedirects,
+                               double hugePageRate, int hugePageBytes, double changesPerDay, long seed) {
+
+    public static SimulationConfig defaults() {
+        return new SimulationConfig(10_000, 100, 20, 0.3,
+                50, 0.8,
+                0.02, 10,
+                0.02, 0.01, 0.005, 0.002,
+                0.05, 3,
+                0.001, 8 * 1024 * 1024, 0, 1);
+    }
+
+    public long pageCount() {
+        return (long) hosts * pagesPerHost;
+    }
+
+    public SimulationConfig withSize(int hosts, int pagesPerHost) {
+        return new SimulationConfig(hosts, pagesPerHost, fanOut, crossHostRatio, latencyMedianMillis, latencySigma,
+                slowHostRatio, slowHostFactor, notFoundRate, serverErrorRate, throttleRate, timeoutRate,
+                redirectRate, maxRedirects, hugePageRate, hugePageBytes, changesPerDay, seed);
+    }
+
+    public SimulationConfig withLatency(double latencyMedianMillis) {
+        return new SimulationConfig(hosts, pagesPerHost, fanOut, crossHostRatio, latencyMedianMillis, latencySigma,
+                slowHostRatio, slowHostFactor, notFoundRate, serverErrorRate, throttleRate, timeoutRate,
+                redirectRate, maxRedirects, hugePageRate, hugePageBytes, changesPerDay, seed);
+    }
+
+    public SimulationConfig withChangesPerDay(double changesPerDay) {
+        return new SimulationConfig(hosts, pagesPerHost, fanOut, crossHostRatio, latencyMedianMillis, latencySigma,
+                slowHostRatio, slowHostFactor, notFoundRate, serverErrorRate, throttleRate, timeoutRate,
+                redirectRate, maxRedirects, hugePageRate, hugePageBytes, changesPerDay, seed);
+    }
+}
@@ -0,0 +1,189 @@
+package com.strubium.gasstation.sim;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A generated web of {@code hosts * pagesPerHost} pages that is never stored.
+ * <p>
+ * Page {@code p} of host {@code h} lives at {@code http://h<h>.sim/p<p>}. Everything
+ * about a page, its links and how it answers, is a pure function of the seed and the
+ * page's coordinates, so two runs with the same config see the same web. Cross-host
+ * links favour low host numbers, which gives a few hubs and a long tail like the real
+ * thing.
+ * <p>
+ * With {@link SimulationConfig#changesPerDay()} set, time is one more coordinate: every
+ * page moves to a new {@link #version(int, int, long) version} on its own schedule, and
+ * a quarter of its links and its ETag depend on the version.
+ */
+public final class SyntheticWeb {
+    static final String DOMAIN = ".sim";
+    private static final double CHANGING_LINKS = 0.25;
+
+    private final SimulationConfig config;
+
+    public SyntheticWeb(SimulationConfig config) {
+        this.config = config;
+    }
+
+    public SimulationConfig config() {
+        return config;
+    }
+
+    /** Answer of a page before latency. */
+    public enum Outcome {OK, NOT_FOUND, SERVER_ERROR, TIMEOUT}
+
+    public static String url(int host, int page) {
+        return "http://h" + host + DOMAIN + "/p" + page;
+    }
+
+    /** The front pages of the first {@code count} hosts. */
+    public List<String> seeds(int count) {
+        List<String> seeds = new ArrayList<>(count);
+        for (int h = 0; h < Math.min(count, config.hosts()); h++) seeds.add(url(h, 0));
+        return seeds;
+    }
+
+    /**
+     * @return the host number of a {@code h<n>.sim} or {@code www.h<n>.sim} host, or -1
+     */
+    public int hostId(String host) {
+        if (host.startsWith("www.")) host = host.substring(4);
+        if (!host.startsWith("h") || !host.endsWith(DOMAIN)) return -1;
+        int id = parse(host, 1, host.length() - DOMAIN.length());
+        return id < config.hosts() ? id : -1;
+    }
+
+    /**
+     * @return the page number of a {@code /p<n>} path, or -1
+     */
+    public int pageId(String path) {
+        if (!path.startsWith("/p")) return -1;
+        int id = parse(path, 2, path.length());
+        return id < config.pagesPerHost() ? id : -1;
+    }
+
+    public Outcome outcome(int host, int page) {
+        double u = unit(host, page, 1);
+        if ((u -= config.notFoundRate()) < 0) return Outcome.NOT_FOUND;
+        if ((u -= config.serverErrorRate()) < 0) return Outcome.SERVER_ERROR;
+        if ((u -= config.timeoutRate()) < 0) return Outcome.TIMEOUT;
+        return Outcome.OK;
+    }
+
+    /** Number of redirects in front of the page, 0 for most. */
+    public int redirects(int host, int page) {
+        if (unit(host, page, 2) >= config.redirectRate()) return 0;
+        return 1 + (int) (unit(host, page, 3) * config.maxRedirects());
+    }
+
+    /** Response time of one request to the page, in milliseconds. */
+    public double latencyMillis(int host, int page, int hop) {
+        double gaussian = gaussian(host, page, 10 + hop);
+        double latency = config.latencyMedianMillis() * Math.exp(config.latencySigma() * gaussian);
+        return isSlow(host) ? latency * config.slowHostFactor() : latency;
+    }
+
+    public boolean isSlow(int host) {
+        return unit(host, -1, 4) < config.slowHostRatio();
+    }
+
+    public boolean isHuge(int host, int page) {
+        return unit(host, page, 5) < config.hugePageRate();
+    }
+
+    /**
+     * Version of the page at {@code epochSeconds}, always 0 if pages do not change.
+     * Each page keeps its version for a period of its own, between half and one and a
+     * half times the mean, starting at its own offset so pages do not change in step.
+     */
+    public long version(int host, int page, long epochSeconds) {
+        if (config.changesPerDay() <= 0) return 0;
+        double period = 86_400 / config.changesPerDay() * (0.5 + unit(host, page, 7));
+        return (long) Math.floor((epochSeconds + unit(host, page, 8) * period) / period);
+    }
+
+    /**
+     * The page's markup at {@code version} up to the end of its links. Same-host links are mostly relative,
+     * and some carry a fragment or query so dedupe has something to do.
+     */
+    public byte[] head(int host, int page, long version) {
+        StringBuilder html = new StringBuilder(64 + config.fanOut() * 40);
+        html.append("<!DOCTYPE html><html><head><title>h").append(host).append(" p").append(page)
+                .append("</title></head><body><ul>\n");
+        for (int i = 0; i < config.fanOut(); i++) {
+            long bits = mix(host, page, 100 + i);
+            long hostBits = mix(host, page, 200 + i);
+            if (version != 0 && unit(host, page, 300 + i) < CHANGING_LINKS) {
+                bits = mix64(bits ^ version);
+                hostBits = mix64(hostBits ^ version);
+            }
+            int targetPage = (int) Long.remainderUnsigned(bits >>> 8, config.pagesPerHost());
+            html.append("<li><a href=\"");
+            if (unit(bits) < config.crossHostRatio()) {
+                // Cubing a uniform value skews the pick towards low host numbers
+                double u = unit(hostBits);
+                html.append(url((int) (u * u * u * config.hosts()), targetPage));
+            } else {
+                html.append("/p").append(targetPage);
+                switch ((int) (bits & 15)) {
+                    case 0 -> html.append("#top");
+                    case 1 -> html.append("?ref=nav");
+                    default -> {
+                    }
+                }
+            }
+            html.append("\">link ").append(i).append("</a></li>\n");
+        }
+        html.append("</ul>\n");
+        return html.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Entity tag of the page at {@code version}, the same in every run with the same seed. */
+    public String etag(int host, int page, long version) {
+        return '"' + Long.toHexString(mix(host, page, 6) ^ version) + '"';
+    }
+
+    /** Total body size, the head followed by filler text. */
+    public long size(int host, int page, int headLength) {
+        return isHuge(host, page) ? Math.max(headLength, config.hugePageBytes()) : headLength + 2048;
+    }
+
+    private double unit(int host, int page, int salt) {
+        return unit(mix(host, page, salt));
+    }
+
+    private double gaussian(int host, int page, int salt) {
+        // Box-Muller on two hash draws
+        double u1 = Math.max(unit(mix(host, page, salt)), 1e-12);
+        double u2 = unit(mix(host, page, salt + 1000));
+        return Math.sqrt(-2 * Math.log(u1)) * Math.cos(2 * Math.PI * u2);
+    }
+
+    private long mix(int host, int page, int salt) {
+        return mix64(config.seed() ^ mix64(((long) host << 32 | (page & 0xFFFFFFFFL)) + salt * 0x9E3779B97F4A7C15L));
+    }
+
+    private static double unit(long bits) {
+        return (bits >>> 11) * 0x1.0p-53;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int parse(String s, int from, int to) {
+        if (from >= to || to - from > 9) return -1;
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,87 @@
+package com.strubium.gasstation.visited;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Probabilistic {@link VisitedSet} backed by a lock-free Bloom filter.
+ * <p>
+ * Sized for an expected number of URLs and a target false-positive rate; at 1% it takes
+ * about 1.2 bytes per URL. A false positive means a never-seen URL is treated as visited
+ * and skipped, which is an acceptable loss for crawls of hundreds of millions of URLs.
+ * Once more URLs than planned are added the real rate climbs above the target.
+ */
+public class BloomVisitedSet implements VisitedSet {
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashes;
+    private final long expected;
+    private final LongAdder added = new LongAdder();
+
+    public BloomVisitedSet(long expected, double falsePositiveRate) {
+        if (expected <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Bad Bloom filter sizing: " + expected + " @ " + falsePositiveRate);
+        }
+        double ln2 = Math.log(2);
+        long m = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (ln2 * ln2));
+        long words = Math.min(Integer.MAX_VALUE - 8, (m + 63) / 64);
+        this.bits = new AtomicLongArray((int) words);
+        this.bitCount = words * 64;
+        this.hashes = Math.max(1, (int) Math.round((double) bitCount / expected * ln2));
+        this.expected = expected;
+    }
+
+    @Override
+    public boolean add(long fingerprint) {
+        long h1 = fingerprint;
+        long h2 = Long.rotateLeft(fingerprint, 32) | 1;
+        boolean changed = false;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long old = bits.get(word);
+            while ((old & mask) == 0) {
+                long witness = bits.compareAndExchange(word, old, old | mask);
+                if (witness == old) {
+                    changed = true;
+                    break;
+                }
+                old = witness;
+            }
+        }
+        if (changed) added.increment();
+        return changed;
+    }
+
+    @Override
+    public boolean contains(long fingerprint) {
+        long h1 = fingerprint;
+        long h2 = Long.rotateLeft(fingerprint, 32) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public long size() {
+        return added.sum();
+    }
+
+    @Override
+    public long memoryBytes() {
+        return bitCount / 8;
+    }
+
+    /** True once more URLs were added than the filter was sized for. */
+    public boolean isOverCapacity() {
+        return size() > expected;
+    }
+
+    /** False-positive rate to expect at the current fill. */
+    public double expectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashes * size() / bitCount), hashes);
+    }
+}
@@ -0,0 +1,65 @@
+package com.strubium.gasstation.visited;
+
+/**
+ * Open-addressing set of non-zero longs with linear probing.
+ * Not thread-safe, {@link FingerprintSet} guards each instance with a lock.
+ */
+final class LongHashSet {
+    private long[] table;
+    private int size;
+    private int mask;
+
+    LongHashSet(int capacity) {
+        table = new long[Integer.highestOneBit(Math.max(16, capacity - 1)) << 1];
+        mask = table.length - 1;
+    }
+
+    boolean add(long key) {
+        int slot = slot(key);
+        while (true) {
+            long k = table[slot];
+            if (k == key) return false;
+            if (k == 0) {
+                table[slot] = key;
+                if (++size * 4 > table.length * 3) rehash();
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    boolean contains(long key) {
+        int slot = slot(key);
+        while (true) {
+            long k = table[slot];
+            if (k == key) return true;
+            if (k == 0) return false;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return table.length;
+    }
+
+    private int slot(long key) {
+        // Fingerprints are already well mixed, the low bits pick the slot
+        return (int) key & mask;
+    }
+
+    private void rehash() {
+        long[] old = table;
+        table = new long[old.length * 2];
+        mask = table.length - 1;
+        for (long k : old) {
+            if (k == 0) continue;
+            int slot = slot(k);
+            while (table[slot] != 0) slot = (slot + 1) & mask;
+            table[slot] = k;
+        }
+    }
+}
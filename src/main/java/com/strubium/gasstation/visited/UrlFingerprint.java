@@ -0,0 +1,41 @@
+package com.strubium.gasstation.visited;
+
+/**
+ * 64-bit fingerprint of a normalized URL.
+ * <p>
+ * Characters are consumed four at a time into a multiply-rotate mix with a
+ * MurmurHash3 finalizer, so fingerprints are spread evenly enough to use the low and
+ * high bits directly for table and stripe indexes. Never returns 0, which the tables
+ * use as their empty marker.
+ */
+public final class UrlFingerprint {
+    private static final long K1 = 0x87C37B91114253D5L;
+    private static final long K2 = 0x4CF5AD432745937FL;
+
+    private UrlFingerprint() {
+    }
+
+    public static long of(CharSequence s) {
+        int n = s.length();
+        long h = 0x9E3779B97F4A7C15L ^ n;
+        int i = 0;
+        for (; i + 4 <= n; i += 4) {
+            long block = s.charAt(i)
+                    | (long) s.charAt(i + 1) << 16
+                    | (long) s.charAt(i + 2) << 32
+                    | (long) s.charAt(i + 3) << 48;
+            h ^= Long.rotateLeft(block * K1, 31) * K2;
+            h = Long.rotateLeft(h, 27) * 5 + 0x52DCE729;
+        }
+        long tail = 0;
+        for (int shift = 0; i < n; i++, shift += 16) tail |= (long) s.charAt(i) << shift;
+        h ^= Long.rotateLeft(tail * K1, 31) * K2;
+
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h != 0 ? h : 1;
+    }
+}
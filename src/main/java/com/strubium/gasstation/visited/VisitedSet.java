@@ -0,0 +1,26 @@
+package com.strubium.gasstation.visited;
+
+/**
+ * Set of visited URLs, keyed by 64-bit {@link UrlFingerprint}s instead of the URL strings.
+ * Implementations are thread-safe.
+ */
+public interface VisitedSet {
+
+    /**
+     * @return true if the fingerprint was not in the set before
+     */
+    boolean add(long fingerprint);
+
+    boolean contains(long fingerprint);
+
+    /** Number of fingerprints added, approximate for probabilistic sets. */
+    long size();
+
+    /** Bytes held by the set's tables. */
+    long memoryBytes();
+
+    default double bytesPerUrl() {
+        long size = size();
+        return size == 0 ? 0 : (double) memoryBytes() / size;
+    }
+}
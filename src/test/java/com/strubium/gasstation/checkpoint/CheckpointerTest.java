@@ -0,0 +1,122 @@
+package com.strubium.gasstation.checkpoint;
+
+import com.strubium.gasstation.CrawlerManager;
+import com.strubium.gasstation.frontier.CrawlTask;
+import com.strubium.gasstation.frontier.Frontier;
+import com.strubium.gasstation.io.BinaryWriter;
+import com.strubium.gasstation.visited.UrlFingerprint;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CheckpointerTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void emptyDirectoryHasNothingToRestore() throws IOException {
+        CrawlerManager manager = new CrawlerManager(3);
+        assertFalse(new Checkpointer(dir, manager, new Frontier(manager, 100)).restore());
+    }
+
+    @Test
+    void restoreBringsBackVisitedUrlsGraphAndPendingTasks() throws Exception {
+        CrawlerManager manager = new CrawlerManager(3);
+        Frontier frontier = new Frontier(manager, 100);
+        Checkpointer checkpointer = new Checkpointer(dir, manager, frontier);
+        checkpointer.reset();
+        frontier.admitAll(List.of("http://a.test/", "http://b.test/x", "http://c.test/y"), 1);
+        CrawlTask inFlight = frontier.take();
+        frontier.complete(inFlight, false);
+        frontier.admit("http://d.test/z", 2);
+        manager.addEdge("a.test", "b.test");
+        manager.addEdge("a.test", "c.test");
+        checkpointer.close();
+
+        CrawlerManager resumed = new CrawlerManager(3);
+        Frontier resumedFrontier = new Frontier(resumed, 100);
+        Checkpointer restored = new Checkpointer(dir, resumed, resumedFrontier);
+        assertTrue(restored.restore());
+
+        assertEquals(4, resumed.getVisited().size());
+        assertFalse(resumed.markVisited("http://a.test/"));
+        assertFalse(resumed.markVisited("http://d.test/z"));
+        assertEquals(2, resumed.getGraph().edgeCount());
+        Set<String> pending = resumedFrontier.snapshotTasks().stream().map(CrawlTask::url).collect(Collectors.toSet());
+        Set<String> expected = Set.of("http://a.test/", "http://b.test/x", "http://c.test/y", "http://d.test/z");
+        Set<String> left = expected.stream().filter(url -> !url.equals(inFlight.url())).collect(Collectors.toSet());
+        assertEquals(left, pending);
+        restored.close();
+    }
+
+    @Test
+    void checkpointHoldsAPageEitherInFlightOrWithItsLinks() throws Exception {
+        CrawlerManager manager = new CrawlerManager(3);
+        Frontier frontier = new Frontier(manager, 100);
+        Checkpointer checkpointer = new Checkpointer(dir, manager, frontier);
+        checkpointer.reset();
+        frontier.admit("http://a.test/", 0);
+        CrawlTask task = frontier.take();
+        Thread[] concurrent = new Thread[1];
+        frontier.complete(task, false, () -> {
+            manager.addEdge("a.test", "b.test", 0);
+            concurrent[0] = Thread.ofVirtual().start(() -> {
+                try {
+                    checkpointer.checkpoint();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            try {
+                // The checkpoint has to wait for the page to finish
+                assertFalse(concurrent[0].join(Duration.ofMillis(200)));
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        });
+        concurrent[0].join();
+
+        CrawlerManager resumed = new CrawlerManager(3);
+        Frontier resumedFrontier = new Frontier(resumed, 100);
+        Checkpointer restored = new Checkpointer(dir, resumed, resumedFrontier);
+        assertTrue(restored.restore());
+        assertEquals(1, resumed.getGraph().edgeCount());
+        assertTrue(resumedFrontier.snapshotTasks().isEmpty());
+        restored.close();
+        checkpointer.close();
+    }
+
+    @Test
+    void visitedLogIsCutBackToTheCheckpoint() throws Exception {
+        CrawlerManager manager = new CrawlerManager(3);
+        Frontier frontier = new Frontier(manager, 100);
+        Checkpointer checkpointer = new Checkpointer(dir, manager, frontier);
+        checkpointer.reset();
+        frontier.admit("http://a.test/", 0);
+        checkpointer.close();
+
+        // Logged after the checkpoint, as if the process died before the next one
+        String lost = "http://b.test/";
+        try (BinaryWriter out = BinaryWriter.open(dir.resolve("visited.log"), true)) {
+            out.writeLong(UrlFingerprint.of("http://b.test"));
+        }
+
+        CrawlerManager resumed = new CrawlerManager(3);
+        Checkpointer restored = new Checkpointer(dir, resumed, new Frontier(resumed, 100));
+        assertTrue(restored.restore());
+        assertEquals(1, resumed.getVisited().size());
+        assertTrue(resumed.markVisited(lost));
+        restored.close();
+    }
+}
@@ -0,0 +1,77 @@
+package com.strubium.gasstation.dns;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DnsCacheTest {
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    /** Resolves every host to 127.0.0.1, except those starting with "dead" and "broken". */
+    private final HostResolver resolver = host -> {
+        lookups.incrementAndGet();
+        if (host.startsWith("dead")) throw new UnknownHostException(host);
+        if (host.startsWith("broken")) throw new IllegalStateException("resolver failed");
+        return new InetAddress[]{InetAddress.getByAddress(host, new byte[]{127, 0, 0, 1})};
+    };
+
+    @Test
+    void addressesAreReusedWithinTheirTtl() throws Exception {
+        try (DnsCache dns = new DnsCache(resolver, config(300, 300))) {
+            assertEquals("127.0.0.1", dns.resolve("a.test")[0].getHostAddress());
+            dns.resolve("a.test");
+            assertEquals(1, lookups.get());
+        }
+    }
+
+    @Test
+    void addressesAreLookedUpAgainOnceTheirTtlRanOut() throws Exception {
+        try (DnsCache dns = new DnsCache(resolver, config(0, 300))) {
+            dns.resolve("a.test");
+            dns.resolve("a.test");
+            assertEquals(2, lookups.get());
+        }
+    }
+
+    @Test
+    void unresolvedHostIsDeadForItsNegativeTtl() throws Exception {
+        try (DnsCache dns = new DnsCache(resolver, config(300, 300))) {
+            assertFalse(dns.isDead("dead.test"));
+            assertThrows(UnknownHostException.class, () -> dns.resolve("dead.test"));
+            assertTrue(dns.isDead("dead.test"));
+            assertThrows(UnknownHostException.class, () -> dns.resolve("dead.test"));
+            assertEquals(1, lookups.get());
+        }
+    }
+
+    @Test
+    void deadHostIsRetriedOnceItsNegativeTtlRanOut() throws Exception {
+        try (DnsCache dns = new DnsCache(resolver, config(300, 0))) {
+            assertThrows(UnknownHostException.class, () -> dns.resolve("dead.test"));
+            assertFalse(dns.isDead("dead.test"));
+            assertThrows(UnknownHostException.class, () -> dns.resolve("dead.test"));
+            assertEquals(2, lookups.get());
+        }
+    }
+
+    @Test
+    void resolverFailureDoesNotMarkTheHostDead() throws Exception {
+        try (DnsCache dns = new DnsCache(resolver, config(300, 300))) {
+            assertThrows(UnknownHostException.class, () -> dns.resolve("broken.test"));
+            assertFalse(dns.isDead("broken.test"));
+            assertThrows(UnknownHostException.class, () -> dns.resolve("broken.test"));
+            assertEquals(2, lookups.get());
+        }
+    }
+
+    private static DnsConfig config(long positiveTtlSeconds, long negativeTtlSeconds) {
+        return new DnsConfig(positiveTtlSeconds, negativeTtlSeconds, 1000, 2, 100);
+    }
+}
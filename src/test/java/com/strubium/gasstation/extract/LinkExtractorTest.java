@@ -0,0 +1,201 @@
+package com.strubium.gasstation.extract;
+
+import org.jsoup.Jsoup;
+import org.jsoup.internal.StringUtil;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LinkExtractorTest {
+    private static final String BASE = "http://a.test/dir/page.html";
+
+    /** Mixes everything the extractor has to get right, for the comparison with Jsoup. */
+    private static final String PAGE = """
+            <!DOCTYPE html>
+            <html><head>
+            <base href="http://b.test/root/">
+            <meta charset="utf-8">
+            <meta http-equiv="Refresh" content="5; URL='next.html'">
+            <link rel=stylesheet href=/css/site.css>
+            <style>a[href="/styled"] { color: red }</style>
+            <script>if (a < b) document.write("<a href='/scripted'>x</a>");</script>
+            </head><body>
+            <!-- <a href="/commented"> -->
+            <A HREF = "Upper.html">upper</A>
+            <a class='x' href='single.html'>single</a>
+            <a href="../up/one?x=1&amp;y=2#frag">up</a>
+            <a href="//c.test/proto">proto</a>
+            <a href="https://d.test/abs">abs</a>
+            <a href="mailto:me@a.test">mail</a>
+            <a href="javascript:void(0)">js</a>
+            <a name="anchor">no href</a>
+            <p>1 < 2 and <b>bold</b></p>
+            <img src="/image.png" alt="not a link">
+            <a href="./dot/&#47;slash">dot</a>
+            </body></html>
+            """;
+
+    @Test
+    void attributeValuesAreReadQuotedOrNot() throws IOException {
+        assertEquals(List.of(
+                        "http://a.test/double", "http://a.test/single", "http://a.test/bare",
+                        "http://a.test/spaced", "http://a.test/dir/slash/", "http://a.test/style.css"),
+                extract("""
+                        <a href="/double"><a href='/single'><a href=/bare>
+                        <a title="a > b" href = "/spaced"><a href=slash/>
+                        <link rel=stylesheet href="/style.css"/>
+                        """));
+    }
+
+    @Test
+    void quotedValueMayHoldTheOtherQuoteAndWhitespace() throws IOException {
+        assertEquals(List.of("http://a.test/it's%20here", "http://a.test/say \"hi\""),
+                extract("<a href=\"/it's%20here\"><a href='/say \"hi\"'>"));
+    }
+
+    @Test
+    void baseHrefRebasesTheLinksAfterIt() throws IOException {
+        assertEquals(List.of("http://a.test/dir/before", "http://b.test/x/after", "http://b.test/x/y/z"),
+                extract("<a href=before><base href=\"http://b.test/x/\"><a href=after><base href=y/><a href=z>"));
+    }
+
+    @Test
+    void baseWithoutAnHttpTargetIsIgnored() throws IOException {
+        assertEquals(List.of("http://a.test/dir/next"), extract("<base target=_blank><base href=\"mailto:x\"><a href=next>"));
+    }
+
+    @Test
+    void metaRefreshLinksItsTarget() throws IOException {
+        assertEquals(List.of("http://a.test/next", "http://a.test/dir/quoted"),
+                extract("""
+                        <meta http-equiv="refresh" content="0; url=/next">
+                        <meta http-equiv=REFRESH content="3;URL='quoted'">
+                        <meta http-equiv="refresh" content="30">
+                        <meta name="refresh" content="0; url=/not-http-equiv">
+                        """));
+    }
+
+    @Test
+    void refreshUrlParsing() {
+        assertEquals("/next", LinkExtractor.refreshUrl("0; url=/next"));
+        assertEquals("/next", LinkExtractor.refreshUrl("0;URL=  /next  "));
+        assertEquals("a b", LinkExtractor.refreshUrl("1; url=\"a b\" trailing"));
+        assertEquals("/open", LinkExtractor.refreshUrl("1; url='/open"));
+        assertNull(LinkExtractor.refreshUrl("30"));
+        assertNull(LinkExtractor.refreshUrl("0; url="));
+        assertNull(LinkExtractor.refreshUrl(null));
+    }
+
+    @Test
+    void commentsScriptAndStyleBodiesAreSkipped() throws IOException {
+        assertEquals(List.of("http://a.test/after-comment", "http://a.test/after-script", "http://a.test/after-style"),
+                extract("""
+                        <!-- <a href="/in-comment"> -- still <a href="/in-comment-2"> -->
+                        <a href="/after-comment">
+                        <SCRIPT type="text/javascript">var s = '<a href="/in-script">'; if (a</b) {}</ScRiPt >
+                        <a href="/after-script">
+                        <style>a[href="/in-style"]:after { content: "</a>" }</style>
+                        <a href="/after-style">
+                        """));
+    }
+
+    @Test
+    void doctypeProcessingInstructionsAndStrayBracketsAreNotTags() throws IOException {
+        assertEquals(List.of("http://a.test/one", "http://a.test/two"),
+                extract("<!DOCTYPE html><?xml version=\"1.0\"?>a <<a href=/one> 3 < 4 </p><a href=/two>"));
+    }
+
+    @Test
+    void characterReferencesInHrefsAreDecoded() throws IOException {
+        assertEquals(List.of("http://a.test/p?a=1&b=2", "http://a.test/x/y", "http://a.test/q?c=1&d"),
+                extract("<a href=\"/p?a=1&amp;b=2\"><a href=/x&#x2F;y><a href=\"/q?c=1&d\">"));
+    }
+
+    @Test
+    void entityDecoding() {
+        assertEquals("a&b<c>\"'", LinkExtractor.decodeEntities("a&amp;b&lt;c&gt;&quot;&apos;"));
+        assertEquals("/é/€", LinkExtractor.decodeEntities("/&#233;/&#x20AC;"));
+        assertEquals("&unknown;&#xZZ;&#;&", LinkExtractor.decodeEntities("&unknown;&#xZZ;&#;&"));
+        assertEquals("&amp-no-semicolon", LinkExtractor.decodeEntities("&amp-no-semicolon"));
+        assertEquals("plain", LinkExtractor.decodeEntities("plain"));
+    }
+
+    @Test
+    void tagCutOffByTheEndOfInputIsDropped() throws IOException {
+        assertEquals(List.of("http://a.test/whole"), extract("<a href=/whole><a href=\"/cut"));
+        assertEquals(List.of(), extract("<a href=/cut"));
+        assertEquals(List.of(), extract("<a hr"));
+        assertEquals(List.of(), extract("<a href="));
+        assertEquals(List.of(), extract("<!-- <a href=/open-comment>"));
+        assertEquals(List.of(), extract("<script><a href=/open-script>"));
+        assertEquals(List.of(), extract("<"));
+    }
+
+    @Test
+    void resultDoesNotDependOnHowTheInputIsSplit() throws IOException {
+        List<String> whole = extract(PAGE);
+        List<String> trickled = new ArrayList<>();
+        new LinkExtractor().extract(new OneCharReader(PAGE), BASE, trickled::add);
+        assertEquals(whole, trickled);
+    }
+
+    @Test
+    void reportsTheSameLinksAsTheJsoupSelectItReplaced() throws IOException {
+        Document doc = Jsoup.parse(PAGE, BASE);
+        List<String> expected = new ArrayList<>();
+        for (Element link : doc.select("a[href], link[href], meta[http-equiv=refresh]")) {
+            String abs = link.tagName().equals("meta")
+                    ? StringUtil.resolve(link.baseUri(), LinkExtractor.refreshUrl(link.attr("content")))
+                    : link.absUrl("href");
+            if (!abs.startsWith("http://") && !abs.startsWith("https://")) continue;
+            int hash = abs.indexOf('#');
+            expected.add(hash < 0 ? abs : abs.substring(0, hash));
+        }
+
+        assertEquals(expected, extract(PAGE));
+    }
+
+    @Test
+    void unusableBaseUrlYieldsNothing() throws IOException {
+        List<String> links = new ArrayList<>();
+        assertEquals(0, new LinkExtractor().extract(new StringReader("<a href=/x>"), "ftp://a.test/", links::add));
+        assertEquals(List.of(), links);
+    }
+
+    private static List<String> extract(String html) throws IOException {
+        List<String> links = new ArrayList<>();
+        int found = new LinkExtractor().extract(new StringReader(html), BASE, links::add);
+        assertEquals(links.size(), found);
+        return links;
+    }
+
+    /** Hands out one character per read, so every token straddles a buffer refill. */
+    private static final class OneCharReader extends Reader {
+        private final String text;
+        private int pos;
+
+        OneCharReader(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int read(char[] buf, int off, int len) {
+            if (pos == text.length()) return -1;
+            buf[off] = text.charAt(pos++);
+            return 1;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
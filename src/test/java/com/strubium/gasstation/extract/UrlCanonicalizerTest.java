@@ -0,0 +1,68 @@
+package com.strubium.gasstation.extract;
+
+import org.junit.jupiter.api.Test;
+
+import static com.strubium.gasstation.extract.UrlCanonicalizer.canonicalHost;
+import static com.strubium.gasstation.extract.UrlCanonicalizer.canonicalize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class UrlCanonicalizerTest {
+
+    @Test
+    void canonicalUrlIsReturnedAsIs() {
+        String url = "https://example.com/a/b";
+        assertSame(url, canonicalize(url));
+    }
+
+    @Test
+    void queryFragmentAndTrailingSlashAreDropped() {
+        assertEquals("https://example.com/a", canonicalize("https://example.com/a/?x=1#top"));
+        assertEquals("https://example.com", canonicalize("https://example.com/"));
+        assertEquals("https://example.com/a", canonicalize("https://example.com/a#top"));
+    }
+
+    @Test
+    void schemeAndHostAreLowerCasedWithoutWwwOrTrailingDot() {
+        assertEquals("https://example.com/Path", canonicalize("HTTPS://WWW.Example.com./Path"));
+    }
+
+    @Test
+    void userInfoAndDefaultPortsAreDropped() {
+        assertEquals("http://example.com/a", canonicalize("http://user:pw@example.com:80/a"));
+        assertEquals("https://example.com/a", canonicalize("https://example.com:443/a"));
+        assertEquals("http://example.com:8080/a", canonicalize("http://example.com:8080/a"));
+        assertEquals("https://example.com:80/a", canonicalize("https://example.com:80/a"));
+    }
+
+    @Test
+    void escapesOfUnreservedCharactersAreDecoded() {
+        assertEquals(canonicalize("http://example.com/~user"), canonicalize("http://example.com/%7Euser"));
+        assertEquals("http://example.com/~user", canonicalize("http://example.com/%7euser"));
+        assertEquals("http://example.com/A-._", canonicalize("http://example.com/%41%2D%2E%5F"));
+    }
+
+    @Test
+    void remainingEscapesAreUpperCased() {
+        assertEquals("http://example.com/a%2Fb%20c", canonicalize("http://example.com/a%2fb%20c"));
+        String upper = "http://example.com/a%2Fb";
+        assertSame(upper, canonicalize(upper));
+    }
+
+    @Test
+    void malformedEscapesAreLeftAlone() {
+        assertEquals("http://example.com/%zzA", canonicalize("http://example.com/%zz%41"));
+        assertEquals("http://example.com/x%2", canonicalize("http://example.com/x%2"));
+    }
+
+    @Test
+    void urlWithoutAuthorityIsReturnedAsIs() {
+        assertEquals("mailto:someone@example.com", canonicalize("mailto:someone@example.com"));
+    }
+
+    @Test
+    void canonicalHostDropsWwwAndTrailingDot() {
+        assertEquals("example.com", canonicalHost("www.example.com."));
+        assertEquals("example.com", canonicalHost("example.com"));
+    }
+}
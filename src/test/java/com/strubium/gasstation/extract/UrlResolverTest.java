@@ -0,0 +1,77 @@
+package com.strubium.gasstation.extract;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class UrlResolverTest {
+    private final UrlResolver resolver = UrlResolver.of("https://example.com/dir/page.html?q=1#top");
+
+    @Test
+    void baseDropsTheFragment() {
+        assertEquals("https://example.com/dir/page.html?q=1", resolver.base());
+    }
+
+    @Test
+    void relativeReferencesResolveAgainstTheBaseDirectory() {
+        assertEquals("https://example.com/dir/other.html", resolver.resolve("other.html"));
+        assertEquals("https://example.com/dir/sub/a", resolver.resolve("sub/a"));
+        assertEquals("https://example.com/root", resolver.resolve("/root"));
+    }
+
+    @Test
+    void dotSegmentsAreRemoved() {
+        assertEquals("https://example.com/a", resolver.resolve("../a"));
+        assertEquals("https://example.com/dir/a", resolver.resolve("./a"));
+        assertEquals("https://example.com/b", resolver.resolve("/x/../b"));
+        assertEquals("https://example.com/dir/", resolver.resolve("."));
+    }
+
+    @Test
+    void queryAndEmptyReferences() {
+        assertEquals("https://example.com/dir/page.html?p=2", resolver.resolve("?p=2"));
+        assertEquals("https://example.com/dir/page.html?q=1", resolver.resolve(""));
+        assertEquals("https://example.com/dir/page.html?q=1", resolver.resolve("#section"));
+        assertEquals("https://example.com/dir/a?b=c", resolver.resolve("a?b=c#d"));
+    }
+
+    @Test
+    void absoluteAndSchemeRelativeReferences() {
+        assertEquals("http://other.org/x", resolver.resolve("http://other.org/x"));
+        assertEquals("https://other.org/x", resolver.resolve("HTTPS://other.org/x"));
+        assertEquals("https://cdn.example.com/x", resolver.resolve("//cdn.example.com/x"));
+        assertEquals("https://example.com/dir/a", resolver.resolve("  a  "));
+    }
+
+    @Test
+    void nonHttpReferencesAreRejected() {
+        assertNull(resolver.resolve("mailto:someone@example.com"));
+        assertNull(resolver.resolve("javascript:void(0)"));
+        assertNull(resolver.resolve("ftp://example.com/file"));
+    }
+
+    @Test
+    void onlyAbsoluteHttpBasesAreAccepted() {
+        assertNull(UrlResolver.of("ftp://example.com/"));
+        assertNull(UrlResolver.of("/relative"));
+        assertNull(UrlResolver.of("http:///no-host"));
+        assertEquals("http://example.com/", UrlResolver.of("http://example.com").base());
+    }
+
+    @Test
+    void hostOfExtractsTheLowerCasedHost() {
+        assertEquals("example.com", UrlResolver.hostOf("https://Example.COM/path"));
+        assertEquals("example.com", UrlResolver.hostOf("http://user:pw@example.com:8080/"));
+        assertEquals("[::1]", UrlResolver.hostOf("http://[::1]:80/"));
+        assertEquals("example.com", UrlResolver.hostOf("http://example.com?q"));
+    }
+
+    @Test
+    void hostOfRejectsUrlsWithoutAValidHost() {
+        assertNull(UrlResolver.hostOf("example.com/path"));
+        assertNull(UrlResolver.hostOf("http:///path"));
+        assertNull(UrlResolver.hostOf("http://exa mple.com/"));
+        assertNull(UrlResolver.hostOf("http://[::1/"));
+    }
+}
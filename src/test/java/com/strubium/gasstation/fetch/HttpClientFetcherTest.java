@@ -0,0 +1,203 @@
+package com.strubium.gasstation.fetch;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HttpClientFetcherTest {
+    private static final byte[] PAGE = ("<html><body>" + "<a href=\"/next\">next</a>".repeat(200) + "</body></html>")
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] GZIPPED = gzip(PAGE);
+
+    private static HttpServer server;
+    private static ExecutorService executor;
+    private static String base;
+
+    @BeforeAll
+    static void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/plain", exchange -> send(exchange, "text/html", null, PAGE));
+        server.createContext("/gzip", exchange -> send(exchange, "text/html", "gzip", GZIPPED));
+        server.createContext("/deflate", exchange -> send(exchange, "text/html", "deflate", deflate(PAGE, false)));
+        server.createContext("/raw-deflate", exchange -> send(exchange, "text/html", "deflate", deflate(PAGE, true)));
+        server.createContext("/stacked", exchange -> send(exchange, "text/html", "deflate, gzip",
+                gzip(deflate(PAGE, true))));
+        server.createContext("/compress", exchange -> send(exchange, "text/html", "compress", PAGE));
+        server.createContext("/br", exchange -> send(exchange, "text/html", "br", brotliStored(PAGE)));
+        server.createContext("/pdf", exchange -> send(exchange, "application/pdf", null, PAGE));
+        server.createContext("/stall", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/html");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(PAGE, 0, 16);
+                out.flush();
+                Thread.sleep(5000);
+            } catch (InterruptedException | IOException ignored) {
+            }
+        });
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void plainBodyIsReadAndCounted() throws Exception {
+        try (FetchResponse response = fetcher(1 << 20, 5000).fetch(base + "/plain")) {
+            assertEquals(200, response.status());
+            assertArrayEquals(PAGE, response.body().readAllBytes());
+            assertEquals(PAGE.length, response.bytesRead());
+        }
+    }
+
+    @Test
+    void gzipBodyIsDecodedAndCountedOnTheWire() throws Exception {
+        try (FetchResponse response = fetcher(1 << 20, 5000).fetch(base + "/gzip")) {
+            assertArrayEquals(PAGE, response.body().readAllBytes());
+            assertEquals(GZIPPED.length, response.bytesRead());
+            assertTrue(response.bytesRead() < PAGE.length);
+        }
+    }
+
+    @Test
+    void brotliBodyIsDecoded() throws Exception {
+        try (FetchResponse response = fetcher(1 << 20, 5000).fetch(base + "/br")) {
+            assertArrayEquals(PAGE, response.body().readAllBytes());
+        }
+    }
+
+    @Test
+    void zlibAndRawDeflateBodiesAreDecoded() throws Exception {
+        HttpClientFetcher fetcher = fetcher(1 << 20, 5000);
+        try (FetchResponse response = fetcher.fetch(base + "/deflate")) {
+            assertArrayEquals(PAGE, response.body().readAllBytes());
+        }
+        try (FetchResponse response = fetcher.fetch(base + "/raw-deflate")) {
+            assertArrayEquals(PAGE, response.body().readAllBytes());
+        }
+    }
+
+    @Test
+    void stackedEncodingsAreUndoneLastToFirst() throws Exception {
+        try (FetchResponse response = fetcher(1 << 20, 5000).fetch(base + "/stacked")) {
+            assertArrayEquals(PAGE, response.body().readAllBytes());
+        }
+    }
+
+    @Test
+    void unknownEncodingIsSkipped() throws Exception {
+        try (FetchResponse response = fetcher(1 << 20, 5000).fetch(base + "/compress")) {
+            assertEquals(200, response.status());
+            assertFalse(response.hasBody());
+        }
+    }
+
+    @Test
+    void bodyIsCutAtTheSizeCap() throws Exception {
+        try (FetchResponse response = fetcher(100, 5000).fetch(base + "/gzip")) {
+            assertArrayEquals(Arrays.copyOf(PAGE, 100), response.body().readAllBytes());
+        }
+    }
+
+    @Test
+    void nonHtmlIsSkippedUnlessAnyTypeIsAsked() throws Exception {
+        HttpClientFetcher fetcher = fetcher(1 << 20, 5000);
+        try (FetchResponse response = fetcher.fetch(base + "/pdf")) {
+            assertEquals(200, response.status());
+            assertFalse(response.hasBody());
+        }
+        try (FetchResponse response = fetcher.fetchAny(base + "/pdf")) {
+            assertArrayEquals(PAGE, response.body().readAllBytes());
+        }
+    }
+
+    @Test
+    void stalledBodyTimesOut() throws Exception {
+        long started = System.nanoTime();
+        try (FetchResponse response = fetcher(1 << 20, 500).fetch(base + "/stall")) {
+            assertThrows(HttpTimeoutException.class, () -> response.body().readAllBytes());
+        }
+        assertTrue(System.nanoTime() - started < 4_000_000_000L);
+    }
+
+    private static HttpClientFetcher fetcher(long maxBodyBytes, int timeoutMillis) {
+        return new HttpClientFetcher(new FetchConfig("test", timeoutMillis, maxBodyBytes));
+    }
+
+    private static void send(HttpExchange exchange, String contentType, String encoding, byte[] body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        if (encoding != null) exchange.getResponseHeaders().add("Content-Encoding", encoding);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] data, boolean raw) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+        try (DeflaterOutputStream deflate = new DeflaterOutputStream(out, deflater)) {
+            deflate.write(data);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * A Brotli stream (RFC 7932) holding {@code data} in one uncompressed meta-block,
+     * there is no Brotli encoder at hand. Header bits, lowest first: WBITS 0, ISLAST 0,
+     * MNIBBLES 0 (four nibbles), MLEN - 1, ISUNCOMPRESSED 1, padding. Then the data and
+     * an empty last meta-block.
+     */
+    private static byte[] brotliStored(byte[] data) {
+        int lengthMinusOne = data.length - 1;
+        byte[] out = new byte[data.length + 4];
+        out[0] = (byte) ((lengthMinusOne & 0xF) << 4);
+        out[1] = (byte) (lengthMinusOne >>> 4);
+        out[2] = (byte) (((lengthMinusOne >>> 12) & 0xF) | 0x10);
+        System.arraycopy(data, 0, out, 3, data.length);
+        out[out.length - 1] = 0x03;
+        return out;
+    }
+}
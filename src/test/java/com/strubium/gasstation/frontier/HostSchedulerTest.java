@@ -0,0 +1,239 @@
+package com.strubium.gasstation.frontier;
+
+import com.strubium.gasstation.CrawlerManager;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class HostSchedulerTest {
+    // Moved by hand, so no test depends on how fast it runs
+    private long now = 1_000_000_000L;
+    private int next;
+
+    @Test
+    void fetchesOfAHostStartAtLeastTheMinimumDelayApart() throws InterruptedException {
+        HostScheduler scheduler = scheduler(new Politeness(2, 1000, 2000, 120_000, 3), 4);
+        CrawlTask first = task("a.test", 0), second = task("a.test", 0), third = task("a.test", 0);
+        scheduler.enqueue(first);
+        scheduler.enqueue(second);
+        scheduler.enqueue(third);
+
+        assertSame(first, poll(scheduler));
+        assertNull(poll(scheduler));
+        advance(999);
+        assertNull(poll(scheduler));
+        advance(1);
+        assertSame(second, poll(scheduler));
+
+        // Two in flight is the limit, however long the host has rested
+        advance(5000);
+        assertNull(poll(scheduler));
+        scheduler.release(first, false);
+        assertSame(third, poll(scheduler));
+    }
+
+    @Test
+    void crawlDelayRaisesTheGapButNeverBelowTheMinimum() throws InterruptedException {
+        HostScheduler scheduler = scheduler(new Politeness(1, 100, 2000, 120_000, 3), 4);
+        scheduler.setMinDelay("a.test", 3000);
+        scheduler.setMinDelay("b.test", 10);
+        for (int i = 0; i < 2; i++) {
+            scheduler.enqueue(task("a.test", 0));
+            scheduler.enqueue(task("b.test", 0));
+        }
+        List<CrawlTask> started = drain(scheduler);
+        assertEquals(2, started.size());
+        started.forEach(t -> scheduler.release(t, false));
+
+        advance(100);
+        assertEquals("b.test", poll(scheduler).host());
+        assertNull(poll(scheduler));
+        advance(2900);
+        assertEquals("a.test", poll(scheduler).host());
+    }
+
+    @Test
+    void throttledHostBacksOffExponentiallyUpToTheCap() throws InterruptedException {
+        HostScheduler scheduler = scheduler(new Politeness(1, 0, 2000, 5000, 3), 4);
+        for (int i = 0; i < 5; i++) scheduler.enqueue(task("a.test", 0));
+
+        long[] backoffs = {2000, 4000, 5000};
+        for (long backoff : backoffs) {
+            scheduler.release(poll(scheduler), true);
+            advance(backoff - 1);
+            assertNull(poll(scheduler));
+            advance(1);
+        }
+        // Any other outcome resets the back-off
+        scheduler.release(poll(scheduler), false);
+        assertEquals("a.test", poll(scheduler).host());
+    }
+
+    @Test
+    void postponedRetryComesBackAfterItsDelayWithoutTouchingTheBackOff() throws InterruptedException {
+        HostScheduler scheduler = scheduler(new Politeness(1, 0, 2000, 120_000, 3), 4);
+        scheduler.enqueue(task("a.test", 0));
+
+        CrawlTask taken = poll(scheduler);
+        scheduler.postpone(taken.retry(), 500);
+        advance(499);
+        assertNull(poll(scheduler));
+        advance(1);
+        CrawlTask retried = poll(scheduler);
+        assertEquals(taken.url(), retried.url());
+        assertEquals(1, retried.attempt());
+
+        // The first throttle still waits the base back-off, not a doubled one
+        scheduler.enqueue(task("a.test", 0));
+        scheduler.release(retried, true);
+        advance(1999);
+        assertNull(poll(scheduler));
+        advance(1);
+        assertEquals("a.test", poll(scheduler).host());
+    }
+
+    @Test
+    void hostServesItsShallowestTaskFirst() throws InterruptedException {
+        HostScheduler scheduler = scheduler(new Politeness(1, 0, 2000, 120_000, 3), 4);
+        CrawlTask deep = task("a.test", 3), shallow = task("a.test", 1), alsoShallow = task("a.test", 1);
+        scheduler.enqueue(deep);
+        scheduler.enqueue(shallow);
+        scheduler.enqueue(alsoShallow);
+
+        List<CrawlTask> order = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            CrawlTask t = poll(scheduler);
+            order.add(t);
+            scheduler.release(t, false);
+        }
+        assertEquals(List.of(shallow, alsoShallow, deep), order);
+    }
+
+    @Test
+    void readyHostsAreServedInPriorityOrder() throws InterruptedException {
+        // One stripe, so the two-choice pick always sees the global head
+        HostScheduler scheduler = new HostScheduler(new Politeness(1, 0, 2000, 120_000, 3),
+                (host, depth, fetchedBefore) -> depth, 1, () -> now);
+        scheduler.enqueue(task("c.test", 2));
+        scheduler.enqueue(task("a.test", 0));
+        scheduler.enqueue(task("b.test", 1));
+        scheduler.enqueue(task("d.test", 1));
+
+        List<String> order = new ArrayList<>();
+        for (CrawlTask t : drain(scheduler)) order.add(t.host());
+        assertEquals(List.of("a.test", "b.test", "d.test", "c.test"), order);
+    }
+
+    @Test
+    void breadthFirstPriorityPrefersUnfetchedShallowHosts() throws InterruptedException {
+        HostScheduler scheduler = new HostScheduler(new Politeness(1, 0, 2000, 120_000, 3),
+                new BreadthFirstPriority(new CrawlerManager(5)), 1, () -> now);
+        scheduler.enqueue(task("a.test", 0));
+        scheduler.enqueue(task("a.test", 0));
+        CrawlTask first = poll(scheduler);
+        scheduler.enqueue(task("b.test", 1));
+        scheduler.release(first, false);
+
+        // a.test was fetched already, the new host at depth 1 goes first
+        assertEquals("b.test", poll(scheduler).host());
+        assertEquals("a.test", poll(scheduler).host());
+    }
+
+    @Test
+    void everyReadyHostIsFoundWhateverStripeItSitsIn() throws InterruptedException {
+        // Far more stripes than hosts: the two random picks are mostly empty and the rest has to be stolen
+        HostScheduler scheduler = scheduler(new Politeness(1, 0, 2000, 120_000, 3), 256);
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            scheduler.enqueue(task("h" + i + ".test", 0));
+            expected.add("h" + i + ".test");
+        }
+
+        Set<String> taken = new HashSet<>();
+        for (int i = 0; i < 100; i++) taken.add(poll(scheduler).host());
+        assertEquals(expected, taken);
+        assertNull(poll(scheduler));
+    }
+
+    @Test
+    void discardedReadyHostIsSkippedAndCanBeQueuedAgain() throws InterruptedException {
+        HostScheduler scheduler = scheduler(new Politeness(1, 0, 2000, 120_000, 3), 4);
+        CrawlTask one = task("a.test", 0), two = task("a.test", 1);
+        scheduler.enqueue(one);
+        scheduler.enqueue(two);
+        scheduler.enqueue(task("b.test", 0));
+
+        assertEquals(List.of(one, two), scheduler.discard("a.test"));
+        assertEquals("b.test", poll(scheduler).host());
+        assertNull(poll(scheduler));
+
+        CrawlTask again = task("a.test", 0);
+        scheduler.enqueue(again);
+        assertSame(again, poll(scheduler));
+    }
+
+    @Test
+    void discardedWaitingHostIsDroppedWhenItsDelayEnds() throws InterruptedException {
+        HostScheduler scheduler = scheduler(new Politeness(2, 1000, 2000, 120_000, 3), 4);
+        CrawlTask first = task("a.test", 0), waiting = task("a.test", 0);
+        scheduler.enqueue(first);
+        scheduler.enqueue(waiting);
+        assertSame(first, poll(scheduler));
+
+        assertEquals(List.of(waiting), scheduler.discard("a.test"));
+        advance(1000);
+        assertNull(poll(scheduler));
+        scheduler.release(first, false);
+
+        CrawlTask again = task("a.test", 0);
+        scheduler.enqueue(again);
+        assertSame(again, poll(scheduler));
+        assertEquals(List.of(), scheduler.discard("unknown.test"));
+    }
+
+    @Test
+    void queuedTasksAreListedAndTheDeepestQueuesRanked() {
+        HostScheduler scheduler = scheduler(new Politeness(1, 0, 2000, 120_000, 3), 4);
+        for (int i = 0; i < 3; i++) scheduler.enqueue(task("a.test", 0));
+        scheduler.enqueue(task("b.test", 0));
+        for (int i = 0; i < 2; i++) scheduler.enqueue(task("c.test", 0));
+
+        List<CrawlTask> queued = new ArrayList<>();
+        scheduler.forEachQueued(queued::add);
+        assertEquals(6, queued.size());
+        assertEquals(3, scheduler.hostCount());
+        assertEquals(List.of("a.test=3", "c.test=2"), scheduler.deepestQueues(2));
+    }
+
+    private HostScheduler scheduler(Politeness politeness, int stripes) {
+        return new HostScheduler(politeness, HostPriority.ROUND_ROBIN, stripes, () -> now);
+    }
+
+    private void advance(long millis) {
+        now += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /** Takes a task that may start now; a zero timeout never waits on the clock, which is not moving. */
+    private static CrawlTask poll(HostScheduler scheduler) throws InterruptedException {
+        return scheduler.poll(0, TimeUnit.MILLISECONDS);
+    }
+
+    private static List<CrawlTask> drain(HostScheduler scheduler) throws InterruptedException {
+        List<CrawlTask> taken = new ArrayList<>();
+        CrawlTask t;
+        while ((t = poll(scheduler)) != null) taken.add(t);
+        return taken;
+    }
+
+    private CrawlTask task(String host, int depth) {
+        return new CrawlTask("http://" + host + "/" + next++, host, depth);
+    }
+}
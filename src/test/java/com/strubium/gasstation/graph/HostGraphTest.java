@@ -0,0 +1,125 @@
+package com.strubium.gasstation.graph;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HostGraphTest {
+
+    @Test
+    void repeatedLinksCountOnTheSameEdge() {
+        HostGraph graph = new HostGraph();
+        assertTrue(graph.addEdge("a.test", "b.test"));
+        assertFalse(graph.addEdge("a.test", "b.test"));
+        assertTrue(graph.addEdge("c.test", "b.test"));
+
+        assertEquals(3, graph.vertexCount());
+        assertEquals(2, graph.edgeCount());
+        assertEquals(2, graph.inDegree(graph.idOf("b.test")));
+        assertEquals(0, graph.inDegree(graph.idOf("a.test")));
+        assertEquals(-1, graph.idOf("d.test"));
+
+        HostGraphSnapshot snapshot = graph.snapshot();
+        int a = graph.idOf("a.test");
+        assertEquals(1, snapshot.outEnd(a) - snapshot.outStart(a));
+        assertEquals(2, snapshot.linkCount(snapshot.outStart(a)));
+    }
+
+    @Test
+    void edgeIsGoneOnceItsLastLinkIsRemoved() {
+        HostGraph graph = new HostGraph();
+        int a = graph.intern("a.test");
+        int b = graph.intern("b.test");
+        graph.addEdge(a, b, 3);
+
+        assertFalse(graph.removeLinks(a, b, 2));
+        assertEquals(1, graph.edgeCount());
+        assertEquals(1, graph.inDegree(b));
+        assertTrue(graph.removeLinks(a, b, 1));
+        assertEquals(0, graph.edgeCount());
+        assertEquals(0, graph.inDegree(b));
+        assertFalse(graph.removeLinks(a, b, 1));
+        assertEquals(0, graph.snapshot().edgeCount());
+    }
+
+    @Test
+    void snapshotRowsHoldEveryEdgeSortedByTarget() {
+        HostGraph graph = new HostGraph();
+        int hosts = 300;
+        for (int i = 0; i < hosts; i++) graph.intern("h" + i + ".test");
+        long expectedLinks = 0;
+        for (int from = 0; from < hosts; from++) {
+            // Added in descending target order so the sort is not a given
+            for (int to = hosts - 1; to >= 0; to -= 1 + from % 7) {
+                graph.addEdge(from, to, 1 + to % 3);
+                expectedLinks += 1 + to % 3;
+            }
+        }
+
+        HostGraphSnapshot snapshot = graph.snapshot();
+        assertEquals(hosts, snapshot.vertexCount());
+        assertEquals(graph.edgeCount(), snapshot.edgeCount());
+        assertEquals(0, snapshot.outStart(0));
+        assertEquals(snapshot.edgeCount(), snapshot.outEnd(hosts - 1));
+        long links = 0;
+        for (int v = 0; v < hosts; v++) {
+            assertEquals("h" + v + ".test", snapshot.host(v));
+            if (v > 0) assertEquals(snapshot.outEnd(v - 1), snapshot.outStart(v));
+            int rowLength = 0;
+            for (int to = hosts - 1; to >= 0; to -= 1 + v % 7) rowLength++;
+            assertEquals(rowLength, snapshot.outEnd(v) - snapshot.outStart(v));
+            for (int e = snapshot.outStart(v); e < snapshot.outEnd(v); e++) {
+                if (e > snapshot.outStart(v)) assertTrue(snapshot.target(e - 1) < snapshot.target(e));
+                assertEquals(1 + snapshot.target(e) % 3, snapshot.linkCount(e));
+                links += snapshot.linkCount(e);
+            }
+        }
+        assertEquals(expectedLinks, links);
+    }
+
+    @Test
+    void mergeSumsLinksAndKeepsTheEarlierSightingAndLowerDepth() {
+        HostGraph left = new HostGraph();
+        left.addEdge("a.test", "b.test");
+        left.recordDepth(left.idOf("b.test"), 3);
+        HostGraph right = new HostGraph();
+        // Interned in another order, so ids differ between the two graphs
+        right.addEdge("c.test", "b.test");
+        right.addEdge("a.test", "b.test");
+        right.addEdge("a.test", "b.test");
+        right.recordDepth(right.idOf("b.test"), 1);
+        right.recordDepth(right.idOf("c.test"), 2);
+        HostGraphSnapshot leftSnapshot = left.snapshot();
+        HostGraphSnapshot rightSnapshot = right.snapshot();
+
+        left.merge(rightSnapshot);
+        assertEquals(3, left.vertexCount());
+        assertEquals(2, left.edgeCount());
+        int b = left.idOf("b.test");
+        assertEquals(2, left.inDegree(b));
+        assertEquals(1, left.depthOf(b));
+        assertEquals(2, left.depthOf(left.idOf("c.test")));
+        assertEquals(-1, left.depthOf(left.idOf("a.test")));
+
+        HostGraphSnapshot merged = left.snapshot();
+        int a = left.idOf("a.test");
+        assertEquals(1, merged.outEnd(a) - merged.outStart(a));
+        assertEquals(b, merged.target(merged.outStart(a)));
+        assertEquals(3, merged.linkCount(merged.outStart(a)));
+        assertEquals(Math.min(leftSnapshot.firstSeen(a), rightSnapshot.firstSeen(right.idOf("a.test"))), merged.firstSeen(a));
+        assertEquals(rightSnapshot.firstSeen(right.idOf("c.test")), merged.firstSeen(left.idOf("c.test")));
+    }
+
+    @Test
+    void lowerDepthWinsAndHigherIsIgnored() {
+        HostGraph graph = new HostGraph();
+        int a = graph.intern("a.test");
+        assertEquals(-1, graph.depthOf(a));
+        graph.recordDepth(a, 4);
+        graph.recordDepth(a, 2);
+        graph.recordDepth(a, 3);
+        assertEquals(2, graph.depthOf(a));
+    }
+}
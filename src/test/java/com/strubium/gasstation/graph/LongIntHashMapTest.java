@@ -0,0 +1,103 @@
+package com.strubium.gasstation.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LongIntHashMapTest {
+
+    @Test
+    void addReturnsThePreviousValue() {
+        LongIntHashMap map = new LongIntHashMap(16);
+        assertEquals(0, map.add(7, 2));
+        assertEquals(2, map.add(7, 3));
+        assertEquals(5, map.get(7));
+        assertEquals(0, map.get(8));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void subtractRemovesTheKeyOnceNothingIsLeft() {
+        LongIntHashMap map = new LongIntHashMap(16);
+        map.add(7, 3);
+        assertEquals(1, map.subtract(7, 2));
+        assertEquals(0, map.subtract(7, 5));
+        assertEquals(0, map.get(7));
+        assertEquals(0, map.size());
+        assertEquals(0, map.subtract(8, 1));
+    }
+
+    @Test
+    void removalShiftsAProbeRunBackAcrossTheTableEnd() {
+        LongIntHashMap map = new LongIntHashMap(16);
+        int last = map.keys().length - 1;
+        // Three keys at home in the last slot wrap around to slots 0 and 1, a fourth at home in 0 lands in 2
+        long[] tail = keysWithHome(map, last, 3);
+        long head = keysWithHome(map, 0, 1)[0];
+        for (int i = 0; i < tail.length; i++) map.add(tail[i], i + 1);
+        map.add(head, 10);
+        assertEquals(head, map.keys()[2]);
+
+        map.subtract(tail[0], 1);
+        assertEquals(tail[1], map.keys()[last]);
+        assertEquals(tail[2], map.keys()[0]);
+        assertEquals(head, map.keys()[1]);
+        assertEquals(LongIntHashMap.EMPTY, map.keys()[2]);
+        assertEquals(2, map.get(tail[1]));
+        assertEquals(3, map.get(tail[2]));
+        assertEquals(10, map.get(head));
+        assertEquals(3, map.size());
+    }
+
+    @Test
+    void keyAlreadyAtHomeStaysWhenAnEarlierOneIsRemoved() {
+        LongIntHashMap map = new LongIntHashMap(16);
+        long[] first = keysWithHome(map, 4, 2);
+        long second = keysWithHome(map, 5, 1)[0];
+        map.add(first[0], 1);
+        map.add(second, 2);
+        // Displaced from 4 past 5, which is already taken
+        map.add(first[1], 3);
+        assertEquals(first[1], map.keys()[6]);
+
+        map.subtract(first[0], 1);
+        assertEquals(first[1], map.keys()[4]);
+        assertEquals(second, map.keys()[5]);
+        assertEquals(2, map.get(second));
+        assertEquals(3, map.get(first[1]));
+    }
+
+    @Test
+    void matchesAHashMapThroughGrowthAndRemovals() {
+        LongIntHashMap map = new LongIntHashMap(16);
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(5000);
+            int delta = 1 + random.nextInt(3);
+            if (random.nextBoolean()) {
+                assertEquals(expected.getOrDefault(key, 0).intValue(), map.add(key, delta));
+                expected.merge(key, delta, Integer::sum);
+            } else {
+                int left = Math.max(0, expected.getOrDefault(key, 0) - delta);
+                assertEquals(expected.containsKey(key) ? left : 0, map.subtract(key, delta));
+                if (left == 0) expected.remove(key);
+                else expected.put(key, left);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Integer> e : expected.entrySet()) assertEquals(e.getValue().intValue(), map.get(e.getKey()));
+    }
+
+    private static long[] keysWithHome(LongIntHashMap map, int slot, int count) {
+        long[] keys = new long[count];
+        for (long k = 0, found = 0; found < count; k++) {
+            if (map.slot(k) == slot) keys[(int) found++] = k;
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,108 @@
+package com.strubium.gasstation.recrawl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PageStoreTest {
+    private static final String URL = "http://a.test/page";
+    private final PageStore store = new PageStore(new RecrawlConfig(1000, 100, 4000));
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void newPageStartsAtTheInitialInterval() {
+        assertTrue(fetch(null, 1L));
+        assertEquals(1000, store.get(URL).intervalSeconds());
+    }
+
+    @Test
+    void intervalHalvesOnChangeAndDoublesOtherwise() {
+        PageRecord record = record(1000);
+        assertEquals(500, store.nextInterval(record, true));
+        assertEquals(2000, store.nextInterval(record, false));
+    }
+
+    @Test
+    void intervalStaysWithinItsBounds() {
+        assertEquals(100, store.nextInterval(record(150), true));
+        assertEquals(4000, store.nextInterval(record(3000), false));
+    }
+
+    @Test
+    void revisitTracksChanges() {
+        fetch(null, 1L);
+        assertFalse(fetch(store.get(URL), 1L));
+        assertEquals(2000, store.get(URL).intervalSeconds());
+        assertTrue(fetch(store.get(URL), 2L));
+        PageRecord record = store.get(URL);
+        assertEquals(1000, record.intervalSeconds());
+        assertEquals(3, record.checks());
+        assertEquals(1, record.changes());
+    }
+
+    @Test
+    void failedChecksBackOffUntilThePageIsDropped() {
+        fetch(null, 1L);
+        for (int i = 1; i < PageStore.MAX_FAILURES; i++) {
+            assertFalse(store.failed(store.get(URL), false));
+            assertEquals(i, store.get(URL).failures());
+        }
+        assertEquals(4000, store.get(URL).intervalSeconds());
+        assertTrue(store.failed(store.get(URL), false));
+        assertNull(store.get(URL));
+    }
+
+    @Test
+    void successResetsTheFailures() {
+        fetch(null, 1L);
+        store.failed(store.get(URL), false);
+        store.unchanged(store.get(URL));
+        assertEquals(0, store.get(URL).failures());
+    }
+
+    @Test
+    void gonePageIsDroppedAtOnce() {
+        fetch(null, 1L);
+        assertTrue(store.failed(store.get(URL), true));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void recordsSurviveAWriteAndRead() throws IOException {
+        fetch(null, 1L);
+        store.failed(store.get(URL), false);
+        Path file = dir.resolve("pages.bin");
+        store.write(file);
+
+        PageRecord read = PageStore.read(file, new RecrawlConfig(1000, 100, 4000)).get(URL);
+        PageRecord written = store.get(URL);
+        assertEquals(written.etag(), read.etag());
+        assertNull(read.lastModified());
+        assertEquals(written.linkHash(), read.linkHash());
+        assertEquals("a.test", read.host());
+        assertArrayEquals(written.linkHosts(), read.linkHosts());
+        assertArrayEquals(written.linkCounts(), read.linkCounts());
+        assertEquals(written.intervalSeconds(), read.intervalSeconds());
+        assertEquals(1, read.failures());
+    }
+
+    private boolean fetch(PageRecord previous, long linkHash) {
+        return store.fetched(URL, 1, previous, "\"v1\"", null, linkHash, "a.test", Map.of("b.test", 3));
+    }
+
+    private static PageRecord record(long intervalSeconds) {
+        return new PageRecord(URL, 1, null, null, 0, "a.test", new String[0], new int[0],
+                0, intervalSeconds, 1, 0, 0);
+    }
+}
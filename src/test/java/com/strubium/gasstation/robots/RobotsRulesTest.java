@@ -0,0 +1,106 @@
+package com.strubium.gasstation.robots;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RobotsRulesTest {
+    private static final String AGENT = "AdvancedJavaCrawler";
+
+    @Test
+    void longestMatchWins() throws IOException {
+        RobotsRules rules = parse("""
+                User-agent: *
+                Disallow: /private
+                Allow: /private/public
+                """);
+        assertTrue(rules.allows("/"));
+        assertFalse(rules.allows("/private"));
+        assertFalse(rules.allows("/private/secret"));
+        assertTrue(rules.allows("/private/public/page"));
+    }
+
+    @Test
+    void allowBeatsDisallowOfTheSameLength() throws IOException {
+        RobotsRules rules = parse("""
+                User-agent: *
+                Disallow: /page
+                Allow: /page
+                """);
+        assertTrue(rules.allows("/page"));
+    }
+
+    @Test
+    void wildcardsAndEndAnchors() throws IOException {
+        RobotsRules rules = parse("""
+                User-agent: *
+                Disallow: /*.pdf$
+                Disallow: /search*q=
+                """);
+        assertFalse(rules.allows("/docs/file.pdf"));
+        assertTrue(rules.allows("/docs/file.pdf?download=1"));
+        assertFalse(rules.allows("/search?lang=en&q=crawler"));
+        assertTrue(rules.allows("/search?lang=en"));
+    }
+
+    @Test
+    void mostSpecificAgentGroupIsUsed() throws IOException {
+        RobotsRules rules = parse("""
+                User-agent: *
+                Disallow: /
+
+                User-agent: JavaCrawler
+                Disallow: /java
+
+                User-agent: AdvancedJavaCrawler
+                Disallow: /advanced
+                Crawl-delay: 2.5
+                """);
+        assertTrue(rules.allows("/"));
+        assertTrue(rules.allows("/java"));
+        assertFalse(rules.allows("/advanced/page"));
+        assertEquals(2500, rules.crawlDelayMillis());
+    }
+
+    @Test
+    void groupsCanNameSeveralAgents() throws IOException {
+        RobotsRules rules = parse("""
+                User-agent: OtherBot
+                User-agent: advancedjavacrawler
+                Disallow: /shared
+                """);
+        assertFalse(rules.allows("/shared"));
+        assertEquals(1, rules.ruleCount());
+    }
+
+    @Test
+    void commentsEmptyRulesAndSitemaps() throws IOException {
+        RobotsRules rules = parse("""
+                # robots.txt
+                Sitemap: https://example.com/sitemap.xml
+                User-agent: * # everyone
+                Disallow:
+                Disallow: /tmp # scratch
+                """);
+        assertTrue(rules.allows("/"));
+        assertFalse(rules.allows("/tmp/file"));
+        assertEquals(List.of("https://example.com/sitemap.xml"), rules.sitemaps());
+    }
+
+    @Test
+    void robotsTxtItselfIsAlwaysAllowed() {
+        RobotsRules rules = RobotsRules.disallowAll();
+        assertFalse(rules.allows("/"));
+        assertTrue(rules.allows("/robots.txt"));
+    }
+
+    private static RobotsRules parse(String body) throws IOException {
+        return RobotsRules.parse(new StringReader(body), AGENT);
+    }
+}
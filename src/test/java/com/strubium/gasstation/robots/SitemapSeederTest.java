@@ -0,0 +1,71 @@
+package com.strubium.gasstation.robots;
+
+import com.strubium.gasstation.CrawlerManager;
+import com.strubium.gasstation.fetch.FetchResponse;
+import com.strubium.gasstation.fetch.Fetcher;
+import com.strubium.gasstation.frontier.Frontier;
+import com.strubium.gasstation.metrics.CrawlMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SitemapSeederTest {
+    private static final String INDEX = """
+            <sitemapindex>
+              <sitemap><loc>http://a.test/one.xml</loc></sitemap>
+              <sitemap><loc>http://a.test/two.xml</loc></sitemap>
+            </sitemapindex>
+            """;
+
+    private final List<Long> fetchedAt = new CopyOnWriteArrayList<>();
+
+    /** Serves the index, then two sitemaps of three URLs each. */
+    private final Fetcher fetcher = url -> {
+        fetchedAt.add(System.nanoTime());
+        String body = url.endsWith("index.xml") ? INDEX : urlset(url.endsWith("one.xml") ? "1" : "2");
+        return new FetchResponse(200, url, "application/xml", Map.of(),
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    };
+
+    @Test
+    void onlyAdmittedUrlsAreCounted() {
+        CrawlerManager manager = new CrawlerManager(3);
+        CrawlMetrics metrics = new CrawlMetrics();
+        // Room for four of the six URLs
+        Frontier frontier = new Frontier(manager, 4);
+        SitemapSeeder seeder = new SitemapSeeder(fetcher, frontier, metrics, 100);
+        seeder.seed("a.test", List.of("http://a.test/index.xml"), 1, 0);
+        seeder.close();
+
+        assertEquals(4, frontier.size());
+        assertEquals(4, metrics.getSitemapUrls());
+    }
+
+    @Test
+    void sitemapFilesOfAHostAreFetchedAfterItsCrawlDelay() {
+        CrawlerManager manager = new CrawlerManager(3);
+        SitemapSeeder seeder = new SitemapSeeder(fetcher, new Frontier(manager, 100), new CrawlMetrics(), 100);
+        seeder.seed("a.test", List.of("http://a.test/index.xml"), 1, 100);
+        seeder.close();
+
+        assertEquals(3, fetchedAt.size());
+        for (int i = 1; i < fetchedAt.size(); i++) {
+            assertTrue(fetchedAt.get(i) - fetchedAt.get(i - 1) >= 100_000_000L);
+        }
+    }
+
+    private static String urlset(String prefix) {
+        StringBuilder out = new StringBuilder("<urlset>");
+        for (int i = 0; i < 3; i++) {
+            out.append("<url><loc>http://a.test/").append(prefix).append('-').append(i).append("</loc></url>");
+        }
+        return out.append("</urlset>").toString();
+    }
+}
@@ -0,0 +1,198 @@
+package com.strubium.gasstation.shard;
+
+import com.strubium.gasstation.CrawlerManager;
+import com.strubium.gasstation.frontier.CrawlTask;
+import com.strubium.gasstation.frontier.Frontier;
+import com.strubium.gasstation.io.BinaryReader;
+import com.strubium.gasstation.io.BinaryWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardNodeTest {
+    // ShardNode's handshake magic
+    private static final int MAGIC = 0x494D5348;
+
+    @TempDir
+    Path spillDir;
+
+    @Test
+    void forwardedUrlsReachTheirOwnersAndAllShardsEndDone() throws Exception {
+        List<InetSocketAddress> addresses = freeAddresses(3);
+        ShardRing ring = new ShardRing(3);
+        Frontier[] frontiers = new Frontier[3];
+        ShardNode[] nodes = new ShardNode[3];
+        Thread[] workers = new Thread[3];
+        List<Set<String>> crawled = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            frontiers[i] = new Frontier(new CrawlerManager(5), 1000);
+            // Well above the one second between status frames, or a late one looks like silence
+            nodes[i] = new ShardNode(new ShardConfig(i, addresses, 3, spillDir), frontiers[i]);
+            nodes[i].start();
+            crawled.add(ConcurrentHashMap.newKeySet());
+        }
+        for (int i = 0; i < 3; i++) workers[i] = worker(frontiers[i], crawled.get(i));
+
+        List<String> urls = new ArrayList<>();
+        for (int h = 0; h < 30; h++) urls.add("http://h" + h + ".test/");
+        frontiers[0].admitAll(urls, 0);
+
+        for (Thread worker : workers) assertTrue(worker.join(Duration.ofSeconds(30)));
+        Set<String> all = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(nodes[i].isDone());
+            for (String url : crawled.get(i)) assertEquals(i, ring.ownerOf(url.substring(7, url.length() - 1)));
+            all.addAll(crawled.get(i));
+            nodes[i].close();
+        }
+        assertEquals(new HashSet<>(urls), all);
+    }
+
+    @Test
+    void shardWithASilentPeerLeavesAndSpillsItsUrls() throws Exception {
+        List<InetSocketAddress> addresses = freeAddresses(2);
+        List<String> forOne = urlsOwnedBy(new ShardRing(2), 1, 5);
+        Frontier frontier = new Frontier(new CrawlerManager(5), 1000);
+        ShardNode node = new ShardNode(new ShardConfig(0, addresses, 1, spillDir), frontier);
+        node.start();
+        frontier.admitAll(forOne, 0);
+
+        assertTrue(worker(frontier, ConcurrentHashMap.newKeySet()).join(Duration.ofSeconds(30)));
+        assertFalse(node.isDone());
+        node.close();
+        assertTrue(Files.exists(spillDir.resolve("undelivered-1-from-0.bin")));
+
+        // The owner picks them up on its next start
+        Frontier owner = new Frontier(new CrawlerManager(5), 1000);
+        ShardNode later = new ShardNode(new ShardConfig(1, addresses, 1, spillDir), owner);
+        assertEquals(forOne.size(), later.admitUndelivered());
+        assertEquals(forOne.size(), owner.size());
+        assertFalse(Files.exists(spillDir.resolve("undelivered-1-from-0.bin")));
+    }
+
+    @Test
+    void resentBatchIsTakenOnceAndAcknowledged() throws Exception {
+        List<InetSocketAddress> addresses = freeAddresses(2);
+        List<String> forZero = urlsOwnedBy(new ShardRing(2), 0, 3);
+        Frontier frontier = new Frontier(new CrawlerManager(5), 1000);
+        ShardNode node = new ShardNode(new ShardConfig(0, addresses, 5, spillDir), frontier);
+
+        // Plays shard 1: reads the status frames shard 0 sends it
+        try (ServerSocket fake = new ServerSocket()) {
+            fake.bind(addresses.get(1));
+            node.start();
+            worker(frontier, ConcurrentHashMap.newKeySet());
+
+            try (Socket socket = connect(addresses.get(0))) {
+                BinaryWriter out = handshake(socket, 42);
+                batch(out, 1, forZero.subList(0, 2));
+                out.flush();
+            }
+            // As if the connection had dropped before batch 1 was known to be delivered
+            try (Socket socket = connect(addresses.get(0))) {
+                BinaryWriter out = handshake(socket, 42);
+                batch(out, 1, forZero.subList(0, 2));
+                batch(out, 2, forZero.subList(2, 3));
+                out.flush();
+
+                try (Socket statuses = fake.accept(); BinaryReader in = new BinaryReader(statuses.getInputStream())) {
+                    assertEquals(MAGIC, in.readInt());
+                    assertEquals(0, in.readVarInt());
+                    in.readVarLong();
+                    long[] status = nextStatus(in);
+                    long deadline = System.nanoTime() + 10_000_000_000L;
+                    while (status[3] < 2 && System.nanoTime() < deadline) status = nextStatus(in);
+                    assertEquals(2, status[3]);
+                    assertEquals(3, nextStatus(in)[2]);
+                }
+            }
+        }
+        node.close();
+    }
+
+    /** Crawls whatever the frontier hands out until it reports the end, collecting the URLs. */
+    private static Thread worker(Frontier frontier, Set<String> crawled) {
+        return Thread.ofVirtual().start(() -> {
+            try {
+                CrawlTask task;
+                while ((task = frontier.take()) != null) {
+                    crawled.add(task.url());
+                    frontier.complete(task, false);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    private static Socket connect(InetSocketAddress address) throws IOException {
+        Socket socket = new Socket();
+        socket.connect(address, 5000);
+        return socket;
+    }
+
+    private static BinaryWriter handshake(Socket socket, long session) throws IOException {
+        BinaryWriter out = new BinaryWriter(new BufferedOutputStream(socket.getOutputStream()));
+        out.writeInt(MAGIC);
+        out.writeVarInt(1);
+        out.writeVarLong(session);
+        return out;
+    }
+
+    private static void batch(BinaryWriter out, long number, List<String> urls) throws IOException {
+        out.writeVarInt(urls.size());
+        out.writeVarLong(number);
+        for (String url : urls) {
+            out.writeVarInt(1);
+            out.writeString(url);
+        }
+    }
+
+    /** Skips URL frames up to the next status frame: state, sent, received, acknowledged batch. */
+    private static long[] nextStatus(BinaryReader in) throws IOException {
+        while (true) {
+            int count = in.readVarInt();
+            if (count == 0) return new long[]{in.readVarInt(), in.readVarLong(), in.readVarLong(), in.readVarLong()};
+            in.readVarLong();
+            for (int i = 0; i < count; i++) {
+                in.readVarInt();
+                in.readString(1 << 16);
+            }
+        }
+    }
+
+    private static List<String> urlsOwnedBy(ShardRing ring, int shard, int count) {
+        List<String> urls = new ArrayList<>();
+        for (int h = 0; urls.size() < count; h++) {
+            if (ring.ownerOf("h" + h + ".test") == shard) urls.add("http://h" + h + ".test/");
+        }
+        return urls;
+    }
+
+    private static List<InetSocketAddress> freeAddresses(int count) throws IOException {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            try (ServerSocket probe = new ServerSocket(0)) {
+                addresses.add(new InetSocketAddress("127.0.0.1", probe.getLocalPort()));
+            }
+        }
+        return addresses;
+    }
+}